@@ -17,15 +17,18 @@
 
 package cn.vbill.middleware.porter.common.client;
 
+import cn.vbill.middleware.porter.common.client.impl.BinlogFileClient;
 import cn.vbill.middleware.porter.common.client.impl.CanalClient;
 import cn.vbill.middleware.porter.common.client.impl.EmailClient;
 import cn.vbill.middleware.porter.common.client.impl.JDBCClient;
 import cn.vbill.middleware.porter.common.client.impl.KUDUClient;
 import cn.vbill.middleware.porter.common.client.impl.KafkaClient;
 import cn.vbill.middleware.porter.common.client.impl.KafkaProduceClient;
+import cn.vbill.middleware.porter.common.client.impl.OggFileClient;
 import cn.vbill.middleware.porter.common.client.impl.ZookeeperClient;
 import cn.vbill.middleware.porter.common.config.PluginServiceConfig;
 import cn.vbill.middleware.porter.common.config.SourceConfig;
+import cn.vbill.middleware.porter.common.config.source.BinlogFileConfig;
 import cn.vbill.middleware.porter.common.config.source.CanalConfig;
 import cn.vbill.middleware.porter.common.config.source.EmailConfig;
 import cn.vbill.middleware.porter.common.config.source.JDBCConfig;
@@ -33,6 +36,7 @@ import cn.vbill.middleware.porter.common.config.source.KafkaConfig;
 import cn.vbill.middleware.porter.common.config.source.KafkaProduceConfig;
 import cn.vbill.middleware.porter.common.config.source.KuduConfig;
 import cn.vbill.middleware.porter.common.config.source.NameSourceConfig;
+import cn.vbill.middleware.porter.common.config.source.OggFileConfig;
 import cn.vbill.middleware.porter.common.config.source.ZookeeperConfig;
 import cn.vbill.middleware.porter.common.exception.ClientException;
 import cn.vbill.middleware.porter.common.exception.ClientMatchException;
@@ -164,6 +168,12 @@ public abstract class AbstractClient<T extends SourceConfig> implements Client {
         if (config instanceof KafkaProduceConfig) {
             return new KafkaProduceClient((KafkaProduceConfig) config);
         }
+        if (config instanceof BinlogFileConfig) {
+            return new BinlogFileClient((BinlogFileConfig) config);
+        }
+        if (config instanceof OggFileConfig) {
+            return new OggFileClient((OggFileConfig) config);
+        }
 
         //自定义插件配置文件
         if (config instanceof PluginServiceConfig) {
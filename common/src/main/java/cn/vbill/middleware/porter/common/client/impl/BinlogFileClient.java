@@ -0,0 +1,223 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.client.impl;
+
+import cn.vbill.middleware.porter.common.client.AbstractClient;
+import cn.vbill.middleware.porter.common.client.impl.binlog.BinlogFileReader;
+import cn.vbill.middleware.porter.common.client.impl.binlog.BinlogRow;
+import cn.vbill.middleware.porter.common.config.source.BinlogFileConfig;
+import cn.vbill.middleware.porter.common.consumer.ConsumeClient;
+import cn.vbill.middleware.porter.common.consumer.Position;
+import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
+import com.alibaba.fastjson.JSONObject;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 离线消费本地MySQL binlog文件，不需要数据库连接
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月06日 15:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月06日 15:20
+ */
+public class BinlogFileClient extends AbstractClient<BinlogFileConfig> implements ConsumeClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinlogFileClient.class);
+    //初始消费下标格式 文件名:下标
+    private static final String OFFSET_SPLIT_CHARACTER = ":";
+
+    private volatile BinlogFileReader reader;
+    private volatile int oncePollSize;
+    private final CountDownLatch canFetch = new CountDownLatch(1);
+
+    public BinlogFileClient(BinlogFileConfig config) {
+        super(config);
+        oncePollSize = config.getOncePollSize();
+    }
+
+    @Override
+    protected void doStart() {
+        BinlogFileConfig config = getConfig();
+        reader = new BinlogFileReader(new File(config.getDirectory()), config.getFilePattern(), Charset.forName(config.getCharset()));
+    }
+
+    @Override
+    protected void doShutdown() {
+        if (null != reader) {
+            synchronized (reader) {
+                reader.close();
+            }
+        }
+    }
+
+    @Override
+    protected boolean isAlready() {
+        try {
+            canFetch.await();
+            return true;
+        } catch (InterruptedException e) {
+            LOGGER.warn("等待binlog文件就绪被中断:{}", getClientInfo(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public void initializePosition(String taskId, String swimlaneId, String position) throws TaskStopTriggerException {
+        try {
+            BinlogFilePosition filePosition = !StringUtils.isBlank(position) ? BinlogFilePosition.getPosition(position) : null;
+            synchronized (reader) {
+                if (null != filePosition && filePosition.checksum()) {
+                    reader.seek(filePosition.logfileName, filePosition.offset);
+                } else {
+                    reader.seek(null, 0);
+                }
+            }
+            LOGGER.info("binlog文件消费起点:{}->{}:{}", getClientInfo(), reader.getLogfileName(), reader.getLogfileOffset());
+            canFetch.countDown();
+        } catch (IOException e) {
+            throw new TaskStopTriggerException(e);
+        }
+    }
+
+    /**
+     * 按整事务读取，单次读取行数达到oncePollSize后返回
+     * @param callback
+     * @param <F>
+     * @param <O>
+     * @return
+     * @throws TaskStopTriggerException
+     */
+    @Override
+    public <F, O> List<F> fetch(FetchCallback<F, O> callback) throws TaskStopTriggerException {
+        List<F> msgs = new ArrayList<>();
+        if (!isStarted()) {
+            return msgs;
+        }
+        int oncePollSize = this.oncePollSize;
+        synchronized (reader) {
+            try {
+                int fetched = 0;
+                while (fetched < oncePollSize) {
+                    List<BinlogRow> rows = reader.nextTransaction();
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+                    for (BinlogRow row : rows) {
+                        F f = callback.accept(row);
+                        if (null != f) {
+                            msgs.add(f);
+                        }
+                    }
+                    fetched += rows.size();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("读取binlog文件失败:{}->{}:{}", getClientInfo(), reader.getLogfileName(), reader.getLogfileOffset(), e);
+                throw new TaskStopTriggerException("读取binlog文件" + reader.getLogfileName() + "失败:" + e.getMessage());
+            }
+        }
+        return msgs;
+    }
+
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.oncePollSize = fetchSize;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return oncePollSize;
+    }
+
+    @Override
+    public String getInitiatePosition(String offset) {
+        if (StringUtils.isBlank(offset) || !offset.contains(OFFSET_SPLIT_CHARACTER)) {
+            return "";
+        }
+        String[] fileOffset = offset.trim().split(OFFSET_SPLIT_CHARACTER);
+        return fileOffset.length == 2 && NumberUtils.isCreatable(fileOffset[1])
+                ? new BinlogFilePosition(fileOffset[0], NumberUtils.createNumber(fileOffset[1]).longValue()).render() : "";
+    }
+
+    @Override
+    public boolean isAutoCommitPosition() {
+        return false;
+    }
+
+    /**
+     * 文件消费进度由集群同步点维护，这里不需要提交
+     * @param position
+     * @return
+     */
+    @Override
+    public long commitPosition(Position position) {
+        return 0;
+    }
+
+    @Override
+    public String getSwimlaneId() {
+        return getConfig().getSwimlaneId();
+    }
+
+    @Override
+    public String getClientInfo() {
+        return new StringBuilder().append("binlog文件目录->").append(getConfig().getDirectory()).toString();
+    }
+
+    /**
+     * binlog文件位点信息，下标指向事务提交后的下一个事件
+     */
+    public static class BinlogFilePosition extends Position {
+        private static final long serialVersionUID = 1L;
+
+        @Getter
+        private final String logfileName;
+        @Getter
+        private final long offset;
+        private final boolean checksum;
+
+        public BinlogFilePosition(String logfileName, long offset) {
+            this.logfileName = logfileName;
+            this.offset = offset;
+            this.checksum = !StringUtils.isBlank(logfileName) && offset > -1;
+        }
+
+        private static BinlogFilePosition getPosition(String position) throws TaskStopTriggerException {
+            try {
+                JSONObject object = JSONObject.parseObject(position);
+                return new BinlogFilePosition(object.getString("logfileName"), object.getLongValue("offset"));
+            } catch (Throwable throwable) {
+                throw new TaskStopTriggerException(throwable);
+            }
+        }
+
+        @Override
+        public boolean checksum() {
+            return checksum;
+        }
+    }
+}
@@ -36,7 +36,6 @@ import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
 import com.alibaba.otter.canal.server.exception.CanalServerException;
 import lombok.Getter;
-import lombok.SneakyThrows;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +46,8 @@ import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * mysql slave 默认最新位点消费
@@ -58,11 +59,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * @review: zhangkewei[zhang_kw@suixingpay.com]/2018年02月02日 15:14
  */
 public class CanalClient extends AbstractClient<CanalConfig> implements ConsumeClient {
-    private int perPullSize;
+    private volatile int perPullSize;
     private long pollTimeOut;
     private final CanalServerWithEmbedded canalServer;
     private ClientIdentity clientId;
     private CountDownLatch canFetch = new CountDownLatch(1);
+    //共享binlog读取器订阅,仅共享模式有值
+    private volatile CanalSharedReader.Subscription subscription;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CanalClient.class);
 
@@ -75,12 +78,12 @@ public class CanalClient extends AbstractClient<CanalConfig> implements ConsumeC
     public CanalClient(CanalConfig config) {
         super(config);
         canalServer = new CanalServerWithEmbedded();
+        perPullSize = config.getOncePollSize();
     }
 
     @Override
     protected void doStart() {
         CanalConfig config = getConfig();
-        perPullSize = config.getOncePollSize();
         pollTimeOut = config.getPollTimeOut();
         clientId = new ClientIdentity(config.getDatabase(), config.getSlaveId().shortValue(), config.getFilter());
     }
@@ -89,6 +92,14 @@ public class CanalClient extends AbstractClient<CanalConfig> implements ConsumeC
     protected void doShutdown() {
         //重置不能提取数据,避免因fetch调用导致任务停止中断
         canFetch = new CountDownLatch(1);
+        if (getConfig().isShared()) {
+            if (null != subscription) {
+                subscription.close();
+                subscription = null;
+            }
+            resetBroken();
+            return;
+        }
         try {
             if (null != canalServer) {
                 canalServer.stop(getConfig().getDatabase());
@@ -106,7 +117,13 @@ public class CanalClient extends AbstractClient<CanalConfig> implements ConsumeC
                 }
             }
         }
-        //重置错误状态
+        resetBroken();
+    }
+
+    /**
+     * 重置错误状态，重启后不再因上次的错误停止任务
+     */
+    private void resetBroken() {
         hasBroken = new AtomicBoolean(false);
         brokenError = null;
     }
@@ -118,95 +135,22 @@ public class CanalClient extends AbstractClient<CanalConfig> implements ConsumeC
          * 这里的批次提交和后续的处理批次不一致，会导致这里的一个批次被分配到不同的数据库事务执行。
          * 为了保证数据一致性，需要将zookeeper记录的消费同步点回滚后重新执行
          */
+        CanalPosition canalPosition = !StringUtils.isBlank(position) ? CanalPosition.getPosition(position) : null;
+        //同一数据库地址的任务共享binlog读取器
+        if (config.isShared()) {
+            subscription = CanalSharedReader.subscribe(config, getClientInfo(), canalPosition);
+            canFetch.countDown();
+            return;
+        }
         canalServer.setCanalInstanceGenerator(new CanalInstanceGenerator() {
             @Override
-            @SneakyThrows(TaskStopTriggerException.class)
             public CanalInstance generate(String destination) {
-                Canal canal = new Canal();
-                canal.setCanalParameter(new CanalParameter());
-                canal.setId(config.getCanalId());
-                canal.setName(config.getCanalName());
-                //canal启动状态
-                canal.setStatus(CanalStatus.START);
-                //mysql slaveId 唯一
-                canal.getCanalParameter().setSlaveId(config.getSlaveId());
-                //是否将ddl单条返回
-                canal.getCanalParameter().setDdlIsolation(true);
-                canal.getCanalParameter().setFilterTableError(true);
-                //数据库ip:port
-                canal.getCanalParameter().setMasterAddress(config.getSocketAddress());
-                //数据库密码
-                canal.getCanalParameter().setDbPassword(config.getPassword());
-                //数据库用户名
-                canal.getCanalParameter().setDbUsername(config.getUsername());
-                //连接数据库
-                canal.getCanalParameter().setDefaultDatabaseName(config.getDatabase());
-                //消费同步点存储策略
-                canal.getCanalParameter().setIndexMode(CanalParameter.IndexMode.MEMORY);
-                canal.getCanalParameter().setHaMode(CanalParameter.HAMode.HEARTBEAT);
-                //心跳
-                canal.getCanalParameter().setHeartbeatHaEnable(false);
-                canal.getCanalParameter().setCanalId(canal.getId());
-                //源端数据库类型
-                canal.getCanalParameter().setSourcingType(config.getSourcingType());
-                //消息存储模型
-                canal.getCanalParameter().setStorageMode(CanalParameter.StorageMode.MEMORY);
-                //采用默认大小
-                //canal.getCanalParameter().setMemoryStorageBufferSize(32 * 1024);
-                //忽略表解析异常
-                canal.getCanalParameter().setFilterTableError(true);
-                //从上次失败位置开始消费
-                if (!StringUtils.isBlank(position)) {
-                    CanalPosition canalPosition = CanalPosition.getPosition(position);
-                    canal.getCanalParameter().setMasterLogfileName(canalPosition.logfileName);
-                    canal.getCanalParameter().setMasterLogfileOffest(canalPosition.offset);
-                }
-
-                CanalInstanceWithManager instance = new CanalInstanceWithManager(canal, clientId.getFilter());
-                instance.setAlarmHandler(new CanalAlarmHandler() {
-                    private volatile boolean isRun = false;
-
-                    @Override
-                    public void sendAlarm(String destination, String msg) {
-                        //过滤密码
-                        msg = StringUtils.trimToEmpty(msg).replaceAll("password=[^,]*,", "");
-
-                        //master连接不上
-                        if (msg.contains("CanalParseException: java.io.IOException")
-                                || msg.contains("java.io.IOException: Received error packet: errno")
-                                || msg.contains("CanalParseException: command")) {
-                            if (hasBroken.compareAndSet(false, true)) {
-                                brokenError = new TaskStopTriggerException("【Canal链接建立失败】【" + getClientInfo() + "】" + msg);
-                            }
-                        }
-                        //canal 1.0.25 socket超时 不发送通知
-                        if (msg.contains("CanalException: read channel timeout")) {
-                            return;
-                        }
-
-                        try {
-                            NodeLog.upload(NodeLog.LogType.TASK_LOG, getClientInfo() + ", error:" + msg);
-                        } catch (Throwable e) {
-                            e.printStackTrace();
-                            LOGGER.error("上传canal异常日志失败", e);
-                        }
+                CanalInstanceWithManager instance = new CanalInstanceWithManager(newCanal(config, canalPosition), clientId.getFilter());
+                instance.setAlarmHandler(new BrokenAlarmHandler(() -> getClientInfo(), error -> {
+                    if (hasBroken.compareAndSet(false, true)) {
+                        brokenError = error;
                     }
-
-                    @Override
-                    public void start() {
-                        isRun = true;
-                    }
-
-                    @Override
-                    public void stop() {
-                        isRun = false;
-                    }
-
-                    @Override
-                    public boolean isStart() {
-                        return isRun;
-                    }
-                });
+                }));
                 return instance;
             }
         });
@@ -222,12 +166,15 @@ public class CanalClient extends AbstractClient<CanalConfig> implements ConsumeC
         if (hasBroken.get()) {
             throw null != brokenError ? new TaskStopTriggerException(brokenError) : new TaskStopTriggerException("canal.server因异常中断");
         }
+        if (null != subscription) {
+            subscription.checkBroken();
+        }
 
         List<F> msgList = new ArrayList<>();
         if (isStarted()) {
             Message msg = null;
             try {
-                msg = canalServer.get(clientId, perPullSize, pollTimeOut < 0 ? null : pollTimeOut, TimeUnit.MILLISECONDS);
+                msg = null != subscription ? subscription.poll(perPullSize, pollTimeOut) : canalServer.get(clientId, perPullSize, pollTimeOut < 0 ? null : pollTimeOut, TimeUnit.MILLISECONDS);
             } catch (CanalServerException e) {
                 //任务停止造成的线程中断异常
                 boolean causeByThread = Arrays.stream(e.getThrowables())
@@ -264,6 +211,16 @@ public class CanalClient extends AbstractClient<CanalConfig> implements ConsumeC
         return msgList;
     }
 
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.perPullSize = fetchSize;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return perPullSize;
+    }
+
     @Override
     public String getInitiatePosition(String offset) {
         return StringUtils.isNotBlank(offset) ? new CanalPosition(-1, 4, offset).render() : "";
@@ -305,10 +262,114 @@ public class CanalClient extends AbstractClient<CanalConfig> implements ConsumeC
         }
     }
 
+    /**
+     * 构造canal实例描述
+     *
+     * @param config
+     * @param position 为空时从数据库最新位点消费
+     * @return
+     */
+    static Canal newCanal(CanalConfig config, CanalPosition position) {
+        Canal canal = new Canal();
+        canal.setCanalParameter(new CanalParameter());
+        canal.setId(config.getCanalId());
+        canal.setName(config.getCanalName());
+        //canal启动状态
+        canal.setStatus(CanalStatus.START);
+        //mysql slaveId 唯一
+        canal.getCanalParameter().setSlaveId(config.getSlaveId());
+        //是否将ddl单条返回
+        canal.getCanalParameter().setDdlIsolation(true);
+        canal.getCanalParameter().setFilterTableError(true);
+        //数据库ip:port
+        canal.getCanalParameter().setMasterAddress(config.getSocketAddress());
+        //数据库密码
+        canal.getCanalParameter().setDbPassword(config.getPassword());
+        //数据库用户名
+        canal.getCanalParameter().setDbUsername(config.getUsername());
+        //连接数据库
+        canal.getCanalParameter().setDefaultDatabaseName(config.getDatabase());
+        //消费同步点存储策略
+        canal.getCanalParameter().setIndexMode(CanalParameter.IndexMode.MEMORY);
+        canal.getCanalParameter().setHaMode(CanalParameter.HAMode.HEARTBEAT);
+        //心跳
+        canal.getCanalParameter().setHeartbeatHaEnable(false);
+        canal.getCanalParameter().setCanalId(canal.getId());
+        //源端数据库类型
+        canal.getCanalParameter().setSourcingType(config.getSourcingType());
+        //消息存储模型
+        canal.getCanalParameter().setStorageMode(CanalParameter.StorageMode.MEMORY);
+        //采用默认大小
+        //canal.getCanalParameter().setMemoryStorageBufferSize(32 * 1024);
+        //忽略表解析异常
+        canal.getCanalParameter().setFilterTableError(true);
+        //从上次失败位置开始消费
+        if (null != position) {
+            canal.getCanalParameter().setMasterLogfileName(position.logfileName);
+            canal.getCanalParameter().setMasterLogfileOffest(position.offset);
+        }
+        return canal;
+    }
+
+    /**
+     * canal.server告警处理，master连接不上时标记客户端中断
+     */
+    static class BrokenAlarmHandler implements CanalAlarmHandler {
+        private final Supplier<String> clientInfo;
+        private final Consumer<TaskStopTriggerException> brokenListener;
+        private volatile boolean isRun = false;
+
+        BrokenAlarmHandler(Supplier<String> clientInfo, Consumer<TaskStopTriggerException> brokenListener) {
+            this.clientInfo = clientInfo;
+            this.brokenListener = brokenListener;
+        }
+
+        @Override
+        public void sendAlarm(String destination, String msg) {
+            //过滤密码
+            msg = StringUtils.trimToEmpty(msg).replaceAll("password=[^,]*,", "");
+
+            //master连接不上
+            if (msg.contains("CanalParseException: java.io.IOException")
+                    || msg.contains("java.io.IOException: Received error packet: errno")
+                    || msg.contains("CanalParseException: command")) {
+                brokenListener.accept(new TaskStopTriggerException("【Canal链接建立失败】【" + clientInfo.get() + "】" + msg));
+            }
+            //canal 1.0.25 socket超时 不发送通知
+            if (msg.contains("CanalException: read channel timeout")) {
+                return;
+            }
+
+            try {
+                NodeLog.upload(NodeLog.LogType.TASK_LOG, clientInfo.get() + ", error:" + msg);
+            } catch (Throwable e) {
+                e.printStackTrace();
+                LOGGER.error("上传canal异常日志失败", e);
+            }
+        }
+
+        @Override
+        public void start() {
+            isRun = true;
+        }
+
+        @Override
+        public void stop() {
+            isRun = false;
+        }
+
+        @Override
+        public boolean isStart() {
+            return isRun;
+        }
+    }
+
     /**
      * canal位点信息
      */
     public static class CanalPosition extends Position {
+        private static final long serialVersionUID = 1L;
+
         @Getter
         private final long batchId;
         @Getter
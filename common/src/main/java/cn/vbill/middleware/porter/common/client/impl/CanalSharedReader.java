@@ -0,0 +1,444 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.client.impl;
+
+import cn.vbill.middleware.porter.common.config.source.CanalConfig;
+import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
+import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
+import com.alibaba.otter.canal.instance.manager.CanalInstanceWithManager;
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.server.exception.CanalServerException;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 节点内同一数据库地址、同一账号共享的binlog读取器
+ * 只建立一个binlog dump连接并解析一次，按schema.table将事件路由到各订阅任务的队列。
+ * 账号不同的任务使用各自的读取器；slaveId取自首个订阅者，单次拉取数量取订阅者中的最大值。
+ * 各订阅者独立记录已投递位点，读取器因新订阅者回退位点时，已投递过的事件会被跳过。
+ * 慢订阅者队列满时会阻塞读取线程，共享同一读取器的任务消费速度互相影响。
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月04日 10:12
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月04日 10:12
+ */
+public class CanalSharedReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CanalSharedReader.class);
+
+    /**
+     * 数据库地址+账号 -> 共享读取器
+     */
+    private static final Map<String, CanalSharedReader> READERS = new HashMap<>();
+
+    private static final short READER_CLIENT_ID = 1001;
+    //读取线程单次拉取超时时间
+    private static final long READ_TIMEOUT = 500;
+    //订阅者队列容量为单次拉取数量的倍数
+    private static final int QUEUE_BATCH_TIMES = 4;
+    //读取失败后的重试等待时间，连续失败时倍增
+    private static final long MIN_ERROR_WAIT = 500;
+    private static final long MAX_ERROR_WAIT = 10000;
+
+    private final String address;
+    //连接参数取自首个订阅者，同一读取器的订阅者地址与账号一致
+    private final CanalConfig config;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    //读取线程路由一批事件期间持有，新订阅者在两批事件之间加入
+    private final Object routeLock = new Object();
+    //最后一个订阅者退出后不再接受订阅
+    private boolean retired = false;
+    private volatile CanalServerWithEmbedded canalServer;
+    private volatile ClientIdentity clientId;
+    private volatile Thread readThread;
+    //读取线程当前使用的过滤规则
+    private volatile String readFilter;
+    private volatile Throwable brokenError;
+    //读取线程最后读取的位点
+    private volatile String readLogfileName;
+    private volatile long readOffset = -1;
+
+    private CanalSharedReader(CanalConfig config) {
+        this.address = config.getAddress();
+        this.config = config;
+    }
+
+    /**
+     * 订阅数据库地址的binlog
+     *
+     * @param config
+     * @param clientInfo
+     * @param position 订阅者上次消费位点，为空时从读取器当前位点开始
+     * @return
+     */
+    public static Subscription subscribe(CanalConfig config, String clientInfo, CanalClient.CanalPosition position) {
+        while (true) {
+            CanalSharedReader reader;
+            //全局锁只用于查找读取器，启停读取器在读取器自身的锁内完成，不阻塞其他读取器的订阅
+            synchronized (READERS) {
+                reader = READERS.computeIfAbsent(readerKey(config), k -> new CanalSharedReader(config));
+            }
+            synchronized (reader) {
+                //读取器已随最后一个订阅者关闭，重新查找
+                if (reader.retired) {
+                    continue;
+                }
+                Subscription subscription = new Subscription(reader, config, clientInfo, position);
+                if (!reader.tryJoin(subscription, position)) {
+                    //订阅表不在当前读取范围或订阅位点早于当前读取位点，停止读取后加入并从最早位点重新读取
+                    if (null != reader.readThread) {
+                        LOGGER.info("共享binlog读取器[{}]因新订阅者[{}]重新读取", reader.address, clientInfo);
+                        reader.stopReading();
+                    }
+                    reader.subscriptions.add(subscription);
+                    reader.startReading();
+                }
+                return subscription;
+            }
+        }
+    }
+
+    /**
+     * 读取线程无需回退时直接加入订阅，加入前订阅者不参与路由
+     *
+     * @param subscription
+     * @param position
+     * @return 是否已加入
+     */
+    private boolean tryJoin(Subscription subscription, CanalClient.CanalPosition position) {
+        if (null == readThread) {
+            return false;
+        }
+        List<Subscription> joined = new ArrayList<>(subscriptions);
+        joined.add(subscription);
+        synchronized (routeLock) {
+            if (!readFilter.equals(unionFilter(joined)) || isBeforeRead(position)) {
+                return false;
+            }
+            subscriptions.add(subscription);
+            return true;
+        }
+    }
+
+    /**
+     * 同一数据库地址账号不同时不能共享dump连接
+     *
+     * @param config
+     * @return
+     */
+    private static String readerKey(CanalConfig config) {
+        return config.getAddress() + "/" + config.getUsername() + "/" + config.getPassword();
+    }
+
+    /**
+     * 取消订阅，最后一个订阅者退出时关闭读取器
+     *
+     * @param subscription
+     */
+    private void unsubscribe(Subscription subscription) {
+        synchronized (this) {
+            if (subscriptions.remove(subscription) && subscriptions.isEmpty()) {
+                //移出登记后不会再有新订阅者
+                retired = true;
+                synchronized (READERS) {
+                    READERS.remove(readerKey(config), this);
+                }
+                stopReading();
+            }
+        }
+    }
+
+    private void startReading() {
+        CanalClient.CanalPosition startPosition = earliestPosition();
+        String filter = unionFilter(subscriptions);
+        readFilter = filter;
+        brokenError = null;
+        readLogfileName = null != startPosition ? startPosition.getLogfileName() : null;
+        readOffset = null != startPosition ? startPosition.getOffset() : -1;
+        canalServer = new CanalServerWithEmbedded();
+        clientId = new ClientIdentity(address, READER_CLIENT_ID, filter);
+        canalServer.setCanalInstanceGenerator(destination -> {
+            CanalInstanceWithManager instance = new CanalInstanceWithManager(CanalClient.newCanal(config, startPosition), filter);
+            instance.setAlarmHandler(new CanalClient.BrokenAlarmHandler(() -> "共享读取器,数据库地址->" + address, error -> brokenError = error));
+            return instance;
+        });
+        canalServer.start();
+        canalServer.start(address);
+        canalServer.subscribe(clientId);
+        readThread = new DefaultNamedThreadFactory("CanalSharedReader-" + address).newThread(() -> read());
+        readThread.start();
+        LOGGER.info("共享binlog读取器[{}]开始读取,过滤规则:{},起始位点:{}", address, filter,
+                null != startPosition ? startPosition.render() : "");
+    }
+
+    private void stopReading() {
+        Thread thread = readThread;
+        readThread = null;
+        if (null != thread) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            canalServer.stop(address);
+        } catch (Throwable e) {
+            LOGGER.warn("关闭共享binlog读取器[{}]失败", address, e);
+        } finally {
+            try {
+                canalServer.stop();
+            } catch (Throwable e) {
+                LOGGER.warn("关闭共享binlog读取器[{}]异常", address, e);
+            }
+        }
+    }
+
+    /**
+     * 读取线程，解析一次后路由到各订阅者
+     */
+    private void read() {
+        long errorWait = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Message msg = canalServer.get(clientId, oncePollSize(), READ_TIMEOUT, TimeUnit.MILLISECONDS);
+                errorWait = 0;
+                if (null == msg || msg.getId() == -1) {
+                    continue;
+                }
+                List<CanalEntry.Entry> entries = entries(msg);
+                synchronized (routeLock) {
+                    for (CanalEntry.Entry entry : entries) {
+                        for (Subscription subscription : subscriptions) {
+                            subscription.route(entry);
+                        }
+                        readLogfileName = entry.getHeader().getLogfileName();
+                        readOffset = entry.getHeader().getLogfileOffset();
+                    }
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (CanalServerException e) {
+                //任务停止造成的线程中断异常
+                if (Arrays.stream(e.getThrowables()).anyMatch(error -> error instanceof InterruptedException)) {
+                    break;
+                }
+                LOGGER.error("共享binlog读取器[{}]读取失败", address, e);
+                errorWait = Math.min(Math.max(errorWait * 2, MIN_ERROR_WAIT), MAX_ERROR_WAIT);
+                if (!waitAfterError(errorWait)) {
+                    break;
+                }
+            } catch (Throwable e) {
+                LOGGER.error("共享binlog读取器[{}]读取失败", address, e);
+                errorWait = Math.min(Math.max(errorWait * 2, MIN_ERROR_WAIT), MAX_ERROR_WAIT);
+                if (!waitAfterError(errorWait)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 连接中断时等待后重试，避免读取线程空转
+     *
+     * @param wait
+     * @return 被中断时返回false
+     */
+    private static boolean waitAfterError(long wait) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(wait);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private List<CanalEntry.Entry> entries(Message msg) throws InvalidProtocolBufferException {
+        if (!msg.isRaw()) {
+            return msg.getEntries();
+        }
+        List<CanalEntry.Entry> entries = new ArrayList<>();
+        for (ByteString e : msg.getRawEntries()) {
+            entries.add(CanalEntry.Entry.parseFrom(e));
+        }
+        return entries;
+    }
+
+    /**
+     * 订阅者中最大的单次拉取数量
+     *
+     * @return
+     */
+    private int oncePollSize() {
+        return subscriptions.stream().mapToInt(s -> s.oncePollSize).max().orElse(config.getOncePollSize());
+    }
+
+    /**
+     * 所有订阅者过滤规则的并集，任一订阅者不过滤时读取全部表
+     *
+     * @param subscriptions
+     * @return
+     */
+    private static String unionFilter(List<Subscription> subscriptions) {
+        List<String> filters = subscriptions.stream().map(s -> s.filterPattern).distinct().sorted().collect(Collectors.toList());
+        return filters.contains("") ? "" : StringUtils.join(filters, ",");
+    }
+
+    /**
+     * 订阅者中最早的位点，任一订阅者没有位点时返回最早的已知位点
+     *
+     * @return
+     */
+    private CanalClient.CanalPosition earliestPosition() {
+        CanalClient.CanalPosition earliest = null;
+        for (Subscription s : subscriptions) {
+            if (null != s.deliveredLogfileName && (null == earliest
+                    || compare(s.deliveredLogfileName, s.deliveredOffset, earliest.getLogfileName(), earliest.getOffset()) < 0)) {
+                earliest = new CanalClient.CanalPosition(-1, s.deliveredOffset, s.deliveredLogfileName);
+            }
+        }
+        return earliest;
+    }
+
+    private boolean isBeforeRead(CanalClient.CanalPosition position) {
+        String logfileName = readLogfileName;
+        return null != position && null != logfileName && compare(position.getLogfileName(), position.getOffset(), logfileName, readOffset) < 0;
+    }
+
+    private static int compare(String logfileName, long offset, String otherLogfileName, long otherOffset) {
+        int fileCompare = logfileName.compareTo(otherLogfileName);
+        return fileCompare != 0 ? fileCompare : Long.compare(offset, otherOffset);
+    }
+
+    /**
+     * 任务对共享读取器的订阅
+     */
+    public static class Subscription {
+        private final CanalSharedReader reader;
+        private final String clientInfo;
+        private final String filterPattern;
+        private final int oncePollSize;
+        private final AviaterRegexFilter filter;
+        private final BlockingQueue<CanalEntry.Entry> queue;
+        private final AtomicLong batchId = new AtomicLong(0);
+        private volatile boolean closed = false;
+        //已投递位点
+        private volatile String deliveredLogfileName;
+        private volatile long deliveredOffset = -1;
+        //当前事务是否有投递的行，仅读取线程访问
+        private boolean inTransaction = false;
+
+        private Subscription(CanalSharedReader reader, CanalConfig config, String clientInfo, CanalClient.CanalPosition position) {
+            this.reader = reader;
+            this.clientInfo = clientInfo;
+            this.filterPattern = StringUtils.trimToEmpty(config.getFilter());
+            this.filter = new AviaterRegexFilter(filterPattern);
+            this.oncePollSize = Math.max(config.getOncePollSize(), 1);
+            this.queue = new ArrayBlockingQueue<>(oncePollSize * QUEUE_BATCH_TIMES);
+            if (null != position && !StringUtils.isBlank(position.getLogfileName())) {
+                deliveredLogfileName = position.getLogfileName();
+                deliveredOffset = position.getOffset();
+            }
+        }
+
+        private void route(CanalEntry.Entry entry) throws InterruptedException {
+            CanalEntry.Header header = entry.getHeader();
+            //读取器回退时跳过已投递事件
+            if (null != deliveredLogfileName
+                    && compare(header.getLogfileName(), header.getLogfileOffset(), deliveredLogfileName, deliveredOffset) <= 0) {
+                return;
+            }
+            boolean deliver = false;
+            if (entry.getEntryType() == CanalEntry.EntryType.ROWDATA) {
+                deliver = filter.filter(header.getSchemaName() + "." + header.getTableName());
+                inTransaction = inTransaction || deliver;
+            } else if (entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONEND) {
+                //事务结束事件用于计算批次同步点，只投递给收到该事务数据的订阅者
+                deliver = inTransaction;
+                inTransaction = false;
+            }
+            if (deliver) {
+                while (!closed && !queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                    LOGGER.debug("订阅者[{}]队列已满,等待消费", clientInfo);
+                }
+                deliveredLogfileName = header.getLogfileName();
+                deliveredOffset = header.getLogfileOffset();
+            }
+        }
+
+        /**
+         * 从订阅队列提取数据
+         *
+         * @param size
+         * @param timeout 小于0时不等待
+         * @return
+         * @throws InterruptedException
+         */
+        public Message poll(int size, long timeout) throws InterruptedException {
+            CanalEntry.Entry first = timeout < 0 ? queue.poll() : queue.poll(timeout, TimeUnit.MILLISECONDS);
+            if (null == first) {
+                return null;
+            }
+            List<CanalEntry.Entry> entries = new ArrayList<>();
+            entries.add(first);
+            queue.drainTo(entries, size - 1);
+            return new Message(batchId.incrementAndGet(), entries);
+        }
+
+        /**
+         * 读取器中断时抛出异常
+         *
+         * @throws TaskStopTriggerException
+         */
+        public void checkBroken() throws TaskStopTriggerException {
+            Throwable error = reader.brokenError;
+            if (null != error) {
+                throw new TaskStopTriggerException(error);
+            }
+        }
+
+        /**
+         * 关闭订阅
+         */
+        public void close() {
+            closed = true;
+            reader.unsubscribe(this);
+            queue.clear();
+        }
+    }
+}
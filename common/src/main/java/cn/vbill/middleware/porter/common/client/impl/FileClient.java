@@ -20,6 +20,7 @@ package cn.vbill.middleware.porter.common.client.impl;
 import cn.vbill.middleware.porter.common.client.AbstractClient;
 import cn.vbill.middleware.porter.common.client.ClusterClient;
 import cn.vbill.middleware.porter.common.client.StatisticClient;
+import cn.vbill.middleware.porter.common.client.impl.file.PositionLog;
 import cn.vbill.middleware.porter.common.config.source.FileOperationConfig;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -44,8 +45,10 @@ import java.util.stream.Stream;
  */
 public class FileClient extends AbstractClient<FileOperationConfig> implements ClusterClient<Boolean> {
     private static final Logger LOGGER = LoggerFactory.getLogger(FileClient.class);
+    private static final String POSITION_LOG = "/position.log";
 
     private String workspace;
+    private volatile PositionLog positionLog;
     public FileClient(FileOperationConfig config) {
         super(config);
     }
@@ -55,11 +58,15 @@ public class FileClient extends AbstractClient<FileOperationConfig> implements C
         FileOperationConfig config = getConfig();
         workspace = config.getHome();
         new File(workspace).mkdirs();
+        positionLog = new PositionLog(new File(workspace + POSITION_LOG), config.getPositionLogSize(),
+                config.getPositionRecordSize(), config.getPositionFlushInterval());
     }
 
     @Override
     protected void doShutdown() {
-        //do nothing
+        if (null != positionLog) {
+            positionLog.close();
+        }
     }
 
     @Override
@@ -129,6 +136,29 @@ public class FileClient extends AbstractClient<FileOperationConfig> implements C
         //do nothing
     }
 
+    /**
+     * 从消费位点日志读取位点，日志中不存在时读取旧版本按文件保存的位点
+     * @param path
+     * @return
+     */
+    public String getPosition(String path) {
+        String position = positionLog.get(path);
+        if (null == position && exists(path, false)) {
+            position = getData(path).getLeft();
+        }
+        return position;
+    }
+
+    /**
+     * 追加写入消费位点日志
+     * @param path
+     * @param position
+     * @throws IOException
+     */
+    public void setPosition(String path, String position) throws IOException {
+        positionLog.put(path, position);
+    }
+
     private String getRealPath(String path) {
         return workspace + path;
     }
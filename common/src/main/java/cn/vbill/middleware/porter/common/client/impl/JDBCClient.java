@@ -44,6 +44,7 @@ import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.ResultSet;
@@ -53,6 +54,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -288,6 +290,93 @@ public class JDBCClient extends AbstractClient<JDBCConfig> implements LoadClient
         }
     }
 
+    /**
+     * 在同一个事务中执行action，事务内的update、batchUpdate以保存点方式嵌套执行，单条sql失败只回滚到保存点
+     *
+     * @param action
+     * @param <T>
+     * @return
+     * @throws TaskStopTriggerException
+     * @throws InterruptedException
+     */
+    public <T> T executeInTransaction(Callable<T> action) throws TaskStopTriggerException, InterruptedException {
+        return jdbcProxy.transaction(action);
+    }
+
+    /**
+     * 查询目标端消费位点
+     *
+     * @param table
+     * @param taskId
+     * @param swimlaneId
+     * @return
+     * @throws TaskStopTriggerException
+     */
+    public String queryCheckpoint(String table, String taskId, String swimlaneId) throws TaskStopTriggerException {
+        List<String> results = new ArrayList<>(1);
+        query("SELECT position FROM " + table + " WHERE task_id=? AND swimlane_id=?", new RowCallbackHandler() {
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                results.add(rs.getString(1));
+            }
+        }, taskId, swimlaneId);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    /**
+     * 保存目标端消费位点，需在executeInTransaction中调用，与数据变更一起提交
+     *
+     * @param table
+     * @param taskId
+     * @param swimlaneId
+     * @param position
+     */
+    public void saveCheckpoint(String table, String taskId, String swimlaneId, String position) {
+        jdbcProxy.checkpoint(table, taskId, swimlaneId, position);
+    }
+
+    /**
+     * 写入源端心跳行，按探针更新时间戳，不存在时插入
+     *
+     * @param table
+     * @param probeId
+     * @param nodeId
+     * @param probeTime
+     * @throws TaskStopTriggerException
+     * @throws InterruptedException
+     */
+    public void saveHeartbeat(String table, String probeId, String nodeId, long probeTime)
+            throws TaskStopTriggerException, InterruptedException {
+        int affect = jdbcProxy.update("UPDATE " + table + " SET node_id=?, probe_time=? WHERE probe_id=?", nodeId, probeTime, probeId);
+        if (affect < 1) {
+            jdbcProxy.update("INSERT INTO " + table + "(probe_id, node_id, probe_time) VALUES(?,?,?)", probeId, nodeId, probeTime);
+        }
+    }
+
+    /**
+     * 连接池使用中的连接数
+     * @return
+     */
+    public int getPoolActiveCount() {
+        return null != jdbcProxy.dataSource ? jdbcProxy.dataSource.getActiveCount() : 0;
+    }
+
+    /**
+     * 连接池最大连接数
+     * @return
+     */
+    public int getPoolMaxActive() {
+        return null != jdbcProxy.dataSource ? jdbcProxy.dataSource.getMaxActive() : 0;
+    }
+
+    /**
+     * 等待获取连接的线程数
+     * @return
+     */
+    public int getPoolWaitThreadCount() {
+        return null != jdbcProxy.dataSource ? jdbcProxy.dataSource.getWaitThreadCount() : 0;
+    }
+
     @Override
     public String getClientInfo() {
         JDBCConfig config = getConfig();
@@ -299,6 +388,8 @@ public class JDBCClient extends AbstractClient<JDBCConfig> implements LoadClient
         private volatile DruidDataSource dataSource;
         private volatile JdbcTemplate jdbcTemplate;
         private volatile TransactionTemplate transactionTemplate;
+        //外层事务内执行单条sql时使用保存点
+        private volatile TransactionTemplate nestedTemplate;
         private final ReadWriteLock connLock = new ReentrantReadWriteLock();
         private JdbcWapper() {
         }
@@ -338,6 +429,8 @@ public class JDBCClient extends AbstractClient<JDBCConfig> implements LoadClient
                 transactionTemplate = new TransactionTemplate();
                 transactionTemplate.setTransactionManager(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
                 transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                nestedTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+                nestedTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
 
                 return this;
             } finally {
@@ -430,6 +523,10 @@ public class JDBCClient extends AbstractClient<JDBCConfig> implements LoadClient
         }
 
         private <T> T atomicExecute(TransactionCallback<T> action, boolean capture) throws TaskStopTriggerException, InterruptedException {
+            //外层事务持有连接，不能重连重试，由外层事务整体重试
+            if (inTransaction()) {
+                return nativeAtomicExecute(action, capture);
+            }
             boolean sendResult = false;
             T result = null;
             //做retries-1次尝试
@@ -454,7 +551,7 @@ public class JDBCClient extends AbstractClient<JDBCConfig> implements LoadClient
         private <T> T nativeAtomicExecute(TransactionCallback<T> action, boolean capture) throws TaskStopTriggerException {
             connLock.readLock().lock();
             try {
-                return transactionTemplate.execute(action);
+                return (inTransaction() ? nestedTemplate : transactionTemplate).execute(action);
             } catch (Throwable e) {
                 if (!capture && TaskStopTriggerException.isMatch(e)) {
                     throw new TaskStopTriggerException(e);
@@ -467,6 +564,59 @@ public class JDBCClient extends AbstractClient<JDBCConfig> implements LoadClient
             }
         }
 
+        private <T> T transaction(Callable<T> action) throws TaskStopTriggerException, InterruptedException {
+            TransactionCallback<T> callback = new TransactionCallback<T>() {
+                @Override
+                @SneakyThrows(Exception.class)
+                public T doInTransaction(TransactionStatus status) {
+                    return action.call();
+                }
+            };
+            //做retries-1次尝试
+            for (int i = 0; i < connRetries - 1; i++) {
+                try {
+                    return nativeTransaction(callback);
+                } catch (TaskStopTriggerException e) {
+                    LOGGER.warn("got error by execute transaction,times:{}", i, e);
+                    Thread.sleep(1000L * 60 * 1);
+                    reconnection();
+                }
+            }
+            //做最后一次尝试，否则抛出异常
+            return nativeTransaction(callback);
+        }
+
+        private <T> T nativeTransaction(TransactionCallback<T> callback) throws TaskStopTriggerException, InterruptedException {
+            connLock.readLock().lock();
+            try {
+                return transactionTemplate.execute(callback);
+            } catch (Throwable e) {
+                if (e instanceof InterruptedException) {
+                    throw (InterruptedException) e;
+                }
+                if (e instanceof TaskStopTriggerException) {
+                    throw (TaskStopTriggerException) e;
+                }
+                throw new TaskStopTriggerException(e);
+            } finally {
+                connLock.readLock().unlock();
+            }
+        }
+
+        private void checkpoint(String table, String taskId, String swimlaneId, String position) {
+            Date now = new Date();
+            int affect = jdbcTemplate.update("UPDATE " + table + " SET position=?, update_time=? WHERE task_id=? AND swimlane_id=?",
+                    position, now, taskId, swimlaneId);
+            if (affect < 1) {
+                jdbcTemplate.update("INSERT INTO " + table + "(task_id, swimlane_id, position, update_time) VALUES(?,?,?,?)",
+                        taskId, swimlaneId, position, now);
+            }
+        }
+
+        private boolean inTransaction() {
+            return TransactionSynchronizationManager.hasResource(dataSource);
+        }
+
         synchronized void reconnection() {
             close();
             start();
@@ -40,10 +40,11 @@ import org.apache.kafka.common.serialization.StringDeserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -64,9 +65,15 @@ public class KafkaClient extends AbstractClient<KafkaConfig> implements ConsumeC
     private final Map<String, KafkaPosition> lazyCommitOffsetMap = new ConcurrentHashMap<>();
     private final Map<String, Long> lazyEndOffsetQueryMap = new ConcurrentHashMap<>();
     private long pollTimeOut;
+    //单次fetch返回的最大消息数，poll返回多出的消息暂存在pendingRecords
+    private volatile int fetchSize;
+    private final Deque<ConsumerRecord<String, String>> pendingRecords = new ArrayDeque<>();
+    //消费进度由载入端随事务提交，这里只查询消息堆积
+    private volatile boolean offsetsCommittedExternally = false;
 
     public KafkaClient(KafkaConfig config) {
         super(config);
+        fetchSize = config.getOncePollSize();
     }
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KafkaClient.class);
@@ -77,7 +84,7 @@ public class KafkaClient extends AbstractClient<KafkaConfig> implements ConsumeC
         pollTimeOut = config.getPollTimeOut();
         final Properties props = new Properties();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getServers());
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, StringUtils.isBlank(config.getGroup()) ? getDefaultGroup() : config.getGroup());
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, getGroup());
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         //单次消费数量
@@ -104,14 +111,55 @@ public class KafkaClient extends AbstractClient<KafkaConfig> implements ConsumeC
         return MachineUtils.IP_ADDRESS + "_" + MachineUtils.HOST_NAME;
     }
 
+    public String getGroup() {
+        KafkaConfig config = getConfig();
+        return StringUtils.isBlank(config.getGroup()) ? getDefaultGroup() : config.getGroup();
+    }
+
+    @Override
+    public void setOffsetsCommittedExternally(boolean external) {
+        this.offsetsCommittedExternally = external;
+    }
+
+    /**
+     * 查询消费组在kafka中已提交的进度，用于载入端随事务提交消费进度的场景
+     *
+     * @param swimlaneId
+     * @param position
+     * @return 已提交的最后一条消息位点，没有时返回null
+     * @throws TaskStopTriggerException
+     */
+    @Override
+    public String getCommittedPosition(String swimlaneId, String position) throws TaskStopTriggerException {
+        if (isAutoCommitPosition()) {
+            return null;
+        }
+        KafkaPosition lastPosition = !StringUtils.isBlank(position) ? KafkaPosition.getPosition(position) : null;
+        TopicPartition tp = null != lastPosition ? new TopicPartition(lastPosition.topic, lastPosition.partition)
+                : new TopicPartition(swimlaneId, getConfig().getPartition());
+        OffsetAndMetadata committed;
+        synchronized (consumer) {
+            committed = consumer.committed(tp);
+        }
+        //kafka提交的是下一条待消费消息下标
+        return null != committed && committed.offset() > 0
+                ? new KafkaPosition(tp.topic(), committed.offset() - 1, tp.partition()).render() : null;
+    }
+
     @Override
     public void initializePosition(String taskId, String swimlaneId, String position) throws TaskStopTriggerException {
+        initializePosition(taskId, swimlaneId, position, false);
+    }
+
+    @Override
+    public void initializePosition(String taskId, String swimlaneId, String position, boolean exact) throws TaskStopTriggerException {
         try {
             if (!isAutoCommitPosition()) {
                 if (!StringUtils.isBlank(position)) {
                     KafkaPosition kafkaPosition = KafkaPosition.getPosition(position);
                     TopicPartition tp = new TopicPartition(kafkaPosition.topic, kafkaPosition.partition);
                     synchronized (consumer) {
+                        pendingRecords.clear();
                         consumer.assign(Arrays.asList(tp));
                         //AUTO_OFFSET_RESET_CONFIG值等于none时，如果position大于topic有效offset时会抛出OffsetOutOfRangeException
                         //判断设置的消费进度是否当前分区可用最小进度
@@ -125,7 +173,8 @@ public class KafkaClient extends AbstractClient<KafkaConfig> implements ConsumeC
                              */
                             KafkaConfig config = getConfig();
                             long tmpTryOffset = tryOffset - config.getOncePollSize();
-                            if (endOffset >= tmpTryOffset && beginOffset <= tmpTryOffset) {
+                            //目标端精确位点不需要回退
+                            if (!exact && endOffset >= tmpTryOffset && beginOffset <= tmpTryOffset) {
                                 tryOffset = tmpTryOffset;
                             }
                             //---------为避免因上次停止任务造成的消费同步点异常,从而丢失数据，往前消费一个批次---------
@@ -151,32 +200,40 @@ public class KafkaClient extends AbstractClient<KafkaConfig> implements ConsumeC
         try {
             List<F> msgs = new ArrayList<>();
             if (isStarted()) {
-                ConsumerRecords<String, String> results = null;
+                List<ConsumerRecord<String, String>> results = new ArrayList<>();
                 synchronized (consumer) {
                     try {
                         //提交kafka消费进度
                         commitLazyPosition();
-                        results = consumer.poll(pollTimeOut);
+                        int limit = fetchSize;
+                        //max.poll.records在消费者创建后不能修改，批次调大时连续poll补足，调小时多出的消息留到下次返回
+                        while (pendingRecords.size() < limit) {
+                            ConsumerRecords<String, String> polled = consumer.poll(pendingRecords.isEmpty() ? pollTimeOut : 0);
+                            polled.forEach(pendingRecords::add);
+                            if (polled.count() < getConfig().getOncePollSize()) {
+                                break;
+                            }
+                        }
+                        while (results.size() < limit && !pendingRecords.isEmpty()) {
+                            results.add(pendingRecords.poll());
+                        }
                     } catch (WakeupException e) {
                         LOGGER.info("trigger kafka consumer WakeupException:{}", getClientInfo());
+                        pendingRecords.clear();
                         consumer.unsubscribe();
                         consumer.close();
                         consumer = null;
                         canFetch = new CountDownLatch(1);
                     }
                 }
-                if (null != results && !results.isEmpty()) {
-                    Iterator<ConsumerRecord<String, String>> it = results.iterator();
-                    while (it.hasNext()) {
-                        try {
-                            ConsumerRecord<String, String> record = it.next();
-                            F f = callback.accept(record);
-                            if (null != f) {
-                                msgs.add(f);
-                            }
-                        } catch (Exception e) {
-                            e.printStackTrace();
+                for (ConsumerRecord<String, String> record : results) {
+                    try {
+                        F f = callback.accept(record);
+                        if (null != f) {
+                            msgs.add(f);
                         }
+                    } catch (Exception e) {
+                        e.printStackTrace();
                     }
                 }
             }
@@ -186,6 +243,16 @@ public class KafkaClient extends AbstractClient<KafkaConfig> implements ConsumeC
         }
     }
 
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
     @Override
     public String getInitiatePosition(String offset) {
         KafkaConfig config = new KafkaConfig();
@@ -254,18 +321,28 @@ public class KafkaClient extends AbstractClient<KafkaConfig> implements ConsumeC
      * kafka位点信息
      */
     public static class KafkaPosition extends Position {
+        private static final long serialVersionUID = 1L;
+
         @Getter
         private final String topic;
         @Getter
         private final long offset;
         @Getter
         private final int partition;
+        //消费组，载入端随事务提交消费进度时使用
+        @Getter
+        private final String group;
         private final boolean checksum;
 
         public KafkaPosition(String topic, long offset, int partition) {
+            this(topic, offset, partition, null);
+        }
+
+        public KafkaPosition(String topic, long offset, int partition, String group) {
             this.topic = topic;
             this.offset = offset;
             this.partition = partition;
+            this.group = group;
             this.checksum = !StringUtils.isBlank(topic) && offset > -1 && partition > -1;
         }
 
@@ -306,8 +383,10 @@ public class KafkaClient extends AbstractClient<KafkaConfig> implements ConsumeC
         lazyCommitOffsetMap.forEach((s, position) -> {
             if (null != position) {
                 //提交消费进度
-                consumer.commitSync(Collections.singletonMap(new TopicPartition(position.topic, position.partition),
-                        new OffsetAndMetadata(position.offset)));
+                if (!offsetsCommittedExternally) {
+                    consumer.commitSync(Collections.singletonMap(new TopicPartition(position.topic, position.partition),
+                            new OffsetAndMetadata(position.offset)));
+                }
                 //查询最新进度
                 TopicPartition tp = new TopicPartition(position.topic, position.partition);
                 lazyEndOffsetQueryMap.put(position.getPositionKey(), consumer.endOffsets(Arrays.asList(tp)).get(tp));
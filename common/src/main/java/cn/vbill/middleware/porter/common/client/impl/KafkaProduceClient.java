@@ -22,17 +22,21 @@ import cn.vbill.middleware.porter.common.client.LoadClient;
 import cn.vbill.middleware.porter.common.client.MetaQueryClient;
 import cn.vbill.middleware.porter.common.client.StatisticClient;
 import cn.vbill.middleware.porter.common.config.source.KafkaProduceConfig;
+import cn.vbill.middleware.porter.common.consumer.Position;
 import cn.vbill.middleware.porter.common.db.meta.TableSchema;
 import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
 import cn.vbill.middleware.porter.common.util.MachineUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Triple;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringSerializer;
 
 import java.util.ArrayList;
@@ -45,7 +49,11 @@ import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -58,6 +66,19 @@ public class KafkaProduceClient extends AbstractClient<KafkaProduceConfig> imple
     private volatile Producer<String, String> producer;
     private final String topic;
     private final boolean transaction;
+    private final boolean exactlyOnce;
+    private final long transactionCommitInterval;
+    //exactlyOnce模式当前未提交事务的开始时间,-1没有未提交事务
+    private long transactionStartTime = -1;
+    //后台提交事务失败的原因，下次写入时停止任务
+    private volatile Throwable transactionError;
+    //后台提交事务失败时立即通知任务停止
+    private volatile Consumer<Throwable> transactionFailureListener;
+    //已写入未提交事务的最新源端消费位点
+    private Position pendingPosition;
+    //事务已提交、尚未被取走的最新源端消费位点
+    private Position committedPosition;
+    private ScheduledExecutorService transactionCommitService;
     private final int retries;
     private final boolean oggJson;
     private final List<PartitionInfo> partitionInfoList = new ArrayList<>();
@@ -68,6 +89,8 @@ public class KafkaProduceClient extends AbstractClient<KafkaProduceConfig> imple
         super(config);
         this.topic = config.getTopic();
         this.transaction = config.isTransaction();
+        this.exactlyOnce = config.isExactlyOnce();
+        this.transactionCommitInterval = config.getTransactionCommitInterval();
         this.oggJson = config.isOggJson();
         this.retries = config.getRetries();
     }
@@ -81,22 +104,45 @@ public class KafkaProduceClient extends AbstractClient<KafkaProduceConfig> imple
         props.put(ProducerConfig.CLIENT_ID_CONFIG, group);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        if (transaction) {
-            props.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, group + "_" + System.nanoTime());
+        if (transaction || exactlyOnce) {
+            props.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, StringUtils.isBlank(config.getTransactionalId())
+                    ? group + "_" + System.nanoTime() : config.getTransactionalId());
         }
         //props.put(ProducerConfig.ACKS_CONFIG, "1");
         //在重试次数大于0的情况下，严格保证produce顺序
         props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, "1");
         producer = new KafkaProducer<>(props);
         partitionInfoList.addAll(producer.partitionsFor(topic));
-        if (transaction) {
+        if (transaction || exactlyOnce) {
             producer.initTransactions();
         }
+        //批次间共用事务时定时提交，避免没有新批次时事务长时间不提交
+        if (exactlyOnce && transactionCommitInterval > 0 && null == transactionCommitService) {
+            transactionCommitService = Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("KafkaTransactionCommit-" + topic));
+            transactionCommitService.scheduleWithFixedDelay(() -> commitTransactionIfDue(), transactionCommitInterval,
+                    transactionCommitInterval, TimeUnit.MILLISECONDS);
+        }
         canProduce.countDown();
     }
 
     @Override
     protected void doShutdown() {
+        if (null != transactionCommitService) {
+            transactionCommitService.shutdownNow();
+            transactionCommitService = null;
+        }
+        //提交已写入批次的事务
+        synchronized (this) {
+            if (transactionStartTime > -1 && null != producer) {
+                try {
+                    producer.commitTransaction();
+                } catch (Throwable e) {
+                    LOGGER.error("fail to commit kafka transaction on shutdown,{}", topic, e);
+                }
+                transactionStartTime = -1;
+                pendingPosition = null;
+            }
+        }
         if (null != producer) {
             try {
                 producer.close();
@@ -200,6 +246,103 @@ public class KafkaProduceClient extends AbstractClient<KafkaProduceConfig> imple
         }
     }
 
+    /**
+     * exactlyOnce模式写入：数据与源端消费进度在同一事务提交，距事务开始超过提交间隔时提交。
+     * 事务失败时已写入但未提交的批次全部丢弃，不能单独重试当前批次，直接停止任务，重启后从源端已提交进度重新消费
+     *
+     * @param records
+     * @param offsets 源端消费进度，为空时只写数据
+     * @param group 源端消费组
+     * @param position 批次源端消费位点，事务提交后才能通过{@link #pollCommittedPosition()}取到
+     * @throws TaskStopTriggerException
+     */
+    public synchronized void sendInTransaction(List<Triple<String, String, Integer>> records, Map<TopicPartition, OffsetAndMetadata> offsets,
+                                               String group, Position position) throws TaskStopTriggerException {
+        if (null != transactionError) {
+            throw new TaskStopTriggerException(transactionError);
+        }
+        try {
+            canProduce.await();
+            if (transactionStartTime < 0) {
+                producer.beginTransaction();
+                transactionStartTime = System.currentTimeMillis();
+            }
+            for (Triple<String, String, Integer> t : records) {
+                producer.send(t.getRight() != null && t.getRight() > -1 ? new ProducerRecord<>(topic, t.getRight(), t.getLeft(), t.getMiddle())
+                        : new ProducerRecord<>(topic, t.getLeft(), t.getMiddle()));
+            }
+            if (null != offsets && !offsets.isEmpty()) {
+                producer.sendOffsetsToTransaction(offsets, group);
+            }
+            if (null != position) {
+                pendingPosition = position;
+            }
+            if (System.currentTimeMillis() - transactionStartTime >= transactionCommitInterval) {
+                producer.commitTransaction();
+                transactionCommitted();
+            }
+        } catch (Throwable e) {
+            abortTransaction();
+            throw new TaskStopTriggerException(e);
+        }
+    }
+
+    private synchronized void commitTransactionIfDue() {
+        if (transactionStartTime > -1 && null != producer && System.currentTimeMillis() - transactionStartTime >= transactionCommitInterval) {
+            try {
+                producer.commitTransaction();
+                transactionCommitted();
+            } catch (Throwable e) {
+                LOGGER.error("fail to commit kafka transaction,{}", topic, e);
+                transactionError = e;
+                abortTransaction();
+                //空闲时没有新批次写入，不能等下次写入再停止任务
+                Consumer<Throwable> listener = transactionFailureListener;
+                if (null != listener) {
+                    listener.accept(e);
+                }
+            }
+        }
+    }
+
+    private void transactionCommitted() {
+        transactionStartTime = -1;
+        if (null != pendingPosition) {
+            committedPosition = pendingPosition;
+            pendingPosition = null;
+        }
+    }
+
+    /**
+     * 取走事务已提交的最新源端消费位点
+     * @return 上次取走后没有新提交的事务时返回null
+     */
+    public synchronized Position pollCommittedPosition() {
+        Position position = committedPosition;
+        committedPosition = null;
+        return position;
+    }
+
+    public void setTransactionFailureListener(Consumer<Throwable> transactionFailureListener) {
+        this.transactionFailureListener = transactionFailureListener;
+    }
+
+    private void abortTransaction() {
+        pendingPosition = null;
+        if (transactionStartTime > -1) {
+            transactionStartTime = -1;
+            try {
+                producer.abortTransaction();
+            } catch (Throwable e) {
+                LOGGER.error("fail to abort kafka transaction,{}", topic, e);
+            }
+        }
+    }
+
+    public boolean isExactlyOnce() {
+        return exactlyOnce;
+    }
+
     /**
      * sendTo
      *
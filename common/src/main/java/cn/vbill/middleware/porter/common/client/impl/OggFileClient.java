@@ -0,0 +1,340 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.client.impl;
+
+import cn.vbill.middleware.porter.common.client.AbstractClient;
+import cn.vbill.middleware.porter.common.config.source.OggFileConfig;
+import cn.vbill.middleware.porter.common.consumer.ConsumeClient;
+import cn.vbill.middleware.porter.common.consumer.Position;
+import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
+import com.alibaba.fastjson.JSONObject;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Pattern;
+
+/**
+ * 消费按行存储的OGG JSON导出文件。
+ * 文件以只读方式分段内存映射，按换行符切分记录，切分时不复制字节，消费进度为下一条记录的字节下标
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月08日 10:41
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月08日 10:41
+ */
+public class OggFileClient extends AbstractClient<OggFileConfig> implements ConsumeClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OggFileClient.class);
+    //初始消费下标格式 文件名:下标
+    private static final String OFFSET_SPLIT_CHARACTER = ":";
+    //单次映射区间大小
+    private static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final CountDownLatch canFetch = new CountDownLatch(1);
+    private final Object fetchLock = new Object();
+    private Pattern filePattern;
+    private CharsetDecoder decoder;
+    private volatile int oncePollSize;
+
+    //当前文件及下一条记录起始下标
+    private volatile String fileName;
+    private volatile long fileOffset;
+    private long fileModified;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowSize = MAP_WINDOW_SIZE;
+
+    public OggFileClient(OggFileConfig config) {
+        super(config);
+        oncePollSize = config.getOncePollSize();
+    }
+
+    @Override
+    protected void doStart() {
+        OggFileConfig config = getConfig();
+        filePattern = Pattern.compile(config.getFilePattern());
+        decoder = Charset.forName(config.getCharset()).newDecoder();
+    }
+
+    @Override
+    protected void doShutdown() {
+        synchronized (fetchLock) {
+            window = null;
+        }
+    }
+
+    @Override
+    protected boolean isAlready() {
+        try {
+            canFetch.await();
+            return true;
+        } catch (InterruptedException e) {
+            LOGGER.warn("等待ogg文件就绪被中断:{}", getClientInfo(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public void initializePosition(String taskId, String swimlaneId, String position) throws TaskStopTriggerException {
+        OggFilePosition filePosition = !StringUtils.isBlank(position) ? OggFilePosition.getPosition(position) : null;
+        synchronized (fetchLock) {
+            if (null != filePosition && filePosition.checksum()) {
+                if (!new File(getConfig().getDirectory(), filePosition.fileName).exists()) {
+                    throw new TaskStopTriggerException("OGG文件" + filePosition.fileName + "不存在");
+                }
+                openFile(filePosition.fileName, filePosition.offset);
+            } else {
+                List<String> files = listFiles();
+                if (!files.isEmpty()) {
+                    openFile(files.get(0), 0);
+                }
+            }
+        }
+        LOGGER.info("OGG文件消费起点:{}->{}:{}", getClientInfo(), fileName, fileOffset);
+        canFetch.countDown();
+    }
+
+    @Override
+    public <F, O> List<F> fetch(FetchCallback<F, O> callback) throws TaskStopTriggerException {
+        List<F> msgs = new ArrayList<>();
+        if (!isStarted()) {
+            return msgs;
+        }
+        int oncePollSize = this.oncePollSize;
+        synchronized (fetchLock) {
+            try {
+                ByteBuffer line;
+                while (msgs.size() < oncePollSize && null != (line = nextLine())) {
+                    if (!line.hasRemaining()) {
+                        continue;
+                    }
+                    OggFileRecord record = new OggFileRecord(fileName, fileOffset, fileModified, decoder.decode(line).toString());
+                    F f = callback.accept(record);
+                    if (null != f) {
+                        msgs.add(f);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("读取OGG文件失败:{}->{}:{}", getClientInfo(), fileName, fileOffset, e);
+                throw new TaskStopTriggerException("读取OGG文件" + fileName + "失败:" + e.getMessage());
+            }
+        }
+        return msgs;
+    }
+
+    /**
+     * 返回下一行在映射区间上的视图，不含换行符。没有完整的行时返回null
+     * @return
+     * @throws IOException
+     */
+    private ByteBuffer nextLine() throws IOException {
+        while (null != fileName) {
+            File file = new File(getConfig().getDirectory(), fileName);
+            long fileLength = file.length();
+            if (fileOffset < fileLength && (null == window || fileOffset < windowStart || fileOffset >= windowStart + window.limit())) {
+                map(file, fileLength);
+            }
+            if (null != window && fileOffset < windowStart + window.limit()) {
+                int start = (int) (fileOffset - windowStart);
+                for (int index = start; index < window.limit(); index++) {
+                    if (window.get(index) == '\n') {
+                        fileOffset = windowStart + index + 1;
+                        return slice(start, index);
+                    }
+                }
+                //映射区间内没有换行符:区间不是文件末尾或者文件有追加时重新映射
+                if (windowStart + window.limit() < fileLength) {
+                    if (start == 0 && window.limit() == windowSize) {
+                        windowSize = (int) Math.min(Integer.MAX_VALUE, windowSize * 2L);
+                    }
+                    map(file, fileLength);
+                    continue;
+                }
+            }
+            String next = nextFile();
+            if (null == next) {
+                return null;
+            }
+            //已有后续文件，当前文件末尾没有换行符的内容视为最后一行
+            if (null != window && fileOffset < windowStart + window.limit()) {
+                int start = (int) (fileOffset - windowStart);
+                fileOffset = windowStart + window.limit();
+                return slice(start, window.limit());
+            }
+            openFile(next, 0);
+        }
+        return null;
+    }
+
+    private ByteBuffer slice(int start, int end) {
+        //兼容\r\n换行
+        int lineEnd = end > start && window.get(end - 1) == '\r' ? end - 1 : end;
+        ByteBuffer line = window.duplicate();
+        line.limit(lineEnd);
+        line.position(start);
+        return line;
+    }
+
+    private void map(File file, long fileLength) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            windowStart = fileOffset;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(fileLength - windowStart, windowSize));
+        }
+    }
+
+    private void openFile(String name, long offset) {
+        fileName = name;
+        fileOffset = offset;
+        fileModified = new File(getConfig().getDirectory(), name).lastModified();
+        window = null;
+        windowSize = MAP_WINDOW_SIZE;
+    }
+
+    private String nextFile() {
+        for (String name : listFiles()) {
+            if (name.compareTo(fileName) > 0) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private List<String> listFiles() {
+        String[] names = new File(getConfig().getDirectory()).list((dir, name) -> filePattern.matcher(name).matches());
+        if (null == names) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.oncePollSize = fetchSize;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return oncePollSize;
+    }
+
+    @Override
+    public String getInitiatePosition(String offset) {
+        if (StringUtils.isBlank(offset) || !offset.contains(OFFSET_SPLIT_CHARACTER)) {
+            return "";
+        }
+        String[] fileOffset = offset.trim().split(OFFSET_SPLIT_CHARACTER);
+        return fileOffset.length == 2 && NumberUtils.isCreatable(fileOffset[1])
+                ? new OggFilePosition(fileOffset[0], NumberUtils.createNumber(fileOffset[1]).longValue()).render() : "";
+    }
+
+    @Override
+    public boolean isAutoCommitPosition() {
+        return false;
+    }
+
+    /**
+     * 文件消费进度由集群同步点维护，这里不需要提交
+     * @param position
+     * @return
+     */
+    @Override
+    public long commitPosition(Position position) {
+        return 0;
+    }
+
+    @Override
+    public String getSwimlaneId() {
+        return getConfig().getSwimlaneId();
+    }
+
+    @Override
+    public String getClientInfo() {
+        return new StringBuilder().append("OGG文件目录->").append(getConfig().getDirectory()).toString();
+    }
+
+    /**
+     * 文件中的一行记录
+     */
+    public static class OggFileRecord {
+        @Getter
+        private final String fileName;
+        //下一条记录的起始下标
+        @Getter
+        private final long nextOffset;
+        //文件修改时间，作为消息存储时间
+        @Getter
+        private final long storeTime;
+        @Getter
+        private final String value;
+
+        OggFileRecord(String fileName, long nextOffset, long storeTime, String value) {
+            this.fileName = fileName;
+            this.nextOffset = nextOffset;
+            this.storeTime = storeTime;
+            this.value = value;
+        }
+    }
+
+    /**
+     * OGG文件位点信息
+     */
+    public static class OggFilePosition extends Position {
+        private static final long serialVersionUID = 1L;
+
+        @Getter
+        private final String fileName;
+        @Getter
+        private final long offset;
+        private final boolean checksum;
+
+        public OggFilePosition(String fileName, long offset) {
+            this.fileName = fileName;
+            this.offset = offset;
+            this.checksum = !StringUtils.isBlank(fileName) && offset > -1;
+        }
+
+        private static OggFilePosition getPosition(String position) throws TaskStopTriggerException {
+            try {
+                JSONObject object = JSONObject.parseObject(position);
+                return new OggFilePosition(object.getString("fileName"), object.getLongValue("offset"));
+            } catch (Throwable throwable) {
+                throw new TaskStopTriggerException(throwable);
+            }
+        }
+
+        @Override
+        public boolean checksum() {
+            return checksum;
+        }
+    }
+}
@@ -27,6 +27,8 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.ZooKeeper;
@@ -36,7 +38,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * @author: zhangkewei[zhang_kw@suixingpay.com]
@@ -129,6 +135,132 @@ public class ZookeeperClient extends AbstractClient<ZookeeperConfig> implements
         return zk.setData(path, null != data ? data.getBytes() : "".getBytes(), version);
     }
 
+    /**
+     * 异步创建节点
+     * @param path
+     * @param isTemp
+     * @param data
+     * @return 创建的节点路径
+     */
+    public CompletableFuture<String> createAsync(String path, boolean isTemp, String data) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        zk.create(path, null != data ? data.getBytes() : "".getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE, isTemp
+                ? CreateMode.EPHEMERAL : CreateMode.PERSISTENT, (rc, p, ctx, name) -> {
+                    if (rc == KeeperException.Code.OK.intValue()) {
+                        future.complete(name);
+                    } else {
+                        future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), p));
+                    }
+                }, null);
+        return future;
+    }
+
+    /**
+     * 异步读取节点，同时注册监听
+     * @param path
+     * @return
+     */
+    public CompletableFuture<Pair<String, Stat>> getDataAsync(String path) {
+        CompletableFuture<Pair<String, Stat>> future = new CompletableFuture<>();
+        zk.getData(path, true, (rc, p, ctx, data, stat) -> {
+            if (rc == KeeperException.Code.OK.intValue()) {
+                future.complete(new ImmutablePair<>(null != data ? new String(data) : "", stat));
+            } else {
+                future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), p));
+            }
+        }, null);
+        return future;
+    }
+
+    /**
+     * 异步修改节点
+     * @param path
+     * @param data
+     * @param version
+     * @return
+     */
+    public CompletableFuture<Stat> setDataAsync(String path, String data, int version) {
+        CompletableFuture<Stat> future = new CompletableFuture<>();
+        zk.setData(path, null != data ? data.getBytes() : "".getBytes(), version, (rc, p, ctx, stat) -> {
+            if (rc == KeeperException.Code.OK.intValue()) {
+                future.complete(stat);
+            } else {
+                future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), p));
+            }
+        }, null);
+        return future;
+    }
+
+    /**
+     * 批量查询节点是否存在，请求一次发出，只等待一次网络往返
+     * @param paths
+     * @param watch
+     * @return 节点Stat，不存在时为null
+     * @throws KeeperException
+     * @throws InterruptedException
+     */
+    public Map<String, Stat> exists(List<String> paths, boolean watch) throws KeeperException, InterruptedException {
+        Map<String, CompletableFuture<Stat>> futures = new LinkedHashMap<>();
+        for (String path : paths) {
+            CompletableFuture<Stat> future = new CompletableFuture<>();
+            zk.exists(path, watch, (rc, p, ctx, stat) -> {
+                if (rc == KeeperException.Code.OK.intValue() || rc == KeeperException.Code.NONODE.intValue()) {
+                    future.complete(stat);
+                } else {
+                    future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), p));
+                }
+            }, null);
+            futures.put(path, future);
+        }
+        Map<String, Stat> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Stat>> future : futures.entrySet()) {
+            stats.put(future.getKey(), await(future.getValue()));
+        }
+        return stats;
+    }
+
+    /**
+     * 构造创建节点操作，用于multi
+     * @param path
+     * @param isTemp
+     * @param data
+     * @return
+     */
+    public Op createOp(String path, boolean isTemp, String data) {
+        return Op.create(path, null != data ? data.getBytes() : "".getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE, isTemp
+                ? CreateMode.EPHEMERAL : CreateMode.PERSISTENT);
+    }
+
+    /**
+     * 原子执行多个操作，任一操作失败时全部回滚
+     * @param ops
+     * @return
+     * @throws KeeperException 失败操作的异常，getResults()为各操作结果
+     * @throws InterruptedException
+     */
+    public List<OpResult> multi(List<Op> ops) throws KeeperException, InterruptedException {
+        return zk.multi(ops);
+    }
+
+    /**
+     * 等待异步操作结果
+     * @param future
+     * @param <T>
+     * @return
+     * @throws KeeperException
+     * @throws InterruptedException
+     */
+    public static <T> T await(CompletableFuture<T> future) throws KeeperException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof KeeperException) {
+                throw (KeeperException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
     @Override
     public Stat exists(String path, boolean watch) throws KeeperException, InterruptedException {
         return zk.exists(path, watch);
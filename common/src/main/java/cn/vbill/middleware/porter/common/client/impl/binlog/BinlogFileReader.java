@@ -0,0 +1,796 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.client.impl.binlog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * MySQL binlog(v4)文件读取器。
+ * 以只读内存映射方式打开文件，按事务返回行变更，不依赖数据库连接。
+ * 列名取自MySQL 8 TABLE_MAP_EVENT的可选元数据(binlog_row_metadata=FULL)，缺失时按列序号命名为COL_1、COL_2...
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月06日 15:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月06日 15:20
+ */
+public class BinlogFileReader implements Closeable {
+    private static final byte[] MAGIC = new byte[] {(byte) 0xfe, 'b', 'i', 'n'};
+    private static final int HEADER_LENGTH = 19;
+    private static final int CHECKSUM_LENGTH = 4;
+    private static final int CHECKSUM_ALG_CRC32 = 1;
+
+    //event type
+    private static final int QUERY_EVENT = 2;
+    private static final int STOP_EVENT = 3;
+    private static final int ROTATE_EVENT = 4;
+    private static final int FORMAT_DESCRIPTION_EVENT = 15;
+    private static final int XID_EVENT = 16;
+    private static final int TABLE_MAP_EVENT = 19;
+    private static final int WRITE_ROWS_EVENT_V1 = 23;
+    private static final int UPDATE_ROWS_EVENT_V1 = 24;
+    private static final int DELETE_ROWS_EVENT_V1 = 25;
+    private static final int WRITE_ROWS_EVENT = 30;
+    private static final int UPDATE_ROWS_EVENT = 31;
+    private static final int DELETE_ROWS_EVENT = 32;
+
+    //column type
+    private static final int TYPE_DECIMAL = 0;
+    private static final int TYPE_TINY = 1;
+    private static final int TYPE_SHORT = 2;
+    private static final int TYPE_LONG = 3;
+    private static final int TYPE_FLOAT = 4;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_NULL = 6;
+    private static final int TYPE_TIMESTAMP = 7;
+    private static final int TYPE_LONGLONG = 8;
+    private static final int TYPE_INT24 = 9;
+    private static final int TYPE_DATE = 10;
+    private static final int TYPE_TIME = 11;
+    private static final int TYPE_DATETIME = 12;
+    private static final int TYPE_YEAR = 13;
+    private static final int TYPE_VARCHAR = 15;
+    private static final int TYPE_BIT = 16;
+    private static final int TYPE_TIMESTAMP2 = 17;
+    private static final int TYPE_DATETIME2 = 18;
+    private static final int TYPE_TIME2 = 19;
+    private static final int TYPE_JSON = 245;
+    private static final int TYPE_NEWDECIMAL = 246;
+    private static final int TYPE_ENUM = 247;
+    private static final int TYPE_SET = 248;
+    private static final int TYPE_TINY_BLOB = 249;
+    private static final int TYPE_MEDIUM_BLOB = 250;
+    private static final int TYPE_LONG_BLOB = 251;
+    private static final int TYPE_BLOB = 252;
+    private static final int TYPE_VAR_STRING = 253;
+    private static final int TYPE_STRING = 254;
+    private static final int TYPE_GEOMETRY = 255;
+
+    //TABLE_MAP_EVENT可选元数据类型
+    private static final int META_SIGNEDNESS = 1;
+    private static final int META_COLUMN_NAME = 4;
+    private static final int META_SIMPLE_PRIMARY_KEY = 8;
+    private static final int META_PRIMARY_KEY_WITH_PREFIX = 9;
+
+    private static final int[] DIG2BYTES = {0, 1, 1, 2, 2, 3, 3, 4, 4, 4};
+    private static final String DEFAULT_FILE_PATTERN = ".+\\.\\d+";
+
+    private final File directory;
+    private final Pattern filePattern;
+    private final Charset charset;
+    private final Map<Long, TableMap> tableMaps = new HashMap<>();
+
+    private String logfileName;
+    private MappedByteBuffer buffer;
+    private int checksumLength = 0;
+
+    public BinlogFileReader(File directory, String filePattern, Charset charset) {
+        this.directory = directory;
+        this.filePattern = Pattern.compile(null != filePattern && !filePattern.trim().isEmpty() ? filePattern : DEFAULT_FILE_PATTERN);
+        this.charset = null != charset ? charset : StandardCharsets.UTF_8;
+    }
+
+    /**
+     * 定位到指定文件、下标。文件名为空时从目录中第一个文件开头解析
+     * @param fileName
+     * @param offset
+     * @throws IOException
+     */
+    public void seek(String fileName, long offset) throws IOException {
+        String target = fileName;
+        if (null == target || target.trim().isEmpty()) {
+            List<String> files = listFiles();
+            if (files.isEmpty()) {
+                logfileName = null;
+                buffer = null;
+                return;
+            }
+            target = files.get(0);
+        }
+        open(target);
+        if (offset > buffer.position()) {
+            if (offset > buffer.limit()) {
+                throw new IOException(target + "长度不足," + offset + "超出文件范围");
+            }
+            buffer.position((int) offset);
+        }
+    }
+
+    public String getLogfileName() {
+        return logfileName;
+    }
+
+    public long getLogfileOffset() {
+        return null != buffer ? buffer.position() : 0;
+    }
+
+    /**
+     * 读取下一个包含行变更的完整事务。
+     * 没有完整事务可读时返回空列表，读取位置停留在未完成事务的开头，文件追加后可以继续读取
+     * @return
+     * @throws IOException
+     */
+    public List<BinlogRow> nextTransaction() throws IOException {
+        if (null == buffer) {
+            seek(null, 0);
+            if (null == buffer) {
+                return Collections.emptyList();
+            }
+        }
+        List<BinlogRow> rows = new ArrayList<>();
+        int transactionStart = buffer.position();
+        while (true) {
+            int eventStart = buffer.position();
+            int eventSize = completeEventSize(eventStart);
+            if (eventSize < 0) {
+                //当前文件读完，只有在事务边界上才切换文件
+                if (rows.isEmpty() && eventStart == transactionStart && remap()) {
+                    continue;
+                }
+                if (rows.isEmpty() && eventStart == transactionStart && nextFile()) {
+                    transactionStart = buffer.position();
+                    continue;
+                }
+                buffer.position(transactionStart);
+                return Collections.emptyList();
+            }
+            int eventType = buffer.get(eventStart + 4) & 0xff;
+            long timestamp = (buffer.getInt(eventStart) & 0xffffffffL) * 1000;
+            ByteBuffer body = eventBody(eventStart, eventSize);
+            buffer.position(eventStart + eventSize);
+            switch (eventType) {
+                case TABLE_MAP_EVENT:
+                    TableMap tableMap = parseTableMap(body);
+                    tableMaps.put(tableMap.tableId, tableMap);
+                    break;
+                case WRITE_ROWS_EVENT_V1:
+                case UPDATE_ROWS_EVENT_V1:
+                case DELETE_ROWS_EVENT_V1:
+                case WRITE_ROWS_EVENT:
+                case UPDATE_ROWS_EVENT:
+                case DELETE_ROWS_EVENT:
+                    parseRows(eventType, timestamp, body, rows);
+                    break;
+                case QUERY_EVENT:
+                    //BEGIN之后才是事务内容，其余语句(COMMIT、DDL)视为事务边界
+                    if ("BEGIN".equalsIgnoreCase(parseQuery(body))) {
+                        break;
+                    }
+                    //fall through
+                case XID_EVENT:
+                    for (BinlogRow row : rows) {
+                        row.commitAt(logfileName, buffer.position());
+                    }
+                    if (!rows.isEmpty()) {
+                        return rows;
+                    }
+                    transactionStart = buffer.position();
+                    break;
+                case ROTATE_EVENT:
+                    //timestamp为0的ROTATE_EVENT是dump协议伪造的，文件中只关心真实的切换
+                    if (timestamp > 0 && rows.isEmpty()) {
+                        body.position(8);
+                        String next = readString(body, body.remaining(), StandardCharsets.UTF_8);
+                        if (new File(directory, next).exists()) {
+                            open(next);
+                            transactionStart = buffer.position();
+                        }
+                    }
+                    break;
+                case STOP_EVENT:
+                    if (rows.isEmpty() && nextFile()) {
+                        transactionStart = buffer.position();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+        logfileName = null;
+        tableMaps.clear();
+    }
+
+    /**
+     * 按文件名排序列出目录中的binlog文件
+     * @return
+     */
+    public List<String> listFiles() {
+        String[] names = directory.list((dir, name) -> filePattern.matcher(name).matches());
+        if (null == names) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    private boolean nextFile() throws IOException {
+        for (String name : listFiles()) {
+            if (name.compareTo(logfileName) > 0) {
+                open(name);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 文件仍在追加时重新映射
+     * @return
+     * @throws IOException
+     */
+    private boolean remap() throws IOException {
+        File file = new File(directory, logfileName);
+        if (file.length() <= buffer.limit()) {
+            return false;
+        }
+        int position = buffer.position();
+        buffer = map(file);
+        buffer.position(position);
+        return true;
+    }
+
+    private void open(String fileName) throws IOException {
+        File file = new File(directory, fileName);
+        MappedByteBuffer mapped = map(file);
+        if (mapped.limit() < MAGIC.length) {
+            throw new IOException(fileName + "不是有效的binlog文件");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (mapped.get(i) != MAGIC[i]) {
+                throw new IOException(fileName + "不是有效的binlog文件");
+            }
+        }
+        buffer = mapped;
+        logfileName = fileName;
+        tableMaps.clear();
+        checksumLength = 0;
+        buffer.position(MAGIC.length);
+        //文件首个事件是FORMAT_DESCRIPTION_EVENT，决定事件是否带校验码
+        int size = completeEventSize(MAGIC.length);
+        if (size > 0 && (buffer.get(MAGIC.length + 4) & 0xff) == FORMAT_DESCRIPTION_EVENT) {
+            parseFormatDescription(MAGIC.length, size);
+            buffer.position(MAGIC.length + size);
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            return mapped;
+        }
+    }
+
+    /**
+     * 事件完整写入文件时返回长度，否则返回-1
+     * @param eventStart
+     * @return
+     */
+    private int completeEventSize(int eventStart) {
+        if (buffer.limit() - eventStart < HEADER_LENGTH) {
+            return -1;
+        }
+        long size = buffer.getInt(eventStart + 9) & 0xffffffffL;
+        if (size < HEADER_LENGTH || eventStart + size > buffer.limit()) {
+            return -1;
+        }
+        return (int) size;
+    }
+
+    private ByteBuffer eventBody(int eventStart, int eventSize) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.limit(eventStart + eventSize - checksumLength);
+        duplicate.position(eventStart + HEADER_LENGTH);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void parseFormatDescription(int eventStart, int eventSize) {
+        ByteBuffer body = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        body.position(eventStart + HEADER_LENGTH + 2);
+        byte[] version = new byte[50];
+        body.get(version);
+        String serverVersion = new String(version, StandardCharsets.US_ASCII).trim();
+        //5.6.1之后的FORMAT_DESCRIPTION_EVENT末尾是1字节校验算法+4字节校验码
+        if (versionAtLeast(serverVersion, 5, 6, 1)) {
+            int alg = buffer.get(eventStart + eventSize - CHECKSUM_LENGTH - 1) & 0xff;
+            checksumLength = alg == CHECKSUM_ALG_CRC32 ? CHECKSUM_LENGTH : 0;
+        }
+    }
+
+    private static boolean versionAtLeast(String serverVersion, int... expect) {
+        String[] parts = serverVersion.split("[^0-9]+");
+        for (int i = 0; i < expect.length; i++) {
+            int value = i < parts.length && !parts[i].isEmpty() ? Integer.parseInt(parts[i]) : 0;
+            if (value != expect[i]) {
+                return value > expect[i];
+            }
+        }
+        return true;
+    }
+
+    private String parseQuery(ByteBuffer body) {
+        body.position(8);
+        int schemaLength = body.get() & 0xff;
+        body.position(body.position() + 2);
+        int statusLength = body.getShort() & 0xffff;
+        body.position(body.position() + statusLength + schemaLength + 1);
+        return readString(body, body.remaining(), charset).trim();
+    }
+
+    private TableMap parseTableMap(ByteBuffer body) {
+        TableMap map = new TableMap();
+        map.tableId = readUnsigned(body, 6);
+        body.position(body.position() + 2);
+        map.schema = readString(body, body.get() & 0xff, charset);
+        body.get();
+        map.table = readString(body, body.get() & 0xff, charset);
+        body.get();
+        int columnCount = (int) readPackedLong(body);
+        map.types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            map.types[i] = body.get() & 0xff;
+        }
+        int metaLength = (int) readPackedLong(body);
+        int metaEnd = body.position() + metaLength;
+        map.metas = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            map.metas[i] = readColumnMeta(body, map.types[i]);
+        }
+        body.position(metaEnd);
+        body.position(body.position() + (columnCount + 7) / 8);
+        map.unsigned = new boolean[columnCount];
+        map.columnNames = new String[columnCount];
+        while (body.hasRemaining()) {
+            int metaType = body.get() & 0xff;
+            int length = (int) readPackedLong(body);
+            int end = body.position() + length;
+            if (metaType == META_SIGNEDNESS) {
+                //只对数值列按列顺序编号，高位在前
+                int numericIndex = 0;
+                for (int i = 0; i < columnCount; i++) {
+                    if (isNumeric(map.types[i])) {
+                        int b = body.get(body.position() + numericIndex / 8) & 0xff;
+                        map.unsigned[i] = (b & (0x80 >> (numericIndex % 8))) != 0;
+                        numericIndex++;
+                    }
+                }
+            } else if (metaType == META_COLUMN_NAME) {
+                for (int i = 0; i < columnCount && body.position() < end; i++) {
+                    map.columnNames[i] = readString(body, (int) readPackedLong(body), charset);
+                }
+            } else if (metaType == META_SIMPLE_PRIMARY_KEY || metaType == META_PRIMARY_KEY_WITH_PREFIX) {
+                while (body.position() < end) {
+                    map.primaryKeys.add((int) readPackedLong(body));
+                    if (metaType == META_PRIMARY_KEY_WITH_PREFIX) {
+                        readPackedLong(body);
+                    }
+                }
+            }
+            body.position(end);
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if (null == map.columnNames[i]) {
+                map.columnNames[i] = "COL_" + (i + 1);
+            }
+        }
+        return map;
+    }
+
+    private static int readColumnMeta(ByteBuffer body, int type) {
+        switch (type) {
+            case TYPE_TINY_BLOB:
+            case TYPE_BLOB:
+            case TYPE_MEDIUM_BLOB:
+            case TYPE_LONG_BLOB:
+            case TYPE_DOUBLE:
+            case TYPE_FLOAT:
+            case TYPE_GEOMETRY:
+            case TYPE_JSON:
+            case TYPE_TIME2:
+            case TYPE_DATETIME2:
+            case TYPE_TIMESTAMP2:
+                return body.get() & 0xff;
+            case TYPE_SET:
+            case TYPE_ENUM:
+            case TYPE_STRING:
+            case TYPE_NEWDECIMAL:
+                return ((body.get() & 0xff) << 8) | (body.get() & 0xff);
+            case TYPE_BIT:
+            case TYPE_VARCHAR:
+            case TYPE_VAR_STRING:
+                return body.getShort() & 0xffff;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean isNumeric(int type) {
+        switch (type) {
+            case TYPE_TINY:
+            case TYPE_SHORT:
+            case TYPE_INT24:
+            case TYPE_LONG:
+            case TYPE_LONGLONG:
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+            case TYPE_DECIMAL:
+            case TYPE_NEWDECIMAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void parseRows(int eventType, long timestamp, ByteBuffer body, List<BinlogRow> rows) {
+        long tableId = readUnsigned(body, 6);
+        TableMap map = tableMaps.get(tableId);
+        if (null == map) {
+            return;
+        }
+        body.position(body.position() + 2);
+        if (eventType >= WRITE_ROWS_EVENT) {
+            int extraLength = body.getShort() & 0xffff;
+            body.position(body.position() + extraLength - 2);
+        }
+        int columnCount = (int) readPackedLong(body);
+        BitSet present = readBitmap(body, columnCount);
+        boolean update = eventType == UPDATE_ROWS_EVENT || eventType == UPDATE_ROWS_EVENT_V1;
+        BitSet presentAfter = update ? readBitmap(body, columnCount) : null;
+        String type = update ? BinlogRow.UPDATE : (eventType == WRITE_ROWS_EVENT || eventType == WRITE_ROWS_EVENT_V1
+                ? BinlogRow.INSERT : BinlogRow.DELETE);
+        while (body.hasRemaining()) {
+            BinlogRow row = new BinlogRow(map.schema, map.table, type, timestamp);
+            for (int index : map.primaryKeys) {
+                row.getPrimaryKeys().add(map.columnNames[index]);
+            }
+            if (BinlogRow.INSERT.equals(type)) {
+                readRow(body, map, present, row.getAfter());
+            } else {
+                readRow(body, map, present, row.getBefore());
+                if (update) {
+                    readRow(body, map, presentAfter, row.getAfter());
+                }
+            }
+            rows.add(row);
+        }
+    }
+
+    private void readRow(ByteBuffer body, TableMap map, BitSet present, Map<String, String> values) {
+        BitSet nulls = readBitmap(body, present.cardinality());
+        int presentIndex = 0;
+        for (int i = 0; i < map.types.length; i++) {
+            if (!present.get(i)) {
+                continue;
+            }
+            if (nulls.get(presentIndex++)) {
+                values.put(map.columnNames[i], null);
+            } else {
+                values.put(map.columnNames[i], readValue(body, map.types[i], map.metas[i], map.unsigned[i]));
+            }
+        }
+    }
+
+    private String readValue(ByteBuffer body, int type, int meta, boolean unsigned) {
+        int length;
+        if (type == TYPE_STRING && meta >= 256) {
+            //CHAR、ENUM、SET在TABLE_MAP中都标记为STRING，真实类型与长度编码在元数据中
+            int byte0 = meta >> 8;
+            int byte1 = meta & 0xff;
+            if ((byte0 & 0x30) != 0x30) {
+                length = byte1 | (((byte0 & 0x30) ^ 0x30) << 4);
+                type = byte0 | 0x30;
+            } else {
+                length = byte1;
+                type = byte0;
+            }
+        } else {
+            length = meta;
+        }
+        switch (type) {
+            case TYPE_TINY:
+                return unsigned ? String.valueOf(body.get() & 0xff) : String.valueOf(body.get());
+            case TYPE_SHORT:
+                return unsigned ? String.valueOf(body.getShort() & 0xffff) : String.valueOf(body.getShort());
+            case TYPE_INT24:
+                int int24 = (int) readUnsigned(body, 3);
+                return unsigned ? String.valueOf(int24) : String.valueOf((int24 << 8) >> 8);
+            case TYPE_LONG:
+                return unsigned ? String.valueOf(body.getInt() & 0xffffffffL) : String.valueOf(body.getInt());
+            case TYPE_LONGLONG:
+                return unsigned ? Long.toUnsignedString(body.getLong()) : String.valueOf(body.getLong());
+            case TYPE_FLOAT:
+                return String.valueOf(body.getFloat());
+            case TYPE_DOUBLE:
+                return String.valueOf(body.getDouble());
+            case TYPE_NEWDECIMAL:
+                return readDecimal(body, meta >> 8, meta & 0xff);
+            case TYPE_YEAR:
+                int year = body.get() & 0xff;
+                return year == 0 ? "0000" : String.valueOf(1900 + year);
+            case TYPE_DATE:
+                int date = (int) readUnsigned(body, 3);
+                return String.format("%04d-%02d-%02d", date >> 9, (date >> 5) & 0x0f, date & 0x1f);
+            case TYPE_TIME:
+                int time = (int) readUnsigned(body, 3);
+                time = (time << 8) >> 8;
+                return String.format("%s%02d:%02d:%02d", time < 0 ? "-" : "", Math.abs(time) / 10000,
+                        Math.abs(time) % 10000 / 100, Math.abs(time) % 100);
+            case TYPE_DATETIME:
+                long datetime = body.getLong();
+                long ymd = datetime / 1000000;
+                long hms = datetime % 1000000;
+                return String.format("%04d-%02d-%02d %02d:%02d:%02d", ymd / 10000, ymd % 10000 / 100, ymd % 100,
+                        hms / 10000, hms % 10000 / 100, hms % 100);
+            case TYPE_TIMESTAMP:
+                return formatTimestamp(body.getInt() & 0xffffffffL, 0, 0);
+            case TYPE_TIMESTAMP2:
+                long seconds = readBigEndian(body, 4);
+                return formatTimestamp(seconds, readFraction(body, meta), meta);
+            case TYPE_DATETIME2:
+                return readDatetime2(body, meta);
+            case TYPE_TIME2:
+                return readTime2(body, meta);
+            case TYPE_BIT:
+                int bits = (meta >> 8) * 8 + (meta & 0xff);
+                return Long.toUnsignedString(readBigEndian(body, (bits + 7) / 8));
+            case TYPE_ENUM:
+            case TYPE_SET:
+                //没有取值字典，输出序号、位图
+                return Long.toUnsignedString(readUnsigned(body, length));
+            case TYPE_VARCHAR:
+            case TYPE_VAR_STRING:
+            case TYPE_STRING:
+                int stringLength = length < 256 ? body.get() & 0xff : body.getShort() & 0xffff;
+                return readString(body, stringLength, charset);
+            case TYPE_TINY_BLOB:
+            case TYPE_BLOB:
+            case TYPE_MEDIUM_BLOB:
+            case TYPE_LONG_BLOB:
+                return readString(body, (int) readUnsigned(body, meta), charset);
+            case TYPE_JSON:
+            case TYPE_GEOMETRY:
+                //二进制编码，原样输出
+                byte[] binary = new byte[(int) readUnsigned(body, meta)];
+                body.get(binary);
+                return Base64.getEncoder().encodeToString(binary);
+            case TYPE_NULL:
+                return null;
+            default:
+                throw new IllegalStateException("不支持的binlog列类型:" + type);
+        }
+    }
+
+    private static String readDecimal(ByteBuffer body, int precision, int scale) {
+        int intg = precision - scale;
+        int intg0 = intg / 9;
+        int intg0x = intg - intg0 * 9;
+        int frac0 = scale / 9;
+        int frac0x = scale - frac0 * 9;
+        int size = intg0 * 4 + DIG2BYTES[intg0x] + frac0 * 4 + DIG2BYTES[frac0x];
+        byte[] data = new byte[size];
+        body.get(data);
+        boolean negative = (data[0] & 0x80) == 0;
+        data[0] ^= 0x80;
+        if (negative) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] ^= 0xff;
+            }
+        }
+        ByteBuffer digits = ByteBuffer.wrap(data);
+        StringBuilder integer = new StringBuilder();
+        if (intg0x > 0) {
+            integer.append(readBigEndian(digits, DIG2BYTES[intg0x]));
+        }
+        for (int i = 0; i < intg0; i++) {
+            integer.append(String.format("%09d", readBigEndian(digits, 4)));
+        }
+        int start = 0;
+        while (start < integer.length() - 1 && integer.charAt(start) == '0') {
+            start++;
+        }
+        StringBuilder value = new StringBuilder(negative ? "-" : "");
+        value.append(integer.length() == 0 ? "0" : integer.substring(start));
+        if (scale > 0) {
+            value.append('.');
+            for (int i = 0; i < frac0; i++) {
+                value.append(String.format("%09d", readBigEndian(digits, 4)));
+            }
+            if (frac0x > 0) {
+                value.append(String.format("%0" + frac0x + "d", readBigEndian(digits, DIG2BYTES[frac0x])));
+            }
+        }
+        return value.toString();
+    }
+
+    private static int readFraction(ByteBuffer body, int fsp) {
+        switch (fsp) {
+            case 1:
+            case 2:
+                return (int) readBigEndian(body, 1) * 10000;
+            case 3:
+            case 4:
+                return (int) readBigEndian(body, 2) * 100;
+            case 5:
+            case 6:
+                return (int) readBigEndian(body, 3);
+            default:
+                return 0;
+        }
+    }
+
+    private static String appendFraction(String value, int micros, int fsp) {
+        return fsp > 0 ? value + "." + String.format("%06d", micros).substring(0, fsp) : value;
+    }
+
+    private static String formatTimestamp(long seconds, int micros, int fsp) {
+        if (seconds == 0) {
+            return appendFraction("0000-00-00 00:00:00", micros, fsp);
+        }
+        return appendFraction(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(seconds * 1000)), micros, fsp);
+    }
+
+    private static String readDatetime2(ByteBuffer body, int fsp) {
+        long packed = readBigEndian(body, 5) - 0x8000000000L;
+        int micros = readFraction(body, fsp);
+        long ymd = packed >> 17;
+        long ym = ymd >> 5;
+        long hms = packed % (1 << 17);
+        return appendFraction(String.format("%04d-%02d-%02d %02d:%02d:%02d", ym / 13, ym % 13, ymd & 0x1f,
+                hms >> 12, (hms >> 6) & 0x3f, hms & 0x3f), micros, fsp);
+    }
+
+    private static String readTime2(ByteBuffer body, int fsp) {
+        long packed;
+        switch (fsp) {
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+                long intPart = readBigEndian(body, 3) - 0x800000L;
+                int fractionBytes = fsp <= 2 ? 1 : 2;
+                long fraction = readBigEndian(body, fractionBytes);
+                if (intPart < 0 && fraction > 0) {
+                    intPart++;
+                    fraction -= 1L << (8 * fractionBytes);
+                }
+                packed = (intPart << 24) + fraction * (fsp <= 2 ? 10000 : 100);
+                break;
+            case 5:
+            case 6:
+                packed = readBigEndian(body, 6) - 0x800000000000L;
+                break;
+            default:
+                packed = (readBigEndian(body, 3) - 0x800000L) << 24;
+                break;
+        }
+        boolean negative = packed < 0;
+        packed = Math.abs(packed);
+        long hms = packed >> 24;
+        int micros = (int) (packed % (1L << 24));
+        return appendFraction(String.format("%s%02d:%02d:%02d", negative ? "-" : "", (hms >> 12) & 0x3ff,
+                (hms >> 6) & 0x3f, hms & 0x3f), micros, fsp);
+    }
+
+    private static BitSet readBitmap(ByteBuffer body, int bits) {
+        BitSet bitmap = new BitSet(bits);
+        for (int i = 0; i < (bits + 7) / 8; i++) {
+            int b = body.get() & 0xff;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((b & (1 << bit)) != 0) {
+                    bitmap.set(i * 8 + bit);
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    private static long readPackedLong(ByteBuffer body) {
+        int first = body.get() & 0xff;
+        if (first < 251) {
+            return first;
+        } else if (first == 251) {
+            return -1;
+        } else if (first == 252) {
+            return readUnsigned(body, 2);
+        } else if (first == 253) {
+            return readUnsigned(body, 3);
+        }
+        return body.getLong();
+    }
+
+    private static long readUnsigned(ByteBuffer body, int bytes) {
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value |= (long) (body.get() & 0xff) << (8 * i);
+        }
+        return value;
+    }
+
+    private static long readBigEndian(ByteBuffer body, int bytes) {
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value = (value << 8) | (body.get() & 0xff);
+        }
+        return value;
+    }
+
+    private static String readString(ByteBuffer body, int length, Charset charset) {
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * TABLE_MAP_EVENT描述的表结构
+     */
+    private static class TableMap {
+        private long tableId;
+        private String schema;
+        private String table;
+        private int[] types;
+        private int[] metas;
+        private boolean[] unsigned;
+        private String[] columnNames;
+        private final List<Integer> primaryKeys = new ArrayList<>();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.client.impl.binlog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * binlog文件解析出的行变更
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月06日 15:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月06日 15:20
+ */
+public class BinlogRow {
+    /**
+     * 操作类型 I U D
+     */
+    public static final String INSERT = "I";
+    public static final String UPDATE = "U";
+    public static final String DELETE = "D";
+
+    private final String schema;
+    private final String table;
+    private final String type;
+    //事件产生时间
+    private final long executeTime;
+    private final Map<String, String> before = new LinkedHashMap<>();
+    private final Map<String, String> after = new LinkedHashMap<>();
+    private final List<String> primaryKeys = new ArrayList<>();
+    //所在事务提交后的文件名、下标，从该位置可以继续解析
+    private String logfileName;
+    private long logfileOffset = -1;
+
+    public BinlogRow(String schema, String table, String type, long executeTime) {
+        this.schema = schema;
+        this.table = table;
+        this.type = type;
+        this.executeTime = executeTime;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getExecuteTime() {
+        return executeTime;
+    }
+
+    public Map<String, String> getBefore() {
+        return before;
+    }
+
+    public Map<String, String> getAfter() {
+        return after;
+    }
+
+    public List<String> getPrimaryKeys() {
+        return primaryKeys;
+    }
+
+    public String getLogfileName() {
+        return logfileName;
+    }
+
+    public long getLogfileOffset() {
+        return logfileOffset;
+    }
+
+    void commitAt(String logfileName, long logfileOffset) {
+        this.logfileName = logfileName;
+        this.logfileOffset = logfileOffset;
+    }
+}
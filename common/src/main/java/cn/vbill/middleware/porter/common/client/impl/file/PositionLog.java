@@ -0,0 +1,262 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.client.impl.file;
+
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写消费位点日志。
+ * 预分配文件并内存映射，每条记录定长:crc(4) + 序号(8) + key长度(2) + value长度(4) + key + value，不足补0。
+ * 写满后只保留每个key的最新记录压缩到新文件并原子替换；启动时扫描全部记录，按序号恢复每个key的最新有效记录
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月13日 09:52
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月13日 09:52
+ */
+public class PositionLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionLog.class);
+    private static final int HEADER_SIZE = 4 + 8 + 2 + 4;
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private final File file;
+    private final int recordSize;
+    private long fileSize;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    //下一条记录的写入下标
+    private int writeIndex;
+    private long sequence;
+    private final Map<String, String> positions = new HashMap<>();
+    private final ScheduledExecutorService flushService;
+    private volatile boolean dirty;
+
+    /**
+     * @param file 日志文件
+     * @param fileSize 预分配大小
+     * @param recordSize 单条记录大小
+     * @param flushInterval 刷盘间隔，单位毫秒，0每次写入后刷盘
+     * @throws IOException
+     */
+    public PositionLog(File file, long fileSize, int recordSize, long flushInterval) throws IOException {
+        this.file = file;
+        this.recordSize = recordSize;
+        //文件至少能容纳两条记录
+        this.fileSize = Math.max(fileSize, recordSize * 2L);
+        recover();
+        if (flushInterval > 0) {
+            flushService = Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("PositionLogFlush"));
+            flushService.scheduleWithFixedDelay(() -> flush(), flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        } else {
+            flushService = null;
+        }
+    }
+
+    public synchronized String get(String key) {
+        return positions.get(key);
+    }
+
+    /**
+     * 追加一条位点记录
+     * @param key
+     * @param value
+     * @throws IOException
+     */
+    public synchronized void put(String key, String value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > Short.MAX_VALUE || HEADER_SIZE + keyBytes.length + valueBytes.length > recordSize) {
+            throw new IOException("位点记录长度" + (HEADER_SIZE + keyBytes.length + valueBytes.length) + "超过单条记录大小" + recordSize + ":" + key);
+        }
+        if ((long) writeIndex + recordSize > buffer.capacity()) {
+            positions.put(key, value);
+            compact();
+        } else {
+            write(buffer, writeIndex, ++sequence, keyBytes, valueBytes);
+            writeIndex += recordSize;
+            positions.put(key, value);
+        }
+        if (null == flushService) {
+            buffer.force();
+        } else {
+            dirty = true;
+        }
+    }
+
+    public synchronized void flush() {
+        if (dirty && null != buffer) {
+            dirty = false;
+            buffer.force();
+        }
+    }
+
+    public synchronized void close() {
+        if (null != flushService) {
+            flushService.shutdownNow();
+        }
+        if (null != buffer) {
+            buffer.force();
+            buffer = null;
+        }
+        closeChannel();
+    }
+
+    /**
+     * 扫描全部记录，恢复每个key的最新有效记录，写入下标定位到序号最大的记录之后
+     * @throws IOException
+     */
+    private void recover() throws IOException {
+        file.getParentFile().mkdirs();
+        Files.deleteIfExists(new File(file.getPath() + COMPACT_SUFFIX).toPath());
+        boolean exists = file.exists();
+        open(file, exists ? Math.max(file.length(), fileSize) : fileSize);
+        Map<String, Long> sequences = new HashMap<>();
+        int lastIndex = -recordSize;
+        for (int index = 0; index + recordSize <= buffer.capacity(); index += recordSize) {
+            long seq = buffer.getLong(index + 4);
+            if (seq <= 0 || !checksum(index)) {
+                continue;
+            }
+            byte[] keyBytes = new byte[buffer.getShort(index + 12)];
+            byte[] valueBytes = new byte[buffer.getInt(index + 14)];
+            read(index + HEADER_SIZE, keyBytes);
+            read(index + HEADER_SIZE + keyBytes.length, valueBytes);
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            if (seq > sequences.getOrDefault(key, 0L)) {
+                sequences.put(key, seq);
+                positions.put(key, new String(valueBytes, StandardCharsets.UTF_8));
+            }
+            if (seq > sequence) {
+                sequence = seq;
+                lastIndex = index;
+            }
+        }
+        writeIndex = lastIndex + recordSize;
+        if (exists) {
+            LOGGER.info("恢复消费位点日志{}:{}条,序号{}", file.getPath(), positions.size(), sequence);
+        }
+    }
+
+    /**
+     * 只保留每个key的最新记录写入新文件，强制刷盘后原子替换原文件。存活记录超过一半容量时文件扩大一倍
+     * @throws IOException
+     */
+    private void compact() throws IOException {
+        long required = (long) positions.size() * recordSize;
+        while (required * 2 > fileSize) {
+            fileSize *= 2;
+        }
+        File compactFile = new File(file.getPath() + COMPACT_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(compactFile, "rw"); FileChannel compactChannel = raf.getChannel()) {
+            raf.setLength(fileSize);
+            MappedByteBuffer compactBuffer = compactChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            int index = 0;
+            for (Map.Entry<String, String> entry : positions.entrySet()) {
+                write(compactBuffer, index, ++sequence, entry.getKey().getBytes(StandardCharsets.UTF_8),
+                        entry.getValue().getBytes(StandardCharsets.UTF_8));
+                index += recordSize;
+            }
+            compactBuffer.force();
+            writeIndex = index;
+        }
+        buffer = null;
+        closeChannel();
+        Files.move(compactFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open(file, fileSize);
+        LOGGER.info("压缩消费位点日志{}:{}条,文件大小{}", file.getPath(), positions.size(), fileSize);
+    }
+
+    private void open(File target, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(target, "rw");
+        try {
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            channel = raf.getChannel();
+            fileSize = Math.min(raf.length(), Integer.MAX_VALUE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private void closeChannel() {
+        if (null != channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("关闭消费位点日志{}失败", file.getPath(), e);
+            }
+            channel = null;
+        }
+    }
+
+    private void write(MappedByteBuffer target, int index, long seq, byte[] keyBytes, byte[] valueBytes) {
+        target.putLong(index + 4, seq);
+        target.putShort(index + 12, (short) keyBytes.length);
+        target.putInt(index + 14, valueBytes.length);
+        ByteBuffer view = target.duplicate();
+        view.position(index + HEADER_SIZE);
+        view.put(keyBytes).put(valueBytes);
+        //crc最后写入，记录未写完时校验失败
+        target.putInt(index, crc(target, index, HEADER_SIZE - 4 + keyBytes.length + valueBytes.length));
+    }
+
+    private boolean checksum(int index) {
+        int keyLength = buffer.getShort(index + 12);
+        int valueLength = buffer.getInt(index + 14);
+        if (keyLength <= 0 || valueLength < 0 || HEADER_SIZE + keyLength + valueLength > recordSize) {
+            return false;
+        }
+        return buffer.getInt(index) == crc(buffer, index, HEADER_SIZE - 4 + keyLength + valueLength);
+    }
+
+    private static int crc(MappedByteBuffer source, int index, int length) {
+        ByteBuffer view = source.duplicate();
+        view.limit(index + 4 + length);
+        view.position(index + 4);
+        CRC32 crc32 = new CRC32();
+        crc32.update(view);
+        return (int) crc32.getValue();
+    }
+
+    private void read(int index, byte[] target) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(index);
+        view.get(target);
+    }
+}
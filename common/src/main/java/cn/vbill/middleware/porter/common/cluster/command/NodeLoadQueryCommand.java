@@ -0,0 +1,37 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.cluster.command;
+
+import cn.vbill.middleware.porter.common.cluster.data.DCallback;
+import lombok.Getter;
+
+/**
+ * 集群存活节点负载查询，回调存活节点的心跳信息列表
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月19日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月19日 10:30
+ */
+public class NodeLoadQueryCommand implements ClusterCommand {
+    @Getter private final DCallback callback;
+
+    public NodeLoadQueryCommand(DCallback callback) {
+        this.callback = callback;
+    }
+}
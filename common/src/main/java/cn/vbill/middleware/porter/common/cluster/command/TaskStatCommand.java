@@ -20,23 +20,31 @@ package cn.vbill.middleware.porter.common.cluster.command;
 import cn.vbill.middleware.porter.common.cluster.data.DTaskStat;
 import cn.vbill.middleware.porter.common.cluster.data.DCallback;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 任务状态上报（服务器上报zk）
+ * 同一任务泳道内各表的状态一次上报，回调按表分别执行
  * @author: zhangkewei[zhang_kw@suixingpay.com]
  * @date: 2017年12月19日 18:42
  * @version: V1.0
  * @review: zhangkewei[zhang_kw@suixingpay.com]/2017年12月19日 18:42
  */
 public class TaskStatCommand implements ClusterCommand {
-    private final DTaskStat stat;
+    private final List<DTaskStat> stats;
     private final DCallback callback;
     public TaskStatCommand(DTaskStat stat, DCallback callback) {
-        this.stat = stat;
+        this(Collections.singletonList(stat), callback);
+    }
+
+    public TaskStatCommand(List<DTaskStat> stats, DCallback callback) {
+        this.stats = stats;
         this.callback = callback;
     }
 
-    public DTaskStat getStat() {
-        return stat;
+    public List<DTaskStat> getStats() {
+        return stats;
     }
 
     public DCallback getCallback() {
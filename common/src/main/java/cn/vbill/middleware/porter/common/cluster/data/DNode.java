@@ -56,6 +56,14 @@ public class DNode extends DObject {
     @Getter @Setter private NodeHealthLevel healthLevel = NodeHealthLevel.GREEN;
     //节点健康级别描述
     @Getter @Setter private String healthLevelDesc;
+    //进程CPU使用率(0~1)
+    @Getter @Setter private double cpuLoad;
+    //堆内存使用率(0~1)
+    @Getter @Setter private double heapUsage;
+    //节点可执行工作数量
+    @Getter @Setter private int workLimit;
+    //最近一个心跳周期的载入吞吐量，单位行/分钟
+    @Getter @Setter private long throughput;
 
 
     public DNode() {
@@ -68,6 +76,15 @@ public class DNode extends DObject {
         this.nodeId = nodeId;
     }
 
+    /**
+     * 节点当前执行的泳道数量
+     * @return
+     */
+    @JSONField(serialize = false, deserialize = false)
+    public int getSwimlanes() {
+        return null == tasks ? 0 : tasks.values().stream().mapToInt(TreeSet::size).sum();
+    }
+
     @Override
     public <T> void merge(T data) {
 
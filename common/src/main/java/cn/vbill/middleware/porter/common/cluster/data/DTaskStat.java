@@ -17,14 +17,20 @@
 
 package cn.vbill.middleware.porter.common.cluster.data;
 
+import cn.vbill.middleware.porter.common.statistics.LatencyHistogram;
+import cn.vbill.middleware.porter.common.statistics.StageStat;
 import com.alibaba.fastjson.annotation.JSONField;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  *
@@ -48,7 +54,7 @@ public class DTaskStat extends DObject {
 
     /*
      * final用于保证不可变状态，同时保证多线程内存可见性
-     * 累计结果
+     * 累计结果，本地统计时为上报区间内的增量
      */
     //插入行数
     private final AtomicLong insertRow = new AtomicLong(0);
@@ -68,30 +74,52 @@ public class DTaskStat extends DObject {
     @JSONField(serialize = false, deserialize = false)
     private final AtomicBoolean updateStat = new AtomicBoolean(false);
 
+    //区间单行载入耗时分布，单位微秒
+    @Setter @Getter private Long applyLatencyP50;
+    @Setter @Getter private Long applyLatencyP99;
+    @Setter @Getter private Long applyLatencyMax;
+    //区间数据产生到载入完成的延迟分布，单位毫秒
+    @Setter @Getter private Long delayP50;
+    @Setter @Getter private Long delayP99;
+    @Setter @Getter private Long delayMax;
+
+    //泳道各阶段区间运行统计，泳道内各表相同
+    @Setter @Getter private List<StageStat> stages;
+    //区间内处理耗时占比最高的阶段
+    @Setter @Getter private String bottleneckStage;
+    //泳道阶段线程区间CPU耗时与堆内存分配合计，泳道内各表相同
+    @Setter @Getter private Long cpuMillis;
+    @Setter @Getter private Long allocatedBytes;
+    //源端心跳表探测的同步延迟，单位毫秒，泳道内各表相同
+    @Setter @Getter private Long replicationLag;
+
+    //本地计数器，首次计数时创建，不参与JSON转化
+    private volatile Recorder recorder;
+
     //注册时间
     @JSONField(format = DEFAULT_DATE_FORMAT)
     @Setter @Getter private Date registeredTime;
 
     //最近心跳时间
     @JSONField(format = DEFAULT_DATE_FORMAT)
-    private Date heartbeatTime;
+    private volatile Date heartbeatTime;
 
     //最近告警检查时间
     @JSONField(format = DEFAULT_DATE_FORMAT)
-    private Date lastCheckedTime;
+    private volatile Date lastCheckedTime;
 
     //最近导入数据时间
     @JSONField(format = DEFAULT_DATE_FORMAT)
-    @Getter private Date lastLoadedDataTime;
+    @Getter private volatile Date lastLoadedDataTime;
 
 
 
     //最近导入系统时间
     @JSONField(format = DEFAULT_DATE_FORMAT)
-    private Date lastLoadedSystemTime;
+    private volatile Date lastLoadedSystemTime;
 
     //处理进度,DataConsumer的消费进度
-    private String progress;
+    private volatile String progress;
 
     public DTaskStat() {
         registeredTime = new Date();
@@ -135,11 +163,11 @@ public class DTaskStat extends DObject {
 
 
 
-    public synchronized void setLastLoadedDataTime(Date lastLoadedTime) {
+    public void setLastLoadedDataTime(Date lastLoadedTime) {
         this.lastLoadedDataTime = lastLoadedTime;
     }
 
-    public synchronized void setLastCheckedTime(Date lastCheckedTime) {
+    public void setLastCheckedTime(Date lastCheckedTime) {
         this.lastCheckedTime = lastCheckedTime;
     }
 
@@ -170,6 +198,28 @@ public class DTaskStat extends DObject {
             if (null != stat.lastLoadedSystemTime) {
                 this.lastLoadedSystemTime = stat.lastLoadedSystemTime;
             }
+            //耗时分布为最近一个区间的值
+            if (null != stat.applyLatencyP50) {
+                this.applyLatencyP50 = stat.applyLatencyP50;
+                this.applyLatencyP99 = stat.applyLatencyP99;
+                this.applyLatencyMax = stat.applyLatencyMax;
+            }
+            if (null != stat.delayP50) {
+                this.delayP50 = stat.delayP50;
+                this.delayP99 = stat.delayP99;
+                this.delayMax = stat.delayMax;
+            }
+            if (null != stat.stages && !stat.stages.isEmpty()) {
+                this.stages = stat.stages;
+                this.bottleneckStage = stat.bottleneckStage;
+            }
+            if (null != stat.cpuMillis) {
+                this.cpuMillis = stat.cpuMillis;
+                this.allocatedBytes = stat.allocatedBytes;
+            }
+            if (null != stat.replicationLag) {
+                this.replicationLag = stat.replicationLag;
+            }
             this.heartbeatTime = new Date();
         }
     }
@@ -185,6 +235,94 @@ public class DTaskStat extends DObject {
         this.errorInsertRow.set(0);
         this.errorUpdateRow.set(0);
         this.alertedTimes.set(0);
+        if (null != recorder) {
+            intervalSnapshot();
+        }
+    }
+
+    /**
+     * 生成上次快照以来的区间统计，本地计数不加锁，也不清零
+     * @return
+     */
+    public synchronized DTaskStat intervalSnapshot() {
+        DTaskStat snapshot = new DTaskStat(taskId, nodeId, swimlaneId, schema, table);
+        snapshot.registeredTime = registeredTime;
+        snapshot.heartbeatTime = heartbeatTime;
+        snapshot.lastCheckedTime = lastCheckedTime;
+        snapshot.lastLoadedDataTime = lastLoadedDataTime;
+        snapshot.lastLoadedSystemTime = lastLoadedSystemTime;
+        snapshot.progress = progress;
+        Recorder local = recorder;
+        if (null != local) {
+            snapshot.insertRow.set(local.drain(Recorder.INSERT));
+            snapshot.updateRow.set(local.drain(Recorder.UPDATE));
+            snapshot.deleteRow.set(local.drain(Recorder.DELETE));
+            snapshot.errorInsertRow.set(local.drain(Recorder.ERROR_INSERT));
+            snapshot.errorUpdateRow.set(local.drain(Recorder.ERROR_UPDATE));
+            snapshot.errorDeleteRow.set(local.drain(Recorder.ERROR_DELETE));
+            snapshot.alertedTimes.set(local.drain(Recorder.ALERTED));
+            LatencyHistogram.Snapshot apply = local.applyLatency.snapshot();
+            if (apply.getCount() > 0) {
+                snapshot.applyLatencyP50 = apply.percentile(50);
+                snapshot.applyLatencyP99 = apply.percentile(99);
+                snapshot.applyLatencyMax = apply.max();
+            }
+            LatencyHistogram.Snapshot delay = local.delay.snapshot();
+            if (delay.getCount() > 0) {
+                snapshot.delayP50 = delay.percentile(50);
+                snapshot.delayP99 = delay.percentile(99);
+                snapshot.delayMax = delay.max();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 本地累计行数，不随区间快照变化，用于指标导出
+     * @return
+     */
+    @JSONField(serialize = false, deserialize = false)
+    public Map<String, Long> getLocalTotals() {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        Recorder local = recorder;
+        totals.put("insert", null != local ? local.counters[Recorder.INSERT].sum() : 0L);
+        totals.put("update", null != local ? local.counters[Recorder.UPDATE].sum() : 0L);
+        totals.put("delete", null != local ? local.counters[Recorder.DELETE].sum() : 0L);
+        totals.put("errorInsert", null != local ? local.counters[Recorder.ERROR_INSERT].sum() : 0L);
+        totals.put("errorUpdate", null != local ? local.counters[Recorder.ERROR_UPDATE].sum() : 0L);
+        totals.put("errorDelete", null != local ? local.counters[Recorder.ERROR_DELETE].sum() : 0L);
+        return totals;
+    }
+
+    /**
+     * 记录单行载入耗时
+     * @param micros 单位微秒
+     * @param rows 行数
+     */
+    public void recordApplyLatency(long micros, long rows) {
+        recorder().applyLatency.record(micros, rows);
+    }
+
+    /**
+     * 记录数据产生到载入完成的延迟
+     * @param millis 单位毫秒
+     */
+    public void recordDelay(long millis) {
+        recorder().delay.record(millis);
+    }
+
+    private Recorder recorder() {
+        Recorder local = recorder;
+        if (null == local) {
+            synchronized (this) {
+                local = recorder;
+                if (null == local) {
+                    local = new Recorder();
+                    recorder = local;
+                }
+            }
+        }
+        return local;
     }
 
     public AtomicBoolean getUpdateStat() {
@@ -196,50 +334,50 @@ public class DTaskStat extends DObject {
         return progress;
     }
 
-    public synchronized void setProgress(String progress) {
+    public void setProgress(String progress) {
         this.progress = progress;
     }
 
     /**
      * incrementInsertRow
      */
-    public synchronized void incrementInsertRow() {
-        insertRow.incrementAndGet();
+    public void incrementInsertRow() {
+        recorder().counters[Recorder.INSERT].increment();
     }
 
     /**
      * incrementUpdateRow
      */
-    public synchronized void incrementUpdateRow() {
-        updateRow.incrementAndGet();
+    public void incrementUpdateRow() {
+        recorder().counters[Recorder.UPDATE].increment();
     }
 
     /**
      * incrementDeleteRow
      */
-    public synchronized void incrementDeleteRow() {
-        deleteRow.incrementAndGet();
+    public void incrementDeleteRow() {
+        recorder().counters[Recorder.DELETE].increment();
     }
 
     /**
      * incrementErrorUpdateRow
      */
-    public synchronized void incrementErrorUpdateRow() {
-        errorUpdateRow.incrementAndGet();
+    public void incrementErrorUpdateRow() {
+        recorder().counters[Recorder.ERROR_UPDATE].increment();
     }
 
     /**
      * incrementErrorInsertRow
      */
-    public synchronized void incrementErrorInsertRow() {
-        errorInsertRow.incrementAndGet();
+    public void incrementErrorInsertRow() {
+        recorder().counters[Recorder.ERROR_INSERT].increment();
     }
 
     /**
      * incrementErrorDeleteRow
      */
-    public synchronized void incrementErrorDeleteRow() {
-        errorDeleteRow.incrementAndGet();
+    public void incrementErrorDeleteRow() {
+        recorder().counters[Recorder.ERROR_DELETE].increment();
     }
 
     /**
@@ -301,7 +439,7 @@ public class DTaskStat extends DObject {
     }
 
 
-    public synchronized void setHeartbeatTime(Date heartbeatTime) {
+    public void setHeartbeatTime(Date heartbeatTime) {
         this.heartbeatTime = heartbeatTime;
     }
 
@@ -309,15 +447,15 @@ public class DTaskStat extends DObject {
         return lastLoadedSystemTime;
     }
 
-    public synchronized void setLastLoadedSystemTime(Date lastLoadedSystemTime) {
+    public void setLastLoadedSystemTime(Date lastLoadedSystemTime) {
         this.lastLoadedSystemTime = lastLoadedSystemTime;
     }
 
     /**
      * incrementAlertedTimes
      */
-    public synchronized void incrementAlertedTimes() {
-        alertedTimes.incrementAndGet();
+    public void incrementAlertedTimes() {
+        recorder().counters[Recorder.ALERTED].increment();
     }
 
     public String getSchema() {
@@ -335,4 +473,36 @@ public class DTaskStat extends DObject {
     public void setTable(String table) {
         this.table = table;
     }
+
+    /**
+     * 本地计数器。LongAdder分散写入热点，区间快照按累计值与上次上报值的差计算，不清零计数器，不会丢失并发写入
+     */
+    private static class Recorder {
+        private static final int INSERT = 0;
+        private static final int UPDATE = 1;
+        private static final int DELETE = 2;
+        private static final int ERROR_UPDATE = 3;
+        private static final int ERROR_INSERT = 4;
+        private static final int ERROR_DELETE = 5;
+        private static final int ALERTED = 6;
+
+        private final LongAdder[] counters = new LongAdder[ALERTED + 1];
+        //上次快照时的累计值，只在快照时访问
+        private final long[] reported = new long[ALERTED + 1];
+        private final LatencyHistogram applyLatency = new LatencyHistogram();
+        private final LatencyHistogram delay = new LatencyHistogram();
+
+        private Recorder() {
+            for (int index = 0; index < counters.length; index++) {
+                counters[index] = new LongAdder();
+            }
+        }
+
+        private long drain(int index) {
+            long sum = counters[index].sum();
+            long delta = sum - reported[index];
+            reported[index] = sum;
+            return delta;
+        }
+    }
 }
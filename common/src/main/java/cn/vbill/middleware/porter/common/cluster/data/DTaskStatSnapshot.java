@@ -0,0 +1,285 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.cluster.data;
+
+import cn.vbill.middleware.porter.common.statistics.StageStat;
+import com.alibaba.fastjson.JSON;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 泳道任务进度快照编解码。
+ * 泳道内所有表的累计进度合并为一个二进制快照，按表名排序后表名只记录与上一张表的差异部分，时间记录与快照时间的差值，
+ * 计数与时间差均为变长整数，泳道内各表相同的阶段统计只记录一次。Base64编码后加HEADER前缀，与JSON格式的旧节点数据区分
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月19日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月19日 10:30
+ */
+public final class DTaskStatSnapshot {
+    public static final String HEADER = "dts1:";
+    //可选字段标记
+    private static final int APPLY_LATENCY = 1;
+    private static final int DELAY = 1 << 1;
+
+    private DTaskStatSnapshot() {
+    }
+
+    /**
+     * 是否为泳道快照
+     * @param data
+     * @return
+     */
+    public static boolean isSnapshot(String data) {
+        return null != data && data.startsWith(HEADER);
+    }
+
+    /**
+     * 编码泳道内各表累计进度，stats需属于同一任务泳道
+     * @param stats
+     * @return
+     * @throws IOException
+     */
+    public static String encode(List<DTaskStat> stats) throws IOException {
+        List<DTaskStat> sorted = new ArrayList<>(stats);
+        sorted.sort((l, r) -> key(l).compareTo(key(r)));
+        DTaskStat first = sorted.get(0);
+        long base = System.currentTimeMillis();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeVarLong(out, base);
+        writeString(out, first.getTaskId());
+        writeString(out, first.getSwimlaneId());
+        writeString(out, first.getNodeId());
+        //泳道内各表相同的统计
+        writeString(out, null != first.getStages() && !first.getStages().isEmpty() ? JSON.toJSONString(first.getStages()) : null);
+        writeString(out, first.getBottleneckStage());
+        writeOptional(out, first.getCpuMillis());
+        writeOptional(out, first.getAllocatedBytes());
+        writeOptional(out, first.getReplicationLag());
+
+        writeVarLong(out, sorted.size());
+        String schema = "";
+        String table = "";
+        String progress = "";
+        for (DTaskStat stat : sorted) {
+            writeDelta(out, schema, stat.getSchema());
+            writeDelta(out, table, stat.getTable());
+            writeDelta(out, progress, stat.getProgress());
+            schema = null != stat.getSchema() ? stat.getSchema() : "";
+            table = null != stat.getTable() ? stat.getTable() : "";
+            progress = null != stat.getProgress() ? stat.getProgress() : "";
+            for (AtomicLong counter : counters(stat)) {
+                writeVarLong(out, zigzag(counter.get()));
+            }
+            writeDate(out, base, stat.getRegisteredTime());
+            writeDate(out, base, stat.getHeartbeatTime());
+            writeDate(out, base, stat.getLastCheckedTime());
+            writeDate(out, base, stat.getLastLoadedDataTime());
+            writeDate(out, base, stat.getLastLoadedSystemTime());
+            int flags = (null != stat.getApplyLatencyP50() ? APPLY_LATENCY : 0) | (null != stat.getDelayP50() ? DELAY : 0);
+            out.writeByte(flags);
+            if ((flags & APPLY_LATENCY) != 0) {
+                writeVarLong(out, zigzag(stat.getApplyLatencyP50()));
+                writeVarLong(out, zigzag(stat.getApplyLatencyP99()));
+                writeVarLong(out, zigzag(stat.getApplyLatencyMax()));
+            }
+            if ((flags & DELAY) != 0) {
+                writeVarLong(out, zigzag(stat.getDelayP50()));
+                writeVarLong(out, zigzag(stat.getDelayP99()));
+                writeVarLong(out, zigzag(stat.getDelayMax()));
+            }
+        }
+        out.flush();
+        return HEADER + Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * 解码泳道快照
+     * @param data
+     * @return 各表累计进度
+     * @throws IOException
+     */
+    public static List<DTaskStat> decode(String data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder()
+                .decode(data.substring(HEADER.length()).trim())));
+        long base = readVarLong(in);
+        String taskId = readString(in);
+        String swimlaneId = readString(in);
+        String nodeId = readString(in);
+        String stagesJson = readString(in);
+        List<StageStat> stages = null != stagesJson ? JSON.parseArray(stagesJson, StageStat.class) : null;
+        String bottleneckStage = readString(in);
+        Long cpuMillis = readOptional(in);
+        Long allocatedBytes = readOptional(in);
+        Long replicationLag = readOptional(in);
+
+        int size = (int) readVarLong(in);
+        List<DTaskStat> stats = new ArrayList<>(size);
+        String schema = "";
+        String table = "";
+        String progress = "";
+        for (int index = 0; index < size; index++) {
+            String statSchema = readDelta(in, schema);
+            String statTable = readDelta(in, table);
+            String statProgress = readDelta(in, progress);
+            schema = null != statSchema ? statSchema : "";
+            table = null != statTable ? statTable : "";
+            progress = null != statProgress ? statProgress : "";
+            DTaskStat stat = new DTaskStat(taskId, nodeId, swimlaneId, statSchema, statTable);
+            stat.setProgress(statProgress);
+            for (AtomicLong counter : counters(stat)) {
+                counter.set(unzigzag(readVarLong(in)));
+            }
+            stat.setRegisteredTime(readDate(in, base));
+            stat.setHeartbeatTime(readDate(in, base));
+            stat.setLastCheckedTime(readDate(in, base));
+            stat.setLastLoadedDataTime(readDate(in, base));
+            stat.setLastLoadedSystemTime(readDate(in, base));
+            int flags = in.readByte();
+            if ((flags & APPLY_LATENCY) != 0) {
+                stat.setApplyLatencyP50(unzigzag(readVarLong(in)));
+                stat.setApplyLatencyP99(unzigzag(readVarLong(in)));
+                stat.setApplyLatencyMax(unzigzag(readVarLong(in)));
+            }
+            if ((flags & DELAY) != 0) {
+                stat.setDelayP50(unzigzag(readVarLong(in)));
+                stat.setDelayP99(unzigzag(readVarLong(in)));
+                stat.setDelayMax(unzigzag(readVarLong(in)));
+            }
+            stat.setStages(stages);
+            stat.setBottleneckStage(bottleneckStage);
+            stat.setCpuMillis(cpuMillis);
+            stat.setAllocatedBytes(allocatedBytes);
+            stat.setReplicationLag(replicationLag);
+            stats.add(stat);
+        }
+        return stats;
+    }
+
+    /**
+     * 表在泳道内的唯一标识
+     * @param stat
+     * @return
+     */
+    public static String key(DTaskStat stat) {
+        return stat.getSchema() + "." + stat.getTable();
+    }
+
+    private static AtomicLong[] counters(DTaskStat stat) {
+        return new AtomicLong[] {stat.getInsertRow(), stat.getUpdateRow(), stat.getDeleteRow(), stat.getErrorInsertRow(),
+            stat.getErrorUpdateRow(), stat.getErrorDeleteRow(), stat.getAlertedTimes()};
+    }
+
+    private static void writeDelta(DataOutputStream out, String previous, String value) throws IOException {
+        int shared = 0;
+        if (null != value) {
+            int limit = Math.min(previous.length(), value.length());
+            while (shared < limit && previous.charAt(shared) == value.charAt(shared)) {
+                shared++;
+            }
+        }
+        writeVarLong(out, shared);
+        writeString(out, null != value ? value.substring(shared) : null);
+    }
+
+    private static String readDelta(DataInputStream in, String previous) throws IOException {
+        int shared = (int) readVarLong(in);
+        String suffix = readString(in);
+        return null != suffix ? previous.substring(0, shared) + suffix : null;
+    }
+
+    private static void writeDate(DataOutputStream out, long base, Date date) throws IOException {
+        writeOptional(out, null != date ? base - date.getTime() : null);
+    }
+
+    private static Date readDate(DataInputStream in, long base) throws IOException {
+        Long delta = readOptional(in);
+        return null != delta ? new Date(base - delta) : null;
+    }
+
+    //0表示空值，Long.MIN_VALUE编码后加1溢出为0，按Long.MIN_VALUE + 1记录
+    private static void writeOptional(DataOutputStream out, Long value) throws IOException {
+        writeVarLong(out, null != value ? zigzag(Math.max(value, Long.MIN_VALUE + 1)) + 1 : 0);
+    }
+
+    private static Long readOptional(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        return value == 0 ? null : unzigzag(value - 1);
+    }
+
+    //长度加1，0表示空值
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (null == value) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}
@@ -26,6 +26,7 @@ import cn.vbill.middleware.porter.common.cluster.ClusterMonitor;
 import cn.vbill.middleware.porter.common.cluster.ClusterProvider;
 import cn.vbill.middleware.porter.common.cluster.command.ClusterCommand;
 import cn.vbill.middleware.porter.common.cluster.command.ConfigPushCommand;
+import cn.vbill.middleware.porter.common.cluster.command.NodeLoadQueryCommand;
 import cn.vbill.middleware.porter.common.cluster.command.NodeOrderPushCommand;
 import cn.vbill.middleware.porter.common.cluster.command.NodeRegisterCommand;
 import cn.vbill.middleware.porter.common.cluster.command.ShutdownCommand;
@@ -40,6 +41,7 @@ import cn.vbill.middleware.porter.common.cluster.command.TaskStatQueryCommand;
 import cn.vbill.middleware.porter.common.cluster.command.TaskStopCommand;
 import cn.vbill.middleware.porter.common.cluster.command.TaskStoppedByErrorCommand;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.ConfigPush;
+import cn.vbill.middleware.porter.common.cluster.command.broadcast.NodeLoadQuery;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.NodeOrderPush;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.NodeRegister;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.Shutdown;
@@ -196,6 +198,10 @@ public abstract class AbstractClusterProvider<C extends Client> implements Clust
             if (listener instanceof ConfigPush && command instanceof ConfigPushCommand) {
                 ((ConfigPush) listener).push((ConfigPushCommand) command);
             }
+
+            if (listener instanceof NodeLoadQuery && command instanceof NodeLoadQueryCommand) {
+                ((NodeLoadQuery) listener).queryNodeLoad((NodeLoadQueryCommand) command);
+            }
         }
     }
 
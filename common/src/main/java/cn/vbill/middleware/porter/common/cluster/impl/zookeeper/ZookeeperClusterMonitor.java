@@ -22,28 +22,54 @@ import cn.vbill.middleware.porter.common.cluster.impl.AbstractClusterMonitor;
 import cn.vbill.middleware.porter.common.client.Client;
 import cn.vbill.middleware.porter.common.client.impl.ZookeeperClient;
 import cn.vbill.middleware.porter.common.cluster.ClusterListener;
+import cn.vbill.middleware.porter.common.cluster.event.ClusterEvent;
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * zookeeper节点监听。
+ * 本地保存已监听路径的子节点集合，子节点变化时只与变化路径的本地集合比较，只遍历新增节点的子树；
+ * 监听器回调由单线程有界队列按事件顺序派发，队列满时阻塞zookeeper事件线程
+ *
  * @author: zhangkewei[zhang_kw@suixingpay.com]
  * @date: 2017年12月14日 18:22
  * @version: V1.0
  * @review: zhangkewei[zhang_kw@suixingpay.com]/2017年12月14日 18:22
  */
 public class ZookeeperClusterMonitor extends AbstractClusterMonitor implements Watcher {
+    //事件派发队列长度
+    private static final int DISPATCH_QUEUE_SIZE = 10000;
+
     private ZookeeperClient client;
-    private final Map<String, List<String>> nodeChildren = new ConcurrentHashMap<>();
+    //已监听路径的子节点名称
+    private final Map<String, Set<String>> nodeChildren = new ConcurrentHashMap<>();
+    //监听器回调线程，保证事件顺序
+    private final ThreadPoolExecutor dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(DISPATCH_QUEUE_SIZE), new DefaultNamedThreadFactory("ZKEventDispatcher"), (r, executor) -> {
+                if (!executor.isShutdown()) {
+                    try {
+                        executor.getQueue().put(r);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
 
     private final CountDownLatch ready = new CountDownLatch(1);
 
@@ -109,6 +135,7 @@ public class ZookeeperClusterMonitor extends AbstractClusterMonitor implements W
             if (eventType == Event.EventType.None && state == Event.KeeperState.SyncConnected && path == null) {
                 ready.countDown();
             } else if (eventType == Event.EventType.NodeDeleted) {
+                forget(path);
                 onEvent(new ZookeeperClusterEvent(EventType.OFFLINE, null, path));
             } else if (eventType == Event.EventType.NodeCreated) {
                 onEvent(new ZookeeperClusterEvent(EventType.ONLINE, client.getData(path).getLeft(), path));
@@ -122,37 +149,62 @@ public class ZookeeperClusterMonitor extends AbstractClusterMonitor implements W
         }
     }
 
+    @Override
+    public void onEvent(ClusterEvent e) {
+        dispatcher.execute(() -> {
+            try {
+                super.onEvent(e);
+            } catch (Throwable t) {
+                LOGGER.warn("zookeeper event dispatch", t);
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        dispatcher.shutdown();
+    }
+
     /**
      * triggerTreeEvent
      *
      * @param path
      */
     private void triggerTreeEvent(String path) {
-        //构造子节点集合
-        List<String> localChildren = nodeChildren.computeIfAbsent(path, s -> new ArrayList<>());
-
-        //create a watch event:NodeChildrenChanged
-        List<String> remoteChildren = client.getChildren(path);
-
-        //判断是否新节点创建
-        for (String child : remoteChildren) {
-            String childFullPath = path + "/" + child;
-
-            //new node
-            if (!localChildren.contains(childFullPath)) {
-                triggerTreeEvent(childFullPath);
-                //only for trigger watcher "getChildren"
-                client.getChildren(childFullPath);
-                localChildren.add(childFullPath);
-                onEvent(new ZookeeperClusterEvent(EventType.ONLINE, client.getData(childFullPath).getLeft(), childFullPath));
+        Deque<String> paths = new ArrayDeque<>();
+        paths.push(path);
+        while (!paths.isEmpty()) {
+            String current = paths.pop();
+            //构造子节点集合
+            Set<String> localChildren = nodeChildren.computeIfAbsent(current, s -> ConcurrentHashMap.newKeySet());
+
+            //create a watch event:NodeChildrenChanged
+            List<String> remoteChildren = client.getChildren(current);
+
+            //判断是否新节点创建
+            for (String child : remoteChildren) {
+                //new node
+                if (localChildren.add(child)) {
+                    String childFullPath = current + "/" + child;
+                    paths.push(childFullPath);
+                    onEvent(new ZookeeperClusterEvent(EventType.ONLINE, client.getData(childFullPath).getLeft(), childFullPath));
+                }
+            }
+
+            //删除旧节点
+            if (localChildren.size() > remoteChildren.size()) {
+                localChildren.retainAll(new HashSet<>(remoteChildren));
             }
         }
+    }
 
-        //删除旧节点
-        List<String> needRemoves = localChildren.stream().filter(s -> {
-            String remotePath = s.replace(path + "/", "");
-            return !remoteChildren.contains(remotePath);
-        }).collect(Collectors.toList());
-        localChildren.removeAll(needRemoves);
+    /**
+     * 节点删除后清除本地子树，节点重建时重新遍历
+     * @param path
+     */
+    private void forget(String path) {
+        String prefix = path + "/";
+        nodeChildren.keySet().removeIf(p -> p.equals(path) || p.startsWith(prefix));
     }
 }
@@ -109,4 +109,29 @@ public class DataConsumerConfig {
     @Getter
     @Setter
     private String offset;
+
+    //预读批次数量,0不预读
+    @Getter
+    @Setter
+    private int prefetchBatches = 0;
+
+    //自适应单次提取数量下限
+    @Getter
+    @Setter
+    private int minFetchSize = 100;
+
+    //自适应单次提取数量上限,0不开启自适应
+    @Getter
+    @Setter
+    private int maxFetchSize = 0;
+
+    //源端心跳表 schema.table,通过metaSource写入,为空不开启延迟探测
+    @Getter
+    @Setter
+    private String heartbeatTable;
+
+    //心跳写入间隔,单位秒
+    @Getter
+    @Setter
+    private long heartbeatInterval = 10;
 }
\ No newline at end of file
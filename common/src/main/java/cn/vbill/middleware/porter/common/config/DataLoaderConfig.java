@@ -46,4 +46,7 @@ public class DataLoaderConfig {
 
     //新增更新转插入策略开关
     @Getter @Setter private boolean insertOnUpdateError = true;
+
+    //目标端消费位点表,批次数据与消费位点在同一事务提交,为空不开启
+    @Getter @Setter private String checkpointTable;
 }
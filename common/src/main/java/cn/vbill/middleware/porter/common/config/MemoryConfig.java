@@ -0,0 +1,40 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 内存预算配置。
+ * 按估算字节数限制各泳道在内存中流转的数据量，预算用尽时SELECT阶段暂停提取。
+ * 开启行回收池后，批次载入完成的ETLRow、ETLColumn由EXTRACT阶段复用
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月20日 16:40
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月20日 16:40
+ */
+public class MemoryConfig {
+    //节点预算占最大堆内存的比例，0不限制
+    @Getter @Setter private double budgetRatio = 0;
+    //单个泳道预算，单位MB，0不限制
+    @Getter @Setter private long swimlaneBudget = 0;
+    //单个泳道回收池缓存的行数上限，0不回收
+    @Getter @Setter private int rowPool = 0;
+}
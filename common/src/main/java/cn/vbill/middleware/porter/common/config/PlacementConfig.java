@@ -0,0 +1,42 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 集群任务负载均衡抢占配置。
+ * 开启后节点按心跳上报的CPU、堆内存、泳道数与吞吐量综合负载排序，负载越高抢占任务前等待越久，
+ * 负载明显高于集群平均水平时主动释放泳道交由其他节点接管
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月19日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月19日 10:30
+ */
+public class PlacementConfig {
+    //是否开启负载均衡抢占,仅集群模式生效
+    @Getter @Setter private boolean loadAware = false;
+    //负载排名每靠后一位抢占任务前等待的秒数
+    @Getter @Setter private int claimDelay = 5;
+    //节点负载超过集群平均负载的倍数时释放泳道，小于等于0时不释放
+    @Getter @Setter private double shedRatio = 1.5;
+    //释放泳道的最小间隔，释放的任务在该时间内不会被本节点重新抢占，单位秒
+    @Getter @Setter private int shedCooldown = 300;
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 阶段调度配置。
+ * 开启后各泳道的SELECT、EXTRACT、TRANSFORM、LOAD、DB_CHECK阶段不再独占线程，由节点共享的有界线程池轮流执行，
+ * EXTRACT、TRANSFORM的并行计算提交到节点共享的计算线程池。
+ * 泳道持续无数据超过休眠时间后各阶段进入休眠，释放阶段线程，按探测间隔低频提取，提取到数据时唤醒
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月20日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月20日 10:30
+ */
+public class SchedulerConfig {
+    //是否由节点共享线程池执行阶段逻辑
+    @Getter @Setter private boolean shared = false;
+    //阶段调度线程数，小于1时为CPU核数
+    @Getter @Setter private int threads = 0;
+    //EXTRACT、TRANSFORM计算线程数，小于1时为CPU核数
+    @Getter @Setter private int computeThreads = 0;
+    //阶段单次连续执行的最长时间，超出后让出线程排到队尾，单位毫秒
+    @Getter @Setter private long slice = 100;
+    //泳道持续无数据多久后休眠，单位秒，0不休眠
+    @Getter @Setter private long hibernateIdle = 0;
+    //休眠时的探测间隔，单位毫秒
+    @Getter @Setter private long probeInterval = 5000;
+}
@@ -17,6 +17,7 @@
 
 package cn.vbill.middleware.porter.common.config;
 
+import cn.vbill.middleware.porter.common.config.source.BinlogFileConfig;
 import cn.vbill.middleware.porter.common.config.source.CanalConfig;
 import cn.vbill.middleware.porter.common.config.source.EmailConfig;
 import cn.vbill.middleware.porter.common.config.source.FileOperationConfig;
@@ -25,6 +26,7 @@ import cn.vbill.middleware.porter.common.config.source.KafkaConfig;
 import cn.vbill.middleware.porter.common.config.source.KafkaProduceConfig;
 import cn.vbill.middleware.porter.common.config.source.KuduConfig;
 import cn.vbill.middleware.porter.common.config.source.NameSourceConfig;
+import cn.vbill.middleware.porter.common.config.source.OggFileConfig;
 import cn.vbill.middleware.porter.common.config.source.ZookeeperConfig;
 import cn.vbill.middleware.porter.common.dic.SourceType;
 import cn.vbill.middleware.porter.common.exception.ConfigParseException;
@@ -145,6 +147,12 @@ public abstract class SourceConfig implements SwamlaneSupport {
                     case FILE:
                         config = (T) new FileOperationConfig();
                         break;
+                    case BINLOG_FILE:
+                        config = (T) new BinlogFileConfig();
+                        break;
+                    case OGG_FILE:
+                        config = (T) new OggFileConfig();
+                        break;
                     default:
                         break;
                 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 溢出配置。
+ * 开启后SELECT阶段输出缓冲写满或内存预算用尽时，提取的数据写入本地段文件，下游恢复后按顺序回放，
+ * 下游载入缓慢或目标端不可用时消费源仍能持续提取
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月21日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月21日 10:30
+ */
+public class SpillConfig {
+    //是否开启溢出
+    @Getter @Setter private boolean enabled = false;
+    //段文件目录，为空时为系统临时目录下的porter-spill
+    @Getter @Setter private String dir;
+    //单个段文件大小，单位MB
+    @Getter @Setter private int segmentSize = 64;
+    //单个泳道溢出上限，单位MB
+    @Getter @Setter private long maxSize = 1024;
+}
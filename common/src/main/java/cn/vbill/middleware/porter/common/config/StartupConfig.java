@@ -0,0 +1,41 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 任务启动并发配置。
+ * 泳道启动在有界线程池中并发执行，连接源端、连接目标端、集群操作分别限制同时进行的数量
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月19日 16:10
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月19日 16:10
+ */
+public class StartupConfig {
+    //同时启动的泳道数量，1时逐个启动
+    @Getter @Setter private int parallelism = 8;
+    //同时连接源端的泳道数量
+    @Getter @Setter private int sourceConcurrency = 4;
+    //同时连接目标端的泳道数量
+    @Getter @Setter private int targetConcurrency = 4;
+    //同时执行集群操作(注册、查询状态与同步点)的泳道数量
+    @Getter @Setter private int clusterConcurrency = 8;
+}
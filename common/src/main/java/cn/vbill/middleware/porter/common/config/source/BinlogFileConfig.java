@@ -0,0 +1,69 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.config.source;
+
+import cn.vbill.middleware.porter.common.config.SourceConfig;
+import cn.vbill.middleware.porter.common.dic.SourceType;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.Charset;
+
+/**
+ * 本地binlog文件消费源
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月06日 15:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月06日 15:20
+ */
+public class BinlogFileConfig extends SourceConfig {
+    //binlog文件目录
+    @Setter @Getter private String directory;
+    //binlog文件名正则,默认匹配mysql-bin.000001格式
+    @Setter @Getter private String filePattern;
+    //字符串列编码
+    @Setter @Getter private String charset = "UTF-8";
+    //单次读取行数,按整事务读取可能略多
+    @Setter @Getter private int oncePollSize = 1000;
+
+    public BinlogFileConfig() {
+        sourceType = SourceType.BINLOG_FILE;
+    }
+
+    @Override
+    protected void childStuff() {
+
+    }
+
+    @Override
+    protected String[] childStuffColumns() {
+        return new String[0];
+    }
+
+    @Override
+    public String getSwimlaneId() {
+        return directory;
+    }
+
+    @Override
+    protected boolean doCheck() {
+        return !StringUtils.isBlank(directory) && Charset.isSupported(charset) && oncePollSize > 0;
+    }
+}
@@ -49,6 +49,8 @@ public class CanalConfig extends SourceConfig {
     @Setter @Getter private String filter = "";
     @Setter @Getter private int oncePollSize = 1000;
     @Setter @Getter private int pollTimeOut  = -1;
+    //同一数据库地址的任务共享binlog读取器,只建立一个binlog dump连接
+    @Setter @Getter private boolean shared = false;
 
     public CanalConfig() {
         sourceType = SourceType.CANAL;
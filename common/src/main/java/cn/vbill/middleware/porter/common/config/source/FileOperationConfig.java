@@ -32,6 +32,12 @@ import java.util.Map;
  */
 public class FileOperationConfig extends SourceConfig {
     @Setter @Getter private String home = System.getProperty("user.home") + "/.porter";
+    //消费位点日志预分配大小,单位字节
+    @Setter @Getter private long positionLogSize = 16L * 1024 * 1024;
+    //消费位点日志单条记录大小,单位字节
+    @Setter @Getter private int positionRecordSize = 512;
+    //消费位点日志刷盘间隔,单位毫秒,0每次写入后刷盘
+    @Setter @Getter private long positionFlushInterval = 1000L;
     public FileOperationConfig() {
         sourceType = SourceType.FILE;
     }
@@ -40,6 +40,12 @@ public class KafkaProduceConfig extends SourceConfig {
     @Setter @Getter private String topic;
     //不输入
     @Setter @Getter private boolean transaction = false;
+    //源端kafka消费进度与数据在同一事务提交,源端需为手动提交的kafka
+    @Setter @Getter private boolean exactlyOnce = false;
+    //exactlyOnce模式事务提交间隔,单位毫秒,0每个批次提交一次
+    @Setter @Getter private long transactionCommitInterval = 0;
+    //事务ID,exactlyOnce模式每个节点应配置固定且唯一的值,重启后隔离旧生产者的未完成事务
+    @Setter @Getter private String transactionalId;
     //是否格式化为ogg json格式
     @Setter @Getter private boolean oggJson = true;
     //重试次数
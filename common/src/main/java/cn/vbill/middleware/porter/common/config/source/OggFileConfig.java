@@ -0,0 +1,68 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.config.source;
+
+import cn.vbill.middleware.porter.common.config.SourceConfig;
+import cn.vbill.middleware.porter.common.dic.SourceType;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.Charset;
+
+/**
+ * 按行存储的OGG JSON导出文件消费源
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月08日 10:41
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月08日 10:41
+ */
+public class OggFileConfig extends SourceConfig {
+    //文件目录
+    @Setter @Getter private String directory;
+    //文件名正则,按文件名顺序消费
+    @Setter @Getter private String filePattern = ".+\\.json";
+    @Setter @Getter private String charset = "UTF-8";
+    //单次读取行数
+    @Setter @Getter private int oncePollSize = 1000;
+
+    public OggFileConfig() {
+        sourceType = SourceType.OGG_FILE;
+    }
+
+    @Override
+    protected void childStuff() {
+
+    }
+
+    @Override
+    protected String[] childStuffColumns() {
+        return new String[0];
+    }
+
+    @Override
+    public String getSwimlaneId() {
+        return directory;
+    }
+
+    @Override
+    protected boolean doCheck() {
+        return !StringUtils.isBlank(directory) && !StringUtils.isBlank(filePattern) && Charset.isSupported(charset) && oncePollSize > 0;
+    }
+}
@@ -35,6 +35,10 @@ public class ZookeeperConfig extends SourceConfig {
     @Setter @Getter private int sessionTimeout = 1000 * 60 * 10;
     @Setter @Getter private int spinningTime = sessionTimeout;
     @Setter @Getter private int spinningPeer = 200;
+    //统计信息批量上传间隔,单位秒,0逐条上传
+    @Setter @Getter private long statisticBatchInterval = 0;
+    //单批统计信息最大条数,达到后立即上传
+    @Setter @Getter private int statisticBatchSize = 1000;
 
     public  ZookeeperConfig() {
         sourceType = SourceType.ZOOKEEPER;
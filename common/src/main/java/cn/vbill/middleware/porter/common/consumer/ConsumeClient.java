@@ -56,6 +56,39 @@ public interface ConsumeClient extends Client {
      */
     void initializePosition(String taskId, String swimlaneId, String position) throws TaskStopTriggerException;
 
+    /**
+     * 初始化消费同步点
+     *
+     * @param taskId
+     * @param swimlaneId
+     * @param position
+     * @param exact 位点为目标端已提交的精确位点，不需要回退重复消费
+     * @throws TaskStopTriggerException
+     */
+    default void initializePosition(String taskId, String swimlaneId, String position, boolean exact) throws TaskStopTriggerException {
+        initializePosition(taskId, swimlaneId, position);
+    }
+
+    /**
+     * 消费进度由载入端随数据事务提交时，消费源不再自行提交
+     *
+     * @param external
+     */
+    default void setOffsetsCommittedExternally(boolean external) {
+    }
+
+    /**
+     * 查询消费源自身已提交的消费进度
+     *
+     * @param swimlaneId
+     * @param position 集群中保存的同步点
+     * @return 不支持或不存在时返回null
+     * @throws TaskStopTriggerException
+     */
+    default String getCommittedPosition(String swimlaneId, String position) throws TaskStopTriggerException {
+        return null;
+    }
+
     /**
      * 获取消费泳道编号
      *
@@ -73,6 +106,23 @@ public interface ConsumeClient extends Client {
      */
     <F, O> List<F> fetch(FetchCallback<F, O> callback) throws TaskStopTriggerException, InterruptedException;
 
+    /**
+     * 调整单次提取的消息数量，不支持动态调整的消费源忽略
+     *
+     * @param fetchSize
+     */
+    default void setFetchSize(int fetchSize) {
+    }
+
+    /**
+     * 当前单次提取的消息数量
+     *
+     * @return 不支持动态调整时返回-1
+     */
+    default int getFetchSize() {
+        return -1;
+    }
+
     /**
      * 回调函数
      *
@@ -19,13 +19,17 @@ package cn.vbill.middleware.porter.common.consumer;
 
 import com.alibaba.fastjson.JSONObject;
 
+import java.io.Serializable;
+
 /**
  * @author: zhangkewei[zhang_kw@suixingpay.com]
  * @date: 2018年03月17日 19:52
  * @version: V1.0
  * @review: zhangkewei[zhang_kw@suixingpay.com]/2018年03月17日 19:52
  */
-public abstract class Position {
+public abstract class Position implements Serializable {
+    //溢出到磁盘的批次随位点一起序列化，固定版本号避免重新编译后无法回放
+    private static final long serialVersionUID = 1L;
 
     /**
      * render
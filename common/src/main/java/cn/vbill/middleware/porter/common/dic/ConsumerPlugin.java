@@ -44,7 +44,17 @@ public enum ConsumerPlugin {
     /**
      * KAFKA
      */
-    KAFKA("KafkaFetch", "Kafka");
+    KAFKA("KafkaFetch", "Kafka"),
+
+    /**
+     * 本地binlog文件
+     */
+    BINLOG_FILE("BinlogFileFetch", "BinlogFile"),
+
+    /**
+     * OGG JSON导出文件
+     */
+    OGG_FILE("OggFileFetch", "OggFile");
 
     /**
      * LINKMAP
@@ -53,6 +63,8 @@ public enum ConsumerPlugin {
     static {
         LINKMAP.put("CANAL", CANAL.name);
         LINKMAP.put("KAFKA", KAFKA.name);
+        LINKMAP.put("BINLOG_FILE", BINLOG_FILE.name);
+        LINKMAP.put("OGG_FILE", OGG_FILE.name);
     }
 
     @Getter
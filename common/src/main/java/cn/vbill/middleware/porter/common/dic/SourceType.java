@@ -80,7 +80,17 @@ public enum SourceType {
      * kafkaProduce
      */
     KAFKA_PRODUCE("KAFKA_PRODUCE", "kafkaProduce", 1),
-    FILE("FILE", "file", 1);
+    FILE("FILE", "file", 1),
+
+    /**
+     * 本地binlog文件
+     */
+    BINLOG_FILE("BINLOG_FILE", "binlogFile", 1),
+
+    /**
+     * OGG JSON导出文件
+     */
+    OGG_FILE("OGG_FILE", "oggFile", 1);
 
     /**
      * LINKMAP
@@ -126,6 +136,12 @@ public enum SourceType {
         if (FILE.state == 1) {
             LINKMAP.put(FILE.code, FILE.name);
         }
+        if (BINLOG_FILE.state == 1) {
+            LINKMAP.put(BINLOG_FILE.code, BINLOG_FILE.name);
+        }
+        if (OGG_FILE.state == 1) {
+            LINKMAP.put(OGG_FILE.code, OGG_FILE.name);
+        }
     }
 
     @Getter
@@ -0,0 +1,181 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时分布直方图。
+ * 按2的幂分段，每段再等分16个子桶，相对误差不超过1/16；记录与区间快照均无锁，快照按桶原子取出并清零，计数不会丢失
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月14日 10:18
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月14日 10:18
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    //可记录的最大值，超出部分计入最后一个桶
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * @param value
+     */
+    public void record(long value) {
+        counts.incrementAndGet(index(value));
+        sum.addAndGet(value);
+    }
+
+    /**
+     * 记录count次相同耗时
+     * @param value
+     * @param count
+     */
+    public void record(long value, long count) {
+        if (count > 0) {
+            counts.addAndGet(index(value), count);
+            sum.addAndGet(value * count);
+        }
+    }
+
+    /**
+     * 取出上次快照以来的分布并清零
+     * @return
+     */
+    public Snapshot snapshot() {
+        long[] values = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            if (counts.get(index) != 0) {
+                values[index] = counts.getAndSet(index, 0);
+                total += values[index];
+            }
+        }
+        return new Snapshot(values, total, sum.getAndSet(0));
+    }
+
+    /**
+     * 读取累计分布，不清零。用于指标导出等只读不取的场景
+     * @return
+     */
+    public Snapshot peek() {
+        long[] values = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            values[index] = counts.get(index);
+            total += values[index];
+        }
+        return new Snapshot(values, total, sum.get());
+    }
+
+    private static int index(long value) {
+        long bounded = Math.min(Math.max(value, 0), MAX_VALUE);
+        if (bounded < SUB_BUCKET_COUNT << 1) {
+            return (int) bounded;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(bounded) - SUB_BUCKET_BITS;
+        return (SUB_BUCKET_COUNT << 1) + (shift - 1) * SUB_BUCKET_COUNT + (int) ((bounded >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * 桶内最大值
+     * @param index
+     * @return
+     */
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKET_COUNT << 1) {
+            return index;
+        }
+        int offset = index - (SUB_BUCKET_COUNT << 1);
+        int shift = offset / SUB_BUCKET_COUNT + 1;
+        long subBucket = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * 区间分布快照
+     */
+    public static class Snapshot {
+        private final long[] values;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(long[] values, long count, long sum) {
+            this.values = values;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * 不超过value的记录数，只计入桶内最大值不超过value的桶，value落在桶内时该桶不计入
+         * @param value
+         * @return
+         */
+        public long countAtOrBelow(long value) {
+            long total = 0;
+            int last = Math.min(index(value), values.length - 1);
+            //超出MAX_VALUE的记录计入最后一个桶
+            if (value < MAX_VALUE && highestValue(last) > value) {
+                last--;
+            }
+            for (int index = 0; index <= last; index++) {
+                total += values[index];
+            }
+            return total;
+        }
+
+        /**
+         * 百分位耗时，没有记录时返回0
+         * @param percentile 0-100
+         * @return
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+            long seen = 0;
+            for (int index = 0; index < values.length; index++) {
+                seen += values[index];
+                if (seen >= rank) {
+                    return highestValue(index);
+                }
+            }
+            return highestValue(values.length - 1);
+        }
+
+        public long max() {
+            return percentile(100);
+        }
+    }
+}
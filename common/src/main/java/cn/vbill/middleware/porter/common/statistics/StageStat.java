@@ -0,0 +1,50 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.statistics;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 任务阶段区间运行统计
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月15日 09:46
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月15日 09:46
+ */
+public class StageStat {
+    //阶段名称
+    @Setter @Getter private String stage;
+    //工作线程处理耗时合计
+    @Setter @Getter private long busyMillis;
+    //工作线程空闲耗时合计，含等待上游数据与等待下游缓冲
+    @Setter @Getter private long idleMillis;
+    //处理耗时占比 0-1
+    @Setter @Getter private double utilization;
+    //取入批次数
+    @Setter @Getter private long itemsIn;
+    //输出批次数
+    @Setter @Getter private long itemsOut;
+    //取入时上游缓冲平均占用比例，没有上游缓冲时为-1
+    @Setter @Getter private double inputUsage = -1;
+    //阶段线程CPU耗时
+    @Setter @Getter private long cpuMillis;
+    //阶段线程堆内存分配字节数
+    @Setter @Getter private long allocatedBytes;
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.statistics;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.annotation.JSONField;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 批量统计信息。
+ * 多条统计信息(日志、TPS指标)合并为一个JSON数组，GZIP压缩后Base64编码放入data，作为一个zookeeper节点或一条kafka消息上传。
+ * 接收端按category识别批量包，解码后按每条记录自身的category分别处理
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月18日 15:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月18日 15:20
+ */
+public class StatisticBatch extends StatisticData {
+    @JSONField(serialize = false, deserialize = false)
+    public static final String NAME = "batch";
+
+    //记录条数
+    @Setter @Getter private int count;
+    //压缩编码后的记录
+    @Setter @Getter private String data;
+
+    public StatisticBatch() {
+        setCategory(NAME);
+    }
+
+    public StatisticBatch(String nodeId, List<StatisticData> records) throws IOException {
+        this();
+        setNodeId(nodeId);
+        JSONArray array = new JSONArray(records.size());
+        for (StatisticData record : records) {
+            //按各统计类型自身的JSON格式(如日期格式)序列化
+            array.add(JSONObject.parseObject(record.toString()));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(array.toJSONString().getBytes(StandardCharsets.UTF_8));
+        }
+        this.count = records.size();
+        this.data = Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * 解码批量包中的记录
+     * @return 每条统计信息的JSON对象
+     * @throws IOException
+     */
+    public List<JSONObject> records() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(data)))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = gzip.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        JSONArray array = JSONArray.parseArray(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        List<JSONObject> records = new ArrayList<>(array.size());
+        for (int index = 0; index < array.size(); index++) {
+            records.add(array.getJSONObject(index));
+        }
+        return records;
+    }
+
+    @Override
+    @JSONField(serialize = false, deserialize = false)
+    protected String getSubId() {
+        return NAME;
+    }
+}
@@ -56,6 +56,10 @@ public class TaskPerformance extends StatisticData {
     @Setter @Getter private Long errorDeleteRow = 0L;
     //告警次数
     @Setter @Getter private  Long alertedTimes = 0L;
+    //单行载入耗时P99，单位微秒
+    @Setter @Getter private Long applyLatencyP99;
+    //数据产生到载入完成的延迟P99，单位毫秒
+    @Setter @Getter private Long delayP99;
     //统计上报时间
     @JSONField(format = "yyyyMMddHHmm")
     @Setter @Getter private Date time;
@@ -77,6 +81,8 @@ public class TaskPerformance extends StatisticData {
         this.errorUpdateRow = stat.getErrorUpdateRow().get();
         this.errorDeleteRow = stat.getErrorDeleteRow().get();
         this.alertedTimes = stat.getAlertedTimes().get();
+        this.applyLatencyP99 = stat.getApplyLatencyP99();
+        this.delayP99 = stat.getDelayP99();
         this.time = new Date();
     }
 
@@ -0,0 +1,94 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.client.impl.binlog;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * binlog/目录下是binlog_checksum=CRC32、binlog_row_metadata=FULL的两个文件:
+ * mysql-bin.000001 insert两行、建表DDL、update一行，以ROTATE_EVENT切到mysql-bin.000002；mysql-bin.000002 delete一行
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月06日 15:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月06日 15:20
+ */
+public class BinlogFileReaderTest {
+
+    private BinlogFileReader newReader() throws URISyntaxException {
+        return new BinlogFileReader(new File(getClass().getResource("/binlog").toURI()), null, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void readAll() throws Exception {
+        try (BinlogFileReader reader = newReader()) {
+            List<BinlogRow> inserts = reader.nextTransaction();
+            Assert.assertEquals(2, inserts.size());
+            BinlogRow first = inserts.get(0);
+            Assert.assertEquals("test", first.getSchema());
+            Assert.assertEquals("order", first.getTable());
+            Assert.assertEquals(BinlogRow.INSERT, first.getType());
+            Assert.assertEquals("[id]", first.getPrimaryKeys().toString());
+            Assert.assertEquals("1", first.getAfter().get("id"));
+            Assert.assertEquals("张三", first.getAfter().get("name"));
+            Assert.assertEquals("12.34", first.getAfter().get("amount"));
+            Assert.assertEquals("2019-03-06 15:20:01", first.getAfter().get("created"));
+            Assert.assertEquals("200", first.getAfter().get("flag"));
+            Assert.assertEquals("hello", first.getAfter().get("note"));
+            Assert.assertEquals("2019-03-06", first.getAfter().get("d"));
+            Assert.assertEquals("-5.50", inserts.get(1).getAfter().get("amount"));
+            Assert.assertTrue(inserts.get(1).getAfter().containsKey("note"));
+            Assert.assertNull(inserts.get(1).getAfter().get("note"));
+
+            List<BinlogRow> updates = reader.nextTransaction();
+            Assert.assertEquals(1, updates.size());
+            Assert.assertEquals(BinlogRow.UPDATE, updates.get(0).getType());
+            Assert.assertEquals("张三", updates.get(0).getBefore().get("name"));
+            Assert.assertEquals("zhang", updates.get(0).getAfter().get("name"));
+            Assert.assertEquals("mysql-bin.000001", updates.get(0).getLogfileName());
+
+            List<BinlogRow> deletes = reader.nextTransaction();
+            Assert.assertEquals(1, deletes.size());
+            Assert.assertEquals(BinlogRow.DELETE, deletes.get(0).getType());
+            Assert.assertEquals("2", deletes.get(0).getBefore().get("id"));
+            Assert.assertEquals("mysql-bin.000002", deletes.get(0).getLogfileName());
+
+            Assert.assertTrue(reader.nextTransaction().isEmpty());
+        }
+    }
+
+    @Test
+    public void resumeFromPosition() throws Exception {
+        long offset;
+        try (BinlogFileReader reader = newReader()) {
+            offset = reader.nextTransaction().get(0).getLogfileOffset();
+        }
+        try (BinlogFileReader reader = newReader()) {
+            reader.seek("mysql-bin.000001", offset);
+            List<BinlogRow> rows = reader.nextTransaction();
+            Assert.assertEquals(1, rows.size());
+            Assert.assertEquals(BinlogRow.UPDATE, rows.get(0).getType());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.client.impl.file;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+/**
+ * 记录定长64字节，第n条记录位于(n-1)*64，记录头18字节后依次为key、value
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月22日 16:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月22日 16:20
+ */
+public class PositionLogTest {
+    private static final int RECORD_SIZE = 64;
+    private static final int HEADER_SIZE = 18;
+    private File directory;
+    private File file;
+    private PositionLog log;
+
+    @Before
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("positionLog").toFile();
+        file = new File(directory, "position.log");
+    }
+
+    @After
+    public void close() {
+        if (null != log) {
+            log.close();
+        }
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * 重启后恢复每个key的最新记录
+     */
+    @Test
+    public void recoverLatest() throws IOException {
+        log = newLog(RECORD_SIZE * 16);
+        log.put("a", "1");
+        log.put("b", "1");
+        log.put("a", "2");
+        reopen(RECORD_SIZE * 16);
+        Assert.assertEquals("2", log.get("a"));
+        Assert.assertEquals("1", log.get("b"));
+        Assert.assertNull(log.get("c"));
+    }
+
+    /**
+     * 最后一条记录未写完(文件被截断)时回退到上一条有效记录，后续写入覆盖残缺记录
+     */
+    @Test
+    public void truncatedTrailingRecord() throws IOException {
+        log = newLog(RECORD_SIZE * 16);
+        log.put("a", "1");
+        log.put("a", "2");
+        log.close();
+        log = null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(RECORD_SIZE + HEADER_SIZE + 1);
+        }
+        reopen(RECORD_SIZE * 16);
+        Assert.assertEquals("1", log.get("a"));
+
+        log.put("a", "3");
+        reopen(RECORD_SIZE * 16);
+        Assert.assertEquals("3", log.get("a"));
+    }
+
+    /**
+     * 最后一条记录内容损坏时校验失败，回退到上一条有效记录
+     */
+    @Test
+    public void corruptedTrailingRecord() throws IOException {
+        log = newLog(RECORD_SIZE * 16);
+        log.put("a", "1");
+        log.put("b", "1");
+        log.put("a", "2");
+        log.close();
+        log = null;
+        //翻转第三条记录value的一个字节
+        corrupt(RECORD_SIZE * 2 + HEADER_SIZE + 1);
+        reopen(RECORD_SIZE * 16);
+        Assert.assertEquals("1", log.get("a"));
+        Assert.assertEquals("1", log.get("b"));
+
+        //写入下标定位到最后一条有效记录之后
+        log.put("a", "4");
+        log.put("b", "4");
+        reopen(RECORD_SIZE * 16);
+        Assert.assertEquals("4", log.get("a"));
+        Assert.assertEquals("4", log.get("b"));
+    }
+
+    /**
+     * 记录头损坏时跳过该记录
+     */
+    @Test
+    public void corruptedHeader() throws IOException {
+        log = newLog(RECORD_SIZE * 16);
+        log.put("a", "1");
+        log.put("a", "2");
+        log.close();
+        log = null;
+        //第二条记录key长度
+        corrupt(RECORD_SIZE + 12);
+        reopen(RECORD_SIZE * 16);
+        Assert.assertEquals("1", log.get("a"));
+    }
+
+    /**
+     * 写满后压缩，重启后恢复压缩后的最新记录并继续写入
+     */
+    @Test
+    public void compactThenRecover() throws IOException {
+        log = newLog(RECORD_SIZE * 4);
+        for (int index = 0; index < 20; index++) {
+            log.put("a", "a" + index);
+            log.put("b", "b" + index);
+            log.put("c", "c" + index);
+        }
+        Assert.assertEquals("a19", log.get("a"));
+        reopen(RECORD_SIZE * 4);
+        Assert.assertEquals("a19", log.get("a"));
+        Assert.assertEquals("b19", log.get("b"));
+        Assert.assertEquals("c19", log.get("c"));
+        Assert.assertFalse(new File(file.getPath() + ".compact").exists());
+
+        log.put("a", "a20");
+        log.put("d", "d0");
+        reopen(RECORD_SIZE * 4);
+        Assert.assertEquals("a20", log.get("a"));
+        Assert.assertEquals("b19", log.get("b"));
+        Assert.assertEquals("d0", log.get("d"));
+    }
+
+    /**
+     * 压缩过程中宕机残留的临时文件在启动时删除，原文件不受影响
+     */
+    @Test
+    public void interruptedCompaction() throws IOException {
+        log = newLog(RECORD_SIZE * 16);
+        log.put("a", "1");
+        log.close();
+        log = null;
+        File compactFile = new File(file.getPath() + ".compact");
+        Files.write(compactFile.toPath(), new byte[RECORD_SIZE]);
+        reopen(RECORD_SIZE * 16);
+        Assert.assertFalse(compactFile.exists());
+        Assert.assertEquals("1", log.get("a"));
+    }
+
+    /**
+     * 超过单条记录大小的位点拒绝写入
+     */
+    @Test
+    public void recordTooLarge() throws IOException {
+        log = newLog(RECORD_SIZE * 16);
+        StringBuilder value = new StringBuilder();
+        for (int index = 0; index < RECORD_SIZE; index++) {
+            value.append('v');
+        }
+        try {
+            log.put("a", value.toString());
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertNull(log.get("a"));
+        }
+    }
+
+    private PositionLog newLog(long fileSize) throws IOException {
+        return new PositionLog(file, fileSize, RECORD_SIZE, 0);
+    }
+
+    private void reopen(long fileSize) throws IOException {
+        if (null != log) {
+            log.close();
+        }
+        log = newLog(fileSize);
+    }
+
+    private void corrupt(long index) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(index);
+            int value = raf.read();
+            raf.seek(index);
+            raf.write(value ^ 0xFF);
+        }
+    }
+}
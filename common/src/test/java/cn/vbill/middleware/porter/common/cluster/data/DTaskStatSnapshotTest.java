@@ -0,0 +1,147 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.cluster.data;
+
+import cn.vbill.middleware.porter.common.statistics.StageStat;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 泳道快照编解码，计数为zigzag变长整数，时间为与快照时间的差值，可为负
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月22日 17:05
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月22日 17:05
+ */
+public class DTaskStatSnapshotTest {
+
+    @Test
+    public void encodeWithHeader() throws IOException {
+        String data = DTaskStatSnapshot.encode(Arrays.asList(stat("db", "t_order")));
+        Assert.assertTrue(DTaskStatSnapshot.isSnapshot(data));
+        Assert.assertFalse(DTaskStatSnapshot.isSnapshot("{\"taskId\":\"1\"}"));
+        Assert.assertFalse(DTaskStatSnapshot.isSnapshot(null));
+        Base64.getDecoder().decode(data.substring(DTaskStatSnapshot.HEADER.length()));
+    }
+
+    @Test
+    public void roundTripCounters() throws IOException {
+        DTaskStat stat = stat("db", "t_order");
+        stat.getInsertRow().set(0);
+        stat.getUpdateRow().set(127);
+        stat.getDeleteRow().set(128);
+        stat.getErrorInsertRow().set(-1);
+        stat.getErrorUpdateRow().set(Long.MAX_VALUE);
+        stat.getErrorDeleteRow().set(Long.MIN_VALUE);
+        stat.getAlertedTimes().set(-300);
+        DTaskStat decoded = DTaskStatSnapshot.decode(DTaskStatSnapshot.encode(Arrays.asList(stat))).get(0);
+        Assert.assertEquals(0, decoded.getInsertRow().get());
+        Assert.assertEquals(127, decoded.getUpdateRow().get());
+        Assert.assertEquals(128, decoded.getDeleteRow().get());
+        Assert.assertEquals(-1, decoded.getErrorInsertRow().get());
+        Assert.assertEquals(Long.MAX_VALUE, decoded.getErrorUpdateRow().get());
+        Assert.assertEquals(Long.MIN_VALUE, decoded.getErrorDeleteRow().get());
+        Assert.assertEquals(-300, decoded.getAlertedTimes().get());
+    }
+
+    @Test
+    public void roundTripOptionals() throws IOException {
+        DTaskStat stat = stat("db", "t_order");
+        stat.setApplyLatencyP50(-5L);
+        stat.setApplyLatencyP99(0L);
+        stat.setApplyLatencyMax(Long.MAX_VALUE);
+        stat.setCpuMillis(-1L);
+        stat.setAllocatedBytes(Long.MIN_VALUE);
+        DTaskStat decoded = DTaskStatSnapshot.decode(DTaskStatSnapshot.encode(Arrays.asList(stat))).get(0);
+        Assert.assertEquals(Long.valueOf(-5), decoded.getApplyLatencyP50());
+        Assert.assertEquals(Long.valueOf(0), decoded.getApplyLatencyP99());
+        Assert.assertEquals(Long.valueOf(Long.MAX_VALUE), decoded.getApplyLatencyMax());
+        Assert.assertNull(decoded.getDelayP50());
+        Assert.assertNull(decoded.getDelayMax());
+        Assert.assertEquals(Long.valueOf(-1), decoded.getCpuMillis());
+        //与空值区分
+        Assert.assertEquals(Long.valueOf(Long.MIN_VALUE + 1), decoded.getAllocatedBytes());
+        Assert.assertNull(decoded.getReplicationLag());
+        Assert.assertNull(decoded.getStages());
+        Assert.assertNull(decoded.getBottleneckStage());
+    }
+
+    @Test
+    public void roundTripDates() throws IOException {
+        DTaskStat stat = stat("db", "t_order");
+        Date past = new Date(0);
+        //晚于快照时间，差值为负
+        Date future = new Date(System.currentTimeMillis() + 3600 * 1000L);
+        stat.setRegisteredTime(past);
+        stat.setHeartbeatTime(future);
+        stat.setLastCheckedTime(null);
+        stat.setLastLoadedDataTime(future);
+        DTaskStat decoded = DTaskStatSnapshot.decode(DTaskStatSnapshot.encode(Arrays.asList(stat))).get(0);
+        Assert.assertEquals(past, decoded.getRegisteredTime());
+        Assert.assertEquals(future, decoded.getHeartbeatTime());
+        Assert.assertNull(decoded.getLastCheckedTime());
+        Assert.assertEquals(future, decoded.getLastLoadedDataTime());
+        Assert.assertNull(decoded.getLastLoadedSystemTime());
+    }
+
+    @Test
+    public void roundTripTables() throws IOException {
+        DTaskStat order = stat("db", "t_order");
+        order.setProgress("mysql-bin.000001:4");
+        DTaskStat orderItem = stat("db", "t_order_item");
+        orderItem.setProgress("mysql-bin.000001:120");
+        DTaskStat user = stat("db2", "用户");
+        DTaskStat emptyName = stat("db", "");
+        StageStat stage = new StageStat();
+        stage.setStage("load");
+        //泳道内各表相同的统计只记录一次
+        for (DTaskStat stat : Arrays.asList(order, orderItem, user, emptyName)) {
+            stat.setStages(Arrays.asList(stage));
+            stat.setBottleneckStage("load");
+        }
+        List<DTaskStat> decoded = DTaskStatSnapshot.decode(DTaskStatSnapshot.encode(Arrays.asList(user, orderItem,
+                emptyName, order)));
+        Assert.assertEquals(4, decoded.size());
+        //按表名排序
+        Assert.assertEquals("db.", DTaskStatSnapshot.key(decoded.get(0)));
+        Assert.assertEquals("db.t_order", DTaskStatSnapshot.key(decoded.get(1)));
+        Assert.assertEquals("db.t_order_item", DTaskStatSnapshot.key(decoded.get(2)));
+        Assert.assertEquals("db2.用户", DTaskStatSnapshot.key(decoded.get(3)));
+        Assert.assertNull(decoded.get(0).getProgress());
+        Assert.assertEquals("mysql-bin.000001:4", decoded.get(1).getProgress());
+        Assert.assertEquals("mysql-bin.000001:120", decoded.get(2).getProgress());
+        for (DTaskStat stat : decoded) {
+            Assert.assertEquals("1", stat.getTaskId());
+            Assert.assertEquals("node", stat.getNodeId());
+            Assert.assertEquals("0", stat.getSwimlaneId());
+            Assert.assertEquals("load", stat.getStages().get(0).getStage());
+            Assert.assertEquals("load", stat.getBottleneckStage());
+        }
+    }
+
+    private static DTaskStat stat(String schema, String table) {
+        return new DTaskStat("1", "node", "0", schema, table);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.common.statistics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 小于32的值每个值一个桶，之后每个2的幂区间分16个桶
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月22日 18:10
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月22日 18:10
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void countAtOrBelowExactBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5);
+        histogram.record(10, 2);
+        histogram.record(31);
+        LatencyHistogram.Snapshot snapshot = histogram.peek();
+        Assert.assertEquals(0, snapshot.countAtOrBelow(4));
+        Assert.assertEquals(1, snapshot.countAtOrBelow(5));
+        Assert.assertEquals(3, snapshot.countAtOrBelow(10));
+        Assert.assertEquals(4, snapshot.countAtOrBelow(31));
+        Assert.assertEquals(0, snapshot.countAtOrBelow(-1));
+    }
+
+    @Test
+    public void countAtOrBelowExcludesValuesAboveBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        //96-99、100-103各为一个桶
+        histogram.record(99);
+        histogram.record(100);
+        histogram.record(103);
+        LatencyHistogram.Snapshot snapshot = histogram.peek();
+        Assert.assertEquals(1, snapshot.countAtOrBelow(99));
+        //100所在的桶包含大于100的值，不计入
+        Assert.assertEquals(1, snapshot.countAtOrBelow(100));
+        Assert.assertEquals(1, snapshot.countAtOrBelow(102));
+        Assert.assertEquals(3, snapshot.countAtOrBelow(103));
+    }
+
+    @Test
+    public void countAtOrBelowMonotonic() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 100000; value += 7) {
+            histogram.record(value);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.peek();
+        long previous = 0;
+        for (long bound : new long[] {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000}) {
+            long count = snapshot.countAtOrBelow(bound);
+            Assert.assertTrue(count >= previous);
+            //不超过bound的真实记录数
+            Assert.assertTrue(count <= bound / 7 + 1);
+            previous = count;
+        }
+    }
+
+    @Test
+    public void countAtOrBelowBeyondMaxValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(1);
+        LatencyHistogram.Snapshot snapshot = histogram.peek();
+        Assert.assertEquals(1, snapshot.countAtOrBelow(1L << 30));
+        Assert.assertEquals(2, snapshot.countAtOrBelow(Long.MAX_VALUE));
+        Assert.assertEquals(snapshot.getCount(), snapshot.countAtOrBelow(Long.MAX_VALUE));
+    }
+}
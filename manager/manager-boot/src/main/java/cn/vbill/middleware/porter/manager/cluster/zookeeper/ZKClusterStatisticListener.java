@@ -23,6 +23,7 @@ import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperCluster
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterListener;
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterListenerFilter;
 import cn.vbill.middleware.porter.common.statistics.NodeLog;
+import cn.vbill.middleware.porter.common.statistics.StatisticBatch;
 import cn.vbill.middleware.porter.common.statistics.TaskPerformance;
 import cn.vbill.middleware.porter.manager.core.util.ApplicationContextUtil;
 import cn.vbill.middleware.porter.manager.service.MrJobTasksMonitorService;
@@ -50,6 +51,7 @@ public class ZKClusterStatisticListener extends ZookeeperClusterListener {
     private static final String ZK_PATH = BASE_CATALOG + "/statistic";
     private static final Pattern LOG_PATTERN = Pattern.compile(ZK_PATH + "/log/.*");
     private static final Pattern TASK_PATTERN = Pattern.compile(ZK_PATH + "/task/.*");
+    private static final Pattern BATCH_PATTERN = Pattern.compile(ZK_PATH + "/" + StatisticBatch.NAME + "/.*");
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ZKClusterStatisticListener.class);
 
@@ -67,47 +69,21 @@ public class ZKClusterStatisticListener extends ZookeeperClusterListener {
             try {
                 // 日志
                 if (LOG_PATTERN.matcher(zkPath).matches()) {
-                    NodeLog log = JSONObject.parseObject(zkEvent.getData(), NodeLog.class);
-                    /*
-                     * LOGGER.info("3-NodeLog....." + JSON.toJSON(log)); // do something try {
-                     * MrLogMonitorService mrLogMonitorService =
-                     * ApplicationContextUtil.getBean(MrLogMonitorServiceImpl.class);
-                     * mrLogMonitorService.dealNodeLog(log); } catch (Exception e) {
-                     * LOGGER.error("3-NodeLog-Error....出错,请追寻...", e); }
-                     */
-                    if (log == null) {
-                        LOGGER.error("3-NodeLog....." + JSON.toJSON(log));
-                    } else {
-                        LOGGER.info("3-NodeLog....." + JSON.toJSON(log));
-                        // do something
-                        try {
-                            MrLogMonitorService mrLogMonitorService = ApplicationContextUtil
-                                    .getBean(MrLogMonitorServiceImpl.class);
-                            mrLogMonitorService.dealNodeLog(log);
-                        } catch (Exception e) {
-                            LOGGER.error("3-NodeLog-Error....出错,请追寻...", e);
-                        }
-                    }
+                    dealNodeLog(zkEvent.getData());
                 }
                 // 性能指标数据
                 if (TASK_PATTERN.matcher(zkPath).matches()) {
-                    TaskPerformance performance = JSONObject.parseObject(zkEvent.getData(), TaskPerformance.class);
-                    if (performance == null) {
-                        LOGGER.error("3-TaskPerformance....." + JSON.toJSON(performance));
-                    } else {
-                        LOGGER.info("3-TaskPerformance....." + JSON.toJSON(performance));
-                        // do something
-                        try {
-                            // 任务泳道实时监控表 服务接口类
-                            MrJobTasksMonitorService mrJobTasksMonitorService = ApplicationContextUtil
-                                    .getBean(MrJobTasksMonitorServiceImpl.class);
-                            mrJobTasksMonitorService.dealTaskPerformance(performance);
-                            // 节点任务实时监控表
-                            MrNodesMonitorService mrNodesMonitorService = ApplicationContextUtil
-                                    .getBean(MrNodesMonitorServiceImpl.class);
-                            mrNodesMonitorService.dealTaskPerformance(performance);
-                        } catch (Exception e) {
-                            LOGGER.error("3-TaskPerformance-Error....出错,请追寻...", e);
+                    dealTaskPerformance(zkEvent.getData());
+                }
+                // 批量上传的日志及性能指标数据
+                if (BATCH_PATTERN.matcher(zkPath).matches()) {
+                    StatisticBatch batch = JSONObject.parseObject(zkEvent.getData(), StatisticBatch.class);
+                    for (JSONObject record : batch.records()) {
+                        String category = record.getString("category");
+                        if (NodeLog.NAME.equals(category)) {
+                            dealNodeLog(record.toJSONString());
+                        } else if (TaskPerformance.NAME.equals(category)) {
+                            dealTaskPerformance(record.toJSONString());
                         }
                     }
                 }
@@ -121,6 +97,52 @@ public class ZKClusterStatisticListener extends ZookeeperClusterListener {
         }
     }
 
+    private void dealNodeLog(String data) {
+        NodeLog log = JSONObject.parseObject(data, NodeLog.class);
+        /*
+         * LOGGER.info("3-NodeLog....." + JSON.toJSON(log)); // do something try {
+         * MrLogMonitorService mrLogMonitorService =
+         * ApplicationContextUtil.getBean(MrLogMonitorServiceImpl.class);
+         * mrLogMonitorService.dealNodeLog(log); } catch (Exception e) {
+         * LOGGER.error("3-NodeLog-Error....出错,请追寻...", e); }
+         */
+        if (log == null) {
+            LOGGER.error("3-NodeLog....." + JSON.toJSON(log));
+        } else {
+            LOGGER.info("3-NodeLog....." + JSON.toJSON(log));
+            // do something
+            try {
+                MrLogMonitorService mrLogMonitorService = ApplicationContextUtil
+                        .getBean(MrLogMonitorServiceImpl.class);
+                mrLogMonitorService.dealNodeLog(log);
+            } catch (Exception e) {
+                LOGGER.error("3-NodeLog-Error....出错,请追寻...", e);
+            }
+        }
+    }
+
+    private void dealTaskPerformance(String data) {
+        TaskPerformance performance = JSONObject.parseObject(data, TaskPerformance.class);
+        if (performance == null) {
+            LOGGER.error("3-TaskPerformance....." + JSON.toJSON(performance));
+        } else {
+            LOGGER.info("3-TaskPerformance....." + JSON.toJSON(performance));
+            // do something
+            try {
+                // 任务泳道实时监控表 服务接口类
+                MrJobTasksMonitorService mrJobTasksMonitorService = ApplicationContextUtil
+                        .getBean(MrJobTasksMonitorServiceImpl.class);
+                mrJobTasksMonitorService.dealTaskPerformance(performance);
+                // 节点任务实时监控表
+                MrNodesMonitorService mrNodesMonitorService = ApplicationContextUtil
+                        .getBean(MrNodesMonitorServiceImpl.class);
+                mrNodesMonitorService.dealTaskPerformance(performance);
+            } catch (Exception e) {
+                LOGGER.error("3-TaskPerformance-Error....出错,请追寻...", e);
+            }
+        }
+    }
+
     @Override
     public ClusterListenerFilter filter() {
         return new ZookeeperClusterListenerFilter() {
@@ -141,5 +163,6 @@ public class ZKClusterStatisticListener extends ZookeeperClusterListener {
         client.createWhenNotExists(ZK_PATH, false, true, null);
         client.createWhenNotExists(ZK_PATH + "/log", false, true, null);
         client.createWhenNotExists(ZK_PATH + "/task", false, true, null);
+        client.createWhenNotExists(ZK_PATH + "/" + StatisticBatch.NAME, false, true, null);
     }
 }
\ No newline at end of file
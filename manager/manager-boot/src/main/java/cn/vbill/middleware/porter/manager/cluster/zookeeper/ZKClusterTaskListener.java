@@ -18,6 +18,7 @@
 package cn.vbill.middleware.porter.manager.cluster.zookeeper;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -43,6 +44,7 @@ import cn.vbill.middleware.porter.common.client.impl.ZookeeperClient;
 import cn.vbill.middleware.porter.common.cluster.ClusterListenerFilter;
 import cn.vbill.middleware.porter.common.cluster.command.TaskPushCommand;
 import cn.vbill.middleware.porter.common.cluster.data.DTaskStat;
+import cn.vbill.middleware.porter.common.cluster.data.DTaskStatSnapshot;
 import cn.vbill.middleware.porter.common.cluster.event.ClusterEvent;
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterEvent;
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterListener;
@@ -98,15 +100,20 @@ public class ZKClusterTaskListener extends ZookeeperClusterListener implements Z
         try {
             // 任务进度更新
             if (TASK_STAT_PATTERN.matcher(zkPath).matches() && zkEvent.isDataChanged()) {
-                DTaskStat stat = DTaskStat.fromString(zkEvent.getData(), DTaskStat.class);
-                LOGGER.info("4-DTaskStat.... " + JSON.toJSON(stat));
-                // do something
-                try {
-                    MrJobTasksScheduleService mrJobTasksScheduleService = ApplicationContextUtil
-                            .getBean(MrJobTasksScheduleServiceImpl.class);
-                    mrJobTasksScheduleService.dealDTaskStat(stat);
-                } catch (Exception e) {
-                    LOGGER.error("4-DTaskStat-Error....出错,请追寻...", e);
+                // 泳道快照包含泳道内所有表的进度,旧版节点按表存储
+                List<DTaskStat> stats = DTaskStatSnapshot.isSnapshot(zkEvent.getData())
+                        ? DTaskStatSnapshot.decode(zkEvent.getData())
+                        : Collections.singletonList(DTaskStat.fromString(zkEvent.getData(), DTaskStat.class));
+                for (DTaskStat stat : stats) {
+                    LOGGER.info("4-DTaskStat.... " + JSON.toJSON(stat));
+                    // do something
+                    try {
+                        MrJobTasksScheduleService mrJobTasksScheduleService = ApplicationContextUtil
+                                .getBean(MrJobTasksScheduleServiceImpl.class);
+                        mrJobTasksScheduleService.dealDTaskStat(stat);
+                    } catch (Exception e) {
+                        LOGGER.error("4-DTaskStat-Error....出错,请追寻...", e);
+                    }
                 }
             }
             // 任务错误
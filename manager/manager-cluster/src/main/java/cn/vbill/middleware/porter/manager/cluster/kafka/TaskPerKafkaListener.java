@@ -16,6 +16,7 @@
  */
 package cn.vbill.middleware.porter.manager.cluster.kafka;
 
+import cn.vbill.middleware.porter.common.statistics.StatisticBatch;
 import cn.vbill.middleware.porter.common.statistics.StatisticData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,7 +56,23 @@ public class TaskPerKafkaListener {
             LOGGER.error("Listener-StatisticData-null.....[{}]", content);
             return;
         }
-        if (TaskPerformance.NAME.equalsIgnoreCase(statisticData.getCategory())) {
+        if (StatisticBatch.NAME.equalsIgnoreCase(statisticData.getCategory())) {
+            try {
+                StatisticBatch batch = JSONObject.parseObject(content, StatisticBatch.class);
+                LOGGER.info("Listener-StatisticBatch.....[{}]条", batch.getCount());
+                for (JSONObject record : batch.records()) {
+                    processStatistic(record.toJSONString(), record.getString("category"));
+                }
+            } catch (Exception e) {
+                LOGGER.error("Listener-StatisticBatch-Error....出错,请追寻...", e);
+            }
+        } else {
+            processStatistic(content, statisticData.getCategory());
+        }
+    }
+
+    private void processStatistic(String content, String category) {
+        if (TaskPerformance.NAME.equalsIgnoreCase(category)) {
             try {
                 LOGGER.info("Listener-TaskPerformance....." + content);
                 TaskPerformance taskPerformance = JSONObject.parseObject(content, TaskPerformance.class);
@@ -64,7 +81,7 @@ public class TaskPerKafkaListener {
             } catch (Exception e) {
                 LOGGER.error("Listener-TaskPerformance-Error....出错,请追寻...", e);
             }
-        } else if (NodeLog.NAME.equalsIgnoreCase(statisticData.getCategory())) {
+        } else if (NodeLog.NAME.equalsIgnoreCase(category)) {
             try {
                 LOGGER.info("Listener-NodeLog....." + content);
                 NodeLog log = JSONObject.parseObject(content, NodeLog.class);
@@ -75,6 +92,5 @@ public class TaskPerKafkaListener {
         } else {
             LOGGER.error("C-TaskPerKafkaListener...接收到了无法解析数据,内容[{}].", content);
         }
-
     }
 }
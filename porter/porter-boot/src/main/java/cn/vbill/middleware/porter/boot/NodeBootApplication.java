@@ -96,6 +96,16 @@ public class NodeBootApplication {
 
         //初始化默认工作任务数
         NodeContext.INSTANCE.updateWorkLimit(config.getWorkLimit());
+        //负载均衡抢占配置
+        NodeContext.INSTANCE.placement(config.getPlacement());
+        //任务启动并发配置
+        NodeContext.INSTANCE.startup(config.getStartup());
+        //阶段调度配置
+        NodeContext.INSTANCE.scheduler(config.getScheduler());
+        //内存预算配置
+        NodeContext.INSTANCE.memory(config.getMemory());
+        //溢出配置
+        NodeContext.INSTANCE.spill(config.getSpill());
 
         //从本地初始化公用数据库连接池
         SourcesConfig datasourceConfigBean = context.getBean(SourcesConfig.class);
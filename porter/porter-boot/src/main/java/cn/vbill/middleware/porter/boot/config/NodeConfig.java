@@ -19,6 +19,11 @@ package cn.vbill.middleware.porter.boot.config;
 
 import cn.vbill.middleware.porter.common.config.AlertConfig;
 import cn.vbill.middleware.porter.common.config.ClusterConfig;
+import cn.vbill.middleware.porter.common.config.MemoryConfig;
+import cn.vbill.middleware.porter.common.config.PlacementConfig;
+import cn.vbill.middleware.porter.common.config.SchedulerConfig;
+import cn.vbill.middleware.porter.common.config.SpillConfig;
+import cn.vbill.middleware.porter.common.config.StartupConfig;
 import cn.vbill.middleware.porter.common.config.StatisticConfig;
 import cn.vbill.middleware.porter.common.config.TaskConfig;
 import lombok.Getter;
@@ -46,6 +51,11 @@ public class NodeConfig {
     private StatisticConfig statistic = new StatisticConfig();
     private AlertConfig alert;
     private ClusterConfig cluster;
+    private PlacementConfig placement = new PlacementConfig();
+    private StartupConfig startup = new StartupConfig();
+    private SchedulerConfig scheduler = new SchedulerConfig();
+    private MemoryConfig memory = new MemoryConfig();
+    private SpillConfig spill = new SpillConfig();
     private List<TaskConfig> task = new ArrayList<>();
 }
 
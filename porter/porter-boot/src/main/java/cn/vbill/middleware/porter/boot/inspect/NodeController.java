@@ -17,19 +17,31 @@
 
 package cn.vbill.middleware.porter.boot.inspect;
 
-import cn.vbill.middleware.porter.common.util.MachineUtils;
 import cn.vbill.middleware.porter.core.NodeContext;
+import cn.vbill.middleware.porter.core.task.StageScheduler;
+import cn.vbill.middleware.porter.task.worker.TaskStartup;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
+import javax.management.ObjectName;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.MonitorInfo;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadInfo;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * 节点诊断。
+ * 线程、内存、GC、启动参数均通过进程内MXBean读取，不再fork jstack、jstat、jinfo、jmap进程
  *
  * @author: zhangkewei[zhang_kw@suixingpay.com]
  * @date: 2018年06月28日 18:32
@@ -39,18 +51,15 @@ import java.util.Map;
 @RestController
 @RequestMapping("/inspect/node")
 public class NodeController {
-    private static final String JPS_CMD;
-    private static final String JSTAT_CMD;
-    private static final String JINFO_CMD;
-    private static final String JMAP_CMD;
-    static {
-        String javaHome = System.getProperty("java.home", "");
-        String cmd =  StringUtils.isBlank(javaHome) ? "jstack" : javaHome + "/../bin/jstack";
-        JPS_CMD = cmd;
-        JSTAT_CMD = StringUtils.isBlank(javaHome) ? "jstat" : javaHome + "/../bin/jstat";
-        JINFO_CMD = StringUtils.isBlank(javaHome) ? "jinfo" : javaHome + "/../bin/jinfo";
-        JMAP_CMD = StringUtils.isBlank(javaHome) ? "jmap" : javaHome + "/../bin/jmap";
-    }
+    private static final int DEFAULT_PROFILE_SECONDS = 10;
+    private static final int MAX_PROFILE_SECONDS = 120;
+    private static final int DEFAULT_PROFILE_INTERVAL = 20;
+    private static final int MIN_PROFILE_INTERVAL = 5;
+    private static final int MAX_PROFILE_INTERVAL = 1000;
+    private static final String DIAGNOSTIC_COMMAND = "com.sun.management:type=DiagnosticCommand";
+
+    //同一时间只允许一个采样
+    private final AtomicBoolean profiling = new AtomicBoolean(false);
 
     /**
      * tasks
@@ -78,62 +87,161 @@ public class NodeController {
     }
 
     /**
-     * stack
+     * 泳道启动就绪报告
+     *
+     * @return
+     */
+    @GetMapping("/startup")
+    public String startup() {
+        return TaskStartup.INSTANCE.report().toJSONString();
+    }
+
+    /**
+     * 阶段共享调度情况
+     *
+     * @return
+     */
+    @GetMapping("/scheduler")
+    public String scheduler() {
+        return StageScheduler.INSTANCE.report().toJSONString();
+    }
+
+    /**
+     * 线程栈
      *
      * @date 2018/8/9 下午3:12
      * @param: []
      * @return: java.lang.String
      */
     @GetMapping("/jstack")
-    public String stack() throws IOException {
-        String executive = new StringBuffer(JPS_CMD).append(" ").append(MachineUtils.CURRENT_JVM_PID).toString();
-        String commandValue = StreamUtils.copyToString(Runtime.getRuntime().exec(executive).getInputStream(), Charset.forName("utf-8"));
-        return formatPrint(commandValue);
+    public String stack() {
+        StringBuilder text = new StringBuilder();
+        for (ThreadInfo info : ManagementFactory.getThreadMXBean().dumpAllThreads(true, true)) {
+            text.append('"').append(info.getThreadName()).append("\" Id=").append(info.getThreadId())
+                    .append(' ').append(info.getThreadState());
+            if (null != info.getLockName()) {
+                text.append(" on ").append(info.getLockName());
+            }
+            if (null != info.getLockOwnerName()) {
+                text.append(" owned by \"").append(info.getLockOwnerName()).append("\" Id=").append(info.getLockOwnerId());
+            }
+            text.append(System.lineSeparator());
+            StackTraceElement[] frames = info.getStackTrace();
+            for (int index = 0; index < frames.length; index++) {
+                text.append("\tat ").append(frames[index]).append(System.lineSeparator());
+                for (MonitorInfo monitor : info.getLockedMonitors()) {
+                    if (monitor.getLockedStackDepth() == index) {
+                        text.append("\t- locked ").append(monitor).append(System.lineSeparator());
+                    }
+                }
+            }
+            for (LockInfo lock : info.getLockedSynchronizers()) {
+                text.append("\t- locked ").append(lock).append(System.lineSeparator());
+            }
+            text.append(System.lineSeparator());
+        }
+        return formatPrint(text.toString());
     }
 
     /**
-     * stat
+     * 内存池与GC统计
      *
      * @date 2018/8/9 下午3:12
      * @param: []
      * @return: java.lang.String
      */
     @GetMapping("/jstat")
-    public String stat() throws IOException {
-        String executive = new StringBuffer(JSTAT_CMD).append(" -gc ").append(MachineUtils.CURRENT_JVM_PID).toString();
-        String commandValue = StreamUtils.copyToString(Runtime.getRuntime().exec(executive).getInputStream(), Charset.forName("utf-8"));
-        return formatPrint(commandValue);
+    public String stat() {
+        StringBuilder text = new StringBuilder();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            text.append(pool.getName()).append(": ").append(formatUsage(pool.getUsage())).append(System.lineSeparator());
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            text.append(gc.getName()).append(": count=").append(gc.getCollectionCount())
+                    .append(", time=").append(gc.getCollectionTime()).append("ms").append(System.lineSeparator());
+        }
+        return formatPrint(text.toString());
     }
 
     /**
-     * jinfo
+     * 启动参数与系统属性
      *
      * @date 2018/8/9 下午3:12
      * @param: []
      * @return: java.lang.String
      */
     @GetMapping("/jinfo")
-    public String jinfo() throws IOException {
-        String executive = new StringBuffer(JINFO_CMD).append(" ").append(MachineUtils.CURRENT_JVM_PID).toString();
-        String commandValue = StreamUtils.copyToString(Runtime.getRuntime().exec(executive).getInputStream(), Charset.forName("utf-8"));
-        return formatPrint(commandValue);
+    public String jinfo() {
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        StringBuilder text = new StringBuilder();
+        text.append("VM: ").append(runtime.getVmName()).append(' ').append(runtime.getVmVersion()).append(System.lineSeparator());
+        text.append("VM Arguments: ").append(String.join(" ", runtime.getInputArguments())).append(System.lineSeparator());
+        text.append(System.lineSeparator());
+        new TreeMap<>(runtime.getSystemProperties()).forEach((k, v) -> text.append(k).append(" = ").append(v).append(System.lineSeparator()));
+        return formatPrint(text.toString());
     }
 
     /**
-     * jmap
+     * 堆内存使用，cmd=histo时输出类实例直方图(不触发Full GC)
      *
      * @date 2018/8/9 下午3:12
      * @param: [cmd]
      * @return: java.lang.String
      */
     @GetMapping("/jmap")
-    public String jmap(String cmd) throws IOException {
+    public String jmap(String cmd) throws Exception {
         cmd = StringUtils.isBlank(cmd) ? "heap" : cmd;
-        String subject = cmd.equals("heap") ? "heap" : "histo:live";
-        String executive = new StringBuffer(JMAP_CMD).append(" ").append("-").append(subject).append(" ")
-                .append(MachineUtils.CURRENT_JVM_PID).toString();
-        String commandValue = StreamUtils.copyToString(Runtime.getRuntime().exec(executive).getInputStream(), Charset.forName("utf-8"));
-        return formatPrint(commandValue);
+        if (cmd.equals("heap")) {
+            StringBuilder text = new StringBuilder();
+            text.append("Heap: ").append(formatUsage(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()))
+                    .append(System.lineSeparator());
+            text.append("NonHeap: ").append(formatUsage(ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage()))
+                    .append(System.lineSeparator());
+            return formatPrint(text.toString());
+        }
+        //-all统计全部对象，不做Full GC
+        Object histogram = ManagementFactory.getPlatformMBeanServer().invoke(new ObjectName(DIAGNOSTIC_COMMAND), "gcClassHistogram",
+                new Object[] {new String[] {"-all"}}, new String[] {String[].class.getName()});
+        return formatPrint(String.valueOf(histogram));
+    }
+
+    /**
+     * 线程栈采样
+     *
+     * @param seconds 采样时长，默认10秒
+     * @param interval 采样间隔，单位毫秒，默认20
+     * @param taskId 只采样该任务的线程
+     * @param swimlaneId 只采样该泳道的线程，需同时指定taskId
+     * @param format collapsed(默认,折叠栈)、tree(调用树)
+     * @param all 是否包含非RUNNABLE状态的线程，默认false
+     * @return
+     * @throws InterruptedException
+     */
+    @GetMapping("/profile")
+    public String profile(Integer seconds, Integer interval, String taskId, String swimlaneId, String format, Boolean all)
+            throws InterruptedException {
+        if (!profiling.compareAndSet(false, true)) {
+            return "已有采样正在执行";
+        }
+        try {
+            int span = null == seconds || seconds <= 0 ? DEFAULT_PROFILE_SECONDS : Math.min(seconds, MAX_PROFILE_SECONDS);
+            int rate = null == interval ? DEFAULT_PROFILE_INTERVAL : Math.min(MAX_PROFILE_INTERVAL, Math.max(MIN_PROFILE_INTERVAL, interval));
+            String filter = null;
+            if (!StringUtils.isBlank(taskId)) {
+                filter = "[taskId:" + taskId + "]" + (StringUtils.isBlank(swimlaneId) ? "" : "-[consumer:" + swimlaneId + "]");
+            }
+            SamplingProfiler profiler = new SamplingProfiler(TimeUnit.SECONDS.toMillis(span), rate, filter,
+                    null == all || !all).run();
+            return "tree".equals(format) ? formatPrint(profiler.tree()) : profiler.collapsed();
+        } finally {
+            profiling.set(false);
+        }
+    }
+
+    private String formatUsage(MemoryUsage usage) {
+        return new StringBuilder().append("used=").append(usage.getUsed() / 1024).append("K, committed=")
+                .append(usage.getCommitted() / 1024).append("K, max=").append(usage.getMax() < 0 ? -1 : usage.getMax() / 1024)
+                .append('K').toString();
     }
 
     /**
@@ -0,0 +1,172 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.boot.inspect;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内线程栈采样。
+ * 按固定间隔通过ThreadMXBean读取线程栈，每次只取匹配线程，栈顶到栈底按调用顺序折叠计数，
+ * 输出折叠栈(flamegraph.pl可直接使用)或按样本数展开的调用树文本。线程名去掉序号后作为根帧，便于按任务、阶段区分
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月18日 10:40
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月18日 10:40
+ */
+public class SamplingProfiler {
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    //线程名中的线程工厂与线程序号
+    private static final Pattern THREAD_SEQ = Pattern.compile("^suixingpay-\\d+-|-\\d+$");
+    private static final int MAX_DEPTH = 128;
+    //调用树中样本占比低于该值的分支不展开
+    private static final double TREE_MIN_RATIO = 0.005;
+
+    private final long durationMillis;
+    private final long intervalMillis;
+    private final String threadFilter;
+    private final boolean runnableOnly;
+    private final Map<String, Long> stacks = new HashMap<>();
+    private long samples = 0;
+
+    /**
+     * @param durationMillis 采样时长
+     * @param intervalMillis 采样间隔
+     * @param threadFilter 线程名包含的字符串，为空时采样全部线程
+     * @param runnableOnly 只采样RUNNABLE状态的线程
+     */
+    public SamplingProfiler(long durationMillis, long intervalMillis, String threadFilter, boolean runnableOnly) {
+        this.durationMillis = durationMillis;
+        this.intervalMillis = intervalMillis;
+        this.threadFilter = threadFilter;
+        this.runnableOnly = runnableOnly;
+    }
+
+    /**
+     * 执行采样，阻塞到采样时长结束
+     * @return
+     * @throws InterruptedException
+     */
+    public SamplingProfiler run() throws InterruptedException {
+        long self = Thread.currentThread().getId();
+        long end = System.currentTimeMillis() + durationMillis;
+        while (System.currentTimeMillis() < end) {
+            long start = System.nanoTime();
+            sample(self);
+            samples++;
+            long cost = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            TimeUnit.MILLISECONDS.sleep(Math.max(1, intervalMillis - cost));
+        }
+        return this;
+    }
+
+    private void sample(long self) {
+        //先取线程名筛选，只读取匹配线程的栈
+        List<Long> matched = new ArrayList<>();
+        for (ThreadInfo info : THREAD_BEAN.getThreadInfo(THREAD_BEAN.getAllThreadIds(), 0)) {
+            if (null != info && info.getThreadId() != self
+                    && (StringUtils.isBlank(threadFilter) || info.getThreadName().contains(threadFilter))) {
+                matched.add(info.getThreadId());
+            }
+        }
+        if (matched.isEmpty()) {
+            return;
+        }
+        long[] ids = matched.stream().mapToLong(Long::longValue).toArray();
+        for (ThreadInfo info : THREAD_BEAN.getThreadInfo(ids, MAX_DEPTH)) {
+            if (null == info || (runnableOnly && info.getThreadState() != Thread.State.RUNNABLE)) {
+                continue;
+            }
+            StackTraceElement[] frames = info.getStackTrace();
+            if (frames.length == 0) {
+                continue;
+            }
+            StringBuilder stack = new StringBuilder(THREAD_SEQ.matcher(info.getThreadName()).replaceAll("").replace(' ', '_'));
+            for (int index = frames.length - 1; index >= 0; index--) {
+                stack.append(';').append(frames[index].getClassName()).append('.').append(frames[index].getMethodName());
+            }
+            stacks.merge(stack.toString(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * 折叠栈文本，每行"根帧;...;栈顶 样本数"
+     * @return
+     */
+    public String collapsed() {
+        StringBuilder text = new StringBuilder();
+        stacks.entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(e -> text.append(e.getKey()).append(' ').append(e.getValue()).append('\n'));
+        return text.toString();
+    }
+
+    /**
+     * 调用树文本，自根帧向下展开，每行为样本数、占比与帧
+     * @return
+     */
+    public String tree() {
+        Node root = new Node("all");
+        stacks.forEach((stack, count) -> {
+            Node node = root;
+            node.count += count;
+            for (String frame : stack.split(";")) {
+                node = node.children.computeIfAbsent(frame, Node::new);
+                node.count += count;
+            }
+        });
+        StringBuilder text = new StringBuilder();
+        text.append("samples:").append(samples).append(", interval:").append(intervalMillis).append("ms").append('\n');
+        print(root, root.count, 0, text);
+        return text.toString();
+    }
+
+    private void print(Node node, long total, int depth, StringBuilder text) {
+        if (total == 0 || node.count * 1.0 / total < TREE_MIN_RATIO) {
+            return;
+        }
+        text.append(StringUtils.repeat("  ", depth)).append(node.count)
+                .append(String.format(" %.1f%% ", node.count * 100.0 / total)).append(node.frame).append('\n');
+        node.children.values().stream().sorted((l, r) -> Long.compare(r.count, l.count))
+                .forEach(child -> print(child, total, depth + 1, text));
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    private static final class Node {
+        private final String frame;
+        private final Map<String, Node> children = new TreeMap<>();
+        private long count = 0;
+
+        private Node(String frame) {
+            this.frame = frame;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.boot.inspect;
+
+import cn.vbill.middleware.porter.common.statistics.StageStat;
+import cn.vbill.middleware.porter.core.task.StageMetrics;
+import cn.vbill.middleware.porter.core.task.StageType;
+import cn.vbill.middleware.porter.task.TaskController;
+import cn.vbill.middleware.porter.task.worker.TaskWork;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 泳道各阶段耗时诊断。
+ * 间隔seconds秒读取两次阶段累计值，给出区间内各阶段处理耗时占比及瓶颈阶段
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月15日 11:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月15日 11:20
+ */
+@RestController
+@RequestMapping("/inspect/stage")
+public class StageController {
+    private static final int DEFAULT_SECONDS = 5;
+    private static final int MAX_SECONDS = 60;
+
+    @Autowired
+    private TaskController controller;
+
+    /**
+     * bottleneck
+     *
+     * @param seconds 采样间隔
+     * @return
+     */
+    @GetMapping("/bottleneck")
+    public String bottleneck(Integer seconds) throws InterruptedException {
+        int span = null == seconds || seconds <= 0 ? DEFAULT_SECONDS : Math.min(seconds, MAX_SECONDS);
+        List<TaskWork> works = controller.getWorks();
+        List<Map<StageType, StageMetrics.Totals>> begins = new ArrayList<>();
+        for (TaskWork work : works) {
+            begins.add(work.getStageTotals());
+        }
+        TimeUnit.SECONDS.sleep(span);
+
+        JSONArray result = new JSONArray();
+        for (int index = 0; index < works.size(); index++) {
+            TaskWork work = works.get(index);
+            List<StageStat> stages = work.getStageStats(begins.get(index), work.getStageTotals());
+            StageStat bottleneck = StageMetrics.bottleneck(stages);
+            JSONObject swimlane = new JSONObject(true);
+            swimlane.put("taskId", work.getTaskId());
+            swimlane.put("swimlaneId", work.getDataConsumer().getSwimlaneId());
+            swimlane.put("seconds", span);
+            swimlane.put("bottleneck", null != bottleneck ? bottleneck.getStage() : null);
+            swimlane.put("stages", stages);
+            result.add(swimlane);
+        }
+        return result.toJSONString();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.boot.metrics;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 同名指标及其全部采样值
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月14日 15:32
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月14日 15:32
+ */
+public class MetricFamily {
+    /**
+     * 指标类型，与Prometheus文本格式一致
+     */
+    public static final String COUNTER = "counter";
+    public static final String GAUGE = "gauge";
+    public static final String HISTOGRAM = "histogram";
+
+    @Getter private final String name;
+    @Getter private final String type;
+    @Getter private final String help;
+    private final List<Sample> samples = new ArrayList<>();
+
+    public MetricFamily(String name, String type, String help) {
+        this.name = name;
+        this.type = type;
+        this.help = help;
+    }
+
+    /**
+     * 添加采样值
+     * @param labels
+     * @param value
+     * @return
+     */
+    public MetricFamily add(Map<String, String> labels, double value) {
+        return add(name, labels, value);
+    }
+
+    /**
+     * 添加采样值，直方图的_bucket、_sum、_count采样名与指标名不同
+     * @param sampleName
+     * @param labels
+     * @param value
+     * @return
+     */
+    public MetricFamily add(String sampleName, Map<String, String> labels, double value) {
+        samples.add(new Sample(sampleName, new LinkedHashMap<>(labels), value));
+        return this;
+    }
+
+    public List<Sample> getSamples() {
+        return Collections.unmodifiableList(samples);
+    }
+
+    /**
+     * 采样值
+     */
+    public static class Sample {
+        @Getter private final String name;
+        @Getter private final Map<String, String> labels;
+        @Getter private final double value;
+
+        Sample(String name, Map<String, String> labels, double value) {
+            this.name = name;
+            this.labels = labels;
+            this.value = value;
+        }
+
+        /**
+         * 指标名加标签，作为采样值唯一标识
+         * @return
+         */
+        public String getKey() {
+            StringBuilder key = new StringBuilder(name);
+            if (!labels.isEmpty()) {
+                key.append('{');
+                boolean first = true;
+                for (Map.Entry<String, String> label : labels.entrySet()) {
+                    if (!first) {
+                        key.append(',');
+                    }
+                    first = false;
+                    key.append(label.getKey()).append("=\"").append(escape(label.getValue())).append('"');
+                }
+                key.append('}');
+            }
+            return key.toString();
+        }
+
+        private static String escape(String value) {
+            return null == value ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.boot.metrics;
+
+import cn.vbill.middleware.porter.common.client.impl.JDBCClient;
+import cn.vbill.middleware.porter.common.cluster.data.DTaskStat;
+import cn.vbill.middleware.porter.common.statistics.LatencyHistogram;
+import cn.vbill.middleware.porter.core.loader.AbstractDataLoader;
+import cn.vbill.middleware.porter.core.task.AbstractStageJob;
+import cn.vbill.middleware.porter.core.task.MemoryBudget;
+import cn.vbill.middleware.porter.core.task.StageJob;
+import cn.vbill.middleware.porter.core.task.StageType;
+import cn.vbill.middleware.porter.core.task.ThreadUsage;
+import cn.vbill.middleware.porter.task.TaskController;
+import cn.vbill.middleware.porter.task.worker.TaskWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 节点运行指标采集。
+ * 每次请求时直接读取运行中泳道的计数器、缓冲与连接池状态，不单独维护采集线程
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月14日 15:40
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月14日 15:40
+ */
+@Component
+public class MetricsCollector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsCollector.class);
+    //批次载入耗时直方图边界，单位毫秒
+    private static final long[] LOAD_LATENCY_BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+    //心跳探针延迟直方图边界，单位毫秒
+    private static final long[] REPLICATION_LAG_BUCKETS = {100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000};
+
+    @Autowired
+    private TaskController controller;
+
+    /**
+     * 采集全部指标
+     * @return
+     */
+    public List<MetricFamily> collect() {
+        MetricFamily rows = new MetricFamily("porter_load_rows_total", MetricFamily.COUNTER, "载入行数");
+        MetricFamily carrierSize = new MetricFamily("porter_stage_carrier_size", MetricFamily.GAUGE, "阶段输出缓冲数据量");
+        MetricFamily carrierUsage = new MetricFamily("porter_stage_carrier_usage", MetricFamily.GAUGE, "阶段输出缓冲占用比例");
+        MetricFamily stageCpu = new MetricFamily("porter_stage_cpu_seconds_total", MetricFamily.COUNTER, "阶段线程CPU耗时");
+        MetricFamily stageAllocated = new MetricFamily("porter_stage_allocated_bytes_total", MetricFamily.COUNTER, "阶段线程堆内存分配字节数");
+        MetricFamily loadLatency = new MetricFamily("porter_load_batch_duration_milliseconds", MetricFamily.HISTOGRAM, "批次载入耗时");
+        MetricFamily lag = new MetricFamily("porter_consumer_lag", MetricFamily.GAUGE, "最近一次提交同步点时的消息堆积");
+        MetricFamily replicationLag = new MetricFamily("porter_replication_lag_milliseconds", MetricFamily.GAUGE, "源端心跳表探测的同步延迟");
+        MetricFamily probeLag = new MetricFamily("porter_heartbeat_probe_lag_milliseconds", MetricFamily.HISTOGRAM, "心跳探针写入到载入完成的延迟");
+        MetricFamily poolActive = new MetricFamily("porter_jdbc_pool_active", MetricFamily.GAUGE, "目标端连接池使用中连接数");
+        MetricFamily poolMax = new MetricFamily("porter_jdbc_pool_max", MetricFamily.GAUGE, "目标端连接池最大连接数");
+        MetricFamily poolWaiting = new MetricFamily("porter_jdbc_pool_waiting", MetricFamily.GAUGE, "等待获取目标端连接的线程数");
+        MetricFamily memoryUsed = new MetricFamily("porter_memory_budget_used_bytes", MetricFamily.GAUGE, "泳道未载入批次估算占用字节数");
+        MetricFamily memoryNodeUsed = new MetricFamily("porter_memory_budget_node_used_bytes", MetricFamily.GAUGE, "节点未载入批次估算占用字节数");
+        MetricFamily memoryNodeLimit = new MetricFamily("porter_memory_budget_node_limit_bytes", MetricFamily.GAUGE, "节点内存预算字节数，0不限制");
+        MetricFamily spilled = new MetricFamily("porter_spill_bytes", MetricFamily.GAUGE, "SELECT阶段溢出到段文件尚未回放的字节数");
+        MetricFamily pooledRows = new MetricFamily("porter_row_pool_rows", MetricFamily.GAUGE, "泳道回收池中可复用的行数");
+
+        List<TaskWork> works = controller.getWorks();
+        //同一任务的泳道共用DataLoader
+        Set<String> loaderTasks = new HashSet<>();
+        for (TaskWork work : works) {
+            try {
+                Map<String, String> labels = new LinkedHashMap<>();
+                labels.put("task", work.getTaskId());
+                labels.put("swimlane", work.getDataConsumer().getSwimlaneId());
+
+                for (DTaskStat stat : work.getStats()) {
+                    for (Map.Entry<String, Long> total : stat.getLocalTotals().entrySet()) {
+                        Map<String, String> rowLabels = new LinkedHashMap<>(labels);
+                        rowLabels.put("schema", stat.getSchema());
+                        rowLabels.put("table", stat.getTable());
+                        rowLabels.put("type", total.getKey());
+                        rows.add(rowLabels, total.getValue());
+                    }
+                }
+
+                for (Map.Entry<StageType, StageJob> stage : work.getStageJobs().entrySet()) {
+                    if (stage.getValue() instanceof AbstractStageJob) {
+                        AbstractStageJob job = (AbstractStageJob) stage.getValue();
+                        Map<String, String> stageLabels = new LinkedHashMap<>(labels);
+                        stageLabels.put("stage", stage.getKey().name());
+                        ThreadUsage usage = job.getStageMetrics().getThreadUsage();
+                        stageCpu.add(stageLabels, usage.getCpuNanos() / 1e9);
+                        stageAllocated.add(stageLabels, usage.getAllocatedBytes());
+                        if (job.getCarrierCapacity() > 0) {
+                            carrierSize.add(stageLabels, job.getCarrierSize());
+                            carrierUsage.add(stageLabels, job.getCarrierSize() * 1.0 / job.getCarrierCapacity());
+                        }
+                    }
+                }
+
+                addHistogram(loadLatency, labels, work.getLoadLatency().peek(), LOAD_LATENCY_BUCKETS);
+
+                lag.add(labels, work.getConsumerLag());
+
+                if (null != work.getMemoryAccount()) {
+                    memoryUsed.add(labels, work.getMemoryAccount().getUsed());
+                }
+
+                long spilledBytes = work.getSpilledBytes();
+                if (spilledBytes >= 0) {
+                    spilled.add(labels, spilledBytes);
+                }
+
+                if (null != work.getRowPool()) {
+                    pooledRows.add(labels, work.getRowPool().getRowSize());
+                }
+
+                if (null != work.getHeartbeatProbe()) {
+                    long probe = work.getHeartbeatProbe().getLag();
+                    if (probe >= 0) {
+                        replicationLag.add(labels, probe);
+                    }
+                    addHistogram(probeLag, labels, work.getHeartbeatProbe().getLagHistogram().peek(), REPLICATION_LAG_BUCKETS);
+                }
+
+                if (work.getDataLoader() instanceof AbstractDataLoader && loaderTasks.add(work.getTaskId())) {
+                    Object client = ((AbstractDataLoader) work.getDataLoader()).getLoadClient();
+                    if (client instanceof JDBCClient) {
+                        JDBCClient jdbcClient = (JDBCClient) client;
+                        Map<String, String> taskLabels = new LinkedHashMap<>();
+                        taskLabels.put("task", work.getTaskId());
+                        poolActive.add(taskLabels, jdbcClient.getPoolActiveCount());
+                        poolMax.add(taskLabels, jdbcClient.getPoolMaxActive());
+                        poolWaiting.add(taskLabels, jdbcClient.getPoolWaitThreadCount());
+                    }
+                }
+            } catch (Throwable e) {
+                LOGGER.warn("采集泳道{}-{}运行指标失败", work.getTaskId(), work.getDataConsumer().getSwimlaneId(), e);
+            }
+        }
+
+        memoryNodeUsed.add(new LinkedHashMap<>(), MemoryBudget.INSTANCE.getUsed());
+        memoryNodeLimit.add(new LinkedHashMap<>(), MemoryBudget.INSTANCE.getLimit());
+
+        List<MetricFamily> families = new ArrayList<>();
+        families.add(rows);
+        families.add(carrierSize);
+        families.add(carrierUsage);
+        families.add(stageCpu);
+        families.add(stageAllocated);
+        families.add(loadLatency);
+        families.add(lag);
+        families.add(replicationLag);
+        families.add(probeLag);
+        families.add(poolActive);
+        families.add(poolMax);
+        families.add(poolWaiting);
+        families.add(memoryUsed);
+        families.add(memoryNodeUsed);
+        families.add(memoryNodeLimit);
+        families.add(spilled);
+        families.add(pooledRows);
+        return families;
+    }
+
+    private void addHistogram(MetricFamily family, Map<String, String> labels, LatencyHistogram.Snapshot snapshot, long[] bounds) {
+        for (long bound : bounds) {
+            Map<String, String> bucketLabels = new LinkedHashMap<>(labels);
+            bucketLabels.put("le", Long.toString(bound));
+            family.add(family.getName() + "_bucket", bucketLabels, snapshot.countAtOrBelow(bound));
+        }
+        Map<String, String> infLabels = new LinkedHashMap<>(labels);
+        infLabels.put("le", "+Inf");
+        family.add(family.getName() + "_bucket", infLabels, snapshot.getCount());
+        family.add(family.getName() + "_sum", labels, snapshot.getSum());
+        family.add(family.getName() + "_count", labels, snapshot.getCount());
+    }
+}
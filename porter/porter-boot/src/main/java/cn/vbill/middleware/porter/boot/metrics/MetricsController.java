@@ -0,0 +1,66 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.boot.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Prometheus文本格式指标接口
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月14日 16:05
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月14日 16:05
+ */
+@RestController
+public class MetricsController {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Autowired
+    private MetricsCollector collector;
+
+    /**
+     * metrics
+     *
+     * @return
+     */
+    @GetMapping(value = "/metrics", produces = CONTENT_TYPE)
+    public String metrics() {
+        StringBuilder text = new StringBuilder();
+        for (MetricFamily family : collector.collect()) {
+            if (family.getSamples().isEmpty()) {
+                continue;
+            }
+            text.append("# HELP ").append(family.getName()).append(' ').append(family.getHelp()).append('\n');
+            text.append("# TYPE ").append(family.getName()).append(' ').append(family.getType()).append('\n');
+            for (MetricFamily.Sample sample : family.getSamples()) {
+                text.append(sample.getKey()).append(' ').append(format(sample.getValue())).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
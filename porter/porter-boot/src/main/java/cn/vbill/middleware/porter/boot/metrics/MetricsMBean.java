@@ -0,0 +1,142 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.boot.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 以JMX方式导出节点运行指标。
+ * 每个采样值对应一个只读属性，属性名与Prometheus文本格式的指标名加标签一致，读取时实时采集
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月14日 16:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月14日 16:20
+ */
+@Component
+public class MetricsMBean implements DynamicMBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsMBean.class);
+    private static final String OBJECT_NAME = "cn.vbill.middleware.porter:type=Metrics";
+
+    @Autowired
+    private MetricsCollector collector;
+
+    /**
+     * 注册到平台MBeanServer
+     */
+    @PostConstruct
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("注册运行指标MBean失败", e);
+        }
+    }
+
+    /**
+     * 从平台MBeanServer注销
+     */
+    @PreDestroy
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("注销运行指标MBean失败", e);
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Double value = samples().get(attribute);
+        if (null == value) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("运行指标只读:" + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Double> samples = samples();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            if (samples.containsKey(attribute)) {
+                list.add(new Attribute(attribute, samples.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributes = collector.collect().stream().flatMap(f -> f.getSamples().stream()
+                .map(s -> new MBeanAttributeInfo(s.getKey(), Double.class.getName(), f.getHelp(), true, false, false)))
+                .toArray(MBeanAttributeInfo[]::new);
+        return new MBeanInfo(getClass().getName(), "porter节点运行指标", attributes, null, new MBeanOperationInfo[0], null);
+    }
+
+    private Map<String, Double> samples() {
+        Map<String, Double> samples = new LinkedHashMap<>();
+        for (MetricFamily family : collector.collect()) {
+            for (MetricFamily.Sample sample : family.getSamples()) {
+                samples.put(sample.getKey(), sample.getValue());
+            }
+        }
+        return samples;
+    }
+}
@@ -78,15 +78,14 @@ public class StandaloneClusterTaskListener extends StandaloneListener implements
             throw new TaskStopTriggerException("节点集群客户端链接失效");
         }
         String position = listenPath() + "/" + command.getTaskId() + "/position/" + command.getSwimlaneId();
-        client.setData(position, command.getPosition(), -1);
+        client.setPosition(position, command.getPosition());
     }
 
     @Override
     public void query(TaskPositionQueryCommand command) {
         String positionPath = listenPath() + "/" + command.getTaskId() + "/position/" + command.getSwimlaneId();
-        Pair<String, Boolean> positionPair = client.getData(positionPath);
-        String position = null != positionPair && !StringUtils.isBlank(positionPair.getLeft())
-                ? positionPair.getLeft() : StringUtils.EMPTY;
+        String storedPosition = client.getPosition(positionPath);
+        String position = !StringUtils.isBlank(storedPosition) ? storedPosition : StringUtils.EMPTY;
         if (null != command.getCallback()) {
             command.getCallback().callback(position);
         }
@@ -17,16 +17,20 @@
 
 package cn.vbill.middleware.porter.cluster.zookeeper;
 
+import cn.vbill.middleware.porter.common.client.impl.ZookeeperClient;
 import cn.vbill.middleware.porter.common.cluster.ClusterListenerFilter;
+import cn.vbill.middleware.porter.common.cluster.command.NodeLoadQueryCommand;
 import cn.vbill.middleware.porter.common.cluster.command.NodeRegisterCommand;
 import cn.vbill.middleware.porter.common.cluster.command.ShutdownCommand;
 import cn.vbill.middleware.porter.common.cluster.command.TaskAssignedCommand;
 import cn.vbill.middleware.porter.common.cluster.command.TaskStopCommand;
+import cn.vbill.middleware.porter.common.cluster.command.broadcast.NodeLoadQuery;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.NodeRegister;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.Shutdown;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.TaskAssigned;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.TaskStop;
 import cn.vbill.middleware.porter.common.cluster.data.DNode;
+import cn.vbill.middleware.porter.common.cluster.data.DObject;
 import cn.vbill.middleware.porter.common.cluster.data.DTaskLock;
 import cn.vbill.middleware.porter.common.cluster.event.ClusterEvent;
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterEvent;
@@ -43,6 +47,7 @@ import cn.vbill.middleware.porter.common.task.TaskEventProvider;
 import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
 import cn.vbill.middleware.porter.common.util.MachineUtils;
 import cn.vbill.middleware.porter.core.NodeContext;
+import cn.vbill.middleware.porter.core.NodeLoad;
 import com.alibaba.fastjson.JSONObject;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -53,8 +58,11 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -69,7 +77,7 @@ import java.util.regex.Pattern;
  * @review: zhangkewei[zhang_kw@suixingpay.com]/2017年12月15日 10:09
  */
 public class ZKClusterNodeListener extends ZookeeperClusterListener implements TaskEventProvider, NodeRegister,
-        Shutdown, TaskAssigned, TaskStop {
+        Shutdown, TaskAssigned, TaskStop, NodeLoadQuery {
     private static final String ZK_PATH = BASE_CATALOG + "/node";
     private static final Pattern NODE_ORDER_PATTERN = Pattern.compile(ZK_PATH + "/.*/order/.*");
 
@@ -80,6 +88,7 @@ public class ZKClusterNodeListener extends ZookeeperClusterListener implements T
     private static final Logger LOGGER = LoggerFactory.getLogger(ZKClusterNodeListener.class);
     private static final String STAT_PATH = "/stat";
     private static final String TASK_PATH = "/task/";
+    private static final String LOCK_PATH = "/lock";
 
     @Override
     public String listenPath() {
@@ -176,7 +185,7 @@ public class ZKClusterNodeListener extends ZookeeperClusterListener implements T
         //重置任务状态
         NodeContext.INSTANCE.resetHealthLevel();
         String nodePath = listenPath() + "/" + nrCommend.getId();
-        String lockPath = nodePath + "/lock";
+        String lockPath = nodePath + LOCK_PATH;
         String statPath = nodePath + STAT_PATH;
 
         client.createWhenNotExists(nodePath, false, false, null);
@@ -209,6 +218,8 @@ public class ZKClusterNodeListener extends ZookeeperClusterListener implements T
                                 nodeData.setAddress(MachineUtils.IP_ADDRESS);
                                 nodeData.setProcessId(MachineUtils.CURRENT_JVM_PID + "");
                                 nodeData.setHostName(MachineUtils.HOST_NAME);
+                                //设置节点负载
+                                NodeLoad.INSTANCE.sample(nodeData);
                                 NodeContext.INSTANCE.flushClusterNode(nodeData);
                                 //通知数据到zookeeper
                                 client.setData(statPath, nodeData.toString(), dataPair.getRight().getVersion());
@@ -235,7 +246,7 @@ public class ZKClusterNodeListener extends ZookeeperClusterListener implements T
     @Override
     public void shutdown(ShutdownCommand command) {
         NodeContext.INSTANCE.syncNodeStatus(NodeStatusType.SUSPEND);
-        client.delete(listenPath() + "/" + NodeContext.INSTANCE.getNodeId() + "/lock");
+        client.delete(listenPath() + "/" + NodeContext.INSTANCE.getNodeId() + LOCK_PATH);
         heartbeatWorker.shutdownNow();
     }
 
@@ -271,6 +282,33 @@ public class ZKClusterNodeListener extends ZookeeperClusterListener implements T
         }
     }
 
+    @Override
+    public void queryNodeLoad(NodeLoadQueryCommand command) throws Exception {
+        List<String> nodeIds = client.getChildren(listenPath());
+        List<String> lockPaths = new ArrayList<>(nodeIds.size());
+        nodeIds.forEach(id -> lockPaths.add(listenPath() + "/" + id + LOCK_PATH));
+        //先批量确认节点存活，再并发读取存活节点的心跳信息
+        Map<String, Stat> locks = client.exists(lockPaths, false);
+        Map<String, CompletableFuture<Pair<String, Stat>>> stats = new LinkedHashMap<>();
+        for (String id : nodeIds) {
+            if (null != locks.get(listenPath() + "/" + id + LOCK_PATH)) {
+                stats.put(id, client.getDataAsync(listenPath() + "/" + id + STAT_PATH));
+            }
+        }
+        List<DObject> nodes = new ArrayList<>(stats.size());
+        for (Map.Entry<String, CompletableFuture<Pair<String, Stat>>> stat : stats.entrySet()) {
+            try {
+                Pair<String, Stat> dataPair = ZookeeperClient.await(stat.getValue());
+                if (StringUtils.isNotBlank(dataPair.getLeft())) {
+                    nodes.add(DNode.fromString(dataPair.getLeft(), DNode.class));
+                }
+            } catch (KeeperException.NoNodeException e) {
+                LOGGER.debug("节点{}心跳信息不存在", stat.getKey());
+            }
+        }
+        command.getCallback().callback(nodes);
+    }
+
     /**
      * 触发TaskEvent
      *
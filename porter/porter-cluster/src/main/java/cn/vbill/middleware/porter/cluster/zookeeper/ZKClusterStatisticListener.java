@@ -18,25 +18,44 @@
 package cn.vbill.middleware.porter.cluster.zookeeper;
 
 import cn.vbill.middleware.porter.common.cluster.ClusterListenerFilter;
+import cn.vbill.middleware.porter.common.cluster.command.ShutdownCommand;
 import cn.vbill.middleware.porter.common.cluster.command.StatisticUploadCommand;
+import cn.vbill.middleware.porter.common.cluster.command.broadcast.Shutdown;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.StatisticUpload;
 import cn.vbill.middleware.porter.common.cluster.event.ClusterEvent;
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterEvent;
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterListener;
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterListenerFilter;
+import cn.vbill.middleware.porter.common.config.source.ZookeeperConfig;
+import cn.vbill.middleware.porter.common.statistics.StatisticBatch;
 import cn.vbill.middleware.porter.common.statistics.StatisticData;
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
 import cn.vbill.middleware.porter.core.NodeContext;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
- * 统计信息上传
+ * 统计信息上传。
+ * 配置批量上传间隔后，日志与TPS指标先在本地缓存，按间隔或条数合并为一个压缩包上传为/statistic/batch下的一个节点，
+ * 或经统计上传客户端发送为一条kafka消息。节点停止时上传剩余的缓存
  * @author: zhangkewei[zhang_kw@suixingpay.com]
  * @date: 2017年12月15日 10:09
  * @version: V1.0
  * @review: zhangkewei[zhang_kw@suixingpay.com]/2017年12月15日 10:09
  */
-public class ZKClusterStatisticListener extends ZookeeperClusterListener implements StatisticUpload {
+public class ZKClusterStatisticListener extends ZookeeperClusterListener implements StatisticUpload, Shutdown {
     private static final String ZK_PATH = BASE_CATALOG + "/statistic";
 
+    //待上传的统计信息
+    private final List<StatisticData> batch = new ArrayList<>();
+    private volatile long batchInterval = 0;
+    private volatile int batchSize = 1000;
+    private volatile ScheduledExecutorService batchService;
+
     @Override
     public String listenPath() {
         return ZK_PATH;
@@ -71,15 +90,75 @@ public class ZKClusterStatisticListener extends ZookeeperClusterListener impleme
     public void upload(StatisticUploadCommand command) throws Exception {
         StatisticData data = command.getStatisticData();
         data.setNodeId(NodeContext.INSTANCE.getNodeId());
+        if (batchInterval > 0) {
+            boolean full;
+            synchronized (batch) {
+                batch.add(data);
+                //缓存期间节点已停止
+                full = batch.size() >= batchSize || batchInterval <= 0;
+            }
+            if (full) {
+                flush();
+            }
+            return;
+        }
         client.createWhenNotExists(listenPath() + "/" + data.getCategory(), false, false, "{}");
         String dataNode = listenPath() + "/" + data.getCategory() + "/" + data.getId();
         client.uploadStatistic(dataNode, data.getKey(), data.toString());
     }
 
+    /**
+     * 合并上传缓存的统计信息
+     */
+    private void flush() {
+        List<StatisticData> records;
+        synchronized (batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            records = new ArrayList<>(batch);
+            batch.clear();
+        }
+        try {
+            StatisticBatch data = new StatisticBatch(NodeContext.INSTANCE.getNodeId(), records);
+            String dataNode = listenPath() + "/" + data.getCategory() + "/" + data.getId();
+            client.uploadStatistic(dataNode, data.getKey(), data.toString());
+        } catch (Throwable e) {
+            LOGGER.warn("批量上传统计信息失败,忽略异常", e);
+        }
+    }
+
     @Override
     public void start() {
         client.createWhenNotExists(listenPath(), false, false, null);
         client.createWhenNotExists(listenPath() + "/task", false, false, "{}");
         client.createWhenNotExists(listenPath() + "/log", false, false, "{}");
+        ZookeeperConfig config = client.getConfig();
+        batchInterval = config.getStatisticBatchInterval();
+        batchSize = Math.max(1, config.getStatisticBatchSize());
+        if (batchInterval > 0 && null == batchService) {
+            client.createWhenNotExists(listenPath() + "/" + StatisticBatch.NAME, false, false, "{}");
+            batchService = Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("StatisticBatch"));
+            batchService.scheduleWithFixedDelay(this::flush, batchInterval, batchInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void shutdown(ShutdownCommand command) {
+        //停止后到达的统计信息直接上传
+        synchronized (batch) {
+            batchInterval = 0;
+        }
+        ScheduledExecutorService service = batchService;
+        batchService = null;
+        if (null != service) {
+            service.shutdown();
+            try {
+                service.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
     }
-}
\ No newline at end of file
+}
@@ -35,9 +35,11 @@ import cn.vbill.middleware.porter.common.cluster.command.broadcast.TaskStatQuery
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.TaskStatUpload;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.TaskStop;
 import cn.vbill.middleware.porter.common.cluster.command.broadcast.TaskStoppedByError;
+import cn.vbill.middleware.porter.common.cluster.data.DCallback;
 import cn.vbill.middleware.porter.common.cluster.data.DObject;
 import cn.vbill.middleware.porter.common.cluster.data.DTaskLock;
 import cn.vbill.middleware.porter.common.cluster.data.DTaskStat;
+import cn.vbill.middleware.porter.common.cluster.data.DTaskStatSnapshot;
 import cn.vbill.middleware.porter.common.cluster.event.ClusterEvent;
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterEvent;
 import cn.vbill.middleware.porter.common.cluster.impl.zookeeper.ZookeeperClusterListener;
@@ -50,20 +52,27 @@ import cn.vbill.middleware.porter.common.task.TaskEventListener;
 import cn.vbill.middleware.porter.common.task.TaskEventProvider;
 import cn.vbill.middleware.porter.common.util.MachineUtils;
 import cn.vbill.middleware.porter.core.NodeContext;
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.data.Stat;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * 任务信息监听,一期配置文件配置
+ * 任务进度按泳道写入一个快照节点(见DTaskStatSnapshot)，每个上报周期每个泳道一次zookeeper写操作
  *
  * @author: zhangkewei[zhang_kw@suixingpay.com]
  * @date: 2017年12月15日 10:09
@@ -78,6 +87,10 @@ public class ZKClusterTaskListener extends ZookeeperClusterListener implements T
     private final List<TaskEventListener> taskListener;
 
     private static final String LOCK_PATH = "/lock/";
+    private static final String STAT_PATH = "/stat/";
+    private static final int REGISTER_ATTEMPTS = 3;
+    //各泳道累计进度，首次上报时从zookeeper加载，之后只写不读
+    private final Map<String, SwimlaneStat> swimlaneStats = new ConcurrentHashMap<>();
 
     public ZKClusterTaskListener() {
         this.taskListener = new ArrayList<>();
@@ -166,82 +179,194 @@ public class ZKClusterTaskListener extends ZookeeperClusterListener implements T
         String statPath = taskPath + "/stat";
         String errorPath = taskPath + "/error";
         String position = taskPath + "/position";
-        client.createWhenNotExists(taskPath, false, true, null);
-        client.createWhenNotExists(assignPath, false, true, null);
-        client.createWhenNotExists(statPath, false, true, null);
-        client.createWhenNotExists(errorPath, false, true, null);
-        client.createWhenNotExists(position, false, false, StringUtils.EMPTY);
-
-
-        //创建任务统计节点
-        try {
-            String alertNode = statPath + "/" + task.getSwimlaneId();
-            if (!client.isExists(alertNode, true)) {
-                client.create(alertNode, false, "{}");
-            }
-        } catch (Exception e) {
-            LOGGER.error("创建任务统计节点失败->task:{},node:{},consume-resource:{},", task.getTaskId(),
-                    NodeContext.INSTANCE.getNodeId(), task.getSwimlaneId(), e);
-        }
-
+        //任务统计节点
+        String alertNode = statPath + "/" + task.getSwimlaneId();
         //任务分配
         String topicPath = assignPath + "/" + task.getSwimlaneId();
-        if (!client.isExists(topicPath, true)) {
-            try {
-                //为当前工作节点分配任务topic
-                client.create(topicPath, false, new DTaskLock(task.getTaskId(), NodeContext.INSTANCE.getNodeId(),
-                        task.getSwimlaneId()).toString());
-                //通知对此感兴趣的Listener
-                ClusterProviderProxy.INSTANCE.broadcast(new TaskAssignedCommand(task.getTaskId(), task.getSwimlaneId()));
-                client.delete(errorPath + "/" + task.getSwimlaneId());
-            } catch (KeeperException.NodeExistsException e) {
+        String errorNode = errorPath + "/" + task.getSwimlaneId();
+
+        //按顺序创建的节点及初始值
+        Map<String, String> paths = new LinkedHashMap<>();
+        paths.put(taskPath, null);
+        paths.put(assignPath, null);
+        paths.put(statPath, null);
+        paths.put(errorPath, null);
+        paths.put(position, StringUtils.EMPTY);
+        paths.put(alertNode, "{}");
+        List<String> checkPaths = new ArrayList<>(paths.keySet());
+        checkPaths.add(topicPath);
+        checkPaths.add(errorNode);
+
+        //一次往返查询节点状态，缺失节点、任务锁与错误标记清除在一个事务内提交，其他节点并发注册同一任务时重试
+        for (int attempt = 1; ; attempt++) {
+            Map<String, Stat> stats = client.exists(checkPaths, true);
+            if (null != stats.get(topicPath)) {
                 taskAssignCheck(topicPath);
                 LOGGER.error("任务{}已分配", topicPath);
                 throw new TaskLockException(topicPath + ",锁定资源失败。");
             }
-        } else {
-            taskAssignCheck(topicPath);
-            LOGGER.error("任务{}已分配", topicPath);
-            throw new TaskLockException(topicPath + ",锁定资源失败。");
+            List<Op> ops = new ArrayList<>();
+            paths.forEach((path, data) -> {
+                if (null == stats.get(path)) {
+                    ops.add(client.createOp(path, false, data));
+                }
+            });
+            //为当前工作节点分配任务topic
+            ops.add(client.createOp(topicPath, false, new DTaskLock(task.getTaskId(), NodeContext.INSTANCE.getNodeId(),
+                    task.getSwimlaneId()).toString()));
+            if (null != stats.get(errorNode)) {
+                ops.add(Op.delete(errorNode, -1));
+            }
+            try {
+                client.multi(ops);
+                break;
+            } catch (KeeperException e) {
+                String failed = failedPath(ops, e);
+                if (topicPath.equals(failed) && e.code() == KeeperException.Code.NODEEXISTS) {
+                    taskAssignCheck(topicPath);
+                    LOGGER.error("任务{}已分配", topicPath);
+                    throw new TaskLockException(topicPath + ",锁定资源失败。");
+                }
+                if (attempt >= REGISTER_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.warn("注册任务{}时节点{}已变化,重试", topicPath, failed);
+            }
         }
+        //通知对此感兴趣的Listener
+        ClusterProviderProxy.INSTANCE.broadcast(new TaskAssignedCommand(task.getTaskId(), task.getSwimlaneId()));
+    }
+
+    /**
+     * multi执行失败的操作路径
+     * @param ops
+     * @param e
+     * @return
+     */
+    private String failedPath(List<Op> ops, KeeperException e) {
+        List<OpResult> results = e.getResults();
+        if (null != results) {
+            for (int index = 0; index < results.size() && index < ops.size(); index++) {
+                OpResult result = results.get(index);
+                if (result instanceof OpResult.ErrorResult) {
+                    int err = ((OpResult.ErrorResult) result).getErr();
+                    if (err != KeeperException.Code.OK.intValue() && err != KeeperException.Code.RUNTIMEINCONSISTENCY.intValue()) {
+                        return ops.get(index).getPath();
+                    }
+                }
+            }
+        }
+        return e.getPath();
     }
 
     @Override
     public void uploadStat(TaskStatCommand command) {
-        DTaskStat dataStat = command.getStat();
+        List<DTaskStat> stats = command.getStats();
+        if (null == stats || stats.isEmpty()) {
+            return;
+        }
+        DTaskStat first = stats.get(0);
         //.intern()保证全局唯一字符串对象
-        String node = (listenPath() + "/" + dataStat.getTaskId() + "/stat/" + dataStat.getSwimlaneId()
-                + "/" + dataStat.getSchema() + "." + dataStat.getTable()).intern();
+        String node = (listenPath() + "/" + first.getTaskId() + STAT_PATH + first.getSwimlaneId()).intern();
         //控制锁的粒度到每个consume-resource节点，
         synchronized (node) {
-            //1.创建默认节点
-            DTaskStat thisStat = new DTaskStat(dataStat.getTaskId(), NodeContext.INSTANCE.getNodeId(),
-                    dataStat.getSwimlaneId(), dataStat.getSchema(), dataStat.getTable());
-            client.createWhenNotExists(node, false, true, thisStat.toString());
-
-            //2.节点合并赋值并上传
-            Pair<String, Stat> nodePair = client.getData(node);
-            LOGGER.debug("stat checkout from zookeeper:{}", nodePair.getLeft());
-            //remoteStat
-            DTaskStat taskStat = DTaskStat.fromString(nodePair.getLeft(), DTaskStat.class);
+            //节点被其他进程修改时重新加载，再尝试一次
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try {
+                    //1.加载泳道累计进度
+                    SwimlaneStat swimlane = swimlaneStats.get(node);
+                    //本次尝试是否从zookeeper重新读取
+                    boolean fresh = null == swimlane;
+                    if (fresh) {
+                        client.createWhenNotExists(node, false, true, "{}");
+                        swimlane = loadSwimlaneStat(node);
+                        swimlaneStats.put(node, swimlane);
+                    }
+
+                    //2.合并本地区间增量，callback只作用于本次读取的远端进度
+                    mergeStats(swimlane, stats, fresh ? command.getCallback() : null, NodeContext.INSTANCE.getNodeId());
+
+                    //3.泳道快照一次写入
+                    Stat stat = client.setData(node, DTaskStatSnapshot.encode(new ArrayList<>(swimlane.tables.values())),
+                            swimlane.version);
+                    swimlane.version = stat.getVersion();
+                    LOGGER.debug("stat store in zookeeper:{},tables:{}", node, swimlane.tables.size());
+                    //已迁移到快照的旧版按表进度节点
+                    for (String legacy : swimlane.legacy) {
+                        client.delete(legacy);
+                    }
+                    swimlane.legacy.clear();
+                    return;
+                } catch (KeeperException.BadVersionException e) {
+                    swimlaneStats.remove(node);
+                    LOGGER.warn("任务进度状态已被修改,重新加载:{}", node);
+                } catch (Throwable e) {
+                    //累计进度保留在本地，下次上报时写入
+                    LOGGER.warn("任务进度状态上传失败", e);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 合并本地区间增量到泳道累计进度
+     * @param swimlane
+     * @param stats
+     * @param callback 非空时在合并前作用于每张表的累计进度
+     * @param nodeId
+     */
+    static void mergeStats(SwimlaneStat swimlane, List<DTaskStat> stats, DCallback callback, String nodeId) {
+        for (DTaskStat dataStat : stats) {
+            DTaskStat taskStat = swimlane.tables.computeIfAbsent(DTaskStatSnapshot.key(dataStat),
+                    k -> new DTaskStat(dataStat.getTaskId(), nodeId, dataStat.getSwimlaneId(), dataStat.getSchema(),
+                            dataStat.getTable()));
             //run callback before merge data
-            if (null != command.getCallback()) {
-                command.getCallback().callback(taskStat);
+            if (null != callback) {
+                callback.callback(taskStat);
             }
-            //merge from localStat
             taskStat.merge(dataStat);
-            try {
-                //upload stat
-                client.setData(node, taskStat.toString(), nodePair.getRight().getVersion());
-                LOGGER.debug("stat store in zookeeper:{}", JSON.toJSONString(taskStat));
-            } catch (Throwable e) {
-                LOGGER.warn("任务进度状态上传失败", e);
+            taskStat.setNodeId(nodeId);
+        }
+    }
+
+    /**
+     * 从zookeeper加载泳道累计进度，兼容旧版按表存储的进度节点
+     * @param node
+     * @return
+     * @throws Exception
+     */
+    private SwimlaneStat loadSwimlaneStat(String node) throws Exception {
+        Pair<String, Stat> nodePair = client.getData(node);
+        SwimlaneStat swimlane = new SwimlaneStat(nodePair.getRight().getVersion());
+        if (DTaskStatSnapshot.isSnapshot(nodePair.getLeft())) {
+            for (DTaskStat taskStat : DTaskStatSnapshot.decode(nodePair.getLeft())) {
+                swimlane.tables.put(DTaskStatSnapshot.key(taskStat), taskStat);
+            }
+            return swimlane;
+        }
+        //各表节点并发读取
+        Map<String, CompletableFuture<Pair<String, Stat>>> children = new LinkedHashMap<>();
+        for (String child : client.getChildren(node)) {
+            String fullChild = node + "/" + child;
+            LOGGER.debug("got \"{}\" children node \"{}\".", node, fullChild);
+            children.put(fullChild, client.getDataAsync(fullChild));
+        }
+        for (Map.Entry<String, CompletableFuture<Pair<String, Stat>>> child : children.entrySet()) {
+            String fullChild = child.getKey();
+            Pair<String, Stat> childPair = ZookeeperClient.await(child.getValue());
+            if (null != childPair && !StringUtils.isBlank(childPair.getLeft())) {
+                DTaskStat taskStat = DTaskStat.fromString(childPair.getLeft(), DTaskStat.class);
+                swimlane.tables.put(DTaskStatSnapshot.key(taskStat), taskStat);
+                swimlane.legacy.add(fullChild);
             }
         }
+        return swimlane;
     }
 
     @Override
     public void stopTask(TaskStopCommand command) throws Exception {
+        swimlaneStats.remove(listenPath() + "/" + command.getTaskId() + STAT_PATH + command.getSwimlaneId());
         String node = listenPath() + "/" + command.getTaskId() + LOCK_PATH + command.getSwimlaneId();
 
         if (client.isExists(node, true)) {
@@ -256,24 +381,14 @@ public class ZKClusterTaskListener extends ZookeeperClusterListener implements T
 
     @Override
     public void queryTaskStat(TaskStatQueryCommand command) {
-        String node = listenPath() + "/" + command.getTaskId() + "/stat/" + command.getSwimlaneId();
-        LOGGER.debug("query \"{}\" children node.", node);
+        String node = listenPath() + "/" + command.getTaskId() + STAT_PATH + command.getSwimlaneId();
+        LOGGER.debug("query \"{}\" stat.", node);
 
-        List<String> children = client.getChildren(node);
         List<DObject> stats = new ArrayList<>();
-        for (String child : children) {
-            String fullChild = node + "/" + child;
-            LOGGER.debug("got \"{}\" children node \"{}\".", node, fullChild);
-            try {
-                Pair<String, Stat> nodePair = client.getData(fullChild);
-                if (null != nodePair && !StringUtils.isBlank(nodePair.getLeft())) {
-                    LOGGER.debug("got \"{}\" children node \"{}\" value {}.", node, fullChild, nodePair.getLeft());
-                    DTaskStat taskStat = DTaskStat.fromString(nodePair.getLeft(), DTaskStat.class);
-                    stats.add(taskStat);
-                }
-            } catch (Exception e) {
-                LOGGER.warn("查询任务进度状态失败", e);
-            }
+        try {
+            stats.addAll(loadSwimlaneStat(node).tables.values());
+        } catch (Exception e) {
+            LOGGER.warn("查询任务进度状态失败", e);
         }
         if (null != command.getCallback()) {
             command.getCallback().callback(stats);
@@ -340,4 +455,18 @@ public class ZKClusterTaskListener extends ZookeeperClusterListener implements T
             LOGGER.warn("尝试删除任务占用");
         }
     }
+
+    /**
+     * 泳道累计进度
+     */
+    static class SwimlaneStat {
+        final Map<String, DTaskStat> tables = new TreeMap<>();
+        //待删除的旧版按表进度节点
+        final List<String> legacy = new ArrayList<>();
+        int version;
+
+        SwimlaneStat(int version) {
+            this.version = version;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.cluster.zookeeper;
+
+import cn.vbill.middleware.porter.common.cluster.data.DCallback;
+import cn.vbill.middleware.porter.common.cluster.data.DObject;
+import cn.vbill.middleware.porter.common.cluster.data.DTaskStat;
+import cn.vbill.middleware.porter.common.cluster.data.DTaskStatSnapshot;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 进度上报时callback只作用于本次从zookeeper读取的远端进度，版本冲突重试时不作用于本地缓存
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月22日 17:40
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月22日 17:40
+ */
+public class ZKClusterTaskListenerTest {
+    private static final Date REGISTERED = new Date(1000);
+    private DTaskStat local;
+    private List<DTaskStat> callbacks;
+    private DCallback callback;
+
+    @Before
+    public void init() {
+        local = stat("t_order");
+        callbacks = new ArrayList<>();
+        //与TaskWork一致，远端进度只取一次
+        callback = new DCallback() {
+            @Override
+            public void callback(DObject object) {
+                DTaskStat remoteData = (DTaskStat) object;
+                callbacks.add(remoteData);
+                if (local.getUpdateStat().compareAndSet(false, true)) {
+                    local.setRegisteredTime(remoteData.getRegisteredTime());
+                }
+            }
+        };
+    }
+
+    @Test
+    public void retryAppliesCallbackOnFreshData() throws Exception {
+        //本地缓存的旧进度
+        ZKClusterTaskListener.SwimlaneStat cached = swimlane(0, 5, new Date(2000));
+        //其他节点写入后的远端进度
+        String remote = DTaskStatSnapshot.encode(new ArrayList<>(swimlane(1, 10, REGISTERED).tables.values()));
+        List<DTaskStat> delta = Arrays.asList(delta("t_order", 3));
+
+        //第一次尝试使用缓存，写入时版本冲突
+        ZKClusterTaskListener.mergeStats(cached, delta, null, "node");
+        Assert.assertTrue(callbacks.isEmpty());
+        Assert.assertFalse(local.getUpdateStat().get());
+
+        //重新读取后重试
+        ZKClusterTaskListener.SwimlaneStat fresh = new ZKClusterTaskListener.SwimlaneStat(1);
+        for (DTaskStat stat : DTaskStatSnapshot.decode(remote)) {
+            fresh.tables.put(DTaskStatSnapshot.key(stat), stat);
+        }
+        ZKClusterTaskListener.mergeStats(fresh, delta, callback, "node");
+        Assert.assertEquals(1, callbacks.size());
+        Assert.assertEquals(REGISTERED, local.getRegisteredTime());
+        //增量只合并到本次读取的进度
+        Assert.assertEquals(13, fresh.tables.get("db.t_order").getInsertRow().get());
+    }
+
+    @Test
+    public void callbackRunsBeforeMerge() {
+        ZKClusterTaskListener.SwimlaneStat fresh = swimlane(0, 10, REGISTERED);
+        List<Long> seen = new ArrayList<>();
+        ZKClusterTaskListener.mergeStats(fresh, Arrays.asList(delta("t_order", 3), delta("t_user", 7)),
+                new DCallback() {
+                    @Override
+                    public void callback(DObject object) {
+                        seen.add(((DTaskStat) object).getInsertRow().get());
+                    }
+                }, "node2");
+        Assert.assertEquals(Arrays.asList(10L, 0L), seen);
+        Assert.assertEquals(13, fresh.tables.get("db.t_order").getInsertRow().get());
+        Assert.assertEquals(7, fresh.tables.get("db.t_user").getInsertRow().get());
+        Assert.assertEquals("node2", fresh.tables.get("db.t_order").getNodeId());
+        Assert.assertEquals("node2", fresh.tables.get("db.t_user").getNodeId());
+    }
+
+    private static ZKClusterTaskListener.SwimlaneStat swimlane(int version, long insertRow, Date registeredTime) {
+        ZKClusterTaskListener.SwimlaneStat swimlane = new ZKClusterTaskListener.SwimlaneStat(version);
+        DTaskStat stat = stat("t_order");
+        stat.getInsertRow().set(insertRow);
+        stat.setRegisteredTime(registeredTime);
+        swimlane.tables.put(DTaskStatSnapshot.key(stat), stat);
+        return swimlane;
+    }
+
+    private static DTaskStat delta(String table, long insertRow) {
+        DTaskStat stat = stat(table);
+        stat.getInsertRow().set(insertRow);
+        return stat;
+    }
+
+    private static DTaskStat stat(String table) {
+        return new DTaskStat("1", "node", "0", "db", table);
+    }
+}
@@ -18,6 +18,11 @@
 package cn.vbill.middleware.porter.core;
 
 import cn.vbill.middleware.porter.common.cluster.data.DNode;
+import cn.vbill.middleware.porter.common.config.MemoryConfig;
+import cn.vbill.middleware.porter.common.config.PlacementConfig;
+import cn.vbill.middleware.porter.common.config.SchedulerConfig;
+import cn.vbill.middleware.porter.common.config.SpillConfig;
+import cn.vbill.middleware.porter.common.config.StartupConfig;
 import cn.vbill.middleware.porter.common.dic.ClusterPlugin;
 import cn.vbill.middleware.porter.common.dic.NodeHealthLevel;
 import cn.vbill.middleware.porter.common.dic.NodeStatusType;
@@ -58,6 +63,16 @@ public enum NodeContext {
 
     private volatile boolean force;
 
+    private volatile PlacementConfig placement = new PlacementConfig();
+
+    private volatile StartupConfig startup = new StartupConfig();
+
+    private volatile SchedulerConfig scheduler = new SchedulerConfig();
+
+    private volatile MemoryConfig memory = new MemoryConfig();
+
+    private volatile SpillConfig spill = new SpillConfig();
+
     /**
      * 获取Bean
      *
@@ -221,6 +236,29 @@ public enum NodeContext {
         tagHealthLevelWhenWorkChange();
     }
 
+    /**
+     * 节点可执行工作数量
+     *
+     * @return
+     */
+    public int getWorkLimit() {
+        try {
+            nodeLock.readLock().lock();
+            return node.getWorkLimit();
+        } finally {
+            nodeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 节点已占用工作数量
+     *
+     * @return
+     */
+    public int getWorkUsed() {
+        return node.getWorkUsed().get();
+    }
+
     /**
      * 粗粒度的node lock加上细粒度的workUsed乐观锁
      * 如果申请work失败，则丧失执行任务的机会
@@ -427,6 +465,56 @@ public enum NodeContext {
         }
     }
 
+    public void placement(PlacementConfig config) {
+        if (null != config) {
+            placement = config;
+        }
+    }
+
+    public PlacementConfig getPlacement() {
+        return placement;
+    }
+
+    public void startup(StartupConfig config) {
+        if (null != config) {
+            startup = config;
+        }
+    }
+
+    public StartupConfig getStartup() {
+        return startup;
+    }
+
+    public void scheduler(SchedulerConfig config) {
+        if (null != config) {
+            scheduler = config;
+        }
+    }
+
+    public SchedulerConfig getScheduler() {
+        return scheduler;
+    }
+
+    public void memory(MemoryConfig config) {
+        if (null != config) {
+            memory = config;
+        }
+    }
+
+    public MemoryConfig getMemory() {
+        return memory;
+    }
+
+    public void spill(SpillConfig config) {
+        if (null != config) {
+            spill = config;
+        }
+    }
+
+    public SpillConfig getSpill() {
+        return spill;
+    }
+
     public String getAddress() {
         try {
             nodeLock.readLock().lock();
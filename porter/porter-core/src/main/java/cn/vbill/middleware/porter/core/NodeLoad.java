@@ -0,0 +1,137 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core;
+
+import cn.vbill.middleware.porter.common.cluster.data.DNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 节点负载。
+ * 心跳时采样进程CPU使用率、堆内存使用率与上次心跳以来的载入吞吐量写入节点信息，
+ * 综合负载按CPU、堆内存、泳道占用比例与吞吐量(相对集群最大值)加权，取值0~1，越大越繁忙
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月19日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月19日 10:30
+ */
+public enum NodeLoad {
+
+    /**
+     * INSTANCE
+     */
+    INSTANCE();
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeLoad.class);
+    private static final double CPU_WEIGHT = 0.35;
+    private static final double HEAP_WEIGHT = 0.25;
+    private static final double SWIMLANE_WEIGHT = 0.2;
+    private static final double THROUGHPUT_WEIGHT = 0.2;
+
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    //节点累计载入行数
+    private final AtomicLong loadedRows = new AtomicLong(0);
+    private long lastRows = 0;
+    private long lastSampleTime = System.currentTimeMillis();
+
+    /**
+     * 记录载入行数
+     * @param rows
+     */
+    public void recordRows(long rows) {
+        loadedRows.addAndGet(rows);
+    }
+
+    /**
+     * 采样节点负载写入节点信息
+     * @param node
+     */
+    public synchronized void sample(DNode node) {
+        long now = System.currentTimeMillis();
+        long rows = loadedRows.get();
+        long elapsed = Math.max(1, now - lastSampleTime);
+        node.setThroughput((rows - lastRows) * TimeUnit.MINUTES.toMillis(1) / elapsed);
+        lastRows = rows;
+        lastSampleTime = now;
+        node.setCpuLoad(cpuLoad());
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        node.setHeapUsage(max > 0 ? Math.min(1, heap.getUsed() * 1.0 / max) : 0);
+        node.setWorkLimit(NodeContext.INSTANCE.getWorkLimit());
+    }
+
+    private double cpuLoad() {
+        try {
+            if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+                double load = ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuLoad();
+                if (load >= 0) {
+                    return load;
+                }
+            }
+            //不支持进程CPU使用率时按系统平均负载折算
+            double average = osBean.getSystemLoadAverage();
+            return average >= 0 ? Math.min(1, average / osBean.getAvailableProcessors()) : 0;
+        } catch (Throwable e) {
+            LOGGER.debug("读取CPU使用率失败", e);
+            return 0;
+        }
+    }
+
+    /**
+     * 节点综合负载
+     * @param node
+     * @param swimlanes 节点泳道数量
+     * @param maxThroughput 集群节点最大吞吐量
+     * @return
+     */
+    public double score(DNode node, int swimlanes, long maxThroughput) {
+        double swimlaneUsage = node.getWorkLimit() > 0 ? Math.min(1, swimlanes * 1.0 / node.getWorkLimit()) : 1;
+        double throughput = maxThroughput > 0 ? node.getThroughput() * 1.0 / maxThroughput : 0;
+        return CPU_WEIGHT * node.getCpuLoad() + HEAP_WEIGHT * node.getHeapUsage()
+                + SWIMLANE_WEIGHT * swimlaneUsage + THROUGHPUT_WEIGHT * throughput;
+    }
+
+    /**
+     * 节点泳道数量，本节点以实时占用为准，其他节点以集群登记为准
+     * @param node
+     * @return
+     */
+    public int swimlanes(DNode node) {
+        int swimlanes = node.getSwimlanes();
+        if (null != node.getNodeId() && node.getNodeId().equals(NodeContext.INSTANCE.getNodeId())) {
+            swimlanes = Math.max(swimlanes, NodeContext.INSTANCE.getWorkUsed());
+        }
+        return swimlanes;
+    }
+
+    /**
+     * 集群节点最大吞吐量
+     * @param nodes
+     * @return
+     */
+    public long maxThroughput(List<DNode> nodes) {
+        return nodes.stream().mapToLong(DNode::getThroughput).max().orElse(0);
+    }
+}
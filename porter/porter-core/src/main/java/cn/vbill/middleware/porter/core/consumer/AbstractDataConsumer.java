@@ -20,6 +20,7 @@ package cn.vbill.middleware.porter.core.consumer;
 import cn.vbill.middleware.porter.core.event.s.EventProcessor;
 import cn.vbill.middleware.porter.core.event.s.MessageEvent;
 import cn.vbill.middleware.porter.common.client.MetaQueryClient;
+import cn.vbill.middleware.porter.common.client.impl.JDBCClient;
 import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
 import cn.vbill.middleware.porter.core.event.s.EventConverter;
 import cn.vbill.middleware.porter.common.consumer.ConsumeClient;
@@ -57,6 +58,19 @@ public abstract class AbstractDataConsumer implements DataConsumer {
     //初始消费下标
     @Setter private  String offset;
 
+    //预读批次数量,大于0时由独立线程预读消费源
+    @Setter @Getter private volatile int prefetchBatches = 0;
+    private volatile ConsumePrefetcher prefetcher;
+
+    //自适应单次提取数量上下限,上限为0时不开启
+    @Setter @Getter private volatile int minFetchSize = 100;
+    @Setter @Getter private volatile int maxFetchSize = 0;
+
+    //源端心跳表 schema.table
+    @Setter @Getter private volatile String heartbeatTable;
+    //心跳写入间隔，单位秒
+    @Setter @Getter private volatile long heartbeatInterval = 10;
+
     /**
      * 获取PluginName
      *
@@ -96,6 +110,15 @@ public abstract class AbstractDataConsumer implements DataConsumer {
         return null != metaQueryClient ? metaQueryClient.getDataCount(schema, table, updateColum, startDate, endDate) : -1;
     }
 
+    @Override
+    public boolean writeHeartbeat(String probeId, String nodeId, long probeTime) throws TaskStopTriggerException, InterruptedException {
+        if (StringUtils.isBlank(heartbeatTable) || !(metaQueryClient instanceof JDBCClient)) {
+            return false;
+        }
+        ((JDBCClient) metaQueryClient).saveHeartbeat(heartbeatTable, probeId, nodeId, probeTime);
+        return true;
+    }
+
     @Override
     public boolean isMatch(String consumerName) {
         return getPluginName().equals(consumerName);
@@ -112,6 +135,9 @@ public abstract class AbstractDataConsumer implements DataConsumer {
 
     @Override
     public void shutdown() throws Exception {
+        if (null != prefetcher) {
+            prefetcher.shutdown();
+        }
         if (!consumeClient.isPublic()) {
             consumeClient.shutdown();
         }
@@ -125,6 +151,21 @@ public abstract class AbstractDataConsumer implements DataConsumer {
         consumeClient.initializePosition(taskId, swimlaneId, position);
     }
 
+    @Override
+    public void initializePosition(String taskId, String swimlaneId, String position, boolean exact) throws TaskStopTriggerException {
+        consumeClient.initializePosition(taskId, swimlaneId, position, exact);
+    }
+
+    @Override
+    public void setOffsetsCommittedExternally(boolean external) {
+        consumeClient.setOffsetsCommittedExternally(external);
+    }
+
+    @Override
+    public String getCommittedPosition(String position) throws TaskStopTriggerException {
+        return consumeClient.getCommittedPosition(consumeClient.getSwimlaneId(), position);
+    }
+
     /**
      * fetch
      *
@@ -136,6 +177,54 @@ public abstract class AbstractDataConsumer implements DataConsumer {
         return doFetch();
     }
 
+    /**
+     * 从消费源读取并通过callback转换。开启预读时从预读队列按顺序取出批次，转换仍在调用线程执行
+     * 自动提交消费进度的消费源不预读，避免任务停止时丢弃已提交进度的预读数据
+     *
+     * @param callback
+     * @return
+     * @throws TaskStopTriggerException
+     * @throws InterruptedException
+     */
+    protected List<MessageEvent> fetchFromSource(ConsumeClient.FetchCallback<MessageEvent, Object> callback)
+            throws TaskStopTriggerException, InterruptedException {
+        if (prefetchBatches > 0 && !consumeClient.isAutoCommitPosition()) {
+            if (null == prefetcher) {
+                //首次调用时消费进度已经初始化
+                prefetcher = new ConsumePrefetcher(consumeClient, prefetchBatches);
+                prefetcher.start();
+            }
+            return prefetcher.take(callback);
+        }
+        return consumeClient.fetch(callback);
+    }
+
+    @Override
+    public void hibernate(long probeInterval) {
+        ConsumePrefetcher tmpPrefetcher = prefetcher;
+        if (null != tmpPrefetcher) {
+            tmpPrefetcher.hibernate(probeInterval);
+        }
+    }
+
+    @Override
+    public void wakeup() {
+        ConsumePrefetcher tmpPrefetcher = prefetcher;
+        if (null != tmpPrefetcher) {
+            tmpPrefetcher.wakeup();
+        }
+    }
+
+    @Override
+    public void setFetchSize(int fetchSize) {
+        consumeClient.setFetchSize(fetchSize);
+    }
+
+    @Override
+    public int getFetchSize() {
+        return consumeClient.getFetchSize();
+    }
+
     @Override
     public boolean supportMetaQuery() {
         return null != metaQueryClient;
@@ -0,0 +1,188 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.consumer;
+
+import cn.vbill.middleware.porter.common.consumer.ConsumeClient;
+import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消费源预读。
+ * 独立线程调用ConsumeClient.fetch读取原始消息，最多预读prefetchBatches个批次，队列满时阻塞；
+ * 消息转换仍在调用线程按批次顺序执行，网络等待与转换、后续阶段处理重叠。
+ * 泳道休眠时无数据的等待间隔放大到探测间隔，唤醒后恢复
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月11日 14:05
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月11日 14:05
+ */
+@SuppressWarnings("unchecked")
+class ConsumePrefetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumePrefetcher.class);
+    //预读队列为空时调用线程等待时长
+    private static final long TAKE_WAIT_MS = 50L;
+    //消费源无数据时预读线程等待时长，与SelectJob空轮询间隙一致
+    private static final long EMPTY_FETCH_WAIT_MS = 50L;
+
+    /**
+     * 只收集原始消息，记录客户端回调的是accept还是acceptAll
+     */
+    private static final ConsumeClient.FetchCallback<RawMessage, Object> RAW_CALLBACK = new ConsumeClient.FetchCallback<RawMessage, Object>() {
+        @Override
+        public <F, O> F accept(O o) {
+            return (F) new RawMessage(o, false);
+        }
+
+        @Override
+        public <F, O> List<F> acceptAll(O o) {
+            return Collections.singletonList((F) new RawMessage(o, true));
+        }
+    };
+
+    private final ConsumeClient client;
+    private final BlockingQueue<List<RawMessage>> batches;
+    private final Thread fetchThread;
+    private volatile boolean running = true;
+    private volatile TaskStopTriggerException stopError;
+    //消费源无数据时的等待时长，休眠时为探测间隔
+    private volatile long emptyFetchWait = EMPTY_FETCH_WAIT_MS;
+    private final Object emptyFetchLock = new Object();
+
+    ConsumePrefetcher(ConsumeClient client, int prefetchBatches) {
+        this.client = client;
+        this.batches = new ArrayBlockingQueue<>(prefetchBatches);
+        this.fetchThread = new DefaultNamedThreadFactory("ConsumePrefetcher-" + client.getSwimlaneId()).newThread(() -> prefetch());
+    }
+
+    void start() {
+        fetchThread.start();
+    }
+
+    void shutdown() {
+        running = false;
+        fetchThread.interrupt();
+        batches.clear();
+    }
+
+    /**
+     * 泳道休眠，无数据时按探测间隔读取
+     * @param probeInterval
+     */
+    void hibernate(long probeInterval) {
+        emptyFetchWait = Math.max(probeInterval, EMPTY_FETCH_WAIT_MS);
+    }
+
+    /**
+     * 泳道唤醒，立即恢复正常读取
+     */
+    void wakeup() {
+        emptyFetchWait = EMPTY_FETCH_WAIT_MS;
+        synchronized (emptyFetchLock) {
+            emptyFetchLock.notifyAll();
+        }
+    }
+
+    /**
+     * 按预读顺序取出一个批次并在调用线程完成转换
+     * @param callback
+     * @param <F>
+     * @return
+     * @throws TaskStopTriggerException
+     * @throws InterruptedException
+     */
+    <F> List<F> take(ConsumeClient.FetchCallback<F, Object> callback) throws TaskStopTriggerException, InterruptedException {
+        List<RawMessage> batch = batches.poll(TAKE_WAIT_MS, TimeUnit.MILLISECONDS);
+        if (null == batch) {
+            if (null != stopError) {
+                throw stopError;
+            }
+            return Collections.emptyList();
+        }
+        List<F> msgs = new ArrayList<>();
+        for (RawMessage raw : batch) {
+            try {
+                if (raw.all) {
+                    List<F> converted = callback.acceptAll(raw.value);
+                    if (null != converted && !converted.isEmpty()) {
+                        msgs.addAll(converted);
+                    }
+                } else {
+                    F converted = callback.accept(raw.value);
+                    if (null != converted) {
+                        msgs.add(converted);
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.error("预读消息转换失败:{}", client.getClientInfo(), e);
+            }
+        }
+        return msgs;
+    }
+
+    private void prefetch() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                List<RawMessage> batch = client.fetch(RAW_CALLBACK);
+                if (null != batch && !batch.isEmpty()) {
+                    batches.put(batch);
+                } else {
+                    synchronized (emptyFetchLock) {
+                        emptyFetchLock.wait(emptyFetchWait);
+                    }
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (TaskStopTriggerException e) {
+                //交给调用线程触发任务停止
+                stopError = e;
+                break;
+            } catch (Throwable e) {
+                LOGGER.error("预读消费源数据失败:{}", client.getClientInfo(), e);
+                try {
+                    Thread.sleep(EMPTY_FETCH_WAIT_MS);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+        LOGGER.info("消费源预读线程退出:{}", client.getClientInfo());
+    }
+
+    /**
+     * 原始消息
+     */
+    private static class RawMessage {
+        private final Object value;
+        private final boolean all;
+
+        RawMessage(Object value, boolean all) {
+            this.value = value;
+            this.all = all;
+        }
+    }
+}
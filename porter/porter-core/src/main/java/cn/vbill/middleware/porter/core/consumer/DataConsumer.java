@@ -151,6 +151,30 @@ public interface DataConsumer {
      */
     void initializePosition(String taskId, String swimlaneId, String position) throws TaskStopTriggerException;
 
+    /**
+     * 初始化消费同步点
+     * @param taskId
+     * @param swimlaneId
+     * @param position
+     * @param exact 位点为目标端已提交的精确位点，不需要回退重复消费
+     * @throws TaskStopTriggerException
+     */
+    void initializePosition(String taskId, String swimlaneId, String position, boolean exact) throws TaskStopTriggerException;
+
+    /**
+     * 消费进度由载入端随数据事务提交时，消费源不再自行提交
+     * @param external
+     */
+    void setOffsetsCommittedExternally(boolean external);
+
+    /**
+     * 查询消费源自身已提交的消费进度
+     * @param position 集群中保存的同步点
+     * @return 不支持或不存在时返回null
+     * @throws TaskStopTriggerException
+     */
+    String getCommittedPosition(String position) throws TaskStopTriggerException;
+
     /**
      * commitPosition
      *
@@ -246,4 +270,78 @@ public interface DataConsumer {
      */
     String getInitiatePosition();
     void setOffset(String offset);
+
+    /**
+     * 预读批次数量，0不预读
+     * @param prefetchBatches
+     */
+    void setPrefetchBatches(int prefetchBatches);
+
+    /**
+     * 泳道休眠，预读线程无数据时按探测间隔读取
+     * @param probeInterval 探测间隔，单位毫秒
+     */
+    void hibernate(long probeInterval);
+
+    /**
+     * 泳道唤醒，预读线程恢复正常读取
+     */
+    void wakeup();
+
+    /**
+     * 自适应单次提取数量下限
+     * @param minFetchSize
+     */
+    void setMinFetchSize(int minFetchSize);
+
+    int getMinFetchSize();
+
+    /**
+     * 自适应单次提取数量上限，0不开启自适应
+     * @param maxFetchSize
+     */
+    void setMaxFetchSize(int maxFetchSize);
+
+    int getMaxFetchSize();
+
+    /**
+     * 调整消费源单次提取数量
+     * @param fetchSize
+     */
+    void setFetchSize(int fetchSize);
+
+    /**
+     * 消费源当前单次提取数量，不支持调整时返回-1
+     * @return
+     */
+    int getFetchSize();
+
+    /**
+     * 源端心跳表，schema.table，为空不开启延迟探测
+     * @param heartbeatTable
+     */
+    void setHeartbeatTable(String heartbeatTable);
+
+    String getHeartbeatTable();
+
+    /**
+     * 心跳写入间隔，单位秒
+     * @param heartbeatInterval
+     */
+    void setHeartbeatInterval(long heartbeatInterval);
+
+    long getHeartbeatInterval();
+
+    /**
+     * 通过元数据数据源向源端心跳表写入探测时间戳
+     * @param probeId
+     * @param nodeId
+     * @param probeTime
+     * @return 元数据数据源不支持写入时返回false
+     * @throws TaskStopTriggerException
+     * @throws InterruptedException
+     */
+    default boolean writeHeartbeat(String probeId, String nodeId, long probeTime) throws TaskStopTriggerException, InterruptedException {
+        return false;
+    }
 }
@@ -110,6 +110,11 @@ public enum DataConsumerFactory {
             consumer.setIncludes(config.getIncludes());
             consumer.setEventProcessor(processor);
             consumer.setOffset(config.getOffset());
+            consumer.setPrefetchBatches(config.getPrefetchBatches());
+            consumer.setMinFetchSize(config.getMinFetchSize());
+            consumer.setMaxFetchSize(config.getMaxFetchSize());
+            consumer.setHeartbeatTable(config.getHeartbeatTable());
+            consumer.setHeartbeatInterval(config.getHeartbeatInterval());
 
             /**
              * 空查询告警参数
@@ -59,6 +59,11 @@ public class ETLBucket {
 
     private final Position position;
 
+    /**
+     * 批次内源端心跳探针 probeId -> 探测时间戳，心跳行不写入目标端
+     */
+    private Map<String, Long> heartbeats;
+
     public ETLBucket(String sequence, List<ETLRow> rows, Position position) {
         this.sequence = sequence;
         this.rows = rows;
@@ -80,10 +85,18 @@ public class ETLBucket {
      * @return
      */
     public static ETLBucket from(Pair<String, List<MessageEvent>> events) {
-        List<ETLRow> rows = new ArrayList<>();
+        return from(events, null);
+    }
+
+    /**
+     * 转换数据模型，优先复用回收池中的行与字段
+     * @param events
+     * @param pool 为null时不复用
+     * @return
+     */
+    public static ETLBucket from(Pair<String, List<MessageEvent>> events, ETLRowPool pool) {
+        int columnCount = 0;
         for (MessageEvent event : events.getRight()) {
-            LOGGER.debug(JSON.toJSONString(event));
-            List<ETLColumn> columns = new ArrayList<>();
             if (null == event.getBefore()) {
                 event.setBefore(new HashMap<>());
             }
@@ -93,6 +106,23 @@ public class ETLBucket {
             if (null == event.getPrimaryKeys()) {
                 event.setPrimaryKeys(new ArrayList<>());
             }
+            columnCount += !event.getAfter().isEmpty() ? event.getAfter().size() : event.getBefore().size();
+        }
+        //整批取出，每批次只加锁一次
+        ETLRow[] pooledRows = null != pool ? pool.pollRows(events.getRight().size()) : null;
+        ETLColumn[] pooledColumns = null != pool ? pool.pollColumns(columnCount) : null;
+        int rowIndex = 0;
+        int columnIndex = 0;
+
+        List<ETLRow> rows = new ArrayList<>(events.getRight().size());
+        for (MessageEvent event : events.getRight()) {
+            LOGGER.debug(JSON.toJSONString(event));
+            ETLRow row = null != pooledRows && rowIndex < pooledRows.length
+                    ? pooledRows[rowIndex++].reuse(event.getConsumedTime(), event.getConsumerTime(), event.getSchema(), event.getTable(),
+                    event.getOpType(), event.getOpTs(), event.getRowPosition())
+                    : new ETLRow(event.getConsumedTime(), event.getConsumerTime(), event.getSchema(), event.getTable(), event.getOpType(),
+                    new ArrayList<>(), event.getOpTs(), event.getRowPosition());
+            List<ETLColumn> columns = row.getColumns();
 
             Boolean loopAfter = !event.getAfter().isEmpty();
             for (Map.Entry<String, Object> entity : loopAfter ? event.getAfter().entrySet() : event.getBefore().entrySet()) {
@@ -145,11 +175,12 @@ public class ETLBucket {
                 finalValueStr = finalValueStr.equals("null") ? null : finalValueStr;
 
                 //源数据事件精度损失，转字符串也会有精度损失。后续观察处理
-                ETLColumn column = new ETLColumn(beforeMissing, afterMissing, entity.getKey(), newValueStr, oldValueStr, finalValueStr,
-                        event.getPrimaryKeys().contains(entity.getKey()));
+                boolean isKey = event.getPrimaryKeys().contains(entity.getKey());
+                ETLColumn column = null != pooledColumns && columnIndex < pooledColumns.length
+                        ? pooledColumns[columnIndex++].reuse(beforeMissing, afterMissing, entity.getKey(), newValueStr, oldValueStr, finalValueStr, isKey)
+                        : new ETLColumn(beforeMissing, afterMissing, entity.getKey(), newValueStr, oldValueStr, finalValueStr, isKey);
                 columns.add(column);
             }
-            ETLRow row = new ETLRow(event.getConsumedTime(), event.getConsumerTime(), event.getSchema(), event.getTable(), event.getOpType(), columns, event.getOpTs(), event.getRowPosition());
             rows.add(row.toUpperCase());
             LOGGER.debug(JSON.toJSONString(row));
         }
@@ -180,6 +211,23 @@ public class ETLBucket {
         return position;
     }
 
+    /**
+     * 记录批次内的心跳探针，同一探针保留最新的时间戳
+     *
+     * @param probeId
+     * @param probeTime
+     */
+    public void tagHeartbeat(String probeId, long probeTime) {
+        if (null == heartbeats) {
+            heartbeats = new HashMap<>();
+        }
+        heartbeats.merge(probeId, probeTime, Math::max);
+    }
+
+    public Map<String, Long> getHeartbeats() {
+        return null == heartbeats ? new HashMap<>() : heartbeats;
+    }
+
     /**
      * markUnUsed
      *
@@ -188,14 +236,31 @@ public class ETLBucket {
      * @return: void
      */
     public void markUnUsed() {
+        markUnUsed(null);
+    }
+
+    /**
+     * 标记批次数据不可用，行与字段放回回收池
+     *
+     * @param pool 为null时不回收
+     */
+    public void markUnUsed(ETLRowPool pool) {
         try {
-            rows.forEach(r -> {
-                r.getExtendsField().clear();
-                r.getColumns().clear();
-                r.getAdditionalRequired().clear();
-            });
+            //回收时已清空行内集合，回收后的行可能已被EXTRACT阶段复用，不能再清空
+            if (null != pool) {
+                pool.recycle(rows);
+            } else {
+                rows.forEach(r -> {
+                    r.getExtendsField().clear();
+                    r.getColumns().clear();
+                    r.getAdditionalRequired().clear();
+                });
+            }
             rows.clear();
             batchRows.clear();
+            if (null != heartbeats) {
+                heartbeats.clear();
+            }
         } catch (Throwable e) {
             LOGGER.warn("标记批次数据不可用出错", e);
         }
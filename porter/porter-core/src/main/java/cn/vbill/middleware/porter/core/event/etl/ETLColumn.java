@@ -26,16 +26,17 @@ import java.sql.Types;
  * @review: zhangkewei[zhang_kw@suixingpay.com]/2017年12月26日 10:59
  */
 public class ETLColumn {
+    //回收复用时重新赋值，不再声明为final
     //原始字段名
-    private final String name;
+    private String name;
     //原始更新后值
-    private final String newValue;
+    private String newValue;
     //原始更新前值
-    private final String oldValue;
+    private String oldValue;
     //before字段值没提供
-    private final boolean beforeMissing;
+    private boolean beforeMissing;
     //after字段值没提供
-    private final boolean afterMissing;
+    private boolean afterMissing;
 
     /**
      * 用户自定义转换插件
@@ -90,6 +91,27 @@ public class ETLColumn {
 
     public ETLColumn(boolean beforeMissing, boolean afterMissing, String name, String newValue, String oldValue, String finalValue, boolean isKey,
                      boolean required, int type) {
+        init(beforeMissing, afterMissing, name, newValue, oldValue, finalValue, isKey, required, type);
+    }
+
+    /**
+     * 复用回收的字段，与同参数的构造方法一致
+     * @param beforeMissing
+     * @param afterMissing
+     * @param name
+     * @param newValue
+     * @param oldValue
+     * @param finalValue
+     * @param isKey
+     * @return
+     */
+    ETLColumn reuse(boolean beforeMissing, boolean afterMissing, String name, String newValue, String oldValue, String finalValue, boolean isKey) {
+        init(beforeMissing, afterMissing, name, newValue, oldValue, finalValue, isKey, isKey, Types.VARCHAR);
+        return this;
+    }
+
+    private void init(boolean beforeMissing, boolean afterMissing, String name, String newValue, String oldValue, String finalValue, boolean isKey,
+                      boolean required, int type) {
         this.name = name;
         this.newValue = newValue;
         this.oldValue = oldValue;
@@ -37,17 +37,18 @@ import java.util.ArrayList;
  * @review: zhangkewei[zhang_kw@suixingpay.com]/2017年12月25日 18:41
  */
 public class ETLRow {
-    private final String schema;
-    private final String table;
+    //回收复用时重新赋值，不再声明为final
+    private String schema;
+    private String table;
     //操作时间，保留该字段可以在需要的时候计算出与最终执行时间间隔
-    private final Date opTime;
+    private Date opTime;
     //消息存储到consumer的时间
-    @Getter private final long consumerTime;
-    @Getter private final long consumedTime;
+    @Getter private long consumerTime;
+    @Getter private long consumedTime;
     //当前消息所在消费源的下标、顺序位置
-    private final Position position;
+    private Position position;
     //操作类型 I U D T
-    private final EventType opType;
+    private EventType opType;
 
 
 
@@ -76,10 +77,35 @@ public class ETLRow {
 
 
     public ETLRow(long consumedTime, long consumerTime, String schema, String table, EventType opType, List<ETLColumn> columns, Date opTime, Position position) {
+        this.columns = columns;
+        init(consumedTime, consumerTime, schema, table, opType, opTime, position);
+    }
+
+    /**
+     * 复用回收的行，字段由调用方重新填充到getColumns()
+     *
+     * @param consumedTime
+     * @param consumerTime
+     * @param schema
+     * @param table
+     * @param opType
+     * @param opTime
+     * @param position
+     * @return
+     */
+    ETLRow reuse(long consumedTime, long consumerTime, String schema, String table, EventType opType, Date opTime, Position position) {
+        columns.clear();
+        additionalRequired.clear();
+        extendsField.clear();
+        isKeyChangedOnUpdate = false;
+        init(consumedTime, consumerTime, schema, table, opType, opTime, position);
+        return this;
+    }
+
+    private void init(long consumedTime, long consumerTime, String schema, String table, EventType opType, Date opTime, Position position) {
         this.schema = schema;
         this.table = table;
         this.opType = opType;
-        this.columns = columns;
         this.opTime = opTime;
         this.consumerTime = consumerTime;
         this.consumedTime = consumedTime;
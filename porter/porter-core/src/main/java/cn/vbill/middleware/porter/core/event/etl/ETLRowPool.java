@@ -0,0 +1,131 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.event.etl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 泳道内ETLRow、ETLColumn回收池。
+ * LOAD阶段批次载入并提交同步点后回收批次中的行与字段，EXTRACT阶段转换数据模型时优先复用，减少短生命周期对象的分配。
+ * 取出、回收按批次整体加锁一次，池中对象数量超出上限的部分交由GC回收。
+ * 回收后的对象会被覆盖，只对声明DataLoader.isRowRecyclable()的载入器开启
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月21日 16:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月21日 16:20
+ */
+public class ETLRowPool {
+    private static final ETLRow[] EMPTY_ROWS = new ETLRow[0];
+    private static final ETLColumn[] EMPTY_COLUMNS = new ETLColumn[0];
+    //平均每行缓存的字段数量上限
+    private static final int COLUMNS_PER_ROW = 64;
+
+    private final int maxRows;
+    private final int maxColumns;
+    private final Deque<ETLRow> rows = new ArrayDeque<>();
+    private final Deque<ETLColumn> columns = new ArrayDeque<>();
+
+    /**
+     * @param maxRows 缓存的行数上限
+     */
+    public ETLRowPool(int maxRows) {
+        this.maxRows = maxRows;
+        this.maxColumns = maxRows * COLUMNS_PER_ROW;
+    }
+
+    /**
+     * 取出最多count个回收的行，不足部分由调用方新建
+     * @param count
+     * @return
+     */
+    public synchronized ETLRow[] pollRows(int count) {
+        int size = Math.min(count, rows.size());
+        if (size == 0) {
+            return EMPTY_ROWS;
+        }
+        ETLRow[] polled = new ETLRow[size];
+        for (int index = 0; index < size; index++) {
+            polled[index] = rows.pollLast();
+        }
+        return polled;
+    }
+
+    /**
+     * 取出最多count个回收的字段，不足部分由调用方新建
+     * @param count
+     * @return
+     */
+    public synchronized ETLColumn[] pollColumns(int count) {
+        int size = Math.min(count, columns.size());
+        if (size == 0) {
+            return EMPTY_COLUMNS;
+        }
+        ETLColumn[] polled = new ETLColumn[size];
+        for (int index = 0; index < size; index++) {
+            polled[index] = columns.pollLast();
+        }
+        return polled;
+    }
+
+    /**
+     * 回收批次中的行及其字段，行内集合清空后保留容量
+     * @param recycled
+     */
+    public synchronized void recycle(List<ETLRow> recycled) {
+        for (ETLRow row : recycled) {
+            recycleColumns(row.getColumns());
+            recycleColumns(row.getAdditionalRequired());
+            row.getExtendsField().clear();
+            if (rows.size() < maxRows && null != row.getColumns()) {
+                rows.addLast(row);
+            }
+        }
+    }
+
+    private void recycleColumns(List<ETLColumn> recycled) {
+        if (null == recycled) {
+            return;
+        }
+        for (ETLColumn column : recycled) {
+            if (columns.size() >= maxColumns) {
+                break;
+            }
+            columns.addLast(column);
+        }
+        recycled.clear();
+    }
+
+    /**
+     * 池中的行数
+     * @return
+     */
+    public synchronized int getRowSize() {
+        return rows.size();
+    }
+
+    /**
+     * 池中的字段数
+     * @return
+     */
+    public synchronized int getColumnSize() {
+        return columns.size();
+    }
+}
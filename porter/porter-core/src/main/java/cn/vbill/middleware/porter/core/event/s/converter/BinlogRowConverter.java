@@ -0,0 +1,67 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.event.s.converter;
+
+import cn.vbill.middleware.porter.common.client.impl.binlog.BinlogRow;
+import cn.vbill.middleware.porter.common.consumer.Position;
+import cn.vbill.middleware.porter.common.dic.ConsumeConverterPlugin;
+import cn.vbill.middleware.porter.core.event.s.EventConverter;
+import cn.vbill.middleware.porter.core.event.s.EventType;
+import cn.vbill.middleware.porter.core.event.s.MessageEvent;
+
+import java.util.Date;
+
+/**
+ * binlog文件行格式转换
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月06日 15:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月06日 15:20
+ */
+public class BinlogRowConverter implements EventConverter {
+
+    @Override
+    public String getName() {
+        return ConsumeConverterPlugin.BINLOG_ROW.getCode();
+    }
+
+    @Override
+    public MessageEvent convert(Object... params) {
+        Position position = (Position) params[0];
+        BinlogRow row = (BinlogRow) params[1];
+        EventType eventType = EventType.type(row.getType());
+        if (eventType == EventType.UNKNOWN) {
+            return null;
+        }
+        MessageEvent event = new MessageEvent();
+        event.setSchema(row.getSchema());
+        event.setTable(row.getTable());
+        event.setOpType(eventType);
+        event.setOpTs(new Date(row.getExecuteTime()));
+        event.setCurrentTs(new Date());
+        event.getPrimaryKeys().addAll(row.getPrimaryKeys());
+        event.getBefore().putAll(row.getBefore());
+        event.getAfter().putAll(row.getAfter());
+        event.setRowPosition(position);
+        event.setBucketPosition(position);
+        event.setConsumerTime(row.getExecuteTime());
+        event.setConsumedTime(System.currentTimeMillis());
+        return event;
+    }
+}
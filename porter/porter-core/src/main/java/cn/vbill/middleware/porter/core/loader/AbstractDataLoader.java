@@ -40,6 +40,8 @@ public abstract class AbstractDataLoader implements DataLoader {
     private volatile MetaQueryClient metaQueryClient;
     //更新转插入策略开关
     private volatile boolean insertOnUpdateError = true;
+    //目标端消费位点表
+    private volatile String checkpointTable;
 
     /**
      * 获取PluginName
@@ -110,6 +112,15 @@ public abstract class AbstractDataLoader implements DataLoader {
         this.insertOnUpdateError = insertOnUpdateError;
     }
 
+    public String getCheckpointTable() {
+        return checkpointTable;
+    }
+
+    @Override
+    public void setCheckpointTable(String checkpointTable) {
+        this.checkpointTable = checkpointTable;
+    }
+
     @Override
     public String getClientInfo() {
         StringBuffer clientInfo = new StringBuffer();
@@ -21,6 +21,7 @@ import cn.vbill.middleware.porter.core.event.etl.ETLBucket;
 import cn.vbill.middleware.porter.common.client.LoadClient;
 import cn.vbill.middleware.porter.common.client.MetaQueryClient;
 import cn.vbill.middleware.porter.common.db.meta.TableSchema;
+import cn.vbill.middleware.porter.common.consumer.Position;
 import cn.vbill.middleware.porter.common.exception.TaskDataException;
 import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
 import cn.vbill.middleware.porter.core.event.etl.ETLRow;
@@ -28,6 +29,7 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author: zhangkewei[zhang_kw@suixingpay.com]
@@ -71,6 +73,63 @@ public interface DataLoader {
      */
     Pair<Boolean, List<SubmitStatObject>> load(ETLBucket bucket) throws TaskStopTriggerException, InterruptedException;
 
+    /**
+     * load数据接口，开启目标端位点时批次数据与消费位点在同一事务提交
+     * @param bucket
+     * @param taskId
+     * @param swimlaneId
+     * @return
+     */
+    default Pair<Boolean, List<SubmitStatObject>> load(ETLBucket bucket, String taskId, String swimlaneId)
+            throws TaskStopTriggerException, InterruptedException {
+        return load(bucket);
+    }
+
+    /**
+     * 查询目标端已提交的消费位点
+     * @param taskId
+     * @param swimlaneId
+     * @return 未开启或不存在时返回null
+     * @throws TaskStopTriggerException
+     */
+    default String queryCheckpoint(String taskId, String swimlaneId) throws TaskStopTriggerException {
+        return null;
+    }
+
+    /**
+     * 源端消费进度是否由载入端随数据事务提交
+     * @return
+     */
+    default boolean isSourcePositionInTransaction() {
+        return false;
+    }
+
+    /**
+     * load返回后是否不再持有批次中的ETLRow、ETLColumn，为true时载入完成的行与字段放回回收池复用。
+     * 异步写入行对象或缓存行对象的载入器不能返回true
+     * @return
+     */
+    default boolean isRowRecyclable() {
+        return false;
+    }
+
+    /**
+     * 取可以提交到集群的消费位点。源端消费进度随数据事务提交且事务延迟提交时，只返回事务已提交的位点，
+     * 避免集群位点超前于目标端已提交数据
+     * @param loaded 刚载入批次的消费位点，空闲轮询时为null
+     * @return 没有可提交位点时返回null
+     */
+    default Position pollCommittedPosition(Position loaded) {
+        return loaded;
+    }
+
+    /**
+     * 目标端后台提交事务失败时回调，用于立即停止任务
+     * @param listener
+     */
+    default void setTransactionFailureListener(Consumer<Throwable> listener) {
+    }
+
     /**
      * setLoadClient接口方法
      *
@@ -132,6 +191,12 @@ public interface DataLoader {
      */
     void setInsertOnUpdateError(boolean insertOnUpdateError);
 
+    /**
+     * 目标端消费位点表，为空不开启
+     * @param checkpointTable
+     */
+    void setCheckpointTable(String checkpointTable);
+
     /**
      * 获取ClientInfo接口方法
      *
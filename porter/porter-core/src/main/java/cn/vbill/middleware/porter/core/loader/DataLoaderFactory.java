@@ -69,6 +69,7 @@ public enum DataLoaderFactory {
         loader.setMetaQueryClient((MetaQueryClient) client);
         //新增数据载入策略开关
         loader.setInsertOnUpdateError(config.isInsertOnUpdateError());
+        loader.setCheckpointTable(config.getCheckpointTable());
         return loader;
     }
 
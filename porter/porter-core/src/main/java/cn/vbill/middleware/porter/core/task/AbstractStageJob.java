@@ -18,17 +18,25 @@
 package cn.vbill.middleware.porter.core.task;
 
 import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
+import cn.vbill.middleware.porter.core.NodeContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * 阶段性工作
+ * 阶段性工作。
+ * 默认由阶段独占线程循环执行loopLogic；开启共享调度时每轮loopLogic作为工作单元提交到节点共享线程池，
+ * 输出缓冲已满时本轮不执行，时间片用完后让出线程，保证提交到下游缓冲不会阻塞共享线程。
+ * 泳道长时间无数据时阶段进入休眠，独占线程退出，改由节点调度器按探测间隔执行，唤醒后恢复独占线程
  * @author: zhangkewei[zhang_kw@suixingpay.com]
  * @date: 2017年12月24日 11:04
  * @version: V1.0
@@ -37,9 +45,25 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public abstract class AbstractStageJob implements StageJob {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractStageJob.class);
     protected static final int LOGIC_THREAD_SIZE = 5;
+    //阶段自有计算线程空闲回收时间，单位秒
+    private static final long LOGIC_THREAD_KEEP_ALIVE = 60;
     private final AtomicBoolean stat = new AtomicBoolean(false);
-    private final Thread loopService;
+    private volatile Thread loopService;
     private final ThreadFactory threadFactory;
+    private final String threadName;
+    //由节点共享线程池执行
+    private final boolean shared;
+    private final long sliceNanos;
+    //本轮开始时间
+    private long sliceStart;
+    //共享线程池中正在执行本阶段的线程，停止时中断
+    private final Object tickLock = new Object();
+    private Thread tickThread;
+    //已计划的下一轮，休眠唤醒与停止时提前执行
+    private volatile ScheduledFuture<?> pendingTick;
+    //休眠中，按探测间隔执行
+    private final AtomicBoolean hibernating = new AtomicBoolean(false);
+    private final long probeInterval;
     //任务退出信号量，为了保证优雅关机时内存中的数据处理完毕
     private final Semaphore stopSignal;
 
@@ -50,14 +74,30 @@ public abstract class AbstractStageJob implements StageJob {
     //终止job保证先终止业务逻辑再清理连接
     private final CountDownLatch jobStopLatch = new CountDownLatch(1);
 
+    //阶段耗时与批次计数
+    private final StageMetrics stageMetrics;
+
     public AbstractStageJob(String baseThreadName) {
         this(baseThreadName, DEFAULT_THREAD_WAIT_SPAN);
     }
     public AbstractStageJob(String baseThreadName, Long threadWaitSpan) {
+        this(baseThreadName, threadWaitSpan, 1);
+    }
+
+    /**
+     * @param baseThreadName
+     * @param threadWaitSpan
+     * @param parallelism 阶段工作线程数，用于计算空闲耗时
+     */
+    public AbstractStageJob(String baseThreadName, Long threadWaitSpan, int parallelism) {
         this.threadWaitSpan = null == threadWaitSpan ? DEFAULT_THREAD_WAIT_SPAN : threadWaitSpan;
+        this.stageMetrics = new StageMetrics(parallelism);
         stopSignal = new Semaphore(1);
-        threadFactory = new DefaultNamedThreadFactory(baseThreadName + "-" + this.getClass().getSimpleName());
-        loopService = threadFactory.newThread(new LoopService());
+        threadName = baseThreadName + "-" + this.getClass().getSimpleName();
+        threadFactory = stageMetrics.getThreadUsage().track(new DefaultNamedThreadFactory(threadName));
+        shared = StageScheduler.INSTANCE.isShared();
+        sliceNanos = StageScheduler.INSTANCE.getSliceNanos();
+        probeInterval = Math.max(this.threadWaitSpan, NodeContext.INSTANCE.getScheduler().getProbeInterval());
     }
 
     /**
@@ -82,7 +122,12 @@ public abstract class AbstractStageJob implements StageJob {
     public void start() throws Exception {
         if (canStart() && stat.compareAndSet(false, true)) {
             doStart();
-            loopService.start();
+            if (shared) {
+                StageScheduler.INSTANCE.register();
+                StageScheduler.INSTANCE.submit(this::tick);
+            } else {
+                startLoop();
+            }
         }
     }
 
@@ -106,8 +151,21 @@ public abstract class AbstractStageJob implements StageJob {
                     LOGGER.debug("源队列为空，发送线程中断信号");
                 }
                 //先停止任务线程
-                loopService.interrupt();
+                synchronized (tickLock) {
+                    if (null != tickThread) {
+                        tickThread.interrupt();
+                    }
+                }
+                Thread loop = loopService;
+                if (null != loop) {
+                    loop.interrupt();
+                }
+                //休眠中的阶段立即执行一轮以结束
+                wakeTick();
                 jobStopLatch.await(10, TimeUnit.SECONDS);
+                if (hibernating.compareAndSet(true, false)) {
+                    StageScheduler.INSTANCE.hibernating(false);
+                }
             } catch (Throwable e) {
                 LOGGER.error("停止任务线程逻辑失败", e);
             } finally {
@@ -141,6 +199,13 @@ public abstract class AbstractStageJob implements StageJob {
                     loopLogic();
                     //不符合业务执行条件时，释放资源。线程沉睡10秒后继续执行
                     stopSignal.release();
+                    //休眠后独占线程退出，交由节点调度器按探测间隔执行
+                    if (hibernating.get() && getWorkingStat()) {
+                        loopService = null;
+                        StageScheduler.INSTANCE.register();
+                        scheduleTick(probeInterval, true);
+                        return;
+                    }
                     LOGGER.debug("源队列为空，线程进入等待.");
                     Thread.sleep(threadWaitSpan);
                 } catch (InterruptedException e) {
@@ -156,6 +221,179 @@ public abstract class AbstractStageJob implements StageJob {
             jobStopLatch.countDown();
         }
     }
+
+    /**
+     * 共享调度的工作单元，执行一轮loopLogic后按等待间隙重新提交
+     */
+    private void tick() {
+        //停止阶段时持有信号量，不再执行
+        if (!getWorkingStat() || !stopSignal.tryAcquire()) {
+            finishTick();
+            return;
+        }
+        long delay = threadWaitSpan;
+        synchronized (tickLock) {
+            tickThread = Thread.currentThread();
+        }
+        try {
+            sliceStart = System.nanoTime();
+            //输出缓冲已满时不提取数据，等待下游消费
+            if (!isOutputFull()) {
+                StageScheduler.run(threadName, stageMetrics.getThreadUsage(), this::loopLogic);
+                //时间片用完让出线程，立即排到队尾
+                if (System.nanoTime() - sliceStart >= sliceNanos) {
+                    delay = 0;
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.debug("{}收到中断信号", threadName);
+        } catch (Throwable e) {
+            LOGGER.error("{}执行阶段逻辑失败", threadName, e);
+        } finally {
+            synchronized (tickLock) {
+                tickThread = null;
+                //共享线程不保留本阶段的中断标记
+                Thread.interrupted();
+            }
+            stopSignal.release();
+        }
+        if (!getWorkingStat()) {
+            finishTick();
+        } else if (hibernating.get()) {
+            scheduleTick(probeInterval, true);
+        } else if (!shared) {
+            //唤醒后恢复独占线程
+            StageScheduler.INSTANCE.unregister();
+            startLoop();
+        } else if (delay <= 0) {
+            StageScheduler.INSTANCE.yield(this::tick);
+        } else {
+            scheduleTick(delay, false);
+        }
+    }
+
+    private void scheduleTick(long delay, boolean probing) {
+        pendingTick = StageScheduler.INSTANCE.schedule(this::tick, delay);
+        //休眠探测计划期间被唤醒或停止
+        if (probing && (!hibernating.get() || !getWorkingStat())) {
+            wakeTick();
+        }
+    }
+
+    /**
+     * 已计划的下一轮尚未执行时取消计划并立即执行，同一阶段仍只有一个工作单元
+     */
+    private void wakeTick() {
+        ScheduledFuture<?> pending = pendingTick;
+        if (null != pending && pending.cancel(false)) {
+            StageScheduler.INSTANCE.submit(this::tick);
+        }
+    }
+
+    private void finishTick() {
+        StageScheduler.INSTANCE.unregister();
+        jobStopLatch.countDown();
+    }
+
+    private void startLoop() {
+        Thread loop = threadFactory.newThread(new LoopService());
+        loopService = loop;
+        loop.start();
+    }
+
+    /**
+     * 阶段进入休眠，本轮结束后按探测间隔执行
+     */
+    public void hibernate() {
+        if (getWorkingStat() && hibernating.compareAndSet(false, true)) {
+            StageScheduler.INSTANCE.hibernating(true);
+        }
+    }
+
+    /**
+     * 唤醒休眠的阶段，立即执行下一轮并恢复原执行方式
+     */
+    public void wakeup() {
+        if (hibernating.compareAndSet(true, false)) {
+            StageScheduler.INSTANCE.hibernating(false);
+            wakeTick();
+        }
+    }
+
+    /**
+     * 是否休眠中
+     * @return
+     */
+    public boolean isHibernating() {
+        return hibernating.get();
+    }
+
+    /**
+     * loopLogic中是否继续处理下一批数据。在节点调度线程中执行时，时间片用完或输出缓冲已满即结束本轮
+     * @return
+     */
+    protected boolean canContinue() {
+        return getWorkingStat() && (!StageScheduler.INSTANCE.isWorkerThread()
+                || (System.nanoTime() - sliceStart < sliceNanos && !isOutputFull()));
+    }
+
+    /**
+     * 输出缓冲是否已满，共享调度时输出缓冲满后不再提取数据
+     * @return
+     */
+    protected boolean isOutputFull() {
+        long capacity = getCarrierCapacity();
+        return capacity > 0 && getCarrierSize() >= capacity;
+    }
+
+    /**
+     * 阶段内并行计算线程池。独立线程时为阶段自有线程池，线程阻塞时在调用者线程中执行；
+     * 共享调度时提交到节点计算线程池
+     * @param coreSize
+     * @param maxSize
+     * @param queueSize
+     * @return
+     */
+    protected ExecutorService newLogicExecutor(int coreSize, int maxSize, int queueSize) {
+        if (shared) {
+            return new StageComputeExecutor(StageScheduler.INSTANCE.compute(), threadName, stageMetrics.getThreadUsage());
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(coreSize, maxSize, LOGIC_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        //泳道无数据时回收计算线程
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public StageMetrics getStageMetrics() {
+        return stageMetrics;
+    }
+
+    /**
+     * 阶段输出缓冲占用比例，没有输出缓冲时为-1
+     * @return
+     */
+    public double getCarrierUsage() {
+        long capacity = getCarrierCapacity();
+        return capacity > 0 ? getCarrierSize() * 1.0 / capacity : -1;
+    }
+
+    /**
+     * 阶段输出缓冲中的数据量
+     * @return
+     */
+    public long getCarrierSize() {
+        return 0;
+    }
+
+    /**
+     * 阶段输出缓冲容量，没有输出缓冲时为0
+     * @return
+     */
+    public long getCarrierCapacity() {
+        return 0;
+    }
+
     protected ThreadFactory getThreadFactory() {
         return threadFactory;
     }
@@ -0,0 +1,243 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.task;
+
+import cn.vbill.middleware.porter.common.config.MemoryConfig;
+import cn.vbill.middleware.porter.core.NodeContext;
+import cn.vbill.middleware.porter.core.event.s.MessageEvent;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 节点内存预算。
+ * SELECT提取批次后按事件字段估算字节数计入泳道账户与节点总量，LOAD载入完成或批次在任一阶段被丢弃时释放。
+ * SELECT输出缓冲先进先出，EXTRACT取出批次时按顺序把最早的一笔估算值登记到批次序列号，释放时按序列号释放该批次的估算值，
+ * 批次失败被丢弃不会使后续批次的释放错位。
+ * 泳道超出自身预算时暂停提取；节点总量超出预算时，只有占用超过平均份额的泳道暂停，窄表不受宽表、大字段表影响
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月20日 16:40
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月20日 16:40
+ */
+public enum MemoryBudget {
+
+    /**
+     * INSTANCE
+     */
+    INSTANCE();
+    //事件对象、位点等固定开销估算
+    private static final int EVENT_OVERHEAD = 256;
+    //Map条目开销估算
+    private static final int ENTRY_OVERHEAD = 48;
+    //字符串对象头与数组头开销
+    private static final int STRING_OVERHEAD = 40;
+    private static final int ARRAY_OVERHEAD = 16;
+    //数字、日期等其他值
+    private static final int VALUE_SIZE = 24;
+    //等待预算的检查间隔，单位毫秒
+    private static final long WAIT_SPAN = 100;
+
+    private final AtomicLong used = new AtomicLong(0);
+    private final Set<Account> accounts = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 开立泳道账户
+     * @param name
+     * @return
+     */
+    public Account open(String name) {
+        long swimlaneBudget = NodeContext.INSTANCE.getMemory().getSwimlaneBudget();
+        Account account = new Account(name, swimlaneBudget > 0 ? swimlaneBudget * 1024 * 1024 : 0);
+        accounts.add(account);
+        return account;
+    }
+
+    /**
+     * 节点预算，单位字节，0不限制
+     * @return
+     */
+    public long getLimit() {
+        MemoryConfig config = NodeContext.INSTANCE.getMemory();
+        return config.getBudgetRatio() > 0 ? (long) (Runtime.getRuntime().maxMemory() * Math.min(1, config.getBudgetRatio())) : 0;
+    }
+
+    /**
+     * 节点估算占用，单位字节
+     * @return
+     */
+    public long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * 估算批次事件占用的堆内存
+     * @param events
+     * @return
+     */
+    public static long estimate(List<MessageEvent> events) {
+        long bytes = 0;
+        for (MessageEvent event : events) {
+            bytes += EVENT_OVERHEAD + estimate(event.getBefore()) + estimate(event.getAfter());
+        }
+        return bytes;
+    }
+
+    private static long estimate(Map<String, Object> values) {
+        if (null == values) {
+            return 0;
+        }
+        long bytes = 0;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            bytes += ENTRY_OVERHEAD + sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(Object value) {
+        if (null == value) {
+            return 0;
+        } else if (value instanceof CharSequence) {
+            return STRING_OVERHEAD + 2L * ((CharSequence) value).length();
+        } else if (value instanceof byte[]) {
+            return ARRAY_OVERHEAD + ((byte[]) value).length;
+        } else if (value instanceof char[]) {
+            return ARRAY_OVERHEAD + 2L * ((char[]) value).length;
+        }
+        return VALUE_SIZE;
+    }
+
+    private synchronized void released() {
+        notifyAll();
+    }
+
+    /**
+     * 泳道账户
+     */
+    public final class Account {
+        private final String name;
+        private final long limit;
+        //尚未被EXTRACT取出批次的估算值，按提取顺序
+        private final Deque<Long> charges = new ArrayDeque<>();
+        //已取出尚未释放批次的估算值，批次序列号 -> 估算值
+        private final Map<String, Long> assigned = new HashMap<>();
+        private long balance = 0;
+
+        private Account(String name, long limit) {
+            this.name = name;
+            this.limit = limit;
+        }
+
+        /**
+         * 预算是否用尽
+         * @return
+         */
+        public boolean isExhausted() {
+            long current = getUsed();
+            if (limit > 0 && current >= limit) {
+                return true;
+            }
+            long global = MemoryBudget.this.getLimit();
+            return global > 0 && used.get() >= global && current >= global / Math.max(1, accounts.size());
+        }
+
+        /**
+         * 等待预算可用，running返回false时不再等待
+         * @param running
+         * @throws InterruptedException
+         */
+        public void await(BooleanSupplier running) throws InterruptedException {
+            synchronized (MemoryBudget.this) {
+                while (running.getAsBoolean() && isExhausted()) {
+                    MemoryBudget.this.wait(WAIT_SPAN);
+                }
+            }
+        }
+
+        /**
+         * 记录提取的批次
+         * @param bytes
+         */
+        public synchronized void charge(long bytes) {
+            charges.addLast(bytes);
+            balance += bytes;
+            used.addAndGet(bytes);
+        }
+
+        /**
+         * 批次从SELECT输出缓冲取出，最早的一笔估算值登记到该批次
+         * @param sequence 批次序列号
+         */
+        public synchronized void assign(String sequence) {
+            Long bytes = charges.pollFirst();
+            if (null != bytes) {
+                assigned.put(sequence, bytes);
+            }
+        }
+
+        /**
+         * 批次载入完成或被丢弃，释放该批次的估算值，重复释放无影响
+         * @param sequence 批次序列号
+         */
+        public void release(String sequence) {
+            synchronized (this) {
+                Long bytes = assigned.remove(sequence);
+                if (null == bytes) {
+                    return;
+                }
+                balance -= bytes;
+                used.addAndGet(-bytes);
+            }
+            released();
+        }
+
+        /**
+         * 泳道停止，释放全部未载入批次
+         */
+        public void close() {
+            synchronized (this) {
+                used.addAndGet(-balance);
+                balance = 0;
+                charges.clear();
+                assigned.clear();
+            }
+            accounts.remove(this);
+            released();
+        }
+
+        public synchronized long getUsed() {
+            return balance;
+        }
+
+        public long getLimit() {
+            return limit;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阶段在节点计算线程池上的视图。
+ * 任务提交到共享计算线程池，以阶段线程名执行并计入阶段CPU耗时与内存分配；关闭只影响本阶段，
+ * 本阶段提交的任务全部执行完后视为终止，与阶段自有线程池shutdown后的语义一致
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月20日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月20日 10:30
+ */
+class StageComputeExecutor extends AbstractExecutorService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StageComputeExecutor.class);
+    private final ExecutorService shared;
+    private final String threadName;
+    private final ThreadUsage usage;
+    //已提交未执行完的任务数量
+    private int inflight = 0;
+    private volatile boolean shutdown = false;
+
+    StageComputeExecutor(ExecutorService shared, String threadName, ThreadUsage usage) {
+        this.shared = shared;
+        this.threadName = threadName;
+        this.usage = usage;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException(threadName + " is shutdown");
+            }
+            inflight++;
+        }
+        shared.execute(() -> {
+            try {
+                StageScheduler.run(threadName, usage, command::run);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                LOGGER.error("{}执行计算任务失败", threadName, e);
+            } finally {
+                synchronized (this) {
+                    inflight--;
+                    if (inflight == 0) {
+                        notifyAll();
+                    }
+                }
+                //计算线程由所有泳道共享，不保留任务中的中断标记
+                Thread.interrupted();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && inflight == 0;
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+}
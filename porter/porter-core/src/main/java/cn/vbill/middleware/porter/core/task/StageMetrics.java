@@ -0,0 +1,162 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.task;
+
+import cn.vbill.middleware.porter.common.statistics.StageStat;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 阶段运行计数。
+ * 只累加不清零，区间统计由两次累计值相减得到，状态上报与在线诊断各自保存上次读取的累计值，互不影响。
+ * 空闲耗时为区间时长乘以工作线程数减去处理耗时，CPU耗时与内存分配取自阶段线程的ThreadMXBean计数
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月15日 10:02
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月15日 10:02
+ */
+public class StageMetrics {
+    //占用比例按百万分之一精度累加
+    private static final double USAGE_SCALE = 1000000d;
+
+    private final int parallelism;
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder itemsIn = new LongAdder();
+    private final LongAdder itemsOut = new LongAdder();
+    private final LongAdder inputUsage = new LongAdder();
+    private final LongAdder inputSamples = new LongAdder();
+    private final ThreadUsage threadUsage = new ThreadUsage();
+
+    public StageMetrics(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 累加处理耗时
+     * @param nanos
+     */
+    public void busy(long nanos) {
+        busyNanos.add(nanos);
+    }
+
+    /**
+     * 取入一个批次
+     * @param carrierUsage 取入时上游缓冲占用比例，小于0表示没有上游缓冲
+     */
+    public void itemIn(double carrierUsage) {
+        itemsIn.increment();
+        if (carrierUsage >= 0) {
+            inputUsage.add((long) (carrierUsage * USAGE_SCALE));
+            inputSamples.increment();
+        }
+    }
+
+    /**
+     * 输出一个批次
+     */
+    public void itemOut() {
+        itemsOut.increment();
+    }
+
+    /**
+     * 阶段线程CPU耗时与内存分配
+     * @return
+     */
+    public ThreadUsage getThreadUsage() {
+        return threadUsage;
+    }
+
+    /**
+     * 当前累计值
+     * @return
+     */
+    public Totals totals() {
+        return new Totals(System.nanoTime(), busyNanos.sum(), itemsIn.sum(), itemsOut.sum(), inputUsage.sum(), inputSamples.sum(),
+                threadUsage.getCpuNanos(), threadUsage.getAllocatedBytes());
+    }
+
+    /**
+     * 计算两次累计值之间的区间统计
+     * @param stage
+     * @param from
+     * @param to
+     * @return
+     */
+    public StageStat between(String stage, Totals from, Totals to) {
+        StageStat stat = new StageStat();
+        stat.setStage(stage);
+        long capacity = Math.max(1, to.time - from.time) * parallelism;
+        long busy = Math.min(capacity, Math.max(0, to.busyNanos - from.busyNanos));
+        stat.setBusyMillis(busy / 1000000);
+        stat.setIdleMillis((capacity - busy) / 1000000);
+        stat.setUtilization(busy * 1.0 / capacity);
+        stat.setItemsIn(to.itemsIn - from.itemsIn);
+        stat.setItemsOut(to.itemsOut - from.itemsOut);
+        stat.setCpuMillis(Math.max(0, to.cpuNanos - from.cpuNanos) / 1000000);
+        stat.setAllocatedBytes(Math.max(0, to.allocatedBytes - from.allocatedBytes));
+        long samples = to.inputSamples - from.inputSamples;
+        if (samples > 0) {
+            stat.setInputUsage((to.inputUsage - from.inputUsage) / USAGE_SCALE / samples);
+        }
+        return stat;
+    }
+
+    /**
+     * 瓶颈阶段:处理耗时占比最高的阶段，占比相同时取上游缓冲占用更高的阶段
+     * @param stats
+     * @return
+     */
+    public static StageStat bottleneck(List<StageStat> stats) {
+        StageStat bottleneck = null;
+        for (StageStat stat : stats) {
+            if (null == bottleneck || stat.getUtilization() > bottleneck.getUtilization()
+                    || (stat.getUtilization() == bottleneck.getUtilization() && stat.getInputUsage() > bottleneck.getInputUsage())) {
+                bottleneck = stat;
+            }
+        }
+        return bottleneck;
+    }
+
+    /**
+     * 累计值
+     */
+    public static class Totals {
+        private final long time;
+        private final long busyNanos;
+        private final long itemsIn;
+        private final long itemsOut;
+        private final long inputUsage;
+        private final long inputSamples;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+
+        private Totals(long time, long busyNanos, long itemsIn, long itemsOut, long inputUsage, long inputSamples,
+                       long cpuNanos, long allocatedBytes) {
+            this.time = time;
+            this.busyNanos = busyNanos;
+            this.itemsIn = itemsIn;
+            this.itemsOut = itemsOut;
+            this.inputUsage = inputUsage;
+            this.inputSamples = inputSamples;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.task;
+
+import cn.vbill.middleware.porter.common.config.SchedulerConfig;
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
+import cn.vbill.middleware.porter.core.NodeContext;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 节点共享的阶段调度器。
+ * 各泳道阶段以"执行一轮loopLogic"为工作单元提交到有界线程池，先进先出排队；单元执行结束后按阶段等待间隙由定时器重新提交，
+ * 同一阶段任意时刻至多一个单元在队列或执行中，阶段内顺序与独占线程时一致。
+ * 单元连续执行超过时间片后让出线程，立即排到队尾，繁忙泳道不会占满调度线程。
+ * EXTRACT、TRANSFORM的并行计算提交到单独的计算线程池，计算任务不等待其他阶段，与调度线程之间不会互相等待。
+ * 休眠的泳道阶段释放独占线程，由本调度器按探测间隔低频执行，唤醒后恢复
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月20日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月20日 10:30
+ */
+public enum StageScheduler {
+    INSTANCE();
+
+    //调度线程标记
+    private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<>();
+    private volatile ThreadPoolExecutor workers;
+    private volatile ThreadPoolExecutor compute;
+    private volatile ScheduledExecutorService timer;
+
+    //由调度器执行的阶段数量
+    private final AtomicInteger units = new AtomicInteger(0);
+    //休眠中的阶段数量
+    private final AtomicInteger hibernating = new AtomicInteger(0);
+    //已执行单元数量、因时间片用完让出的数量
+    private final AtomicLong ticks = new AtomicLong(0);
+    private final AtomicLong yields = new AtomicLong(0);
+    //单元从提交到开始执行的累计排队耗时，单位纳秒
+    private final AtomicLong queueNanos = new AtomicLong(0);
+
+    /**
+     * 是否由节点共享线程池执行阶段逻辑
+     * @return
+     */
+    public boolean isShared() {
+        return NodeContext.INSTANCE.getScheduler().isShared();
+    }
+
+    /**
+     * 当前线程是否为调度线程，调度线程中不等待其他阶段
+     * @return
+     */
+    public boolean isWorkerThread() {
+        return Boolean.TRUE.equals(WORKER.get());
+    }
+
+    /**
+     * 时间片，单位纳秒
+     * @return
+     */
+    public long getSliceNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(1, NodeContext.INSTANCE.getScheduler().getSlice()));
+    }
+
+    /**
+     * 阶段开始由调度器执行
+     */
+    void register() {
+        units.incrementAndGet();
+    }
+
+    /**
+     * 阶段结束由调度器执行
+     */
+    void unregister() {
+        units.decrementAndGet();
+    }
+
+    /**
+     * 阶段进入或退出休眠
+     * @param sleeping
+     */
+    void hibernating(boolean sleeping) {
+        hibernating.addAndGet(sleeping ? 1 : -1);
+    }
+
+    /**
+     * 延迟delayMillis毫秒后提交工作单元
+     * @param unit
+     * @param delayMillis
+     * @return 定时提交计划
+     */
+    ScheduledFuture<?> schedule(Runnable unit, long delayMillis) {
+        return timer().schedule(() -> submit(unit), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 时间片用完，工作单元立即排到队尾
+     * @param unit
+     */
+    void yield(Runnable unit) {
+        yields.incrementAndGet();
+        submit(unit);
+    }
+
+    /**
+     * 立即提交工作单元
+     * @param unit
+     */
+    void submit(Runnable unit) {
+        long submitTime = System.nanoTime();
+        workers().execute(() -> {
+            queueNanos.addAndGet(System.nanoTime() - submitTime);
+            ticks.incrementAndGet();
+            unit.run();
+        });
+    }
+
+    /**
+     * 计算线程池
+     * @return
+     */
+    ExecutorService compute() {
+        initialize();
+        return compute;
+    }
+
+    private ThreadPoolExecutor workers() {
+        initialize();
+        return workers;
+    }
+
+    private ScheduledExecutorService timer() {
+        initialize();
+        return timer;
+    }
+
+    private void initialize() {
+        if (null != workers) {
+            return;
+        }
+        synchronized (this) {
+            if (null == workers) {
+                SchedulerConfig config = NodeContext.INSTANCE.getScheduler();
+                int cores = Runtime.getRuntime().availableProcessors();
+                int threads = config.getThreads() > 0 ? config.getThreads() : cores;
+                int computeThreads = config.getComputeThreads() > 0 ? config.getComputeThreads() : cores;
+                //每个阶段至多一个单元排队，计算任务由各阶段按输出缓冲限量提交，队列长度不会无限增长
+                compute = new ThreadPoolExecutor(computeThreads, computeThreads, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(), new DefaultNamedThreadFactory("StageCompute"));
+                timer = Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("StageTimer"));
+                ThreadFactory factory = new DefaultNamedThreadFactory("StageScheduler");
+                workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                        r -> factory.newThread(() -> {
+                            WORKER.set(Boolean.TRUE);
+                            r.run();
+                        }));
+            }
+        }
+    }
+
+    /**
+     * 在共享线程中以阶段线程名执行，CPU耗时与内存分配计入阶段
+     * @param name
+     * @param usage
+     * @param unit
+     * @throws InterruptedException
+     */
+    static void run(String name, ThreadUsage usage, Unit unit) throws InterruptedException {
+        Thread thread = Thread.currentThread();
+        String original = thread.getName();
+        long[] snapshot = ThreadUsage.snapshot();
+        thread.setName(name);
+        try {
+            unit.run();
+        } finally {
+            thread.setName(original);
+            usage.account(snapshot);
+        }
+    }
+
+    /**
+     * 调度情况
+     * @return
+     */
+    public JSONObject report() {
+        JSONObject report = new JSONObject(true);
+        report.put("shared", isShared());
+        report.put("units", units.get());
+        report.put("hibernating", hibernating.get());
+        long tickCount = ticks.get();
+        report.put("ticks", tickCount);
+        report.put("yields", yields.get());
+        report.put("avgQueueMillis", tickCount > 0 ? TimeUnit.NANOSECONDS.toMillis(queueNanos.get() / tickCount) : 0);
+        ThreadPoolExecutor currentWorkers = workers;
+        ThreadPoolExecutor currentCompute = compute;
+        if (null != currentWorkers) {
+            report.put("threads", currentWorkers.getPoolSize());
+            report.put("active", currentWorkers.getActiveCount());
+            report.put("queued", currentWorkers.getQueue().size());
+            report.put("computeThreads", currentCompute.getPoolSize());
+            report.put("computeActive", currentCompute.getActiveCount());
+            report.put("computeQueued", currentCompute.getQueue().size());
+        }
+        return report;
+    }
+
+    /**
+     * 共享线程中执行的阶段逻辑
+     */
+    @FunctionalInterface
+    interface Unit {
+        void run() throws InterruptedException;
+    }
+}
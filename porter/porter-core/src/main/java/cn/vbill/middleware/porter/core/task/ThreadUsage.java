@@ -0,0 +1,153 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 阶段线程CPU耗时与堆内存分配累计。
+ * 通过包装线程工厂登记阶段线程，读取时汇总存活线程的ThreadMXBean计数，线程退出前把自身最终计数并入累计值，
+ * 线程池回收的线程不会丢失。共享线程执行阶段逻辑时按执行前后的计数差值累计。JVM不支持时对应计数始终为0
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月16日 15:05
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月16日 15:05
+ */
+public class ThreadUsage {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadUsage.class);
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_SUPPORTED;
+    private static final boolean ALLOCATION_SUPPORTED;
+
+    static {
+        boolean cpu = false;
+        boolean allocation = false;
+        try {
+            if (THREAD_BEAN.isThreadCpuTimeSupported()) {
+                if (!THREAD_BEAN.isThreadCpuTimeEnabled()) {
+                    THREAD_BEAN.setThreadCpuTimeEnabled(true);
+                }
+                cpu = true;
+            }
+            if (THREAD_BEAN instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+                if (bean.isThreadAllocatedMemorySupported()) {
+                    if (!bean.isThreadAllocatedMemoryEnabled()) {
+                        bean.setThreadAllocatedMemoryEnabled(true);
+                    }
+                    allocation = true;
+                }
+            }
+        } catch (Throwable e) {
+            LOGGER.warn("开启线程CPU耗时与内存分配统计失败", e);
+        }
+        CPU_SUPPORTED = cpu;
+        ALLOCATION_SUPPORTED = allocation;
+    }
+
+    private final Set<Long> threads = new HashSet<>();
+    //已退出线程的累计值
+    private long retiredCpuNanos = 0;
+    private long retiredAllocatedBytes = 0;
+
+    /**
+     * 包装线程工厂，由其创建的线程计入本阶段
+     * @param factory
+     * @return
+     */
+    public ThreadFactory track(ThreadFactory factory) {
+        return r -> factory.newThread(() -> {
+            long id = Thread.currentThread().getId();
+            register(id);
+            try {
+                r.run();
+            } finally {
+                retire(id);
+            }
+        });
+    }
+
+    private synchronized void register(long id) {
+        threads.add(id);
+    }
+
+    private synchronized void retire(long id) {
+        retiredCpuNanos += cpuNanos(id);
+        retiredAllocatedBytes += allocatedBytes(id);
+        threads.remove(id);
+    }
+
+    /**
+     * 当前线程的CPU耗时与内存分配计数，共享线程开始执行阶段逻辑前读取
+     * @return
+     */
+    public static long[] snapshot() {
+        long id = Thread.currentThread().getId();
+        return new long[] {cpuNanos(id), allocatedBytes(id)};
+    }
+
+    /**
+     * 共享线程执行阶段逻辑结束，累计自snapshot以来当前线程的计数
+     * @param snapshot
+     */
+    public synchronized void account(long[] snapshot) {
+        long id = Thread.currentThread().getId();
+        retiredCpuNanos += Math.max(0, cpuNanos(id) - snapshot[0]);
+        retiredAllocatedBytes += Math.max(0, allocatedBytes(id) - snapshot[1]);
+    }
+
+    /**
+     * 累计CPU耗时，单位纳秒
+     * @return
+     */
+    public synchronized long getCpuNanos() {
+        long total = retiredCpuNanos;
+        for (long id : threads) {
+            total += cpuNanos(id);
+        }
+        return total;
+    }
+
+    /**
+     * 累计堆内存分配，单位字节
+     * @return
+     */
+    public synchronized long getAllocatedBytes() {
+        long total = retiredAllocatedBytes;
+        for (long id : threads) {
+            total += allocatedBytes(id);
+        }
+        return total;
+    }
+
+    private static long cpuNanos(long id) {
+        return CPU_SUPPORTED ? Math.max(0, THREAD_BEAN.getThreadCpuTime(id)) : 0;
+    }
+
+    private static long allocatedBytes(long id) {
+        return ALLOCATION_SUPPORTED ? Math.max(0, ((com.sun.management.ThreadMXBean) THREAD_BEAN).getThreadAllocatedBytes(id)) : 0;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.event.etl;
+
+import cn.vbill.middleware.porter.core.event.s.EventType;
+import cn.vbill.middleware.porter.core.event.s.MessageEvent;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月22日 14:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月22日 14:30
+ */
+public class ETLRowPoolTest {
+
+    /**
+     * 回收的行与字段在下一批次转换时复用
+     */
+    @Test
+    public void reuseRecycledObjects() {
+        ETLRowPool pool = new ETLRowPool(10);
+        ETLBucket first = ETLBucket.from(events(event("id", "name", "age"), event("id", "name", "age")), pool);
+        ETLRow row = first.getRows().get(0);
+        ETLColumn column = row.getColumns().get(0);
+        first.markUnUsed(pool);
+        Assert.assertTrue(first.getRows().isEmpty());
+        Assert.assertEquals(2, pool.getRowSize());
+        Assert.assertEquals(6, pool.getColumnSize());
+
+        ETLBucket second = ETLBucket.from(events(event("id", "name", "age"), event("id", "name", "age")), pool);
+        Assert.assertEquals(0, pool.getRowSize());
+        Assert.assertEquals(0, pool.getColumnSize());
+        Assert.assertTrue(second.getRows().stream().anyMatch(r -> r == row));
+        Assert.assertTrue(second.getRows().stream().flatMap(r -> r.getColumns().stream()).anyMatch(c -> c == column));
+    }
+
+    /**
+     * 复用的行不残留上一批次的字段
+     */
+    @Test
+    public void noStaleColumns() {
+        ETLRowPool pool = new ETLRowPool(10);
+        ETLBucket first = ETLBucket.from(events(event("a", "b", "c", "d", "e")), pool);
+        ETLRow row = first.getRows().get(0);
+        first.markUnUsed(pool);
+
+        ETLBucket second = ETLBucket.from(events(event("id", "name")), pool);
+        Assert.assertSame(row, second.getRows().get(0));
+        Assert.assertEquals(2, row.getColumns().size());
+        Assert.assertEquals("ID", row.getColumns().get(0).getFinalName());
+        Assert.assertEquals("NAME", row.getColumns().get(1).getFinalName());
+        //多出的字段留在池中
+        Assert.assertEquals(3, pool.getColumnSize());
+    }
+
+    /**
+     * 载入器写入的additionalRequired、extendsField及行映射结果在复用时重置
+     */
+    @Test
+    public void reuseResetsRowFields() {
+        ETLRowPool pool = new ETLRowPool(10);
+        ETLBucket first = ETLBucket.from(events(event("id", "name")), pool);
+        ETLRow row = first.getRows().get(0);
+        ETLColumn required = new ETLColumn("created", "1", "1", "1", false);
+        row.getAdditionalRequired().add(required);
+        row.getExtendsField().put("formattedData", "x");
+        row.setKeyChangedOnUpdate(true);
+        row.setFinalOpType(EventType.DELETE);
+        row.setFinalSchema("OTHER_SCHEMA");
+        row.setFinalTable("OTHER_TABLE");
+        first.markUnUsed(pool);
+        Assert.assertTrue(row.getAdditionalRequired().isEmpty());
+        Assert.assertTrue(row.getExtendsField().isEmpty());
+        //additionalRequired中的字段同样回收
+        Assert.assertEquals(3, pool.getColumnSize());
+
+        MessageEvent event = event("id");
+        event.setSchema("s2");
+        event.setTable("t2");
+        event.setOpType(EventType.UPDATE);
+        ETLRow reused = ETLBucket.from(events(event), pool).getRows().get(0);
+        ETLRow fresh = ETLBucket.from(events(event)).getRows().get(0);
+        Assert.assertSame(row, reused);
+        Assert.assertTrue(reused.getAdditionalRequired().isEmpty());
+        Assert.assertTrue(reused.getExtendsField().isEmpty());
+        Assert.assertFalse(reused.isKeyChangedOnUpdate());
+        Assert.assertEquals(fresh.getFinalOpType(), reused.getFinalOpType());
+        Assert.assertEquals(fresh.getFinalSchema(), reused.getFinalSchema());
+        Assert.assertEquals(fresh.getFinalTable(), reused.getFinalTable());
+        Assert.assertEquals(fresh.getOpTime(), reused.getOpTime());
+        Assert.assertEquals(fresh.getConsumerTime(), reused.getConsumerTime());
+        Assert.assertEquals(fresh.getConsumedTime(), reused.getConsumedTime());
+    }
+
+    /**
+     * 复用的字段所有属性与新建字段一致
+     */
+    @Test
+    public void reuseResetsColumnFields() {
+        ETLRowPool pool = new ETLRowPool(10);
+        ETLBucket first = ETLBucket.from(events(event("id")), pool);
+        ETLColumn column = first.getRows().get(0).getColumns().get(0);
+        column.setFinalName("MAPPED");
+        column.setFinalValue("mapped");
+        column.setFinalOldValue("mapped_old");
+        column.setFinalType(Types.INTEGER);
+        column.setRequired(false);
+        column.setKey(false);
+        column.setFinalBeforeMissing(true);
+        column.setFinalAfterMissing(true);
+        first.markUnUsed(pool);
+
+        MessageEvent event = event("name");
+        event.getBefore().put("name", "old_name");
+        ETLColumn reused = ETLBucket.from(events(event), pool).getRows().get(0).getColumns().get(0);
+        ETLColumn fresh = ETLBucket.from(events(event)).getRows().get(0).getColumns().get(0);
+        Assert.assertSame(column, reused);
+        Assert.assertEquals(fresh.getFinalName(), reused.getFinalName());
+        Assert.assertEquals(fresh.getFinalValue(), reused.getFinalValue());
+        Assert.assertEquals(fresh.getFinalOldValue(), reused.getFinalOldValue());
+        Assert.assertEquals(fresh.getFinalType(), reused.getFinalType());
+        Assert.assertEquals(fresh.isRequired(), reused.isRequired());
+        Assert.assertEquals(fresh.isKey(), reused.isKey());
+        Assert.assertEquals(fresh.isFinalBeforeMissing(), reused.isFinalBeforeMissing());
+        Assert.assertEquals(fresh.isFinalAfterMissing(), reused.isFinalAfterMissing());
+    }
+
+    /**
+     * 池中对象数量不超过上限
+     */
+    @Test
+    public void capacityLimit() {
+        ETLRowPool pool = new ETLRowPool(1);
+        List<String> names = new ArrayList<>();
+        for (int index = 0; index < 100; index++) {
+            names.add("c" + index);
+        }
+        String[] columns = names.toArray(new String[0]);
+        ETLBucket bucket = ETLBucket.from(events(event(columns), event(columns)), pool);
+        bucket.markUnUsed(pool);
+        Assert.assertEquals(1, pool.getRowSize());
+        Assert.assertEquals(64, pool.getColumnSize());
+        Assert.assertEquals(1, pool.pollRows(5).length);
+        Assert.assertEquals(0, pool.pollRows(5).length);
+    }
+
+    /**
+     * 未开启回收池时清空行内容
+     */
+    @Test
+    public void markUnUsedWithoutPool() {
+        ETLBucket bucket = ETLBucket.from(events(event("id", "name")), null);
+        ETLRow row = bucket.getRows().get(0);
+        row.getExtendsField().put("k", "v");
+        bucket.markUnUsed(null);
+        Assert.assertTrue(bucket.getRows().isEmpty());
+        Assert.assertTrue(row.getColumns().isEmpty());
+        Assert.assertTrue(row.getExtendsField().isEmpty());
+    }
+
+    private static ImmutablePair<String, List<MessageEvent>> events(MessageEvent... events) {
+        return new ImmutablePair<>("sequence", Arrays.asList(events));
+    }
+
+    private static MessageEvent event(String... columns) {
+        MessageEvent event = new MessageEvent();
+        event.setSchema("s");
+        event.setTable("t");
+        event.setOpType(EventType.INSERT);
+        event.setOpTs(new Date(1000L));
+        event.setConsumerTime(2000L);
+        event.setConsumedTime(3000L);
+        Map<String, Object> after = new LinkedHashMap<>();
+        for (String column : columns) {
+            after.put(column, column + "_value");
+        }
+        event.setAfter(after);
+        event.setPrimaryKeys(new ArrayList<>(Arrays.asList(columns[0])));
+        return event;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.core.task;
+
+import cn.vbill.middleware.porter.common.config.MemoryConfig;
+import cn.vbill.middleware.porter.core.NodeContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月22日 10:10
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月22日 10:10
+ */
+public class MemoryBudgetTest {
+    private static final long MB = 1024 * 1024;
+    private MemoryBudget.Account account;
+
+    @Before
+    public void open() {
+        MemoryConfig config = new MemoryConfig();
+        config.setSwimlaneBudget(1);
+        NodeContext.INSTANCE.memory(config);
+        account = MemoryBudget.INSTANCE.open("test");
+    }
+
+    @After
+    public void close() {
+        account.close();
+        NodeContext.INSTANCE.memory(new MemoryConfig());
+    }
+
+    /**
+     * 载入失败丢弃的批次释放自身的估算值，后续批次释放不错位
+     */
+    @Test
+    public void failedLoadReturnsBudget() {
+        long nodeUsed = MemoryBudget.INSTANCE.getUsed();
+        account.charge(100);
+        account.charge(MB);
+        account.charge(300);
+        account.assign("a");
+        account.assign("b");
+        account.assign("c");
+        Assert.assertTrue(account.isExhausted());
+
+        //批次b载入失败
+        account.release("b");
+        Assert.assertEquals(400, account.getUsed());
+        Assert.assertFalse(account.isExhausted());
+        //重复释放无影响
+        account.release("b");
+        Assert.assertEquals(400, account.getUsed());
+
+        account.release("a");
+        Assert.assertEquals(300, account.getUsed());
+        account.release("c");
+        Assert.assertEquals(0, account.getUsed());
+        Assert.assertEquals(nodeUsed, MemoryBudget.INSTANCE.getUsed());
+    }
+
+    /**
+     * 尚未取出的批次不能被释放
+     */
+    @Test
+    public void releaseBeforeAssign() {
+        account.charge(100);
+        account.release("a");
+        Assert.assertEquals(100, account.getUsed());
+        account.assign("a");
+        account.release("a");
+        Assert.assertEquals(0, account.getUsed());
+    }
+
+    @Test
+    public void closeReleasesAll() {
+        long nodeUsed = MemoryBudget.INSTANCE.getUsed();
+        account.charge(100);
+        account.charge(200);
+        account.assign("a");
+        account.close();
+        Assert.assertEquals(0, account.getUsed());
+        Assert.assertEquals(nodeUsed, MemoryBudget.INSTANCE.getUsed());
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.datacarrier.spill;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 溢出数据编解码，同一对象编码后解码应得到等价对象
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月21日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月21日 10:30
+ */
+public interface SpillCodec<E> {
+
+    /**
+     * 编码
+     * @param item
+     * @param out
+     * @throws IOException
+     */
+    void encode(E item, OutputStream out) throws IOException;
+
+    /**
+     * 解码
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    E decode(InputStream in) throws IOException;
+}
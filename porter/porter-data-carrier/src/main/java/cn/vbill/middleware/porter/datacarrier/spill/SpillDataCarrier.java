@@ -0,0 +1,271 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.datacarrier.spill;
+
+import cn.vbill.middleware.porter.datacarrier.DataCarrier;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 可溢出到磁盘的数据缓冲。
+ * 内存缓冲写满后，后续数据编码追加到内存映射的段文件，取出时先取内存缓冲再按写入顺序回放段文件，保证先进先出。
+ * 存在溢出数据时新数据一律写入段文件，直到溢出数据取完才重新写入内存缓冲。溢出总量达到上限后写入阻塞，
+ * 编码或写文件失败时等待溢出数据取完后写入内存缓冲。段文件读完即删除，关闭时删除全部段文件。
+ * 取出之间通过单独的锁保证顺序，回放的解码在写入锁之外执行，不阻塞写入
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月21日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月21日 10:30
+ */
+public class SpillDataCarrier<E> implements DataCarrier<E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillDataCarrier.class);
+    private static final String SEGMENT_SUFFIX = ".seg";
+    //写入阻塞时的最长等待间隔，单位毫秒
+    private static final long WAIT_SPAN = 100;
+
+    private final ArrayBlockingQueue<E> buffer;
+    private final SpillCodec<E> codec;
+    private final File directory;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final Deque<SpillSegment> segments = new ArrayDeque<>();
+    private final EncodeBuffer encodeBuffer = new EncodeBuffer();
+    //取出顺序锁，解码期间不持有写入锁
+    private final Object pullLock = new Object();
+    private long segmentSequence = 0;
+    //已溢出尚未取出的数据条数与字节数
+    private volatile long spilledCount = 0;
+    private volatile long spilledBytes = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * @param bufferSize 内存缓冲条数
+     * @param directory 段文件目录，已有段文件视为上次运行残留删除
+     * @param segmentBytes 单个段文件大小
+     * @param maxBytes 溢出数据总字节数上限
+     * @param codec
+     */
+    public SpillDataCarrier(int bufferSize, File directory, int segmentBytes, long maxBytes, SpillCodec<E> codec) {
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.codec = codec;
+        if (!directory.exists() && !directory.mkdirs()) {
+            LOGGER.warn("创建溢出目录{}失败", directory.getAbsolutePath());
+        }
+        File[] stales = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (null != stales) {
+            for (File stale : stales) {
+                if (!stale.delete()) {
+                    LOGGER.warn("删除残留溢出文件{}失败", stale.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void push(E item) throws InterruptedException {
+        push(item, false);
+    }
+
+    /**
+     * 写入数据
+     * @param item
+     * @param toDisk 内存缓冲未满时也写入段文件
+     * @throws InterruptedException
+     */
+    public synchronized void push(E item, boolean toDisk) throws InterruptedException {
+        if (null == item) {
+            return;
+        }
+        boolean spillable = true;
+        while (!closed) {
+            boolean diskAvailable = spillable && spilledBytes < maxBytes;
+            if (spilledCount == 0 && (!toDisk || !diskAvailable) && buffer.offer(item)) {
+                return;
+            }
+            if (diskAvailable) {
+                try {
+                    spill(item);
+                    return;
+                } catch (IOException e) {
+                    spillable = false;
+                    LOGGER.error("写入溢出文件失败，等待溢出数据取完后写入内存缓冲", e);
+                }
+            }
+            wait(WAIT_SPAN);
+        }
+    }
+
+    private void spill(E item) throws IOException {
+        encodeBuffer.reset();
+        codec.encode(item, encodeBuffer);
+        int length = encodeBuffer.size();
+        SpillSegment tail = segments.peekLast();
+        if (null == tail || !tail.write(encodeBuffer.array(), length)) {
+            File file = new File(directory, (segmentSequence++) + SEGMENT_SUFFIX);
+            tail = new SpillSegment(file, (int) Math.max(segmentBytes, SpillSegment.recordBytes(length)));
+            segments.addLast(tail);
+            tail.write(encodeBuffer.array(), length);
+        }
+        spilledCount++;
+        spilledBytes += SpillSegment.recordBytes(length);
+    }
+
+    /**
+     * 生成序列号和数据对儿，需要通过锁保证原子性
+     * @return
+     */
+    @Override
+    public Pair<String, E> pullByOrder() {
+        synchronized (pullLock) {
+            E item = pull();
+            return null != item ? new ImmutablePair<>(UUID.randomUUID().toString() + System.currentTimeMillis(), item) : null;
+        }
+    }
+
+    /**
+     * 先取内存缓冲，再按写入顺序回放段文件
+     * @return
+     */
+    @Override
+    public E pull() {
+        synchronized (pullLock) {
+            byte[] bytes;
+            synchronized (this) {
+                E item = buffer.poll();
+                if (null != item) {
+                    notifyAll();
+                    return item;
+                }
+                bytes = spilledCount > 0 && !closed ? replay() : null;
+                if (null == bytes) {
+                    return null;
+                }
+                notifyAll();
+            }
+            try {
+                return codec.decode(new ByteArrayInputStream(bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException("解码溢出数据失败", e);
+            }
+        }
+    }
+
+    /**
+     * 按写入顺序读出下一条溢出数据
+     * @return
+     */
+    private byte[] replay() {
+        SpillSegment head = segments.peekFirst();
+        byte[] bytes = head.read();
+        //段文件已读完且不是正在写入的段文件
+        while (null == bytes && segments.size() > 1) {
+            segments.pollFirst().delete();
+            head = segments.peekFirst();
+            bytes = head.read();
+        }
+        if (null == bytes) {
+            return null;
+        }
+        spilledCount--;
+        spilledBytes -= SpillSegment.recordBytes(bytes.length);
+        if (spilledCount == 0) {
+            head.reset();
+        }
+        return bytes;
+    }
+
+    /**
+     * 内存缓冲与溢出数据总条数
+     * @return
+     */
+    @Override
+    public long size() {
+        return buffer.size() + spilledCount;
+    }
+
+    /**
+     * 内存缓冲条数
+     * @return
+     */
+    public long memorySize() {
+        return buffer.size();
+    }
+
+    /**
+     * 溢出尚未取出的字节数
+     * @return
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * 下一条数据是否写入段文件
+     * @return
+     */
+    public boolean isSpilling() {
+        return spilledCount > 0 || buffer.remainingCapacity() == 0;
+    }
+
+    /**
+     * 溢出达到上限且无法写入内存缓冲，写入会阻塞
+     * @return
+     */
+    public boolean isFull() {
+        return spilledBytes >= maxBytes && (spilledCount > 0 || buffer.remainingCapacity() == 0);
+    }
+
+    /**
+     * 丢弃溢出数据并删除段文件，阻塞中的写入随即返回
+     */
+    public synchronized void close() {
+        closed = true;
+        for (SpillSegment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        spilledCount = 0;
+        spilledBytes = 0;
+        notifyAll();
+    }
+
+    /**
+     * 复用编码缓冲，避免每次编码复制字节数组
+     */
+    private static final class EncodeBuffer extends ByteArrayOutputStream {
+        private byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.datacarrier.spill;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 溢出段文件。
+ * 文件按固定大小映射到内存，记录格式为[4字节长度][数据]，只追加写入、顺序读取，读完后整体删除
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月21日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月21日 10:30
+ */
+class SpillSegment {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillSegment.class);
+    private static final int LENGTH_BYTES = 4;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private int writePosition = 0;
+    private int readPosition = 0;
+
+    SpillSegment(File file, int capacity) throws IOException {
+        this.file = file;
+        //映射建立后关闭文件通道不影响映射内存的读写
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    /**
+     * 单条记录占用的字节数
+     * @param length
+     * @return
+     */
+    static long recordBytes(int length) {
+        return LENGTH_BYTES + length;
+    }
+
+    /**
+     * 追加记录，剩余空间不足时返回false
+     * @param bytes
+     * @param length
+     * @return
+     */
+    boolean write(byte[] bytes, int length) {
+        if (buffer.capacity() - writePosition < recordBytes(length)) {
+            return false;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(writePosition);
+        view.putInt(length);
+        view.put(bytes, 0, length);
+        writePosition = view.position();
+        return true;
+    }
+
+    /**
+     * 读取下一条记录，已读到写入位置时返回null
+     * @return
+     */
+    byte[] read() {
+        if (readPosition >= writePosition) {
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(readPosition);
+        byte[] bytes = new byte[view.getInt()];
+        view.get(bytes);
+        readPosition = view.position();
+        return bytes;
+    }
+
+    /**
+     * 写入的记录已全部读出，从头复用
+     */
+    void reset() {
+        writePosition = 0;
+        readPosition = 0;
+    }
+
+    /**
+     * 释放映射并删除文件
+     */
+    void delete() {
+        unmap(buffer);
+        if (!file.delete() && file.exists()) {
+            LOGGER.warn("删除溢出文件{}失败", file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * JDK8没有公开的解除映射接口，通过DirectBuffer.cleaner()及时释放，不支持时由GC回收映射内存
+     * @param mapped
+     */
+    private static void unmap(MappedByteBuffer mapped) {
+        try {
+            Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(mapped);
+            if (null != cleaner) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Throwable e) {
+            LOGGER.debug("释放溢出文件映射失败，等待GC回收", e);
+        }
+    }
+}
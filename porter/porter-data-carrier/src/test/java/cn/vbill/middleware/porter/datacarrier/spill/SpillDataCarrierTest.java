@@ -0,0 +1,287 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.datacarrier.spill;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月22日 15:10
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月22日 15:10
+ */
+public class SpillDataCarrierTest {
+    private static final SpillCodec<String> CODEC = new SpillCodec<String>() {
+        @Override
+        public void encode(String item, OutputStream out) throws IOException {
+            DataOutputStream output = new DataOutputStream(out);
+            output.writeUTF(item);
+            output.flush();
+        }
+
+        @Override
+        public String decode(InputStream in) throws IOException {
+            return new DataInputStream(in).readUTF();
+        }
+    };
+
+    private File directory;
+    private SpillDataCarrier<String> carrier;
+
+    @Before
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("spill").toFile();
+    }
+
+    @After
+    public void close() {
+        if (null != carrier) {
+            carrier.close();
+        }
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * 内存缓冲写满后溢出，取出顺序与写入顺序一致
+     */
+    @Test
+    public void fifoAcrossMemoryAndSpill() throws InterruptedException {
+        carrier = new SpillDataCarrier<>(2, directory, 1024, 1024 * 1024, CODEC);
+        for (int index = 0; index < 10; index++) {
+            carrier.push("item" + index);
+        }
+        Assert.assertEquals(10, carrier.size());
+        Assert.assertEquals(2, carrier.memorySize());
+        Assert.assertTrue(carrier.isSpilling());
+        Assert.assertTrue(carrier.getSpilledBytes() > 0);
+
+        //取出部分内存数据后，存在溢出数据时新数据仍写入段文件
+        Assert.assertEquals("item0", carrier.pull());
+        carrier.push("item10");
+        Assert.assertEquals(1, carrier.memorySize());
+        for (int index = 1; index <= 10; index++) {
+            Pair<String, String> pulled = carrier.pullByOrder();
+            Assert.assertEquals("item" + index, pulled.getRight());
+        }
+        Assert.assertNull(carrier.pull());
+        Assert.assertEquals(0, carrier.size());
+        Assert.assertEquals(0, carrier.getSpilledBytes());
+
+        //溢出数据取完后重新写入内存缓冲
+        Assert.assertFalse(carrier.isSpilling());
+        carrier.push("item11");
+        Assert.assertEquals(1, carrier.memorySize());
+        Assert.assertEquals("item11", carrier.pull());
+    }
+
+    /**
+     * 指定写入段文件时内存缓冲未满也溢出
+     */
+    @Test
+    public void pushToDisk() throws InterruptedException {
+        carrier = new SpillDataCarrier<>(10, directory, 1024, 1024 * 1024, CODEC);
+        carrier.push("a", true);
+        carrier.push("b");
+        Assert.assertEquals(0, carrier.memorySize());
+        Assert.assertEquals(2, carrier.size());
+        Assert.assertEquals("a", carrier.pull());
+        Assert.assertEquals("b", carrier.pull());
+    }
+
+    /**
+     * 段文件写满后新建段文件，读完的段文件删除，关闭时删除全部段文件
+     */
+    @Test
+    public void segmentRolloverAndCleanup() throws InterruptedException {
+        //每条记录 4字节长度 + 2字节UTF长度 + 6字节内容
+        carrier = new SpillDataCarrier<>(1, directory, 36, 1024 * 1024, CODEC);
+        carrier.push("memory");
+        for (int index = 0; index < 9; index++) {
+            carrier.push("spill" + index);
+        }
+        Assert.assertEquals(3, segmentFiles());
+
+        Assert.assertEquals("memory", carrier.pull());
+        for (int index = 0; index < 4; index++) {
+            Assert.assertEquals("spill" + index, carrier.pull());
+        }
+        //第一个段文件读完后删除
+        Assert.assertEquals(2, segmentFiles());
+        for (int index = 4; index < 9; index++) {
+            Assert.assertEquals("spill" + index, carrier.pull());
+        }
+        //正在写入的段文件保留复用
+        Assert.assertEquals(1, segmentFiles());
+
+        carrier.push("memory1");
+        carrier.push("spill9");
+        carrier.close();
+        Assert.assertEquals(0, segmentFiles());
+        //关闭只丢弃溢出数据
+        Assert.assertEquals(1, carrier.size());
+        Assert.assertEquals("memory1", carrier.pull());
+        Assert.assertNull(carrier.pull());
+    }
+
+    /**
+     * 单条记录超过段文件大小时按记录大小新建段文件
+     */
+    @Test
+    public void recordLargerThanSegment() throws InterruptedException {
+        carrier = new SpillDataCarrier<>(1, directory, 16, 1024 * 1024, CODEC);
+        StringBuilder large = new StringBuilder();
+        for (int index = 0; index < 100; index++) {
+            large.append(index);
+        }
+        carrier.push("memory");
+        carrier.push(large.toString());
+        carrier.push("small");
+        Assert.assertEquals("memory", carrier.pull());
+        Assert.assertEquals(large.toString(), carrier.pull());
+        Assert.assertEquals("small", carrier.pull());
+    }
+
+    /**
+     * 溢出达到上限后写入阻塞，取出后恢复
+     */
+    @Test
+    public void blockWhenFull() throws InterruptedException {
+        carrier = new SpillDataCarrier<>(1, directory, 1024, 5, CODEC);
+        carrier.push("a");
+        carrier.push("b");
+        Assert.assertTrue(carrier.isFull());
+        Thread writer = new Thread(() -> {
+            try {
+                carrier.push("c");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.start();
+        writer.join(300);
+        Assert.assertTrue(writer.isAlive());
+        Assert.assertEquals("a", carrier.pull());
+        Assert.assertEquals("b", carrier.pull());
+        writer.join(5000);
+        Assert.assertFalse(writer.isAlive());
+        Assert.assertEquals("c", carrier.pull());
+    }
+
+    /**
+     * 启动时删除上次运行残留的段文件
+     */
+    @Test
+    public void deleteStaleSegments() throws IOException {
+        Assert.assertTrue(new File(directory, "0.seg").createNewFile());
+        Assert.assertTrue(new File(directory, "other.txt").createNewFile());
+        carrier = new SpillDataCarrier<>(1, directory, 1024, 1024, CODEC);
+        Assert.assertEquals(0, segmentFiles());
+        Assert.assertTrue(new File(directory, "other.txt").exists());
+    }
+
+    /**
+     * 回放解码期间写入不被阻塞
+     */
+    @Test
+    public void pushWhileDecoding() throws InterruptedException {
+        CountDownLatch decoding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        carrier = new SpillDataCarrier<>(1, directory, 1024, 1024 * 1024, new SpillCodec<String>() {
+            @Override
+            public void encode(String item, OutputStream out) throws IOException {
+                CODEC.encode(item, out);
+            }
+
+            @Override
+            public String decode(InputStream in) throws IOException {
+                decoding.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return CODEC.decode(in);
+            }
+        });
+        carrier.push("memory");
+        carrier.push("spill");
+        Assert.assertEquals("memory", carrier.pull());
+        String[] pulled = new String[1];
+        Thread reader = new Thread(() -> pulled[0] = carrier.pull());
+        reader.start();
+        Assert.assertTrue(decoding.await(5, TimeUnit.SECONDS));
+        carrier.push("next");
+        Assert.assertEquals(1, carrier.size());
+        release.countDown();
+        reader.join(5000);
+        Assert.assertEquals("spill", pulled[0]);
+    }
+
+    /**
+     * 解码失败抛出UncheckedIOException，由调用方停止任务
+     */
+    @Test
+    public void decodeFailure() throws InterruptedException {
+        carrier = new SpillDataCarrier<>(1, directory, 1024, 1024 * 1024, new SpillCodec<String>() {
+            @Override
+            public void encode(String item, OutputStream out) throws IOException {
+                CODEC.encode(item, out);
+            }
+
+            @Override
+            public String decode(InputStream in) throws IOException {
+                throw new IOException("broken");
+            }
+        });
+        carrier.push("memory");
+        carrier.push("spill");
+        Assert.assertEquals("memory", carrier.pull());
+        try {
+            carrier.pull();
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            Assert.assertEquals("broken", e.getCause().getMessage());
+        }
+    }
+
+    private int segmentFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".seg"));
+        return null == files ? 0 : files.length;
+    }
+}
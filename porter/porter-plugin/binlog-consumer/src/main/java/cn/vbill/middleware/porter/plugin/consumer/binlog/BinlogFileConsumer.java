@@ -0,0 +1,58 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.plugin.consumer.binlog;
+
+
+import cn.vbill.middleware.porter.common.client.impl.BinlogFileClient;
+import cn.vbill.middleware.porter.common.client.impl.binlog.BinlogRow;
+import cn.vbill.middleware.porter.common.consumer.ConsumeClient;
+import cn.vbill.middleware.porter.common.consumer.Position;
+import cn.vbill.middleware.porter.common.dic.ConsumerPlugin;
+import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
+import cn.vbill.middleware.porter.core.consumer.AbstractDataConsumer;
+import cn.vbill.middleware.porter.core.event.s.MessageEvent;
+
+import java.util.List;
+
+/**
+ * 本地binlog文件消费端
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月06日 15:20
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月06日 15:20
+ */
+@SuppressWarnings("unchecked")
+public class BinlogFileConsumer extends AbstractDataConsumer {
+
+    public List<MessageEvent> doFetch() throws TaskStopTriggerException, InterruptedException {
+        return fetchFromSource(new ConsumeClient.FetchCallback<MessageEvent, Object>() {
+            @Override
+            public <F, O> F accept(O o) {
+                BinlogRow row = (BinlogRow) o;
+                Position position = new BinlogFileClient.BinlogFilePosition(row.getLogfileName(), row.getLogfileOffset());
+                return (F) getConverter().convert(position, row);
+            }
+        });
+    }
+
+    @Override
+    protected String getPluginName() {
+        return ConsumerPlugin.BINLOG_FILE.getCode();
+    }
+}
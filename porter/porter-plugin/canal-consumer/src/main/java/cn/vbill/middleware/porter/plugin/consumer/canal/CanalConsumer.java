@@ -44,7 +44,7 @@ import java.util.stream.Collectors;
 @SuppressWarnings("unchecked")
 public class CanalConsumer extends AbstractDataConsumer {
     public List<MessageEvent> doFetch() throws TaskStopTriggerException, InterruptedException {
-        return consumeClient.fetch(new ConsumeClient.FetchCallback<MessageEvent, Object>() {
+        return fetchFromSource(new ConsumeClient.FetchCallback<MessageEvent, Object>() {
             @Override
             public <F, O> List<F> acceptAll(O o) throws InvalidProtocolBufferException {
                 List<MessageEvent> events = new ArrayList<>();
@@ -17,6 +17,7 @@
 
 package cn.vbill.middleware.porter.plugin.loader.jdbc;
 
+import cn.vbill.middleware.porter.common.consumer.Position;
 import cn.vbill.middleware.porter.common.exception.TaskDataException;
 import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
 import cn.vbill.middleware.porter.core.event.etl.ETLBucket;
@@ -30,6 +31,7 @@ import cn.vbill.middleware.porter.core.event.etl.ETLRow;
 import cn.vbill.middleware.porter.core.event.s.EventType;
 import cn.vbill.middleware.porter.core.loader.AbstractDataLoader;
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -251,10 +253,66 @@ public abstract class BaseJdbcLoader extends AbstractDataLoader {
         try {
             return doLoad(bucket);
         } catch (TaskStopTriggerException e) {
-            if (e.getMessage().contains("interrupt") && e.getMessage().contains("CannotCreateTransactionException")) throw new InterruptedException(e.getMessage());
+            if (isInterrupted(e)) throw new InterruptedException(e.getMessage());
             throw e;
         }
     }
 
+    /**
+     * 开启目标端位点时，批次数据与消费位点在同一个数据库事务中提交
+     * @param bucket
+     * @param taskId
+     * @param swimlaneId
+     * @return
+     * @throws TaskStopTriggerException
+     * @throws InterruptedException
+     */
+    @Override
+    public Pair<Boolean, List<SubmitStatObject>> load(ETLBucket bucket, String taskId, String swimlaneId)
+            throws TaskStopTriggerException, InterruptedException {
+        Position position = bucket.getPosition();
+        if (StringUtils.isBlank(getCheckpointTable()) || null == position || !position.checksum()) {
+            return load(bucket);
+        }
+        JDBCClient client = getLoadClient();
+        try {
+            return client.executeInTransaction(() -> {
+                Pair<Boolean, List<SubmitStatObject>> result = doLoad(bucket);
+                if (result.getLeft()) {
+                    client.saveCheckpoint(getCheckpointTable(), taskId, swimlaneId, position.render());
+                }
+                return result;
+            });
+        } catch (TaskStopTriggerException e) {
+            if (isInterrupted(e)) throw new InterruptedException(e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 获取目标端连接时被中断
+     * @param e
+     * @return
+     */
+    private static boolean isInterrupted(TaskStopTriggerException e) {
+        String message = e.getMessage();
+        return null != message && message.contains("interrupt") && message.contains("CannotCreateTransactionException");
+    }
+
+    @Override
+    public boolean isRowRecyclable() {
+        //SQL参数在load内同步执行完成
+        return true;
+    }
+
+    @Override
+    public String queryCheckpoint(String taskId, String swimlaneId) throws TaskStopTriggerException {
+        if (StringUtils.isBlank(getCheckpointTable())) {
+            return null;
+        }
+        JDBCClient client = getLoadClient();
+        return client.queryCheckpoint(getCheckpointTable(), taskId, swimlaneId);
+    }
+
     public abstract Pair<Boolean, List<SubmitStatObject>> doLoad(ETLBucket bucket) throws TaskStopTriggerException, InterruptedException;
 }
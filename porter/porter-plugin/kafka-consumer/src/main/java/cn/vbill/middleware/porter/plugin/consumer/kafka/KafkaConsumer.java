@@ -39,11 +39,12 @@ import java.util.List;
 public class KafkaConsumer extends AbstractDataConsumer {
 
     public List<MessageEvent> doFetch() throws TaskStopTriggerException, InterruptedException {
-        return consumeClient.fetch(new ConsumeClient.FetchCallback<MessageEvent, Object>() {
+        String group = ((KafkaClient) consumeClient).getGroup();
+        return fetchFromSource(new ConsumeClient.FetchCallback<MessageEvent, Object>() {
             @Override
             public <F, O> F accept(O o) {
                 ConsumerRecord<String, String> record = (ConsumerRecord<String, String>) o;
-                Position position = new KafkaClient.KafkaPosition(record.topic(), record.offset(), record.partition());
+                Position position = new KafkaClient.KafkaPosition(record.topic(), record.offset(), record.partition(), group);
                 return (F) getConverter().convert(record.timestamp(), position, record.value());
             }
         });
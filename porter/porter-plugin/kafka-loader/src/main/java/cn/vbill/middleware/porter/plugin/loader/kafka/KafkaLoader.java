@@ -18,7 +18,9 @@
 package cn.vbill.middleware.porter.plugin.loader.kafka;
 
 
+import cn.vbill.middleware.porter.common.client.impl.KafkaClient;
 import cn.vbill.middleware.porter.common.client.impl.KafkaProduceClient;
+import cn.vbill.middleware.porter.common.consumer.Position;
 import cn.vbill.middleware.porter.common.dic.LoaderPlugin;
 import cn.vbill.middleware.porter.common.exception.TaskDataException;
 import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
@@ -34,10 +36,13 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -76,10 +81,49 @@ public class KafkaLoader extends AbstractDataLoader {
             affectRow.add(new SubmitStatObject(row.getFinalSchema(), row.getFinalTable(), row.getFinalOpType(),
                     1, row.getPosition(), row.getOpTime()));
         }
-        client.send(producerRecords, sync);
+        if (client.isExactlyOnce()) {
+            //源端kafka消费进度与数据在同一事务提交，kafka提交的是下一条待消费消息下标
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            String group = null;
+            if (bucket.getPosition() instanceof KafkaClient.KafkaPosition) {
+                KafkaClient.KafkaPosition position = (KafkaClient.KafkaPosition) bucket.getPosition();
+                if (position.checksum() && null != position.getGroup()) {
+                    offsets.put(new TopicPartition(position.getTopic(), position.getPartition()), new OffsetAndMetadata(position.getOffset() + 1));
+                    group = position.getGroup();
+                }
+            }
+            client.sendInTransaction(producerRecords, offsets, group, bucket.getPosition());
+        } else {
+            client.send(producerRecords, sync);
+        }
         return new ImmutablePair(Boolean.TRUE, affectRow);
     }
 
+    @Override
+    public boolean isSourcePositionInTransaction() {
+        KafkaProduceClient client = getLoadClient();
+        return client.isExactlyOnce();
+    }
+
+    @Override
+    public boolean isRowRecyclable() {
+        //发送前已转换为字符串，异步发送也不持有行对象
+        return true;
+    }
+
+    @Override
+    public Position pollCommittedPosition(Position loaded) {
+        KafkaProduceClient client = getLoadClient();
+        //事务按间隔提交，只推进已提交事务的位点
+        return client.isExactlyOnce() ? client.pollCommittedPosition() : loaded;
+    }
+
+    @Override
+    public void setTransactionFailureListener(Consumer<Throwable> listener) {
+        KafkaProduceClient client = getLoadClient();
+        client.setTransactionFailureListener(listener);
+    }
+
     @Override
     public void mouldRow(ETLRow row) throws TaskDataException {
         KafkaProduceClient client = getLoadClient();
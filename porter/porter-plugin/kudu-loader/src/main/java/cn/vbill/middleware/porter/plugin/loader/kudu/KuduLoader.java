@@ -130,6 +130,12 @@ public class KuduLoader extends AbstractDataLoader {
         return new ImmutablePair(Boolean.TRUE, affectRow);
     }
 
+    @Override
+    public boolean isRowRecyclable() {
+        //kudu写入在load内同步完成
+        return true;
+    }
+
     @Override
     public void mouldRow(ETLRow row) throws TaskDataException {
         if (null != row.getColumns()) {
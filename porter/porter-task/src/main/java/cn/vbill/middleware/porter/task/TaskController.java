@@ -17,11 +17,21 @@
 
 package cn.vbill.middleware.porter.task;
 
+import cn.vbill.middleware.porter.common.cluster.command.NodeLoadQueryCommand;
 import cn.vbill.middleware.porter.common.cluster.command.TaskPushCommand;
+import cn.vbill.middleware.porter.common.cluster.data.DCallback;
+import cn.vbill.middleware.porter.common.cluster.data.DNode;
+import cn.vbill.middleware.porter.common.cluster.data.DObject;
+import cn.vbill.middleware.porter.common.config.PlacementConfig;
 import cn.vbill.middleware.porter.common.dic.ClusterPlugin;
+import cn.vbill.middleware.porter.common.statistics.StageStat;
 import cn.vbill.middleware.porter.common.task.TaskEventListener;
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
 import cn.vbill.middleware.porter.common.util.MachineUtils;
 import cn.vbill.middleware.porter.core.NodeContext;
+import cn.vbill.middleware.porter.core.NodeLoad;
+import cn.vbill.middleware.porter.core.task.StageMetrics;
+import cn.vbill.middleware.porter.core.task.StageType;
 import cn.vbill.middleware.porter.core.task.Task;
 import com.alibaba.fastjson.JSONObject;
 import cn.vbill.middleware.porter.common.cluster.ClusterProviderProxy;
@@ -29,6 +39,7 @@ import cn.vbill.middleware.porter.common.config.TaskConfig;
 import cn.vbill.middleware.porter.common.dic.NodeStatusType;
 import cn.vbill.middleware.porter.common.statistics.NodeLog;
 import cn.vbill.middleware.porter.core.consumer.DataConsumer;
+import cn.vbill.middleware.porter.task.worker.TaskWork;
 import cn.vbill.middleware.porter.task.worker.TaskWorker;
 
 import org.apache.commons.lang3.StringUtils;
@@ -40,10 +51,18 @@ import org.springframework.stereotype.Component;
 import sun.misc.Signal;
 import sun.misc.SignalHandler;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -58,12 +77,30 @@ import java.util.stream.Collectors;
 @Scope("singleton")
 public class TaskController implements TaskEventListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskController.class);
+    //负载均衡抢占：集群节点负载缓存有效期
+    private static final long VIEW_TTL_MILLIS = 1000;
+    //负载均衡抢占：检查是否释放泳道的间隔
+    private static final long SHED_CHECK_SECONDS = 60;
     private final AtomicBoolean stat = new AtomicBoolean(false);
     /**
      * taskId -> worker
      */
     private final Map<String, TaskWorker> workerMap = new ConcurrentHashMap<>();
 
+    private volatile ScheduledExecutorService placementService;
+    private final AtomicLong eventSequence = new AtomicLong(0);
+    //taskId -> 最近一次停止事件的序号，延迟抢占在此之前发起的不再执行
+    private final Map<String, Long> stoppedSequence = new ConcurrentHashMap<>();
+    //taskId -> 释放后冷却结束时间
+    private final Map<String, Long> shedTasks = new ConcurrentHashMap<>();
+    //指定了执行节点的任务，不参与释放
+    private final Set<String> pinnedTasks = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    //泳道 -> 上次检查时的阶段累计值
+    private final Map<String, Map<StageType, StageMetrics.Totals>> shedTotals = new HashMap<>();
+    private volatile long lastShedTime = 0;
+    private List<DNode> clusterView = new ArrayList<>();
+    private long clusterViewTime = 0;
+
     /**
      * start
      *
@@ -87,6 +124,11 @@ public class TaskController implements TaskEventListener {
             if (stat.compareAndSet(false, true)) {
                 //从配置中心监听任务变更事件，进行任务创建关闭等操作
                 ClusterProviderProxy.INSTANCE.addTaskListener(this);
+                //负载均衡抢占
+                if (isPlacementEnabled()) {
+                    placementService = Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("task-placement"));
+                    placementService.scheduleWithFixedDelay(this::shed, SHED_CHECK_SECONDS, SHED_CHECK_SECONDS, TimeUnit.SECONDS);
+                }
                 //初始化本地任务
                 if (null != initTasks && !initTasks.isEmpty()) {
                     for (TaskConfig t : initTasks) {
@@ -143,12 +185,20 @@ public class TaskController implements TaskEventListener {
                 return;
             }
             try {
-                startTask(event);
+                if (!StringUtils.isBlank(event.getNodeId())) {
+                    pinnedTasks.add(event.getTaskId());
+                }
+                if (null != placementService && StringUtils.isBlank(event.getNodeId())) {
+                    claimTask(event);
+                } else {
+                    startTask(event);
+                }
             } catch (Exception e) {
                 LOGGER.error("启动任务出错!", e);
             }
         } else if (event.getStatus().isStopped()) {
             try {
+                stoppedSequence.put(event.getTaskId(), eventSequence.incrementAndGet());
                 stopTask(Task.fromConfig(event));
             } catch (Exception e) {
                 LOGGER.error("停止任务出错!", e);
@@ -181,20 +231,196 @@ public class TaskController implements TaskEventListener {
      * @return: void
      */
     private void startTask(TaskConfig task) {
-        TaskWorker worker = workerMap.computeIfAbsent(task.getTaskId(), s -> new TaskWorker());
-        //尝试通过ClusterProvider的分布式锁功能锁定资源。
-        try {
-            worker.alloc(task);
-            worker.start();
-        } catch (Exception e) {
-            NodeLog.upload(task.getTaskId(), NodeLog.LogType.TASK_ALARM, e.getMessage());
-            e.printStackTrace();
-            LOGGER.error("failed to start task:{}", JSONObject.toJSONString(task), e);
+        TaskWorker worker;
+        //泳道并发启动，各泳道启动结束后再检查worker是否空闲
+        synchronized (workerMap) {
+            worker = workerMap.computeIfAbsent(task.getTaskId(), s -> new TaskWorker());
+            //尝试通过ClusterProvider的分布式锁功能锁定资源。
+            try {
+                worker.start();
+                worker.alloc(task).whenComplete((r, e) -> stopWorkerWhenNoWork(worker, task.getTaskId()));
+                return;
+            } catch (Exception e) {
+                NodeLog.upload(task.getTaskId(), NodeLog.LogType.TASK_ALARM, e.getMessage());
+                e.printStackTrace();
+                LOGGER.error("failed to start task:{}", JSONObject.toJSONString(task), e);
+            }
         }
         //考虑到任务启动失败造成的worker闲置(内存、线程),检查worker是否有工作，如果空闲，释放worker资源
         stopWorkerWhenNoWork(worker, task.getTaskId());
     }
 
+    private boolean isPlacementEnabled() {
+        return NodeContext.INSTANCE.getPlacement().isLoadAware() && NodeContext.INSTANCE.getWorkMode() == ClusterPlugin.ZOOKEEPER;
+    }
+
+    /**
+     * 按负载排名抢占任务
+     * 负载排名第n位(从0开始)的节点等待n个claimDelay后再抢占，负载最低的节点最先拿到任务锁，其余节点抢占失败。
+     * 只是延迟而不放弃抢占，负载较低的节点异常时任务仍能被其他节点接管。本节点释放的任务冷却结束前不抢占
+     *
+     * @param task
+     */
+    private void claimTask(TaskConfig task) {
+        long now = System.currentTimeMillis();
+        long delay = 0;
+        Long cooldown = shedTasks.get(task.getTaskId());
+        if (null != cooldown) {
+            if (cooldown > now) {
+                delay = cooldown - now;
+            } else {
+                shedTasks.remove(task.getTaskId());
+            }
+        }
+        delay = Math.max(delay, TimeUnit.SECONDS.toMillis((long) claimRank() * NodeContext.INSTANCE.getPlacement().getClaimDelay()));
+        if (delay <= 0) {
+            startTask(task);
+            return;
+        }
+        long sequence = eventSequence.incrementAndGet();
+        LOGGER.info("节点负载排名靠后，{}ms后抢占任务{}", delay, task.getTaskId());
+        placementService.schedule(() -> {
+            //等待期间任务已停止或节点已暂停
+            if (stoppedSequence.getOrDefault(task.getTaskId(), 0L) > sequence || !NodeContext.INSTANCE.getNodeStatus().isWorking()) {
+                return;
+            }
+            try {
+                startTask(task);
+            } catch (Throwable e) {
+                LOGGER.error("启动任务出错!", e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 本节点在可接收任务的存活节点中的负载排名
+     *
+     * @return
+     */
+    private int claimRank() {
+        String self = NodeContext.INSTANCE.getNodeId();
+        List<DNode> nodes = clusterView();
+        DNode own = nodes.stream().filter(n -> self.equals(n.getNodeId())).findFirst().orElse(null);
+        if (null == own) {
+            return 0;
+        }
+        long maxThroughput = NodeLoad.INSTANCE.maxThroughput(nodes);
+        double ownScore = NodeLoad.INSTANCE.score(own, NodeLoad.INSTANCE.swimlanes(own), maxThroughput);
+        int rank = 0;
+        for (DNode node : nodes) {
+            if (self.equals(node.getNodeId()) || !isAcceptable(node)) {
+                continue;
+            }
+            double score = NodeLoad.INSTANCE.score(node, NodeLoad.INSTANCE.swimlanes(node), maxThroughput);
+            if (score < ownScore || (score == ownScore && node.getNodeId().compareTo(self) < 0)) {
+                rank++;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * 节点是否可接收任务：工作状态且泳道数未达上限。未上报负载的节点(低版本)不参与排名
+     *
+     * @param node
+     * @return
+     */
+    private boolean isAcceptable(DNode node) {
+        return null != node.getStatus() && node.getStatus().isWorking() && node.getWorkLimit() > 0
+                && NodeLoad.INSTANCE.swimlanes(node) < node.getWorkLimit();
+    }
+
+    /**
+     * 集群存活节点负载，短时间内复用查询结果
+     *
+     * @return
+     */
+    private synchronized List<DNode> clusterView() {
+        long now = System.currentTimeMillis();
+        if (now - clusterViewTime > VIEW_TTL_MILLIS) {
+            List<DNode> nodes = new ArrayList<>();
+            try {
+                ClusterProviderProxy.INSTANCE.broadcast(new NodeLoadQueryCommand(new DCallback() {
+                    @Override
+                    public void callback(List<DObject> objects) {
+                        objects.forEach(o -> nodes.add((DNode) o));
+                    }
+                }));
+            } catch (Exception e) {
+                LOGGER.warn("查询集群节点负载失败", e);
+            }
+            clusterView = nodes;
+            clusterViewTime = now;
+        }
+        return clusterView;
+    }
+
+    /**
+     * 节点负载超过集群平均负载shedRatio倍、且存在负载低于平均值的可接收节点时，释放区间内CPU耗时最多的泳道。
+     * 每个冷却周期最多释放一个泳道，至少保留一个泳道
+     */
+    private void shed() {
+        try {
+            PlacementConfig config = NodeContext.INSTANCE.getPlacement();
+            List<TaskWork> works = getWorks();
+            //区间内各泳道CPU耗时
+            Map<String, Long> cpuMillis = new HashMap<>();
+            Map<String, TaskWork> candidates = new HashMap<>();
+            Map<String, Map<StageType, StageMetrics.Totals>> totals = new HashMap<>();
+            for (TaskWork work : works) {
+                String key = work.getTaskId() + "_" + work.getDataConsumer().getSwimlaneId();
+                Map<StageType, StageMetrics.Totals> current = work.getStageTotals();
+                Map<StageType, StageMetrics.Totals> previous = shedTotals.get(key);
+                if (null != previous) {
+                    cpuMillis.put(key, work.getStageStats(previous, current).stream().mapToLong(StageStat::getCpuMillis).sum());
+                }
+                totals.put(key, current);
+                if (!pinnedTasks.contains(work.getTaskId())) {
+                    candidates.put(key, work);
+                }
+            }
+            shedTotals.clear();
+            shedTotals.putAll(totals);
+
+            long now = System.currentTimeMillis();
+            if (config.getShedRatio() <= 0 || works.size() < 2 || candidates.isEmpty()
+                    || now - lastShedTime < TimeUnit.SECONDS.toMillis(config.getShedCooldown())
+                    || !NodeContext.INSTANCE.getNodeStatus().isWorking()) {
+                return;
+            }
+            String self = NodeContext.INSTANCE.getNodeId();
+            List<DNode> nodes = clusterView();
+            long maxThroughput = NodeLoad.INSTANCE.maxThroughput(nodes);
+            Map<String, Double> scores = new HashMap<>();
+            for (DNode node : nodes) {
+                if (self.equals(node.getNodeId()) || isAcceptable(node)) {
+                    scores.put(node.getNodeId(), NodeLoad.INSTANCE.score(node, NodeLoad.INSTANCE.swimlanes(node), maxThroughput));
+                }
+            }
+            if (scores.size() < 2 || !scores.containsKey(self)) {
+                return;
+            }
+            double average = scores.values().stream().mapToDouble(Double::doubleValue).average().orElse(0);
+            double ownScore = scores.get(self);
+            boolean hasTarget = scores.entrySet().stream().anyMatch(e -> !self.equals(e.getKey()) && e.getValue() < average);
+            if (ownScore <= average * config.getShedRatio() || !hasTarget) {
+                return;
+            }
+            String busiest = candidates.keySet().stream().max((l, r) -> Long.compare(cpuMillis.getOrDefault(l, 0L),
+                    cpuMillis.getOrDefault(r, 0L))).get();
+            TaskWork work = candidates.get(busiest);
+            String swimlaneId = work.getDataConsumer().getSwimlaneId();
+            lastShedTime = now;
+            shedTasks.put(work.getTaskId(), now + TimeUnit.SECONDS.toMillis(config.getShedCooldown()));
+            String notice = String.format("节点负载%.2f超过集群平均负载%.2f的%s倍，释放泳道", ownScore, average, config.getShedRatio());
+            LOGGER.info("{}:{}-{}", notice, work.getTaskId(), swimlaneId);
+            NodeLog.upload(NodeLog.LogType.TASK_LOG, work.getTaskId(), swimlaneId, notice);
+            stopTask(work.getTaskId(), swimlaneId);
+        } catch (Throwable e) {
+            LOGGER.warn("检查节点负载失败", e);
+        }
+    }
+
     /**
      * stop
      *
@@ -205,6 +431,9 @@ public class TaskController implements TaskEventListener {
     private boolean stop() {
         if (stat.compareAndSet(true, false)) {
             LOGGER.info("监工下线.......");
+            if (null != placementService) {
+                placementService.shutdownNow();
+            }
             workerMap.keySet().stream().collect(Collectors.toList()).forEach(k -> {
                 TaskWorker worker = workerMap.getOrDefault(k, null);
                 if (null != worker) {
@@ -269,6 +498,15 @@ public class TaskController implements TaskEventListener {
         }
     }
 
+    /**
+     * 当前节点运行中的全部泳道
+     *
+     * @return
+     */
+    public List<TaskWork> getWorks() {
+        return workerMap.values().stream().flatMap(w -> w.getJobs().stream()).collect(Collectors.toList());
+    }
+
     private void registerLocalTask(TaskConfig taskConfig) {
         try {
             if (taskConfig.isLocalTask()) {
@@ -34,9 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 完成事件的进一步转换、过滤。多线程执行
@@ -58,17 +56,15 @@ public class ExtractJob extends AbstractStageJob {
     private final DataCarrier<String> orderedBucket;
     private final ExtractorFactory extractorFactory;
     private final ExtractMetadata metadata;
+    //已提交尚未放入输出缓冲的批次数量
+    private final AtomicInteger extracting = new AtomicInteger(0);
     public ExtractJob(TaskWork work) {
-        super(work.getBasicThreadName(), 50L);
+        super(work.getBasicThreadName(), 50L, JOB_THREAD_SIZE);
         extractorFactory = NodeContext.INSTANCE.getBean(ExtractorFactory.class);
         this.work = work;
         metadata = new ExtractMetadata(work.getDataConsumer().getExcludes(), work.getDataConsumer().getIncludes(),
                 work.getDataConsumer().getEventProcessor());
-        //线程阻塞时，在调用者线程中执行
-        executorService = new ThreadPoolExecutor(JOB_THREAD_SIZE, JOB_THREAD_SIZE * 3,
-                0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<Runnable>(JOB_THREAD_SIZE * 5),
-                getThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        executorService = newLogicExecutor(JOB_THREAD_SIZE, JOB_THREAD_SIZE * 3, JOB_THREAD_SIZE * 5);
         carrier = NodeContext.INSTANCE.getBean(DataCarrierFactory.class).newDataCarrier(BUFFER_SIZE, 1);
         orderedBucket = NodeContext.INSTANCE.getBean(DataCarrierFactory.class).newDataCarrier(BUFFER_SIZE, 1);
     }
@@ -100,23 +96,33 @@ public class ExtractJob extends AbstractStageJob {
         Pair<String, List<MessageEvent>> events = null;
         do {
             try {
+                double inputUsage = work.getCarrierUsage(StageType.SELECT);
                 events = work.waitEvent(StageType.SELECT);
                 if (null != events) {
+                    getStageMetrics().itemIn(inputUsage);
                     final Pair<String, List<MessageEvent>> inThreadEvents = events;
                     LOGGER.debug("extract MessageEvent batch {}.", inThreadEvents.getLeft());
                     //在单线程执行，保证将来DataLoader load顺序
                     orderedBucket.push(inThreadEvents.getLeft());
                     //暂无Extractor失败处理方案
+                    extracting.incrementAndGet();
                     executorService.submit(() -> {
                         try {
+                            long extractStart = System.nanoTime();
                             //将MessageEvent转换为ETLBucket
-                            ETLBucket bucket = ETLBucket.from(inThreadEvents);
+                            ETLBucket bucket = ETLBucket.from(inThreadEvents, work.getRowPool());
                             extractorFactory.extract(bucket, metadata);
+                            getStageMetrics().busy(System.nanoTime() - extractStart);
                             carrier.push(bucket);
+                            getStageMetrics().itemOut();
                             LOGGER.debug("push bucket {} into carrier after extract.", inThreadEvents.getLeft());
                         } catch (Throwable e) {
+                            //批次被丢弃，释放占用的内存预算
+                            work.getMemoryAccount().release(inThreadEvents.getLeft());
                             work.stopAndAlarm(e.getMessage());
                             LOGGER.error("批次[{}]执行ExtractJob失败!", inThreadEvents.getLeft(), e);
+                        } finally {
+                            extracting.decrementAndGet();
                         }
                     });
                 }
@@ -128,7 +134,7 @@ public class ExtractJob extends AbstractStageJob {
                         "extract MessageEvent error" + e.getMessage());
                 LOGGER.error("extract MessageEvent error!", e);
             }
-        } while (null != events && getWorkingStat());
+        } while (null != events && canContinue());
     }
 
     @Override
@@ -157,6 +163,25 @@ public class ExtractJob extends AbstractStageJob {
         return work.isPoolEmpty(StageType.SELECT);
     }
 
+    @Override
+    public long getCarrierSize() {
+        return carrier.size();
+    }
+
+    @Override
+    public long getCarrierCapacity() {
+        return BUFFER_SIZE;
+    }
+
+    /**
+     * 计算中的批次完成后放入输出缓冲，计入占用，保证共享计算线程放入输出缓冲时不阻塞
+     * @return
+     */
+    @Override
+    protected boolean isOutputFull() {
+        return extracting.get() + carrier.size() >= BUFFER_SIZE || orderedBucket.size() >= BUFFER_SIZE;
+    }
+
     @Override
     public boolean stopWaiting() {
         return work.getDataConsumer().isAutoCommitPosition();
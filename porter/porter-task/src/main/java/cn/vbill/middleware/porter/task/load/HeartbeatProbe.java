@@ -0,0 +1,219 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.task.load;
+
+import cn.vbill.middleware.porter.common.statistics.LatencyHistogram;
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
+import cn.vbill.middleware.porter.core.NodeContext;
+import cn.vbill.middleware.porter.core.consumer.DataConsumer;
+import cn.vbill.middleware.porter.core.event.etl.ETLBucket;
+import cn.vbill.middleware.porter.core.event.etl.ETLColumn;
+import cn.vbill.middleware.porter.core.event.etl.ETLRow;
+import cn.vbill.middleware.porter.core.event.s.EventType;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 源端心跳表同步延迟探测。
+ * 定时通过元数据数据源向源端心跳表写入本节点时间戳，心跳行随同步数据流经各阶段，在ETLRowTransformer中摘出不写入目标端，
+ * 所在批次载入完成后以本节点时钟计算写入到载入的延迟，只统计本节点写入的探针，不受源端与节点间时钟偏差影响。
+ * 本泳道写入的探针尚未载入时，以最早未载入探针的等待时长作为延迟下限，源端空闲或同步停滞时延迟仍能如实增长
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月16日 10:12
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月16日 10:12
+ */
+public class HeartbeatProbe {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeartbeatProbe.class);
+    private static final String COLUMN_NODE_ID = "NODE_ID";
+    private static final String COLUMN_PROBE_ID = "PROBE_ID";
+    private static final String COLUMN_PROBE_TIME = "PROBE_TIME";
+    //未载入探针最多记录数量，超出后不再记录，保留最早的写入时间
+    private static final int MAX_PENDING = 1024;
+
+    private final DataConsumer consumer;
+    private final String probeId;
+    private final String nodeId;
+    private final String schema;
+    private final String table;
+    private final long interval;
+    private final ScheduledExecutorService writeService;
+
+    //载入完成的探针延迟分布，单位毫秒
+    private final LatencyHistogram lag = new LatencyHistogram();
+    //已写入尚未载入的探针时间戳
+    private final Deque<Long> pending = new ArrayDeque<>();
+    //本泳道写入的探针是否经本泳道载入过，多泳道消费源的探针可能落在其他泳道
+    private volatile boolean routed = false;
+    private volatile long lastLag = -1;
+    private volatile long lastWriteError = 0;
+
+    public HeartbeatProbe(DataConsumer consumer, String taskId, String basicThreadName) {
+        this.consumer = consumer;
+        this.probeId = taskId + "-" + consumer.getSwimlaneId();
+        this.nodeId = String.valueOf(NodeContext.INSTANCE.getNodeId());
+        this.interval = consumer.getHeartbeatInterval();
+        String[] names = consumer.getHeartbeatTable().trim().toUpperCase().split("\\.");
+        this.schema = names.length > 1 ? names[0] : null;
+        this.table = names[names.length - 1];
+        this.writeService = Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory(basicThreadName + "-heartbeat"));
+    }
+
+    /**
+     * 是否开启延迟探测
+     * @param consumer
+     * @return
+     */
+    public static boolean isEnabled(DataConsumer consumer) {
+        return !StringUtils.isBlank(consumer.getHeartbeatTable()) && consumer.getHeartbeatInterval() > 0 && consumer.supportMetaQuery();
+    }
+
+    /**
+     * 开始定时写入心跳
+     */
+    public void start() {
+        writeService.scheduleAtFixedRate(this::write, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止写入心跳
+     */
+    public void stop() {
+        writeService.shutdownNow();
+    }
+
+    private void write() {
+        long now = System.currentTimeMillis();
+        try {
+            if (consumer.writeHeartbeat(probeId, nodeId, now)) {
+                synchronized (pending) {
+                    if (pending.size() < MAX_PENDING) {
+                        pending.addLast(now);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            //源端不可写时每10分钟打印一次
+            if (now - lastWriteError > TimeUnit.MINUTES.toMillis(10)) {
+                lastWriteError = now;
+                LOGGER.warn("写入源端心跳表{}失败", consumer.getHeartbeatTable(), e);
+            }
+        }
+    }
+
+    /**
+     * 摘出批次中的心跳行，记录本节点写入的探针
+     * @param bucket
+     */
+    public void detach(ETLBucket bucket) {
+        Iterator<ETLRow> rows = bucket.getRows().iterator();
+        while (rows.hasNext()) {
+            ETLRow row = rows.next();
+            if (!isHeartbeat(row)) {
+                continue;
+            }
+            rows.remove();
+            if (row.getFinalOpType() == EventType.DELETE) {
+                continue;
+            }
+            String rowNodeId = null;
+            String rowProbeId = null;
+            long probeTime = -1;
+            for (ETLColumn column : row.getColumns()) {
+                if (COLUMN_NODE_ID.equalsIgnoreCase(column.getFinalName())) {
+                    rowNodeId = column.getFinalValue();
+                } else if (COLUMN_PROBE_ID.equalsIgnoreCase(column.getFinalName())) {
+                    rowProbeId = column.getFinalValue();
+                } else if (COLUMN_PROBE_TIME.equalsIgnoreCase(column.getFinalName())) {
+                    probeTime = NumberUtils.toLong(column.getFinalValue(), -1);
+                }
+            }
+            //其他节点写入的时间戳与本节点时钟不可比
+            if (nodeId.equals(rowNodeId) && null != rowProbeId && probeTime > 0) {
+                bucket.tagHeartbeat(rowProbeId, probeTime);
+            }
+        }
+    }
+
+    private boolean isHeartbeat(ETLRow row) {
+        return table.equalsIgnoreCase(row.getFinalTable()) && (null == schema || schema.equalsIgnoreCase(row.getFinalSchema()));
+    }
+
+    /**
+     * 批次载入完成后计算探针延迟
+     * @param heartbeats
+     */
+    public void applied(Map<String, Long> heartbeats) {
+        if (heartbeats.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> heartbeat : heartbeats.entrySet()) {
+            long probeLag = Math.max(0, now - heartbeat.getValue());
+            lag.record(probeLag);
+            lastLag = probeLag;
+            if (probeId.equals(heartbeat.getKey())) {
+                routed = true;
+                synchronized (pending) {
+                    while (!pending.isEmpty() && pending.peekFirst() <= heartbeat.getValue()) {
+                        pending.pollFirst();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 当前同步延迟，单位毫秒，尚无探针载入时返回-1
+     * @return
+     */
+    public long getLag() {
+        long current = lastLag;
+        if (routed) {
+            Long oldest;
+            synchronized (pending) {
+                oldest = pending.peekFirst();
+            }
+            if (null != oldest) {
+                current = Math.max(current, System.currentTimeMillis() - oldest);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 载入完成的探针延迟累计分布，单位毫秒
+     * @return
+     */
+    public LatencyHistogram getLagHistogram() {
+        return lag;
+    }
+}
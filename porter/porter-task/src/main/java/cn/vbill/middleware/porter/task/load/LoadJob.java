@@ -20,10 +20,12 @@ package cn.vbill.middleware.porter.task.load;
 import cn.vbill.middleware.porter.common.cluster.ClusterProviderProxy;
 import cn.vbill.middleware.porter.common.cluster.command.TaskPositionUploadCommand;
 import cn.vbill.middleware.porter.common.cluster.data.DTaskStat;
+import cn.vbill.middleware.porter.common.consumer.Position;
 import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
 import cn.vbill.middleware.porter.common.statistics.NodeLog;
 import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
 import cn.vbill.middleware.porter.core.NodeContext;
+import cn.vbill.middleware.porter.core.NodeLoad;
 import cn.vbill.middleware.porter.core.event.etl.ETLBucket;
 import cn.vbill.middleware.porter.core.event.s.EventType;
 import cn.vbill.middleware.porter.core.loader.DataLoader;
@@ -37,7 +39,10 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -114,11 +119,25 @@ public class LoadJob extends AbstractStageJob {
 
     @Override
     protected void doStart() throws Exception {
+        //目标端后台提交事务失败，空闲时也要立即停止任务
+        dataLoder.setTransactionFailureListener(e -> work.stopAndAlarm("目标端提交事务失败:" + e.getMessage()));
         dataLoder.startup();
     }
 
     @Override
     protected void loopLogic() throws InterruptedException {
+        //空闲时推进后台已提交事务的消费位点
+        if (!work.triggerStopped() && dataLoder.isSourcePositionInTransaction()) {
+            try {
+                commitPosition(dataLoder.pollCommittedPosition(null));
+            } catch (TaskStopTriggerException stopException) {
+                LOGGER.error("Commit position error", stopException);
+                work.stopAndAlarm(stopException.getMessage());
+                return;
+            } catch (Throwable e) {
+                LOGGER.error("Commit position error!", e);
+            }
+        }
         //只要队列有消息，持续读取
         ETLBucket bucket = null;
         do {
@@ -128,6 +147,7 @@ public class LoadJob extends AbstractStageJob {
             }
             //正常逻辑
             try {
+                double inputUsage = work.getCarrierUsage(StageType.TRANSFORM);
                 bucket = work.waitEvent(StageType.TRANSFORM);
                 //异常
                 if (null != bucket && null != bucket.getException()) {
@@ -136,35 +156,39 @@ public class LoadJob extends AbstractStageJob {
 
                 //没有异常
                 if (null != bucket && null == bucket.getException()) {
+                    getStageMetrics().itemIn(inputUsage);
                     //记录当前时间
                     currentLoadStartTime = Calendar.getInstance();
                     //执行载入逻辑
-                    Pair<Boolean, List<SubmitStatObject>> loadResult = dataLoder.load(bucket);
+                    long loadStart = System.nanoTime();
+                    Pair<Boolean, List<SubmitStatObject>> loadResult = dataLoder.load(bucket, work.getTaskId(),
+                            work.getDataConsumer().getSwimlaneId());
+                    long loadCost = System.nanoTime() - loadStart;
+                    work.getLoadLatency().record(TimeUnit.NANOSECONDS.toMillis(loadCost));
+                    //反馈载入耗时，用于调整消费源单次提取数量
+                    if (null != work.getAdaptiveFetchSize()) {
+                        work.getAdaptiveFetchSize().onLoad(TimeUnit.NANOSECONDS.toMillis(loadCost), bucket.getRows().size());
+                    }
                     //逻辑执行失败
                     if (!loadResult.getLeft()) {
                         throw new TaskStopTriggerException("批次" + bucket.getSequence() + "Load失败!");
                     }
-                    LOGGER.info("尝试提交消费同步点到集群策略:{}", bucket.getPosition().render());
-                    //提交批次消费同步点
-                    if (null != bucket.getPosition()) {
-                        newestPositionDiffer = work.getDataConsumer().commitPosition(bucket.getPosition());
-                        if (bucket.getPosition().checksum()) {
-                            LOGGER.info("提交消费同步点:{},消息堆积:{}", bucket.getPosition().render(), newestPositionDiffer);
-                            ClusterProviderProxy.INSTANCE.broadcast(new TaskPositionUploadCommand(work.getTaskId(),
-                                    work.getDataConsumer().getSwimlaneId(), bucket.getPosition().render()));
-                            LOGGER.info("结束提交消费同步点:{},消息堆积:{}", bucket.getPosition().render(), newestPositionDiffer);
-                        }
-
-                        NodeContext.INSTANCE.flushConsumeProcess(
-                                work.getTaskId() + "-" + work.getDataConsumer().getSwimlaneId(),
-                                newestPositionDiffer + "");
-                    }
+                    //提交批次消费同步点，目标端事务未提交时不推进
+                    commitPosition(dataLoder.pollCommittedPosition(bucket.getPosition()));
                     currentLoadStartTime = null;
+                    //心跳探针随批次载入完成
+                    if (null != work.getHeartbeatProbe()) {
+                        work.getHeartbeatProbe().applied(bucket.getHeartbeats());
+                    }
                     //更新消费统计数据
-                    loadResult.getRight().forEach(o -> updateStat(o));
+                    updateStat(loadResult.getRight(), loadCost);
                     //标记数据已清除
                     loadResult.getRight().clear();
-                    bucket.markUnUsed();
+                    //目标端已载入并提交同步点，行与字段放回回收池
+                    bucket.markUnUsed(work.getRowPool());
+                    //载入、提交同步点、更新统计均计入处理耗时
+                    getStageMetrics().busy(System.nanoTime() - loadStart);
+                    getStageMetrics().itemOut();
                 }
             } catch (TaskStopTriggerException stopException) {
                 LOGGER.error("Load ETLRow error", stopException);
@@ -181,8 +205,35 @@ public class LoadJob extends AbstractStageJob {
                 NodeLog.upload(NodeLog.LogType.TASK_LOG, work.getTaskId(), work.getDataConsumer().getSwimlaneId(),
                         "Load ETLRow error" + e.getMessage());
                 LOGGER.error("Load ETLRow error!", e);
+            } finally {
+                //载入成功或失败丢弃，都释放批次占用的内存预算
+                if (null != bucket) {
+                    work.getMemoryAccount().release(bucket.getSequence());
+                }
             }
-        } while (null != bucket && !work.triggerStopped() && getWorkingStat()); //数据不为空并且当前任务没有触发停止告警
+        } while (null != bucket && !work.triggerStopped() && canContinue()); //数据不为空并且当前任务没有触发停止告警
+    }
+
+    /**
+     * 提交消费同步点到消费源与集群
+     * @param position 为空时不提交
+     */
+    private void commitPosition(Position position) throws Exception {
+        if (null == position) {
+            return;
+        }
+        LOGGER.info("尝试提交消费同步点到集群策略:{}", position.render());
+        newestPositionDiffer = work.getDataConsumer().commitPosition(position);
+        if (position.checksum()) {
+            LOGGER.info("提交消费同步点:{},消息堆积:{}", position.render(), newestPositionDiffer);
+            ClusterProviderProxy.INSTANCE.broadcast(new TaskPositionUploadCommand(work.getTaskId(),
+                    work.getDataConsumer().getSwimlaneId(), position.render()));
+            LOGGER.info("结束提交消费同步点:{},消息堆积:{}", position.render(), newestPositionDiffer);
+        }
+
+        NodeContext.INSTANCE.flushConsumeProcess(
+                work.getTaskId() + "-" + work.getDataConsumer().getSwimlaneId(),
+                newestPositionDiffer + "");
     }
 
     @Override
@@ -195,6 +246,10 @@ public class LoadJob extends AbstractStageJob {
         return work.isPoolEmpty(StageType.TRANSFORM);
     }
 
+    public long getNewestPositionDiffer() {
+        return newestPositionDiffer;
+    }
+
     @Override
     public boolean stopWaiting() {
         return work.getDataConsumer().isAutoCommitPosition();
@@ -208,14 +263,56 @@ public class LoadJob extends AbstractStageJob {
      * According to the JDBC 2.0 specification, a value of -2 indicates that the operation was successful
      * but the number of rows affected is unknown.
      *
-     * @param object
+     * 批次内连续同表的行复用同一个统计对象；单行载入耗时按批次耗时均摊，最近载入时间与进度每批次每表只更新一次
+     *
+     * @param objects
+     * @param loadCostNanos 批次载入耗时
      */
-    private void updateStat(SubmitStatObject object) {
+    private void updateStat(List<SubmitStatObject> objects, long loadCostNanos) {
+        if (objects.isEmpty()) {
+            return;
+        }
+        long perRowMicros = TimeUnit.NANOSECONDS.toMicros(loadCostNanos) / objects.size();
+        long now = System.currentTimeMillis();
+        Map<DTaskStat, SubmitStatObject> lastObjects = new HashMap<>();
+        Map<DTaskStat, Long> rows = new HashMap<>();
+        DTaskStat stat = null;
+        SubmitStatObject previous = null;
+        for (SubmitStatObject object : objects) {
+            if (null == previous || !Objects.equals(previous.getTable(), object.getTable())
+                    || !Objects.equals(previous.getSchema(), object.getSchema())) {
+                stat = work.getDTaskStat(object.getSchema(), object.getTable());
+            }
+            previous = object;
+            updateStat(stat, object);
+            //数据产生到载入完成的延迟
+            if (null != object.getOpTime()) {
+                stat.recordDelay(now - object.getOpTime().getTime());
+            }
+            lastObjects.put(stat, object);
+            rows.merge(stat, 1L, Long::sum);
+        }
+        //节点吞吐量，用于集群负载均衡
+        NodeLoad.INSTANCE.recordRows(objects.size());
+
+        Date loadedTime = new Date(now);
+        lastObjects.forEach((s, object) -> {
+            s.recordApplyLatency(perRowMicros, rows.get(s));
+            //更新最后执行消息事件的产生时间，用于计算从消息产生到加载如路时间、计算数据同步检查时间
+            if (null != object.getOpTime()) {
+                s.setLastLoadedDataTime(object.getOpTime());
+            }
+            s.setLastLoadedSystemTime(loadedTime);
+            if (null != object.getPosition()) {
+                s.setProgress(object.getPosition().render());
+            }
+        });
+    }
+
+    private void updateStat(DTaskStat stat, SubmitStatObject object) {
         int affect = object.getAffect();
         boolean hit = affect > 0 || affect == -2;
         EventType eventType = object.getType();
-        //虽然每个状态值的变更都有stat对象锁，但在最外层加对象锁避免了多次请求的问题（锁可重入），同时保证状态各字段变更一致性
-        DTaskStat stat = work.getDTaskStat(object.getSchema(), object.getTable());
         switch (eventType.getIndex()) {
             case EventType.DELETE_INDEX:
                 if (hit) {
@@ -249,16 +346,6 @@ public class LoadJob extends AbstractStageJob {
                 break;
         }
 
-        //更新最后执行消息事件的产生时间，用于计算从消息产生到加载如路时间、计算数据同步检查时间
-        if (null != object.getOpTime()) {
-            stat.setLastLoadedDataTime(object.getOpTime());
-        }
-
-        stat.setLastLoadedSystemTime(new Date());
-        if (null != object.getPosition()) {
-            stat.setProgress(object.getPosition().render());
-        }
-
         //打印当前消息所在点位，方便问题查找
         if (!hit) {
             LOGGER.error("{}.{} {} {}", object.getSchema(), object.getTable(), object.getType().getCode(), object.getPosition().render());
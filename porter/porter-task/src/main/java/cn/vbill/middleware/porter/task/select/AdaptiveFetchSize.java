@@ -0,0 +1,117 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.task.select;
+
+import cn.vbill.middleware.porter.core.consumer.DataConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 消费源单次提取数量自适应调整(AIMD)。
+ * 提取批次满且下游跟得上时线性增加；SelectJob缓冲接近满或LoadJob单行载入耗时明显上升时减半，
+ * 每次减半后需等到新的载入反馈才会再次减小，避免同一次拥塞连续减半
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月12日 10:26
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月12日 10:26
+ */
+public class AdaptiveFetchSize {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveFetchSize.class);
+    //缓冲占用比例达到该值视为下游拥塞
+    private static final double CARRIER_HIGH_WATER = 0.8;
+    //单行载入耗时超过基线的倍数视为目标端变慢
+    private static final double LATENCY_RISE_RATIO = 2.0;
+    private static final double DECREASE_FACTOR = 0.5;
+    //载入耗时指数平滑系数
+    private static final double EWMA_ALPHA = 0.2;
+    //基线每次反馈允许回升的比例，目标端长期变慢后基线随之上移
+    private static final double BASELINE_DRIFT = 0.01;
+    //从下限增长到上限大约需要的步数
+    private static final int INCREASE_STEPS = 20;
+
+    private final DataConsumer consumer;
+    private final int minSize;
+    private final int maxSize;
+    private final int step;
+    private int current;
+    //单行载入耗时，单位微秒
+    private double loadLatency = -1;
+    private double baselineLatency = -1;
+    private boolean feedbackSinceDecrease = true;
+
+    public AdaptiveFetchSize(DataConsumer consumer) {
+        this.consumer = consumer;
+        this.minSize = Math.max(1, consumer.getMinFetchSize());
+        this.maxSize = Math.max(minSize, consumer.getMaxFetchSize());
+        this.step = Math.max(1, (maxSize - minSize) / INCREASE_STEPS);
+        int initial = consumer.getFetchSize();
+        this.current = initial > 0 ? Math.min(maxSize, Math.max(minSize, initial)) : minSize;
+        consumer.setFetchSize(current);
+    }
+
+    /**
+     * 是否开启自适应调整
+     * @param consumer
+     * @return
+     */
+    public static boolean isEnabled(DataConsumer consumer) {
+        return consumer.getMaxFetchSize() > 0 && consumer.getFetchSize() > 0;
+    }
+
+    /**
+     * LoadJob每载入一个批次反馈一次
+     * @param costMillis
+     * @param rows
+     */
+    public synchronized void onLoad(long costMillis, int rows) {
+        if (rows <= 0) {
+            return;
+        }
+        double perRow = costMillis * 1000.0 / rows;
+        loadLatency = loadLatency < 0 ? perRow : loadLatency + EWMA_ALPHA * (perRow - loadLatency);
+        baselineLatency = baselineLatency < 0 ? loadLatency : Math.min(loadLatency, baselineLatency * (1 + BASELINE_DRIFT));
+        feedbackSinceDecrease = true;
+    }
+
+    /**
+     * SelectJob每次提取后调整
+     * @param fetched 本次提取数量
+     * @param carrierUsage 缓冲占用比例
+     */
+    public synchronized void onFetch(int fetched, double carrierUsage) {
+        int next = current;
+        boolean latencyRise = baselineLatency > 0 && loadLatency > baselineLatency * LATENCY_RISE_RATIO;
+        if ((carrierUsage >= CARRIER_HIGH_WATER || latencyRise) && feedbackSinceDecrease) {
+            next = Math.max(minSize, (int) (current * DECREASE_FACTOR));
+            feedbackSinceDecrease = false;
+        } else if (fetched >= current && carrierUsage < CARRIER_HIGH_WATER && !latencyRise) {
+            next = Math.min(maxSize, current + step);
+        }
+        if (next != current) {
+            LOGGER.debug("调整单次提取数量:{}->{},缓冲占用:{},单行载入耗时:{}us,基线:{}us", current, next, carrierUsage,
+                    (long) loadLatency, (long) baselineLatency);
+            current = next;
+            consumer.setFetchSize(next);
+        }
+    }
+
+    public synchronized int getCurrent() {
+        return current;
+    }
+}
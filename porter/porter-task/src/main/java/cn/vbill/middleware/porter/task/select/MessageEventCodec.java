@@ -0,0 +1,133 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.task.select;
+
+import cn.vbill.middleware.porter.common.consumer.Position;
+import cn.vbill.middleware.porter.core.event.s.EventType;
+import cn.vbill.middleware.porter.core.event.s.MessageEvent;
+import cn.vbill.middleware.porter.datacarrier.spill.SpillCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SELECT阶段输出批次的溢出编解码。
+ * 一个批次编码为一个对象流，批次内相同的位点、库表名对象只写一次。
+ * 字段值按String.valueOf编码，下游ETLBucket.from同样按字符串读取字段值，回放结果与内存中一致
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月21日 10:30
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月21日 10:30
+ */
+public class MessageEventCodec implements SpillCodec<List<MessageEvent>> {
+
+    @Override
+    public void encode(List<MessageEvent> events, OutputStream out) throws IOException {
+        ObjectOutputStream output = new ObjectOutputStream(out);
+        output.writeInt(events.size());
+        for (MessageEvent event : events) {
+            output.writeObject(event.getRowPosition());
+            output.writeObject(event.getBucketPosition());
+            output.writeObject(event.getSchema());
+            output.writeObject(event.getTable());
+            output.writeObject(event.getOpType());
+            output.writeObject(event.getOpTs());
+            output.writeObject(event.getCurrentTs());
+            output.writeLong(event.getConsumerTime());
+            output.writeLong(event.getConsumedTime());
+            writeValues(output, event.getAfter());
+            writeValues(output, event.getBefore());
+            List<String> primaryKeys = event.getPrimaryKeys();
+            output.writeInt(null != primaryKeys ? primaryKeys.size() : -1);
+            if (null != primaryKeys) {
+                for (String key : primaryKeys) {
+                    output.writeObject(key);
+                }
+            }
+        }
+        output.flush();
+    }
+
+    @Override
+    public List<MessageEvent> decode(InputStream in) throws IOException {
+        try {
+            ObjectInputStream input = new ObjectInputStream(in);
+            int size = input.readInt();
+            List<MessageEvent> events = new ArrayList<>(size);
+            for (int index = 0; index < size; index++) {
+                MessageEvent event = new MessageEvent();
+                event.setRowPosition((Position) input.readObject());
+                event.setBucketPosition((Position) input.readObject());
+                event.setSchema((String) input.readObject());
+                event.setTable((String) input.readObject());
+                event.setOpType((EventType) input.readObject());
+                event.setOpTs((Date) input.readObject());
+                event.setCurrentTs((Date) input.readObject());
+                event.setConsumerTime(input.readLong());
+                event.setConsumedTime(input.readLong());
+                event.setAfter(readValues(input));
+                event.setBefore(readValues(input));
+                int keySize = input.readInt();
+                List<String> primaryKeys = null;
+                if (keySize >= 0) {
+                    primaryKeys = new ArrayList<>(keySize);
+                    for (int key = 0; key < keySize; key++) {
+                        primaryKeys.add((String) input.readObject());
+                    }
+                }
+                event.setPrimaryKeys(primaryKeys);
+                events.add(event);
+            }
+            return events;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writeValues(ObjectOutputStream output, Map<String, Object> values) throws IOException {
+        output.writeInt(null != values ? values.size() : -1);
+        if (null != values) {
+            for (Map.Entry<String, Object> value : values.entrySet()) {
+                output.writeObject(value.getKey());
+                output.writeObject(null != value.getValue() ? String.valueOf(value.getValue()) : null);
+            }
+        }
+    }
+
+    private Map<String, Object> readValues(ObjectInputStream input) throws IOException, ClassNotFoundException {
+        int size = input.readInt();
+        if (size < 0) {
+            return null;
+        }
+        //保持编码前的字段顺序
+        Map<String, Object> values = new LinkedHashMap<>(size * 2);
+        for (int index = 0; index < size; index++) {
+            values.put((String) input.readObject(), input.readObject());
+        }
+        return values;
+    }
+}
@@ -17,19 +17,26 @@
 
 package cn.vbill.middleware.porter.task.select;
 
+import cn.vbill.middleware.porter.common.config.SpillConfig;
 import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
 import cn.vbill.middleware.porter.common.statistics.NodeLog;
 import cn.vbill.middleware.porter.core.NodeContext;
 import cn.vbill.middleware.porter.core.consumer.DataConsumer;
 import cn.vbill.middleware.porter.core.event.s.MessageEvent;
 import cn.vbill.middleware.porter.core.task.AbstractStageJob;
+import cn.vbill.middleware.porter.core.task.MemoryBudget;
+import cn.vbill.middleware.porter.core.task.StageScheduler;
 import cn.vbill.middleware.porter.datacarrier.DataCarrier;
 import cn.vbill.middleware.porter.datacarrier.DataCarrierFactory;
+import cn.vbill.middleware.porter.datacarrier.spill.SpillDataCarrier;
 import cn.vbill.middleware.porter.task.worker.TaskWork;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.UncheckedIOException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -56,18 +63,38 @@ public class SelectJob extends AbstractStageJob {
     private final DataConsumer consumer;
     private final TaskWork work;
     private final DataCarrier<List<MessageEvent>> carrier;
+    //开启溢出时与carrier为同一对象，否则为null
+    private final SpillDataCarrier<List<MessageEvent>> spillCarrier;
+    //取出批次并登记内存预算估算值
+    private final Object outputLock = new Object();
     //最后一次查不到数据时间
     private volatile Date lastNoneFetchTime;
     private volatile Date lastNoneFetchNoticeTime;
     private final long fetchNoticeSpan;
     private final long fetchNoticeThreshould;
+    private final AdaptiveFetchSize adaptiveFetchSize;
+    //持续无数据多久后休眠，单位秒
+    private final long hibernateIdle;
     public SelectJob(TaskWork work) {
         super(work.getBasicThreadName(), 50L);
         this.work = work;
         consumer = work.getDataConsumer();
-        carrier = NodeContext.INSTANCE.getBean(DataCarrierFactory.class).newDataCarrier(BUFFER_SIZE, PULL_BATCH_SIZE);
+        SpillConfig spill = NodeContext.INSTANCE.getSpill();
+        if (spill.isEnabled()) {
+            String dir = StringUtils.isBlank(spill.getDir()) ? new File(System.getProperty("java.io.tmpdir"), "porter-spill").getPath() : spill.getDir();
+            //每个泳道独立目录，启动时清理上次残留，残留数据对应的位点尚未提交，重启后会从消费源重新提取
+            File directory = new File(dir, (work.getTaskId() + "-" + consumer.getSwimlaneId()).replaceAll("[^\\w.-]", "_"));
+            spillCarrier = new SpillDataCarrier<>(BUFFER_SIZE, directory, spill.getSegmentSize() * 1024 * 1024,
+                    spill.getMaxSize() * 1024 * 1024, new MessageEventCodec());
+            carrier = spillCarrier;
+        } else {
+            spillCarrier = null;
+            carrier = NodeContext.INSTANCE.getBean(DataCarrierFactory.class).newDataCarrier(BUFFER_SIZE, PULL_BATCH_SIZE);
+        }
         fetchNoticeSpan = work.getDataConsumer().getEmptyFetchNoticeSpan();
         fetchNoticeThreshould = work.getDataConsumer().getEmptyFetchThreshold();
+        adaptiveFetchSize = work.getAdaptiveFetchSize();
+        hibernateIdle = NodeContext.INSTANCE.getScheduler().getHibernateIdle();
     }
 
     /**
@@ -93,10 +120,38 @@ public class SelectJob extends AbstractStageJob {
         List<MessageEvent> events = null;
         do {
             try {
+                //内存预算用尽时等待下游载入释放，调度线程中由isOutputFull判断不等待。开启溢出时写入段文件，不等待
+                if (null == spillCarrier && !StageScheduler.INSTANCE.isWorkerThread()) {
+                    work.getMemoryAccount().await(this::getWorkingStat);
+                    if (!getWorkingStat()) {
+                        break;
+                    }
+                }
+                long fetchStart = System.nanoTime();
                 events = consumer.fetch();
+                //消费源没有上游缓冲，处理耗时只计提取，不含等待下游缓冲
+                getStageMetrics().busy(System.nanoTime() - fetchStart);
                 if (null != events && !events.isEmpty()) {
-                    carrier.push(events);
+                    getStageMetrics().itemIn(-1);
+                    if (null != spillCarrier) {
+                        //写入段文件的批次回放前不占用内存预算
+                        boolean toDisk = spillCarrier.isSpilling() || work.getMemoryAccount().isExhausted();
+                        work.getMemoryAccount().charge(toDisk ? 0 : MemoryBudget.estimate(events));
+                        spillCarrier.push(events, toDisk);
+                    } else {
+                        work.getMemoryAccount().charge(MemoryBudget.estimate(events));
+                        carrier.push(events);
+                    }
+                    getStageMetrics().itemOut();
                     lastNoneFetchTime = null;
+                    //休眠探测提取到数据，唤醒泳道各阶段
+                    if (isHibernating()) {
+                        work.wakeup();
+                    }
+                }
+                //根据提取数量和缓冲占用调整下次提取数量
+                if (null != adaptiveFetchSize && null != events) {
+                    adaptiveFetchSize.onFetch(events.size(), getOutputUsage());
                 }
             } catch (TaskStopTriggerException stopError) {
                 stopError.printStackTrace();
@@ -108,7 +163,12 @@ public class SelectJob extends AbstractStageJob {
                 NodeLog.upload(NodeLog.LogType.TASK_LOG, work.getTaskId(), consumer.getSwimlaneId(), "fetch MessageEvent error" + e.getMessage());
                 LOGGER.error("fetch MessageEvent error!", e);
             }
-        } while (null != events && !events.isEmpty() && getWorkingStat());
+        } while (null != events && !events.isEmpty() && canContinue());
+
+        //让出调度线程时本轮仍有数据，不计入无数据时间
+        if (null != events && !events.isEmpty()) {
+            return;
+        }
 
         try {
             //退出轮训循环，判断累计查不到数据时间，按照配置发送邮件告警
@@ -133,6 +193,10 @@ public class SelectJob extends AbstractStageJob {
                 lastNoneFetchTime = now;
             }
             NodeContext.INSTANCE.flushConsumerIdle(taskId, swimlaneId, nofetchTime);
+            //持续无数据超过休眠时间，泳道进入休眠
+            if (hibernateIdle > 0 && nofetchTime >= hibernateIdle && !isHibernating()) {
+                work.hibernate();
+            }
         } catch (Throwable e) {
             e.printStackTrace();
         }
@@ -145,11 +209,79 @@ public class SelectJob extends AbstractStageJob {
 
     @Override
     public Pair<String, List<MessageEvent>> output() {
-        return carrier.pullByOrder();
+        try {
+            //取出与登记估算值需要同一把锁，保证登记顺序与取出顺序一致。不使用缓冲自身的锁，回放解码时不阻塞写入
+            synchronized (outputLock) {
+                Pair<String, List<MessageEvent>> events = carrier.pullByOrder();
+                if (null != events) {
+                    work.getMemoryAccount().assign(events.getLeft());
+                }
+                return events;
+            }
+        } catch (UncheckedIOException e) {
+            //溢出数据无法回放，继续同步会跳过该批次
+            LOGGER.error("回放溢出数据失败", e);
+            work.stopAndAlarm("回放溢出数据失败:" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 关闭输出缓冲，删除溢出段文件。泳道各阶段停止后调用
+     */
+    public void closeCarrier() {
+        if (null != spillCarrier) {
+            spillCarrier.close();
+        }
+    }
+
+    /**
+     * 溢出字节数，未开启溢出时返回-1
+     * @return
+     */
+    public long getSpilledBytes() {
+        return null != spillCarrier ? spillCarrier.getSpilledBytes() : -1;
+    }
+
+    /**
+     * 输出缓冲占用比例，写入段文件时按溢出上限计算
+     * @return
+     */
+    private double getOutputUsage() {
+        if (null != spillCarrier && spillCarrier.isSpilling()) {
+            return spillCarrier.getSpilledBytes() * 1.0 / (NodeContext.INSTANCE.getSpill().getMaxSize() * 1024 * 1024);
+        }
+        return getCarrierSize() * 1.0 / BUFFER_SIZE;
     }
 
     @Override
     public boolean isPoolEmpty() {
         return carrier.size() == 0;
     }
+
+    /**
+     * 内存预算用尽时同输出缓冲已满，开启溢出时只在溢出达到上限时已满
+     * @return
+     */
+    @Override
+    protected boolean isOutputFull() {
+        if (null != spillCarrier) {
+            return spillCarrier.isFull();
+        }
+        return super.isOutputFull() || work.getMemoryAccount().isExhausted();
+    }
+
+    /**
+     * 内存中的缓冲数量，不含溢出数据
+     * @return
+     */
+    @Override
+    public long getCarrierSize() {
+        return null != spillCarrier ? spillCarrier.memorySize() : carrier.size();
+    }
+
+    @Override
+    public long getCarrierCapacity() {
+        return BUFFER_SIZE;
+    }
 }
@@ -19,6 +19,7 @@ package cn.vbill.middleware.porter.task.transform;
 
 import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
 import cn.vbill.middleware.porter.core.NodeContext;
+import cn.vbill.middleware.porter.core.task.StageScheduler;
 import cn.vbill.middleware.porter.core.task.StageType;
 import cn.vbill.middleware.porter.datacarrier.simple.FixedCapacityCarrier;
 import cn.vbill.middleware.porter.task.transform.transformer.TransformFactory;
@@ -30,11 +31,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.ThreadPoolExecutor;
 
 
 /**
@@ -54,6 +52,13 @@ public class TransformJob extends AbstractStageJob {
     //容量为线程池容量的100倍
     private final DataMapCarrier<String, Future<ETLBucket>> carrier = new FixedCapacityCarrier(JOB_THREAD_SIZE * 100);
     private final TaskWork work;
+    //等待transform完成超时时间
+    private static final long SEQUENCE_WAIT_TIMEOUT = 1000 * 60 * 5;
+    //在调度线程中尚未transform完成的批次，LOAD本轮不等待，下一轮继续检查
+    private String pendingSequence;
+    private long pendingSince;
+    //在调度线程中已取出、transform仍在执行的批次
+    private Future<ETLBucket> pendingResult;
 
     //工作线程数量
     private static final int JOB_THREAD_SIZE = 1;
@@ -62,11 +67,7 @@ public class TransformJob extends AbstractStageJob {
         super(work.getBasicThreadName(), 50L);
         this.work = work;
         transformFactory = NodeContext.INSTANCE.getBean(TransformFactory.class);
-        //线程阻塞时，在调用者线程中执行
-        executorService = new ThreadPoolExecutor(JOB_THREAD_SIZE, JOB_THREAD_SIZE * 3,
-                0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<Runnable>(JOB_THREAD_SIZE * 5),
-                getThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        executorService = newLogicExecutor(JOB_THREAD_SIZE, JOB_THREAD_SIZE * 3, JOB_THREAD_SIZE * 5);
     }
 
     @Override
@@ -85,11 +86,14 @@ public class TransformJob extends AbstractStageJob {
         ETLBucket bucket = null;
         do {
             try {
+                double inputUsage = work.getCarrierUsage(StageType.EXTRACT);
                 bucket = work.waitEvent(StageType.EXTRACT);
                 if (null != bucket) {
+                    getStageMetrics().itemIn(inputUsage);
                     LOGGER.debug("transform ETLBucket batch {} begin.", bucket.getSequence());
                     final ETLBucket inThreadBucket = bucket;
                     Future<ETLBucket> result = executorService.submit(() -> {
+                        long transformStart = System.nanoTime();
                         try {
                             //上个流程处理没有异常
                             if (null == inThreadBucket.getException()) {
@@ -99,11 +103,14 @@ public class TransformJob extends AbstractStageJob {
                             e.printStackTrace();
                             inThreadBucket.tagException(new TaskStopTriggerException(e));
                             LOGGER.error("批次[{}]执行TransformJob失败!", inThreadBucket.getSequence(), e);
+                        } finally {
+                            getStageMetrics().busy(System.nanoTime() - transformStart);
                         }
                         return inThreadBucket;
                     });
                     LOGGER.debug("transform ETLBucket batch {} end.", bucket.getSequence());
                     carrier.push(inThreadBucket.getSequence(), result);
+                    getStageMetrics().itemOut();
                     carrier.printState();
                 }
             }  catch (InterruptedException interrupt) {
@@ -111,12 +118,22 @@ public class TransformJob extends AbstractStageJob {
             } catch (Throwable e) {
                 LOGGER.error("transform ETLBucket error!", e);
             }
-        } while (null != bucket && getWorkingStat());
+        } while (null != bucket && canContinue());
     }
 
     @Override
     public ETLBucket output() throws ExecutionException, InterruptedException {
-        String sequence = work.waitSequence();
+        if (StageScheduler.INSTANCE.isWorkerThread()) {
+            return pollOutput();
+        }
+        if (null != pendingResult) {
+            Future<ETLBucket> result = pendingResult;
+            pendingResult = null;
+            return result.get();
+        }
+        //调度线程中未完成的批次优先
+        String sequence = null != pendingSequence ? pendingSequence : work.waitSequence();
+        pendingSequence = null;
         Future<ETLBucket> result = null;
         if (null != sequence) {
             LOGGER.debug("got sequence:{}, Future: {}", sequence, carrier.containsKey(sequence));
@@ -126,7 +143,7 @@ public class TransformJob extends AbstractStageJob {
             while (null != sequence && !carrier.containsKey(sequence)) {
                 LOGGER.debug("waiting sequence Future:{}", sequence);
                 //等待超过5分钟，释放任务
-                if (waitTime > 1000 * 60 * 5) {
+                if (waitTime > SEQUENCE_WAIT_TIMEOUT) {
                     String msg = "等待批次" + sequence + "SET完成超时(5m)，任务退出。";
                     LOGGER.error(msg);
                     work.stopAndAlarm(msg);
@@ -141,6 +158,43 @@ public class TransformJob extends AbstractStageJob {
         return null != result ? result.get() : null;
     }
 
+    /**
+     * 不在调度线程中等待批次transform完成，批次未提交或未完成时记下批次返回空，提交超时处理与独立线程时一致
+     * @return
+     * @throws ExecutionException
+     * @throws InterruptedException
+     */
+    private ETLBucket pollOutput() throws ExecutionException, InterruptedException {
+        if (null == pendingResult) {
+            String sequence = null != pendingSequence ? pendingSequence : work.waitSequence();
+            if (null == sequence) {
+                return null;
+            }
+            if (!carrier.containsKey(sequence)) {
+                long now = System.currentTimeMillis();
+                if (null == pendingSequence) {
+                    pendingSequence = sequence;
+                    pendingSince = now;
+                } else if (now - pendingSince > SEQUENCE_WAIT_TIMEOUT) {
+                    String msg = "等待批次" + sequence + "SET完成超时(5m)，任务退出。";
+                    LOGGER.error(msg);
+                    work.stopAndAlarm(msg);
+                    pendingSequence = null;
+                }
+                return null;
+            }
+            pendingSequence = null;
+            pendingResult = carrier.pull(sequence);
+        }
+        //已提交但transform未完成，不阻塞调度线程
+        if (null != pendingResult && !pendingResult.isDone()) {
+            return null;
+        }
+        Future<ETLBucket> result = pendingResult;
+        pendingResult = null;
+        return null != result ? result.get() : null;
+    }
+
     @Override
     public boolean isPoolEmpty() {
         return carrier.size() == 0 && executorService.isTerminated();
@@ -151,6 +205,16 @@ public class TransformJob extends AbstractStageJob {
         return work.isPoolEmpty(StageType.EXTRACT);
     }
 
+    @Override
+    public long getCarrierSize() {
+        return carrier.size();
+    }
+
+    @Override
+    public long getCarrierCapacity() {
+        return JOB_THREAD_SIZE * 100;
+    }
+
     @Override
     public boolean stopWaiting() {
         return work.getDataConsumer().isAutoCommitPosition();
@@ -54,6 +54,10 @@ public class ETLRowTransformer implements Transformer {
     @Override
     public void transform(ETLBucket bucket, TaskWork work) throws Exception {
         LOGGER.debug("start tranforming bucket:{},size:{}", bucket.getSequence(), bucket.getRows().size());
+        //源端心跳行只用于计算同步延迟，在表映射前摘出
+        if (null != work.getHeartbeatProbe()) {
+            work.getHeartbeatProbe().detach(bucket);
+        }
         for (ETLRow row : bucket.getRows()) {
             LOGGER.debug("try tranform row:{},{}", row.getPosition().render(), JSON.toJSONString(row));
             //表映射
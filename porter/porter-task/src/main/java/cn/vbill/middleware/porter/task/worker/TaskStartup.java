@@ -0,0 +1,261 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.task.worker;
+
+import cn.vbill.middleware.porter.common.config.StartupConfig;
+import cn.vbill.middleware.porter.common.exception.TaskLockException;
+import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
+import cn.vbill.middleware.porter.core.NodeContext;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 泳道并发启动。
+ * 泳道启动提交到有界线程池并发执行，启动过程中连接源端、连接目标端、集群操作分别通过信号量限制并发，
+ * 避免节点故障转移时大量泳道同时压向源端、目标端或zookeeper。记录每个泳道的启动阶段与耗时，用于输出启动就绪报告
+ *
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月19日 16:10
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月19日 16:10
+ */
+public enum TaskStartup {
+
+    /**
+     * INSTANCE
+     */
+    INSTANCE();
+    private static final String PHASE_SOURCE = "source";
+    private static final String PHASE_TARGET = "target";
+    private static final String PHASE_CLUSTER = "cluster";
+    private static final ThreadLocal<Readiness> CURRENT = new ThreadLocal<>();
+
+    private volatile ExecutorService executor;
+    private volatile Semaphore source;
+    private volatile Semaphore target;
+    private volatile Semaphore cluster;
+    //taskId_swimlaneId -> 启动状态，泳道停止后移除
+    private final Map<String, Readiness> readiness = new ConcurrentHashMap<>();
+    //启动中的泳道数量
+    private final AtomicInteger inflight = new AtomicInteger(0);
+    //本轮启动开始时间、上一轮启动耗时与泳道数量
+    private volatile long waveStart = 0;
+    private final AtomicInteger waveSwimlanes = new AtomicInteger(0);
+    private volatile long lastWaveMillis = -1;
+    private volatile int lastWaveSwimlanes = 0;
+
+    private synchronized void initialize() {
+        if (null == executor) {
+            StartupConfig config = NodeContext.INSTANCE.getStartup();
+            int parallelism = Math.max(1, config.getParallelism());
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new DefaultNamedThreadFactory("TaskStartup"));
+            //空闲时不保留线程
+            pool.allowCoreThreadTimeOut(true);
+            source = new Semaphore(Math.max(1, config.getSourceConcurrency()), true);
+            target = new Semaphore(Math.max(1, config.getTargetConcurrency()), true);
+            cluster = new Semaphore(Math.max(1, config.getClusterConcurrency()), true);
+            executor = pool;
+        }
+    }
+
+    /**
+     * 提交泳道启动
+     * @param taskId
+     * @param swimlaneId
+     * @param step
+     * @return 启动结束(成功或失败)
+     */
+    public CompletableFuture<Void> submit(String taskId, String swimlaneId, Step step) {
+        initialize();
+        Readiness entry = new Readiness(taskId, swimlaneId);
+        readiness.put(entry.key(), entry);
+        synchronized (inflight) {
+            if (inflight.getAndIncrement() == 0) {
+                waveStart = System.currentTimeMillis();
+                waveSwimlanes.set(0);
+            }
+            waveSwimlanes.incrementAndGet();
+        }
+        return CompletableFuture.runAsync(() -> {
+            entry.startTime = System.currentTimeMillis();
+            entry.state = State.STARTING;
+            CURRENT.set(entry);
+            try {
+                step.run();
+                entry.state = State.READY;
+            } catch (TaskLockException e) {
+                //任务已被其他节点抢占
+                readiness.remove(entry.key(), entry);
+            } catch (Throwable e) {
+                entry.state = State.FAILED;
+                entry.error = e.getMessage();
+            } finally {
+                CURRENT.remove();
+                entry.phase = null;
+                entry.endTime = System.currentTimeMillis();
+                synchronized (inflight) {
+                    if (inflight.decrementAndGet() == 0) {
+                        lastWaveMillis = entry.endTime - waveStart;
+                        lastWaveSwimlanes = waveSwimlanes.get();
+                    }
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * 泳道停止后移除启动状态
+     * @param taskId
+     * @param swimlaneId
+     */
+    public void forget(String taskId, String swimlaneId) {
+        readiness.remove(taskId + "_" + swimlaneId);
+    }
+
+    /**
+     * 连接源端
+     * @param step
+     * @throws Exception
+     */
+    public void source(Step step) throws Exception {
+        initialize();
+        guard(source, PHASE_SOURCE, step);
+    }
+
+    /**
+     * 连接目标端
+     * @param step
+     * @throws Exception
+     */
+    public void target(Step step) throws Exception {
+        initialize();
+        guard(target, PHASE_TARGET, step);
+    }
+
+    /**
+     * 集群操作
+     * @param step
+     * @throws Exception
+     */
+    public void cluster(Step step) throws Exception {
+        initialize();
+        guard(cluster, PHASE_CLUSTER, step);
+    }
+
+    private void guard(Semaphore semaphore, String phase, Step step) throws Exception {
+        Readiness entry = CURRENT.get();
+        if (null != entry) {
+            entry.phase = phase + "-waiting";
+        }
+        semaphore.acquire();
+        try {
+            if (null != entry) {
+                entry.phase = phase;
+            }
+            step.run();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * 启动就绪报告
+     * @return
+     */
+    public JSONObject report() {
+        List<Readiness> entries = new ArrayList<>(readiness.values());
+        entries.sort(Comparator.comparingLong(r -> r.submitTime));
+        JSONObject report = new JSONObject(true);
+        for (State state : State.values()) {
+            report.put(state.name().toLowerCase(), entries.stream().filter(r -> r.state == state).count());
+        }
+        report.put("inflight", inflight.get());
+        if (inflight.get() > 0) {
+            report.put("currentMillis", System.currentTimeMillis() - waveStart);
+        }
+        report.put("lastMillis", lastWaveMillis);
+        report.put("lastSwimlanes", lastWaveSwimlanes);
+        JSONArray swimlanes = new JSONArray();
+        long now = System.currentTimeMillis();
+        for (Readiness entry : entries) {
+            JSONObject swimlane = new JSONObject(true);
+            swimlane.put("taskId", entry.taskId);
+            swimlane.put("swimlaneId", entry.swimlaneId);
+            swimlane.put("state", entry.state);
+            swimlane.put("phase", entry.phase);
+            swimlane.put("waitMillis", (entry.startTime > 0 ? entry.startTime : now) - entry.submitTime);
+            if (entry.startTime > 0) {
+                swimlane.put("startMillis", (entry.endTime > 0 ? entry.endTime : now) - entry.startTime);
+            }
+            swimlane.put("error", entry.error);
+            swimlanes.add(swimlane);
+        }
+        report.put("swimlanes", swimlanes);
+        return report;
+    }
+
+    /**
+     * 启动步骤
+     */
+    @FunctionalInterface
+    public interface Step {
+        /**
+         * 执行
+         * @throws Exception
+         */
+        void run() throws Exception;
+    }
+
+    private enum State {
+        QUEUED, STARTING, READY, FAILED
+    }
+
+    private static final class Readiness {
+        private final String taskId;
+        private final String swimlaneId;
+        private final long submitTime = System.currentTimeMillis();
+        private volatile State state = State.QUEUED;
+        private volatile String phase;
+        private volatile long startTime = 0;
+        private volatile long endTime = 0;
+        private volatile String error;
+
+        private Readiness(String taskId, String swimlaneId) {
+            this.taskId = taskId;
+            this.swimlaneId = swimlaneId;
+        }
+
+        private String key() {
+            return taskId + "_" + swimlaneId;
+        }
+    }
+}
@@ -29,35 +29,43 @@ import cn.vbill.middleware.porter.common.cluster.command.TaskStoppedByErrorComma
 import cn.vbill.middleware.porter.common.cluster.data.DCallback;
 import cn.vbill.middleware.porter.common.cluster.data.DObject;
 import cn.vbill.middleware.porter.common.cluster.data.DTaskStat;
-import cn.vbill.middleware.porter.common.exception.TaskStopTriggerException;
 import cn.vbill.middleware.porter.common.exception.WorkResourceAcquireException;
+import cn.vbill.middleware.porter.common.statistics.LatencyHistogram;
 import cn.vbill.middleware.porter.common.statistics.NodeLog;
+import cn.vbill.middleware.porter.common.statistics.StageStat;
 import cn.vbill.middleware.porter.common.statistics.TaskPerformance;
 import cn.vbill.middleware.porter.common.util.MachineUtils;
 import cn.vbill.middleware.porter.core.NodeContext;
 import cn.vbill.middleware.porter.core.consumer.DataConsumer;
+import cn.vbill.middleware.porter.core.event.etl.ETLRowPool;
 import cn.vbill.middleware.porter.core.loader.DataLoader;
+import cn.vbill.middleware.porter.core.task.AbstractStageJob;
+import cn.vbill.middleware.porter.core.task.MemoryBudget;
 import cn.vbill.middleware.porter.core.task.StageJob;
+import cn.vbill.middleware.porter.core.task.StageMetrics;
 import cn.vbill.middleware.porter.core.task.StageType;
 import cn.vbill.middleware.porter.core.task.TableMapper;
 import cn.vbill.middleware.porter.task.TaskController;
 import cn.vbill.middleware.porter.task.alert.AlertJob;
 import cn.vbill.middleware.porter.task.extract.ExtractJob;
+import cn.vbill.middleware.porter.task.load.HeartbeatProbe;
 import cn.vbill.middleware.porter.task.load.LoadJob;
+import cn.vbill.middleware.porter.task.select.AdaptiveFetchSize;
 import cn.vbill.middleware.porter.task.select.SelectJob;
 import cn.vbill.middleware.porter.task.transform.TransformJob;
 import com.alibaba.fastjson.JSON;
-import lombok.SneakyThrows;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -82,19 +90,33 @@ public class TaskWork {
     private final String basicThreadName;
 
     /**
-     * schema_table -> TaskStat
+     * schema -> table -> TaskStat，按两级查找避免每行拼接字符串
      */
-    private final Map<String, DTaskStat> stats;
+    private final Map<String, Map<String, DTaskStat>> stats;
     private final Map<String, TableMapper> mappers;
     private final TaskWorker worker;
 
     private final List<AlertReceiver> receivers;
 
+    //单次提取数量自适应调整，未开启时为null
+    private final AdaptiveFetchSize adaptiveFetchSize;
+    //源端心跳表延迟探测，未开启时为null
+    private final HeartbeatProbe heartbeatProbe;
+    //批次载入耗时累计分布，单位毫秒，用于指标导出
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+    //上次状态上报时各阶段的累计值
+    private final Map<StageType, StageMetrics.Totals> reportedStageTotals = new ConcurrentHashMap<>();
+
     /**
      * 触发任务停止标识，生命周期内，仅有一次
      */
     private final AtomicBoolean stopTrigger = new AtomicBoolean(false);
 
+    //内存预算账户，任务开始时开立，停止时释放
+    private volatile MemoryBudget.Account memoryAccount;
+    //载入完成的行与字段回收池，未开启时为null
+    private final ETLRowPool rowPool;
+
     public TaskWork(DataConsumer dataConsumer, DataLoader dataLoader, String taskId, List<AlertReceiver> receivers,
                     TaskWorker worker, long positionCheckInterval, long alarmPositionCount) throws Exception {
         this.dataConsumer = dataConsumer;
@@ -105,6 +127,15 @@ public class TaskWork {
         this.mappers = new ConcurrentHashMap<>();
         this.worker = worker;
         this.receivers = Collections.unmodifiableList(receivers);
+        this.adaptiveFetchSize = AdaptiveFetchSize.isEnabled(dataConsumer) ? new AdaptiveFetchSize(dataConsumer) : null;
+        this.heartbeatProbe = HeartbeatProbe.isEnabled(dataConsumer) ? new HeartbeatProbe(dataConsumer, taskId, basicThreadName) : null;
+        int rowPoolSize = NodeContext.INSTANCE.getMemory().getRowPool();
+        //载入器声明不持有行对象时才回收
+        this.rowPool = rowPoolSize > 0 && dataLoader.isRowRecyclable() ? new ETLRowPool(rowPoolSize) : null;
+        //消费进度随载入端事务提交
+        if (dataLoader.isSourcePositionInTransaction()) {
+            dataConsumer.setOffsetsCommittedExternally(true);
+        }
         TaskWork work = this;
         stageJobs = new LinkedHashMap<>();
 
@@ -118,9 +149,11 @@ public class TaskWork {
         if (dataConsumer.supportMetaQuery()) {
             stageJobs.put(StageType.DB_CHECK, new AlertJob(work));
         }
+        reportedStageTotals.putAll(getStageTotals());
 
         //从集群模块获取任务状态统计信息
-        ClusterProviderProxy.INSTANCE.broadcast(new TaskStatQueryCommand(taskId, dataConsumer.getSwimlaneId(), new DCallback() {
+        TaskStartup.INSTANCE.cluster(() -> ClusterProviderProxy.INSTANCE.broadcast(new TaskStatQueryCommand(taskId,
+                dataConsumer.getSwimlaneId(), new DCallback() {
             @Override
             public void callback(List<DObject> objects) {
                 for (DObject object : objects) {
@@ -128,7 +161,7 @@ public class TaskWork {
                     getDTaskStat(stat.getSchema(), stat.getTable());
                 }
             }
-        }));
+        })));
     }
 
     /**
@@ -152,6 +185,14 @@ public class TaskWork {
                         LOGGER.error("终止执行工作[{}-{}-{}]失败", taskId, dataConsumer.getSwimlaneId(), jobs.getValue().getClass().getSimpleName(), e);
                     }
                 }
+                if (null != heartbeatProbe) {
+                    heartbeatProbe.stop();
+                }
+                //各阶段已停止，删除未回放的溢出数据，对应位点未提交
+                ((SelectJob) stageJobs.get(StageType.SELECT)).closeCarrier();
+                if (null != memoryAccount) {
+                    memoryAccount.close();
+                }
                 try {
                     //上传消费进度
                     submitStat();
@@ -188,30 +229,67 @@ public class TaskWork {
             if (!NodeContext.INSTANCE.acquireWork()) {
                 throw new WorkResourceAcquireException("未申请到可供任务执行的资源");
             }
+            memoryAccount = MemoryBudget.INSTANCE.open(taskId + "-" + dataConsumer.getSwimlaneId());
 
 
             //会抛出分布式锁任务抢占异常
-            ClusterProviderProxy.INSTANCE.broadcast(new TaskRegisterCommand(taskId, dataConsumer.getSwimlaneId()));
-            //开始阶段性工作
+            TaskStartup.INSTANCE.cluster(() -> ClusterProviderProxy.INSTANCE.broadcast(new TaskRegisterCommand(taskId,
+                    dataConsumer.getSwimlaneId())));
+            //开始阶段性工作，SELECT连接源端、LOAD连接目标端
             for (Map.Entry<StageType, StageJob> jobs : stageJobs.entrySet()) {
-                jobs.getValue().start();
+                StageJob job = jobs.getValue();
+                if (jobs.getKey() == StageType.SELECT) {
+                    TaskStartup.INSTANCE.source(job::start);
+                } else if (jobs.getKey() == StageType.LOAD) {
+                    TaskStartup.INSTANCE.target(job::start);
+                } else {
+                    job.start();
+                }
+            }
+            if (null != heartbeatProbe) {
+                heartbeatProbe.start();
             }
 
             LOGGER.info("开始获取任务消费泳道[{}-{}]上次同步点", taskId, dataConsumer.getSwimlaneId());
             //获取上次任务进度
-            ClusterProviderProxy.INSTANCE.broadcast(new TaskPositionQueryCommand(taskId, dataConsumer.getSwimlaneId(), new DCallback() {
+            AtomicReference<String> stored = new AtomicReference<>();
+            TaskStartup.INSTANCE.cluster(() -> ClusterProviderProxy.INSTANCE.broadcast(new TaskPositionQueryCommand(taskId,
+                    dataConsumer.getSwimlaneId(), new DCallback() {
                 @Override
-                @SneakyThrows(TaskStopTriggerException.class)
                 public void callback(String position) {
-                    LOGGER.info("获取任务消费泳道[{}-{}]上次同步点->{}，通知SelectJob", taskId, dataConsumer.getSwimlaneId(), position);
-                    position = StringUtils.isBlank(position) ? dataConsumer.getInitiatePosition() : position;
-                    LOGGER.info("计算任务消费泳道[{}-{}]最终同步点->{}，通知SelectJob", taskId, dataConsumer.getSwimlaneId(), position);
-                    dataConsumer.initializePosition(taskId, dataConsumer.getSwimlaneId(), position);
+                    stored.set(position);
                 }
-            }));
+            })));
+            if (null != stored.get()) {
+                initializePosition(stored.get());
+            }
         }
     }
 
+    /**
+     * 按集群同步点与目标端同步点初始化消费位置
+     *
+     * @param position 集群记录的上次同步点
+     * @throws Exception
+     */
+    private void initializePosition(String position) throws Exception {
+        LOGGER.info("获取任务消费泳道[{}-{}]上次同步点->{}，通知SelectJob", taskId, dataConsumer.getSwimlaneId(), position);
+        //目标端与数据同事务提交的位点优先，从该位点之后精确消费
+        AtomicReference<String> checkpoint = new AtomicReference<>();
+        TaskStartup.INSTANCE.target(() -> checkpoint.set(dataLoader.queryCheckpoint(taskId, dataConsumer.getSwimlaneId())));
+        if (StringUtils.isBlank(checkpoint.get()) && dataLoader.isSourcePositionInTransaction()) {
+            TaskStartup.INSTANCE.source(() -> checkpoint.set(dataConsumer.getCommittedPosition(position)));
+        }
+        if (!StringUtils.isBlank(checkpoint.get())) {
+            LOGGER.info("获取任务消费泳道[{}-{}]目标端同步点->{}，通知SelectJob", taskId, dataConsumer.getSwimlaneId(), checkpoint.get());
+            TaskStartup.INSTANCE.source(() -> dataConsumer.initializePosition(taskId, dataConsumer.getSwimlaneId(), checkpoint.get(), true));
+            return;
+        }
+        String initial = StringUtils.isBlank(position) ? dataConsumer.getInitiatePosition() : position;
+        LOGGER.info("计算任务消费泳道[{}-{}]最终同步点->{}，通知SelectJob", taskId, dataConsumer.getSwimlaneId(), initial);
+        TaskStartup.INSTANCE.source(() -> dataConsumer.initializePosition(taskId, dataConsumer.getSwimlaneId(), initial));
+    }
+
 
     public String getBasicThreadName() {
         return basicThreadName;
@@ -262,37 +340,27 @@ public class TaskWork {
      * @return: void
      */
     public void submitStat() {
-        stats.forEach((s, stat) -> {
-            LOGGER.debug("stat before submit:{}", JSON.toJSONString(stat));
-            //多线程访问情况下（目前是两个线程:状态上报线程、任务状态更新线程），获取JOB的运行状态。
-            DTaskStat newStat = null;
-            synchronized (stat) {
-                newStat = stat.snapshot(DTaskStat.class);
-                stat.reset();
+        //各阶段区间统计，泳道内各表共用
+        Map<StageType, StageMetrics.Totals> stageTotals = getStageTotals();
+        List<StageStat> stages = getStageStats(reportedStageTotals, stageTotals);
+        reportedStageTotals.putAll(stageTotals);
+        StageStat bottleneck = StageMetrics.bottleneck(stages);
+        long cpuMillis = stages.stream().mapToLong(StageStat::getCpuMillis).sum();
+        long allocatedBytes = stages.stream().mapToLong(StageStat::getAllocatedBytes).sum();
+        long replicationLag = null != heartbeatProbe ? heartbeatProbe.getLag() : -1;
+        List<DTaskStat> newStats = new ArrayList<>();
+        getStats().forEach(stat -> {
+            //载入线程写入计数不加锁，这里只取上次上报以来的区间增量
+            DTaskStat newStat = stat.intervalSnapshot();
+            newStat.setStages(stages);
+            newStat.setBottleneckStage(null != bottleneck ? bottleneck.getStage() : null);
+            newStat.setCpuMillis(cpuMillis);
+            newStat.setAllocatedBytes(allocatedBytes);
+            if (replicationLag >= 0) {
+                newStat.setReplicationLag(replicationLag);
             }
             LOGGER.debug("stat snapshot:{}", JSON.toJSONString(newStat));
-            try {
-                ClusterProviderProxy.INSTANCE.broadcast(new TaskStatCommand(newStat, new DCallback() {
-                    @Override
-                    public void callback(DObject object) {
-                        DTaskStat remoteData = (DTaskStat) object;
-                        synchronized (stat) {
-                            if (stat.getUpdateStat().compareAndSet(false, true)) {
-                                //最后检查点
-                                if (null == stat.getLastCheckedTime()) {
-                                    stat.setLastLoadedDataTime(remoteData.getLastLoadedDataTime());
-                                }
-                                //最初启动时间
-                                if (null != remoteData.getRegisteredTime()) {
-                                    stat.setRegisteredTime(remoteData.getRegisteredTime());
-                                }
-                            }
-                        }
-                    }
-                }));
-            } catch (Throwable e) {
-                NodeLog.upload(NodeLog.LogType.TASK_LOG, taskId, dataConsumer.getSwimlaneId(), "上传任务状态信息失败:" + e.getMessage());
-            }
+            newStats.add(newStat);
 
             //上传统计
             try {
@@ -304,6 +372,33 @@ public class TaskWork {
                 NodeLog.upload(NodeLog.LogType.TASK_LOG, taskId, dataConsumer.getSwimlaneId(), "上传任务统计信息失败:" + e.getMessage());
             }
         });
+        if (newStats.isEmpty()) {
+            return;
+        }
+        //泳道内各表状态一次上报
+        try {
+            ClusterProviderProxy.INSTANCE.broadcast(new TaskStatCommand(newStats, new DCallback() {
+                @Override
+                public void callback(DObject object) {
+                    DTaskStat remoteData = (DTaskStat) object;
+                    DTaskStat stat = getDTaskStat(remoteData.getSchema(), remoteData.getTable());
+                    synchronized (stat) {
+                        if (stat.getUpdateStat().compareAndSet(false, true)) {
+                            //最后检查点
+                            if (null == stat.getLastCheckedTime()) {
+                                stat.setLastLoadedDataTime(remoteData.getLastLoadedDataTime());
+                            }
+                            //最初启动时间
+                            if (null != remoteData.getRegisteredTime()) {
+                                stat.setRegisteredTime(remoteData.getRegisteredTime());
+                            }
+                        }
+                    }
+                }
+            }));
+        } catch (Throwable e) {
+            NodeLog.upload(NodeLog.LogType.TASK_LOG, taskId, dataConsumer.getSwimlaneId(), "上传任务状态信息失败:" + e.getMessage());
+        }
     }
 
     /**
@@ -344,15 +439,17 @@ public class TaskWork {
      * @return: cn.vbill.middleware.porter.common.cluster.data.DTaskStat
      */
     public DTaskStat getDTaskStat(String schema, String table) {
-        String key = schema + "." + table;
-        DTaskStat stat = stats.computeIfAbsent(key, s ->
-                new DTaskStat(taskId, null, dataConsumer.getSwimlaneId(), schema, table)
-        );
+        Map<String, DTaskStat> tables = stats.get(String.valueOf(schema));
+        DTaskStat stat = null != tables ? tables.get(String.valueOf(table)) : null;
+        if (null == stat) {
+            stat = stats.computeIfAbsent(String.valueOf(schema), s -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(String.valueOf(table), t -> new DTaskStat(taskId, null, dataConsumer.getSwimlaneId(), schema, table));
+        }
         return stat;
     }
 
     public List<DTaskStat> getStats() {
-        return Collections.unmodifiableList(stats.values().stream().collect(Collectors.toList()));
+        return Collections.unmodifiableList(stats.values().stream().flatMap(t -> t.values().stream()).collect(Collectors.toList()));
     }
 
     /**
@@ -423,6 +520,112 @@ public class TaskWork {
         return receivers;
     }
 
+    public AdaptiveFetchSize getAdaptiveFetchSize() {
+        return adaptiveFetchSize;
+    }
+
+    public HeartbeatProbe getHeartbeatProbe() {
+        return heartbeatProbe;
+    }
+
+    public LatencyHistogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    public MemoryBudget.Account getMemoryAccount() {
+        return memoryAccount;
+    }
+
+    public ETLRowPool getRowPool() {
+        return rowPool;
+    }
+
+    /**
+     * SELECT阶段溢出尚未回放的字节数，未开启溢出时返回-1
+     * @return
+     */
+    public long getSpilledBytes() {
+        return ((SelectJob) stageJobs.get(StageType.SELECT)).getSpilledBytes();
+    }
+
+    public Map<StageType, StageJob> getStageJobs() {
+        return Collections.unmodifiableMap(stageJobs);
+    }
+
+    /**
+     * 阶段输出缓冲占用比例，没有输出缓冲时为-1
+     * @param type
+     * @return
+     */
+    public double getCarrierUsage(StageType type) {
+        StageJob job = stageJobs.get(type);
+        return job instanceof AbstractStageJob ? ((AbstractStageJob) job).getCarrierUsage() : -1;
+    }
+
+    /**
+     * 数据流转各阶段(不含DB_CHECK)的当前累计值
+     * @return
+     */
+    public Map<StageType, StageMetrics.Totals> getStageTotals() {
+        Map<StageType, StageMetrics.Totals> totals = new LinkedHashMap<>();
+        stageJobs.forEach((type, job) -> {
+            if (!type.isDbCheck() && job instanceof AbstractStageJob) {
+                totals.put(type, ((AbstractStageJob) job).getStageMetrics().totals());
+            }
+        });
+        return totals;
+    }
+
+    /**
+     * 两次累计值之间各阶段的区间统计
+     * @param from
+     * @param to
+     * @return
+     */
+    public List<StageStat> getStageStats(Map<StageType, StageMetrics.Totals> from, Map<StageType, StageMetrics.Totals> to) {
+        List<StageStat> stages = new ArrayList<>();
+        to.forEach((type, totals) -> {
+            if (from.containsKey(type)) {
+                stages.add(((AbstractStageJob) stageJobs.get(type)).getStageMetrics().between(type.name(), from.get(type), totals));
+            }
+        });
+        return stages;
+    }
+
+    /**
+     * 泳道持续无数据时休眠，数据流转各阶段(不含DB_CHECK)释放线程，按探测间隔执行
+     */
+    public void hibernate() {
+        LOGGER.info("泳道[{}-{}]持续无数据，进入休眠", taskId, dataConsumer.getSwimlaneId());
+        dataConsumer.hibernate(NodeContext.INSTANCE.getScheduler().getProbeInterval());
+        stageJobs.forEach((type, job) -> {
+            if (!type.isDbCheck() && job instanceof AbstractStageJob) {
+                ((AbstractStageJob) job).hibernate();
+            }
+        });
+    }
+
+    /**
+     * 休眠探测到数据，唤醒各阶段
+     */
+    public void wakeup() {
+        LOGGER.info("泳道[{}-{}]探测到数据，结束休眠", taskId, dataConsumer.getSwimlaneId());
+        dataConsumer.wakeup();
+        stageJobs.forEach((type, job) -> {
+            if (!type.isDbCheck() && job instanceof AbstractStageJob) {
+                ((AbstractStageJob) job).wakeup();
+            }
+        });
+    }
+
+    /**
+     * 最近一次提交同步点时的消息堆积
+     * @return
+     */
+    public long getConsumerLag() {
+        return ((LoadJob) stageJobs.get(StageType.LOAD)).getNewestPositionDiffer();
+    }
+
 
     /**
      * 当前任务是否触发
@@ -27,12 +27,16 @@ import cn.vbill.middleware.porter.common.util.DefaultNamedThreadFactory;
 import cn.vbill.middleware.porter.core.task.Task;
 import cn.vbill.middleware.porter.common.config.TaskConfig;
 import cn.vbill.middleware.porter.core.task.TableMapper;
+import cn.vbill.middleware.porter.core.consumer.DataConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -62,6 +66,10 @@ public class TaskWorker {
      */
     private final Map<String, TaskWork> jobs;
     private final Map<String, TableMapper> tableMappers;
+    //启动中的泳道数量
+    private final AtomicInteger starting = new AtomicInteger(0);
+    //已提交启动的泳道 -> 启动结束前是否收到停止请求
+    private final Map<String, AtomicBoolean> pendingJobs = new ConcurrentHashMap<>();
 
     public TaskWorker() {
         workerStatJob = Executors.newSingleThreadScheduledExecutor(new DefaultNamedThreadFactory("TaskStat"));
@@ -107,6 +115,7 @@ public class TaskWorker {
             workerStatJob.shutdown();
             for (TaskWork job : jobs.values()) {
                 job.stop();
+                TaskStartup.INSTANCE.forget(job.getTaskId(), job.getDataConsumer().getSwimlaneId());
             }
         } else {
             LOGGER.warn("TaskWorker[] has stopped already", workerSequence);
@@ -122,48 +131,79 @@ public class TaskWorker {
      */
     public void stopJob(String... swimlaneId) {
         Arrays.stream(swimlaneId).forEach(c -> {
-            if (jobs.containsKey(c)) {
-                jobs.get(c).stop();
-                jobs.remove(c);
+            //泳道仍在排队或启动中，启动结束后停止
+            AtomicBoolean stopRequested = pendingJobs.get(c);
+            if (null != stopRequested) {
+                stopRequested.set(true);
+            }
+            TaskWork job = jobs.remove(c);
+            if (null != job) {
+                job.stop();
+                TaskStartup.INSTANCE.forget(job.getTaskId(), c);
             }
         });
     }
 
     /**
      * alloc
+     * 各泳道提交到TaskStartup并发启动，返回全部泳道启动结束(成功或失败)
      *
      * @date 2018/8/9 下午2:20
      * @param: [taskConfig]
-     * @return: void
+     * @return: java.util.concurrent.CompletableFuture<java.lang.Void>
      */
-    public void alloc(TaskConfig taskConfig) throws DataConsumerBuildException, DataLoaderBuildException, ConfigParseException, ClientException {
+    public CompletableFuture<Void> alloc(TaskConfig taskConfig) throws DataConsumerBuildException, DataLoaderBuildException,
+            ConfigParseException, ClientException {
         //抛出从TaskConfig构建Task的异常
         Task task = Task.fromConfig(taskConfig);
         task.getMappers().forEach(m -> {
             tableMappers.putIfAbsent(m.getUniqueKey(task.getTaskId()), m);
         });
         //根据DataConsumer所使用ConsumeClient的消费拆分细则拆分consumer
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
         task.getConsumers().forEach(c -> {
-            TaskWork job = null;
-            try {
-                //启动JOB
-                job = new TaskWork(c, task.getLoader(), task.getTaskId(), task.getReceivers(), this, task.getPositionCheckInterval(),
-                        task.getAlarmPositionCount());
-                job.start();
-                jobs.put(c.getSwimlaneId(), job);
-            } catch (Throwable e) {
-                if (null != job) {
-                    job.stop();
-                }
-                //任务抢占异常不属于报错范畴
-                if (!(e instanceof TaskLockException)) {
-                    LOGGER.error("Consumer JOB[{}] failed to start!", c.getSwimlaneId(), e);
-                    NodeLog.upload(NodeLog.LogType.TASK_LOG, task.getTaskId(), c.getSwimlaneId(), e.getMessage());
-                } else {
-                    e.printStackTrace();
-                }
-            }
+            starting.incrementAndGet();
+            AtomicBoolean stopRequested = new AtomicBoolean(false);
+            pendingJobs.put(c.getSwimlaneId(), stopRequested);
+            futures.add(TaskStartup.INSTANCE.submit(task.getTaskId(), c.getSwimlaneId(), () -> startJob(task, c, stopRequested)));
         });
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    private void startJob(Task task, DataConsumer c, AtomicBoolean stopRequested) throws Exception {
+        TaskWork job = null;
+        try {
+            //排队期间泳道已停止
+            if (stopRequested.get()) {
+                TaskStartup.INSTANCE.forget(task.getTaskId(), c.getSwimlaneId());
+                return;
+            }
+            //启动JOB
+            job = new TaskWork(c, task.getLoader(), task.getTaskId(), task.getReceivers(), this, task.getPositionCheckInterval(),
+                    task.getAlarmPositionCount());
+            job.start();
+            jobs.put(c.getSwimlaneId(), job);
+            //启动期间工人已下线或泳道已停止，stopJob已移除时由stopJob停止
+            if ((!stat.get() || stopRequested.get()) && jobs.remove(c.getSwimlaneId(), job)) {
+                job.stop();
+                TaskStartup.INSTANCE.forget(task.getTaskId(), c.getSwimlaneId());
+            }
+        } catch (Throwable e) {
+            if (null != job) {
+                job.stop();
+            }
+            //任务抢占异常不属于报错范畴
+            if (!(e instanceof TaskLockException)) {
+                LOGGER.error("Consumer JOB[{}] failed to start!", c.getSwimlaneId(), e);
+                NodeLog.upload(NodeLog.LogType.TASK_LOG, task.getTaskId(), c.getSwimlaneId(), e.getMessage());
+            } else {
+                e.printStackTrace();
+            }
+            throw e;
+        } finally {
+            pendingJobs.remove(c.getSwimlaneId(), stopRequested);
+            starting.decrementAndGet();
+        }
     }
 
     public Map<String, TableMapper> getTableMapper() {
@@ -171,6 +211,10 @@ public class TaskWorker {
     }
 
     public boolean isNoWork() {
-        return jobs.isEmpty();
+        return jobs.isEmpty() && starting.get() == 0;
+    }
+
+    public List<TaskWork> getJobs() {
+        return new ArrayList<>(jobs.values());
     }
 }
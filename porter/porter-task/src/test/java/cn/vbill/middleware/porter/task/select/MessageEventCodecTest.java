@@ -0,0 +1,170 @@
+/*
+ * Copyright ©2018 vbill.cn.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * </p>
+ */
+
+package cn.vbill.middleware.porter.task.select;
+
+import cn.vbill.middleware.porter.common.consumer.Position;
+import cn.vbill.middleware.porter.core.event.s.EventType;
+import cn.vbill.middleware.porter.core.event.s.MessageEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * @author: zhangkewei[zhang_kw@suixingpay.com]
+ * @date: 2019年03月22日 15:40
+ * @version: V1.0
+ * @review: zhangkewei[zhang_kw@suixingpay.com]/2019年03月22日 15:40
+ */
+public class MessageEventCodecTest {
+    private final MessageEventCodec codec = new MessageEventCodec();
+
+    /**
+     * 编码后解码得到等价批次，字段值转为字符串，字段顺序不变
+     */
+    @Test
+    public void roundTrip() throws IOException {
+        TestPosition bucketPosition = new TestPosition("bin.000001", 200);
+        MessageEvent insert = event(EventType.INSERT, new TestPosition("bin.000001", 100), bucketPosition);
+        insert.getAfter().put("id", 1);
+        insert.getAfter().put("amount", new BigDecimal("10.50"));
+        insert.getAfter().put("memo", null);
+        MessageEvent update = event(EventType.UPDATE, bucketPosition, bucketPosition);
+        update.getBefore().put("id", 1L);
+        update.getAfter().put("id", 2L);
+
+        List<MessageEvent> decoded = roundTrip(Arrays.asList(insert, update));
+        Assert.assertEquals(2, decoded.size());
+        assertEvent(insert, decoded.get(0));
+        assertEvent(update, decoded.get(1));
+        Assert.assertEquals(Arrays.asList("id", "amount", "memo"), new ArrayList<>(decoded.get(0).getAfter().keySet()));
+        Assert.assertEquals("1", decoded.get(0).getAfter().get("id"));
+        Assert.assertEquals("10.50", decoded.get(0).getAfter().get("amount"));
+        Assert.assertNull(decoded.get(0).getAfter().get("memo"));
+        Assert.assertTrue(decoded.get(0).getAfter().containsKey("memo"));
+        Assert.assertEquals("1", decoded.get(1).getBefore().get("id"));
+        //批次内相同位点只写一次，解码后仍为同一对象
+        Assert.assertSame(decoded.get(0).getBucketPosition(), decoded.get(1).getBucketPosition());
+        Assert.assertSame(decoded.get(1).getRowPosition(), decoded.get(1).getBucketPosition());
+    }
+
+    /**
+     * 空值集合解码后仍为null
+     */
+    @Test
+    public void nullCollections() throws IOException {
+        MessageEvent event = event(EventType.DELETE, null, null);
+        event.setAfter(null);
+        event.setBefore(null);
+        event.setPrimaryKeys(null);
+        event.setOpTs(null);
+        event.setSchema(null);
+        MessageEvent decoded = roundTrip(Arrays.asList(event)).get(0);
+        Assert.assertNull(decoded.getAfter());
+        Assert.assertNull(decoded.getBefore());
+        Assert.assertNull(decoded.getPrimaryKeys());
+        Assert.assertNull(decoded.getOpTs());
+        Assert.assertNull(decoded.getSchema());
+        Assert.assertNull(decoded.getRowPosition());
+        Assert.assertEquals(EventType.DELETE, decoded.getOpType());
+    }
+
+    /**
+     * 空批次
+     */
+    @Test
+    public void emptyBatch() throws IOException {
+        Assert.assertTrue(roundTrip(new ArrayList<>()).isEmpty());
+    }
+
+    private List<MessageEvent> roundTrip(List<MessageEvent> events) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(events, out);
+        return codec.decode(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static MessageEvent event(EventType type, Position rowPosition, Position bucketPosition) {
+        MessageEvent event = new MessageEvent();
+        event.setSchema("s");
+        event.setTable("t");
+        event.setOpType(type);
+        event.setOpTs(new Date(1000L));
+        event.setCurrentTs(new Date(2000L));
+        event.setConsumerTime(3000L);
+        event.setConsumedTime(4000L);
+        event.setRowPosition(rowPosition);
+        event.setBucketPosition(bucketPosition);
+        event.setPrimaryKeys(new ArrayList<>(Arrays.asList("id")));
+        event.setAfter(new LinkedHashMap<>());
+        event.setBefore(new LinkedHashMap<>());
+        return event;
+    }
+
+    private static void assertEvent(MessageEvent expected, MessageEvent actual) {
+        Assert.assertEquals(expected.getSchema(), actual.getSchema());
+        Assert.assertEquals(expected.getTable(), actual.getTable());
+        Assert.assertEquals(expected.getOpType(), actual.getOpType());
+        Assert.assertEquals(expected.getOpTs(), actual.getOpTs());
+        Assert.assertEquals(expected.getCurrentTs(), actual.getCurrentTs());
+        Assert.assertEquals(expected.getConsumerTime(), actual.getConsumerTime());
+        Assert.assertEquals(expected.getConsumedTime(), actual.getConsumedTime());
+        Assert.assertEquals(expected.getPrimaryKeys(), actual.getPrimaryKeys());
+        Assert.assertEquals(expected.getRowPosition(), actual.getRowPosition());
+        Assert.assertEquals(expected.getBucketPosition(), actual.getBucketPosition());
+        Assert.assertEquals(expected.getBefore().size(), actual.getBefore().size());
+        Assert.assertEquals(expected.getAfter().size(), actual.getAfter().size());
+    }
+
+    private static class TestPosition extends Position {
+        private static final long serialVersionUID = 1L;
+        private final String logfileName;
+        private final long offset;
+
+        TestPosition(String logfileName, long offset) {
+            this.logfileName = logfileName;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean checksum() {
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TestPosition)) {
+                return false;
+            }
+            TestPosition other = (TestPosition) o;
+            return logfileName.equals(other.logfileName) && offset == other.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return logfileName.hashCode() * 31 + Long.hashCode(offset);
+        }
+    }
+}